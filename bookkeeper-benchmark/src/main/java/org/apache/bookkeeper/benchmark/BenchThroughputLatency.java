@@ -260,6 +260,8 @@ public class BenchThroughputLatency implements AddCallback, Runnable {
         options.addOption("sendlimit", true, "Max number of entries to send. Default 20000000");
         options.addOption("latencyFile", true, "File to dump latencies. Default is latencyDump.dat");
         options.addOption("useV2", false, "Whether use V2 protocol to send requests to the bookie server.");
+        options.addOption("batchAdds", false, "Coalesce the adds of a ledger sent to the same bookie into a single"
+                + " request, requires useV2. Compare with and without it with small entries, e.g. -entrysize 100");
         options.addOption("warmupMessages", true, "Number of messages to warm up. Default 10000");
         options.addOption("help", false, "This message");
 
@@ -328,6 +330,9 @@ public class BenchThroughputLatency implements AddCallback, Runnable {
 
         if (cmd.hasOption("useV2")) {
             conf.setUseV2WireProtocol(true);
+            if (cmd.hasOption("batchAdds")) {
+                conf.setAddEntryBatchingEnabled(true);
+            }
         }
 
         if (!cmd.hasOption("skipwarmup")) {
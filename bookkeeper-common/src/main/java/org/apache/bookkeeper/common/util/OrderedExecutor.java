@@ -80,6 +80,14 @@ public class OrderedExecutor implements ExecutorService {
         return new Builder();
     }
 
+    /**
+     * Returns a builder of a {@link WorkStealingOrderedExecutor} if {@code workStealing} is set, or else of a plain
+     * {@link OrderedExecutor}.
+     */
+    public static AbstractBuilder<? extends OrderedExecutor> newBuilder(boolean workStealing) {
+        return workStealing ? WorkStealingOrderedExecutor.newWorkStealingBuilder() : newBuilder();
+    }
+
     /**
      * A builder class for an OrderedExecutor.
      */
@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.common.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * An {@link OrderedExecutor} which balances the ordering keys across its threads.
+ *
+ * <p>The ordering keys are hashed to slots, several per thread, each with its own FIFO queue of tasks. A slot with
+ * pending tasks is handed to its home thread, and is run by a single thread at a time, so the tasks submitted with
+ * the same key are still executed in order. A thread without slots to run steals the ready slots of the busy
+ * threads, so that a few hot keys hashed to the same thread don't leave the other threads idle.
+ *
+ * <p>{@link #chooseThread(Object)} and {@link #chooseThread(long)} return an executor which queues its tasks in the
+ * slot of the key, so the tasks submitted to it are ordered with the ones submitted with
+ * {@link #executeOrdered(long, Runnable)}. Since a slot may run on any thread, {@link #getThreadID(long)} returns the
+ * thread currently running the slot of the key, if any.
+ */
+@Slf4j
+public class WorkStealingOrderedExecutor extends OrderedExecutor {
+    private static final int DEFAULT_SLOTS_PER_THREAD = 16;
+    // Max tasks of a slot run in a row, before the other ready slots get a turn
+    private static final int MAX_TASKS_PER_RUN = 64;
+    private static final long NOT_RUNNING = -1L;
+
+    private final Worker[] workers;
+    private final Slot[] slots;
+    private volatile boolean shutdown = false;
+
+    /**
+     * A builder class for a {@link WorkStealingOrderedExecutor}.
+     */
+    public static class Builder extends AbstractBuilder<WorkStealingOrderedExecutor> {
+        private int slotsPerThread = DEFAULT_SLOTS_PER_THREAD;
+
+        public Builder slotsPerThread(int slotsPerThread) {
+            this.slotsPerThread = slotsPerThread;
+            return this;
+        }
+
+        @Override
+        public WorkStealingOrderedExecutor build() {
+            if (null == threadFactory) {
+                threadFactory = new DefaultThreadFactory(name);
+            }
+            return new WorkStealingOrderedExecutor(
+                name,
+                numThreads,
+                threadFactory,
+                statsLogger,
+                traceTaskExecution,
+                preserveMdcForTaskExecution,
+                warnTimeMicroSec,
+                maxTasksInQueue,
+                enableBusyWait,
+                enableThreadScopedMetrics,
+                slotsPerThread);
+        }
+    }
+
+    public static Builder newWorkStealingBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Constructs a work stealing ordered executor.
+     *
+     * @param slotsPerThread
+     *            - number of key slots per thread, the more slots the finer the work can be balanced
+     * @see OrderedExecutor#OrderedExecutor(String, int, ThreadFactory, StatsLogger, boolean, boolean, long, int,
+     *      boolean, boolean)
+     */
+    protected WorkStealingOrderedExecutor(String baseName, int numThreads, ThreadFactory threadFactory,
+                                          StatsLogger statsLogger, boolean traceTaskExecution,
+                                          boolean preserveMdcForTaskExecution, long warnTimeMicroSec,
+                                          int maxTasksInQueue, boolean enableBusyWait,
+                                          boolean enableThreadScopedMetrics, int slotsPerThread) {
+        super(baseName, numThreads, threadFactory, statsLogger, traceTaskExecution, preserveMdcForTaskExecution,
+                warnTimeMicroSec, maxTasksInQueue, enableBusyWait, enableThreadScopedMetrics);
+        checkArgument(slotsPerThread > 0);
+
+        workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker(i);
+        }
+        slots = new Slot[numThreads * slotsPerThread];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(workers[i % numThreads]);
+        }
+    }
+
+    @Override
+    protected ExecutorService addExecutorDecorators(ExecutorService executor) {
+        // The tasks are decorated one by one when they are queued in their slot
+        return executor;
+    }
+
+    /**
+     * Returns the id of the thread currently running the tasks of the key, or -1 if none is.
+     *
+     * <p>A task of the key may be run inline only when this is the id of the current thread, that is from a task of
+     * the same slot.
+     */
+    @Override
+    public long getThreadID(long orderingKey) {
+        return slots[chooseThreadIdx(orderingKey, slots.length)].runningThreadId;
+    }
+
+    @Override
+    public ExecutorService chooseThread() {
+        return slots[ThreadLocalRandom.current().nextInt(slots.length)];
+    }
+
+    @Override
+    public ExecutorService chooseThread(Object orderingKey) {
+        if (null == orderingKey) {
+            return chooseThread();
+        }
+        return slots[chooseThreadIdx(orderingKey.hashCode(), slots.length)];
+    }
+
+    @Override
+    public ExecutorService chooseThread(long orderingKey) {
+        return slots[chooseThreadIdx(orderingKey, slots.length)];
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        super.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        super.shutdownNow();
+        List<Runnable> runnables = new ArrayList<>();
+        for (Slot slot : slots) {
+            Runnable task;
+            while ((task = slot.tasks.poll()) != null) {
+                runnables.add(task);
+            }
+        }
+        return runnables;
+    }
+
+    /**
+     * Makes a slot with pending tasks runnable by its home thread, and wakes up an idle thread to steal it if the
+     * home thread is busy.
+     */
+    private void makeReady(Slot slot) {
+        Worker home = slot.home;
+        home.readySlots.addLast(slot);
+        if (!home.schedule()) {
+            wakeIdleWorker(home);
+        }
+    }
+
+    /**
+     * Wakes up a thread other than the busy one, if any is idle, to steal the slots queued on the busy thread.
+     */
+    private void wakeIdleWorker(Worker busy) {
+        if (workers.length == 1) {
+            return;
+        }
+        int start = ThreadLocalRandom.current().nextInt(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            Worker worker = workers[(start + i) % workers.length];
+            if (worker != busy && !worker.scheduled.get()) {
+                try {
+                    worker.schedule();
+                } catch (RejectedExecutionException e) {
+                    // The executor is being shut down, the busy thread runs the slots
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * The loop of a thread, running its own ready slots first, and then the ones stolen from the other threads.
+     */
+    private final class Worker implements Runnable {
+        final int index;
+        final ConcurrentLinkedDeque<Slot> readySlots = new ConcurrentLinkedDeque<>();
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        // Pending tasks of the slots homed on this thread, only tracked when the queue size is bounded
+        final AtomicInteger pendingTasks = new AtomicInteger(0);
+
+        Worker(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Submits the loop to the thread, unless it's already running.
+         *
+         * @return true if the loop was submitted
+         */
+        boolean schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return false;
+            }
+            try {
+                threads[index].execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Slot slot = readySlots.pollFirst();
+                if (slot == null) {
+                    slot = steal();
+                }
+                if (slot == null) {
+                    scheduled.set(false);
+                    // A slot may have been handed to this thread after the last poll
+                    if (readySlots.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                slot.run(this);
+            }
+        }
+
+        private Slot steal() {
+            int start = ThreadLocalRandom.current().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Worker victim = workers[(start + i) % workers.length];
+                if (victim != this) {
+                    Slot slot = victim.readySlots.pollLast();
+                    if (slot != null) {
+                        return slot;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The FIFO queue of tasks of the keys hashed to a slot, which is also the executor returned for these keys.
+     */
+    private final class Slot extends AbstractExecutorService {
+        final Worker home;
+        final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Whether the slot is queued in a ready queue or running
+        final AtomicBoolean ready = new AtomicBoolean(false);
+        volatile long runningThreadId = NOT_RUNNING;
+
+        Slot(Worker home) {
+            this.home = home;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shutting down");
+            }
+            if (maxTasksInQueue > 0 && home.pendingTasks.incrementAndGet() > maxTasksInQueue) {
+                home.pendingTasks.decrementAndGet();
+                throw new RejectedExecutionException("Queue at limit of " + maxTasksInQueue + " items");
+            }
+            tasks.add(timedRunnable(task));
+            if (ready.compareAndSet(false, true)) {
+                makeReady(this);
+            }
+        }
+
+        void run(Worker worker) {
+            runningThreadId = Thread.currentThread().getId();
+            try {
+                for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    if (maxTasksInQueue > 0) {
+                        home.pendingTasks.decrementAndGet();
+                    }
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        log.error("Error while running task: {}", t.getMessage(), t);
+                    }
+                }
+            } finally {
+                runningThreadId = NOT_RUNNING;
+            }
+
+            if (!tasks.isEmpty()) {
+                requeue(worker);
+                return;
+            }
+            ready.set(false);
+            // A task may have been queued after the last poll, without making the slot ready
+            if (!tasks.isEmpty() && ready.compareAndSet(false, true)) {
+                requeue(worker);
+            }
+        }
+
+        /**
+         * Queues the slot back on the thread which ran it. If the slot is behind other ready slots, an idle thread is
+         * woken up to steal them.
+         */
+        private void requeue(Worker worker) {
+            worker.readySlots.addLast(this);
+            if (worker.readySlots.peekFirst() != this) {
+                wakeIdleWorker(worker);
+            }
+        }
+
+        /**
+         * The slots share the threads of the executor, so shutting down the executor of a key shuts down the whole
+         * executor, as shutting down a thread of an {@link OrderedExecutor} does.
+         */
+        @Override
+        public void shutdown() {
+            WorkStealingOrderedExecutor.this.shutdown();
+        }
+
+        /**
+         * Shuts down the whole executor, see {@link #shutdown()}.
+         *
+         * @return the tasks of all the keys which never started
+         */
+        @Override
+        public List<Runnable> shutdownNow() {
+            return WorkStealingOrderedExecutor.this.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return WorkStealingOrderedExecutor.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return WorkStealingOrderedExecutor.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return WorkStealingOrderedExecutor.this.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test {@link WorkStealingOrderedExecutor}.
+ */
+public class TestWorkStealingOrderedExecutor {
+
+    private static final int NUM_THREADS = 4;
+    private static final int SLOTS_PER_THREAD = 4;
+
+    private WorkStealingOrderedExecutor executor;
+
+    @After
+    public void teardown() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private WorkStealingOrderedExecutor newExecutor(int maxTasksInQueue) {
+        return WorkStealingOrderedExecutor.newWorkStealingBuilder()
+            .slotsPerThread(SLOTS_PER_THREAD)
+            .name("test-work-stealing")
+            .numThreads(NUM_THREADS)
+            .maxTasksInQueue(maxTasksInQueue)
+            .build();
+    }
+
+    /**
+     * Keys of distinct slots, which are all homed on the first thread.
+     */
+    private static List<Long> keysHomedOnFirstThread(int count) {
+        int numSlots = NUM_THREADS * SLOTS_PER_THREAD;
+        List<Long> keys = new ArrayList<>();
+        Set<Integer> slots = new HashSet<>();
+        for (long key = 0; keys.size() < count; key++) {
+            int slot = OrderedExecutor.chooseThreadIdx(key, numSlots);
+            if (slot % NUM_THREADS == 0 && slots.add(slot)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void testPerKeyOrderUnderStealing() throws Exception {
+        executor = newExecutor(-1);
+        final int tasksPerKey = 50;
+        // All the keys are homed on the same thread, so the other threads can only run them by stealing
+        List<Long> keys = keysHomedOnFirstThread(SLOTS_PER_THREAD);
+
+        ConcurrentHashMap<Long, List<Integer>> executed = new ConcurrentHashMap<>();
+        ConcurrentHashMap<Long, AtomicInteger> running = new ConcurrentHashMap<>();
+        Set<Long> threadIds = ConcurrentHashMap.newKeySet();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(keys.size() * tasksPerKey);
+        for (long key : keys) {
+            executed.put(key, Collections.synchronizedList(new ArrayList<>()));
+            running.put(key, new AtomicInteger());
+        }
+
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (long key : keys) {
+                final int seq = i;
+                executor.executeOrdered(key, () -> {
+                    if (running.get(key).incrementAndGet() != 1) {
+                        failure.compareAndSet(null, "Tasks of key " + key + " run concurrently");
+                    }
+                    threadIds.add(Thread.currentThread().getId());
+                    executed.get(key).add(seq);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.get(key).decrementAndGet();
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        for (long key : keys) {
+            List<Integer> seqs = executed.get(key);
+            assertEquals(tasksPerKey, seqs.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals("Task of key " + key + " out of order", i, (int) seqs.get(i));
+            }
+        }
+        assertTrue("The slots of the busy thread were not stolen", threadIds.size() > 1);
+    }
+
+    @Test
+    public void testChooseThreadIsOrderedWithExecuteOrdered() throws Exception {
+        executor = newExecutor(-1);
+        final long key = 12345L;
+        final int numTasks = 200;
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(numTasks);
+
+        ExecutorService keyExecutor = executor.chooseThread(key);
+        assertSame(keyExecutor, executor.chooseThread(key));
+        assertSame(keyExecutor, executor.chooseThread((Object) Long.valueOf(key)));
+        for (int i = 0; i < numTasks; i++) {
+            final int seq = i;
+            Runnable task = () -> {
+                executed.add(seq);
+                done.countDown();
+            };
+            if (i % 2 == 0) {
+                keyExecutor.execute(task);
+            } else {
+                executor.executeOrdered(key, task);
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < numTasks; i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+
+        assertNotNull(executor.chooseThread((Object) null));
+
+        // Shutting down the executor of a key shuts down the whole executor
+        keyExecutor.shutdown();
+        assertTrue(executor.isShutdown());
+        assertTrue(keyExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        try {
+            executor.chooseThread(key + 1).execute(() -> { });
+            fail("Should reject the tasks once shut down");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetThreadIdOfRunningKey() throws Exception {
+        executor = newExecutor(-1);
+        final long key = 1L;
+        assertEquals(-1L, executor.getThreadID(key));
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong threadIdInTask = new AtomicLong();
+        AtomicLong runningThreadId = new AtomicLong();
+        executor.executeOrdered(key, () -> {
+            runningThreadId.set(Thread.currentThread().getId());
+            threadIdInTask.set(executor.getThreadID(key));
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // The key may run on any thread, and is reported as running on the one running it right now
+        assertEquals(runningThreadId.get(), threadIdInTask.get());
+        assertEquals(runningThreadId.get(), executor.getThreadID(key));
+        release.countDown();
+
+        // Once the slot is done, no thread runs the key anymore
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getThreadID(key) != -1L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(-1L, executor.getThreadID(key));
+    }
+
+    @Test
+    public void testShutdownNowReturnsPendingTasks() throws Exception {
+        executor = newExecutor(-1);
+        final long key = 7L;
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.executeOrdered(key, () -> {
+            started.countDown();
+            // Keep the slot busy until the pending tasks are drained, even once interrupted by shutdownNow
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // retry
+                }
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            executor.executeOrdered(key, () -> { });
+        }
+
+        assertEquals(10, executor.shutdownNow().size());
+        release.countDown();
+        try {
+            executor.executeOrdered(key, () -> { });
+            fail("Should reject the tasks once shut down");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMaxTasksInQueue() throws Exception {
+        executor = newExecutor(5);
+        List<Long> keys = keysHomedOnFirstThread(2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.executeOrdered(keys.get(0), () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            executor.executeOrdered(keys.get(0), () -> { });
+        }
+        // The limit applies to the pending tasks of all the slots homed on a thread
+        for (long key : keys) {
+            try {
+                executor.executeOrdered(key, () -> { });
+                fail("Should reject the tasks above the queue limit");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+        }
+        release.countDown();
+    }
+}
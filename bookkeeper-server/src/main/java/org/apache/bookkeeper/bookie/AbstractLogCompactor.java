@@ -21,11 +21,14 @@
 
 package org.apache.bookkeeper.bookie;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.RateLimiter;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Counter;
 
 /**
  * Abstract entry log compactor used for compaction.
@@ -64,16 +67,87 @@ public abstract class AbstractLogCompactor {
 
     /**
      * class Throttler.
+     *
+     * <p>When a {@link ReadLatencyTracker} is set, the rate is adapted every second to the latency of the foreground
+     * reads: it is halved while the latency is above the threshold, down to 1/16 of the configured rate, doubled
+     * back while the latency is below half of the threshold, and the throttler is paused, even in the middle of an
+     * entry log, while the latency is above twice the threshold.
      */
     public static class Throttler {
+        private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private static final double MIN_RATE_FACTOR = 1.0 / 16;
+
         private final RateLimiter rateLimiter;
         private final boolean isThrottleByBytes;
+        private final double configuredRate;
         private final AtomicBoolean cancelled = new AtomicBoolean(false);
 
+        // Only accessed by the thread acquiring the permits
+        private ReadLatencyTracker readLatencyTracker = null;
+        private long readLatencyThresholdNanos;
+        private long lastSampleNanos = 0;
+        private double rateFactor = 1.0;
+        private boolean paused = false;
+        private Counter throttledTime = null;
+
         Throttler(ServerConfiguration conf) {
             this.isThrottleByBytes  = conf.getIsThrottleByBytes();
-            this.rateLimiter = RateLimiter.create(this.isThrottleByBytes
-                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries());
+            this.configuredRate = this.isThrottleByBytes
+                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries();
+            this.rateLimiter = RateLimiter.create(configuredRate);
+        }
+
+        /**
+         * Adapt the rate to the latency of the foreground reads.
+         */
+        void setReadLatencyTracker(ReadLatencyTracker tracker, long thresholdMillis) {
+            this.readLatencyTracker = tracker;
+            this.readLatencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        }
+
+        /**
+         * Record the time spent waiting for permits, or paused, in the given counter.
+         */
+        void setThrottledTimeCounter(Counter throttledTime) {
+            this.throttledTime = throttledTime;
+        }
+
+        boolean isPaused() {
+            return paused;
+        }
+
+        double getRate() {
+            return rateLimiter.getRate();
+        }
+
+        private void adaptRate() {
+            adaptRate(MathUtils.nowInNano());
+        }
+
+        @VisibleForTesting
+        void adaptRate(long now) {
+            if (readLatencyTracker == null || now - lastSampleNanos < SAMPLE_INTERVAL_NANOS) {
+                return;
+            }
+            lastSampleNanos = now;
+
+            long latencyNanos = readLatencyTracker.sampleAverageLatencyNanos();
+            double newRateFactor = rateFactor;
+            if (latencyNanos > 2 * readLatencyThresholdNanos) {
+                paused = true;
+                return;
+            } else if (latencyNanos > readLatencyThresholdNanos) {
+                newRateFactor = Math.max(MIN_RATE_FACTOR, rateFactor / 2);
+            } else if (latencyNanos < readLatencyThresholdNanos / 2) {
+                // Also when there was no foreground read
+                newRateFactor = Math.min(1.0, rateFactor * 2);
+            }
+            paused = false;
+
+            if (newRateFactor != rateFactor) {
+                rateFactor = newRateFactor;
+                rateLimiter.setRate(configuredRate * rateFactor);
+            }
         }
 
         // acquire. if bybytes: bytes of this entry; if byentries: 1.
@@ -87,17 +161,40 @@ public abstract class AbstractLogCompactor {
         public void acquire(int permits) throws IOException {
             long timeout = 100;
             long start = System.currentTimeMillis();
-            while (!tryAcquire(permits, timeout, TimeUnit.MILLISECONDS)) {
+            long startNanos = MathUtils.nowInNano();
+            adaptRate();
+            // Only the time spent waiting for the rate limiter is accounted as throttled
+            boolean throttled = paused;
+            while (paused) {
                 if (cancelled.get()) {
-                    throw new IOException("Failed to get permits takes "
+                    throw new IOException("Compaction paused for "
                             + (System.currentTimeMillis() - start)
-                            + " ms may be compactor has been shutting down");
+                            + " ms was cancelled, may be compactor has been shutting down");
                 }
                 try {
                     TimeUnit.MILLISECONDS.sleep(timeout);
                 } catch (InterruptedException e) {
                     // ignore
                 }
+                adaptRate();
+            }
+            if (!tryAcquire(permits, 0, TimeUnit.MILLISECONDS)) {
+                throttled = true;
+                while (!tryAcquire(permits, timeout, TimeUnit.MILLISECONDS)) {
+                    if (cancelled.get()) {
+                        throw new IOException("Failed to get permits takes "
+                                + (System.currentTimeMillis() - start)
+                                + " ms may be compactor has been shutting down");
+                    }
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(timeout);
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+            }
+            if (throttled && throttledTime != null) {
+                throttledTime.addLatency(MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
             }
         }
 
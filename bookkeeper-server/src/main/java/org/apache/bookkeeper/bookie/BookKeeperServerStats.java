@@ -55,6 +55,8 @@ public interface BookKeeperServerStats {
     String READ_ENTRY = "READ_ENTRY";
     String READ_ENTRY_REJECTED = "READ_ENTRY_REJECTED";
     String READ_ENTRY_SCHEDULING_DELAY = "READ_ENTRY_SCHEDULING_DELAY";
+    String ADMISSION_CONTROL_QUEUED_LATENCY = "ADMISSION_CONTROL_QUEUED_LATENCY";
+    String ADMISSION_CONTROL_REJECTED = "ADMISSION_CONTROL_REJECTED";
     String READ_ENTRY_FENCE_REQUEST = "READ_ENTRY_FENCE_REQUEST";
     String READ_ENTRY_FENCE_WAIT = "READ_ENTRY_FENCE_WAIT";
     String READ_ENTRY_FENCE_READ = "READ_ENTRY_FENCE_READ";
@@ -117,6 +119,10 @@ public interface BookKeeperServerStats {
     String JOURNAL_CREATION_LATENCY = "JOURNAL_CREATION_LATENCY";
     String JOURNAL_MEMORY_MAX = "JOURNAL_MEMORY_MAX";
     String JOURNAL_MEMORY_USED = "JOURNAL_MEMORY_USED";
+    String JOURNAL_REPLAY_TIME = "JOURNAL_REPLAY_TIME";
+    String JOURNAL_REPLAY_ENTRIES = "JOURNAL_REPLAY_ENTRIES";
+    String JOURNAL_REPLAY_BYTES = "JOURNAL_REPLAY_BYTES";
+    String JOURNAL_REPLAY_THROUGHPUT = "JOURNAL_REPLAY_THROUGHPUT";
 
     // Ledger Storage Stats
     String STORAGE_GET_OFFSET = "STORAGE_GET_OFFSET";
@@ -135,6 +141,7 @@ public interface BookKeeperServerStats {
 
     // Counters
     String JOURNAL_WRITE_BYTES = "JOURNAL_WRITE_BYTES";
+    String JOURNAL_GATHERED_WRITE_BYTES = "JOURNAL_GATHERED_WRITE_BYTES";
     String JOURNAL_QUEUE_SIZE = "JOURNAL_QUEUE_SIZE";
     String READ_BYTES = "READ_BYTES";
     String WRITE_BYTES = "WRITE_BYTES";
@@ -158,6 +165,8 @@ public interface BookKeeperServerStats {
     String COMPACT_RUNTIME = "COMPACT_RUNTIME";
     String EXTRACT_META_RUNTIME = "EXTRACT_META_RUNTIME";
     String ENTRY_LOG_COMPACT_RATIO = "ENTRY_LOG_COMPACT_RATIO";
+    String COMPACTION_THROTTLED_TIME = "COMPACTION_THROTTLED_TIME";
+    String COMPACTION_RECLAIMED_BYTES_PER_SECOND = "COMPACTION_RECLAIMED_BYTES_PER_SECOND";
 
     // Index Related Counters
     String INDEX_INMEM_ILLEGAL_STATE_RESET = "INDEX_INMEM_ILLEGAL_STATE_RESET";
@@ -32,7 +32,10 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.FileRegion;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
@@ -50,8 +53,14 @@ import java.util.Optional;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -61,8 +70,10 @@ import org.apache.bookkeeper.bookie.Journal.JournalScanner;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
 import org.apache.bookkeeper.bookie.stats.BookieStats;
+import org.apache.bookkeeper.bookie.stats.JournalStats;
 import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage;
 import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.Watcher;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.discover.BookieServiceInfo;
@@ -107,6 +118,9 @@ public class BookieImpl implements Bookie {
     public static final long METAENTRY_ID_FORCE_LEDGER  = -0x4000;
     static final long METAENTRY_ID_LEDGER_EXPLICITLAC  = -0x8000;
 
+    // Max size of the journal records read but not yet applied to the ledger storage
+    private static final int MAX_PENDING_JOURNAL_REPLAY_BYTES = 64 * 1024 * 1024;
+
     private final LedgerDirsManager ledgerDirsManager;
     protected final Supplier<BookieServiceInfo> bookieServiceInfoProvider;
     private final LedgerDirsManager indexDirsManager;
@@ -525,97 +539,219 @@ public class BookieImpl implements Bookie {
         }
 
         long startTs = System.currentTimeMillis();
-        JournalScanner scanner = new JournalScanner() {
-            @Override
-            public void process(int journalVersion, long offset, ByteBuffer recBuff) throws IOException {
-                long ledgerId = recBuff.getLong();
-                long entryId = recBuff.getLong();
+        int numReplayThreads = conf.getNumJournalReplayThreads();
+        if (numReplayThreads > 0) {
+            replayInParallel(numReplayThreads);
+        } else {
+            JournalScanner scanner = (journalVersion, offset, recBuff) -> replayRecord(journalVersion, recBuff);
+            for (Journal journal : journals) {
+                replay(journal, scanner, null);
+            }
+        }
+        long elapsedTs = System.currentTimeMillis() - startTs;
+        LOG.info("Finished replaying journal in {} ms.", elapsedTs);
+    }
+
+    /**
+     * Apply a journal record to the ledger storage.
+     */
+    private void replayRecord(int journalVersion, ByteBuffer recBuff) throws IOException {
+        long ledgerId = recBuff.getLong();
+        long entryId = recBuff.getLong();
+        try {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Replay journal - ledger id : {}, entry id : {}.", ledgerId, entryId);
+            }
+            if (entryId == METAENTRY_ID_LEDGER_KEY) {
+                if (journalVersion >= JournalChannel.V3) {
+                    int masterKeyLen = recBuff.getInt();
+                    byte[] masterKey = new byte[masterKeyLen];
+
+                    recBuff.get(masterKey);
+                    masterKeyCache.put(ledgerId, masterKey);
+
+                    // Force to re-insert the master key in ledger storage
+                    handles.getHandle(ledgerId, masterKey, true);
+                } else {
+                    throw new IOException("Invalid journal. Contains journalKey "
+                            + " but layout version (" + journalVersion
+                            + ") is too old to hold this");
+                }
+            } else if (entryId == METAENTRY_ID_FENCE_KEY) {
+                if (journalVersion >= JournalChannel.V4) {
+                    byte[] key = masterKeyCache.get(ledgerId);
+                    if (key == null) {
+                        key = ledgerStorage.readMasterKey(ledgerId);
+                    }
+                    LedgerDescriptor handle = handles.getHandle(ledgerId, key, true);
+                    handle.setFenced();
+                } else {
+                    throw new IOException("Invalid journal. Contains fenceKey "
+                            + " but layout version (" + journalVersion
+                            + ") is too old to hold this");
+                }
+            } else if (entryId == METAENTRY_ID_LEDGER_EXPLICITLAC) {
+                if (journalVersion >= JournalChannel.V6) {
+                    int explicitLacBufLength = recBuff.getInt();
+                    ByteBuf explicitLacBuf = Unpooled.buffer(explicitLacBufLength);
+                    byte[] explicitLacBufArray = new byte[explicitLacBufLength];
+                    recBuff.get(explicitLacBufArray);
+                    explicitLacBuf.writeBytes(explicitLacBufArray);
+                    byte[] key = masterKeyCache.get(ledgerId);
+                    if (key == null) {
+                        key = ledgerStorage.readMasterKey(ledgerId);
+                    }
+                    LedgerDescriptor handle = handles.getHandle(ledgerId, key, true);
+                    handle.setExplicitLac(explicitLacBuf);
+                } else {
+                    throw new IOException("Invalid journal. Contains explicitLAC " + " but layout version ("
+                            + journalVersion + ") is too old to hold this");
+                }
+            } else if (entryId < 0) {
+                /*
+                 * this is possible if bookie code binary is rolledback
+                 * to older version but when it is trying to read
+                 * Journal which was created previously using newer
+                 * code/journalversion, which introduced new special
+                 * entry. So in anycase, if we see unrecognizable
+                 * special entry while replaying journal we should skip
+                 * (ignore) it.
+                 */
+                LOG.warn("Read unrecognizable entryId: {} for ledger: {} while replaying Journal. Skipping it",
+                        entryId, ledgerId);
+            } else {
+                byte[] key = masterKeyCache.get(ledgerId);
+                if (key == null) {
+                    key = ledgerStorage.readMasterKey(ledgerId);
+                }
+                LedgerDescriptor handle = handles.getHandle(ledgerId, key, true);
+
+                recBuff.rewind();
+                handle.addEntry(Unpooled.wrappedBuffer(recBuff));
+            }
+        } catch (NoLedgerException nsle) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Skip replaying entries of ledger {} since it was deleted.", ledgerId);
+            }
+        } catch (BookieException be) {
+            throw new IOException(be);
+        }
+    }
+
+    /**
+     * Scan all the journals concurrently, and apply their records to the ledger storage on an ordered executor, so
+     * that the records of a ledger are applied in the order they were journaled.
+     */
+    private void replayInParallel(int numReplayThreads) throws IOException {
+        OrderedExecutor replayExecutor = OrderedExecutor.newBuilder()
+                .name("journal-replay")
+                .numThreads(numReplayThreads)
+                .build();
+        ExecutorService scanExecutor = Executors.newFixedThreadPool(journals.size(),
+                new DefaultThreadFactory("journal-replay-scan"));
+        Semaphore pendingBytes = new Semaphore(MAX_PENDING_JOURNAL_REPLAY_BYTES);
+        try {
+            List<Future<?>> scans = new ArrayList<>(journals.size());
+            for (Journal journal : journals) {
+                scans.add(scanExecutor.submit(() -> {
+                    replay(journal, null, new ParallelJournalReplayer(replayExecutor, pendingBytes));
+                    return null;
+                }));
+            }
+
+            IOException replayException = null;
+            for (Future<?> scan : scans) {
                 try {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Replay journal - ledger id : {}, entry id : {}.", ledgerId, entryId);
+                    scan.get();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while replaying journals", ie);
+                } catch (ExecutionException ee) {
+                    if (replayException == null) {
+                        replayException = ee.getCause() instanceof IOException
+                                ? (IOException) ee.getCause() : new IOException(ee.getCause());
                     }
-                    if (entryId == METAENTRY_ID_LEDGER_KEY) {
-                        if (journalVersion >= JournalChannel.V3) {
-                            int masterKeyLen = recBuff.getInt();
-                            byte[] masterKey = new byte[masterKeyLen];
-
-                            recBuff.get(masterKey);
-                            masterKeyCache.put(ledgerId, masterKey);
-
-                            // Force to re-insert the master key in ledger storage
-                            handles.getHandle(ledgerId, masterKey, true);
-                        } else {
-                            throw new IOException("Invalid journal. Contains journalKey "
-                                    + " but layout version (" + journalVersion
-                                    + ") is too old to hold this");
-                        }
-                    } else if (entryId == METAENTRY_ID_FENCE_KEY) {
-                        if (journalVersion >= JournalChannel.V4) {
-                            byte[] key = masterKeyCache.get(ledgerId);
-                            if (key == null) {
-                                key = ledgerStorage.readMasterKey(ledgerId);
-                            }
-                            LedgerDescriptor handle = handles.getHandle(ledgerId, key, true);
-                            handle.setFenced();
-                        } else {
-                            throw new IOException("Invalid journal. Contains fenceKey "
-                                    + " but layout version (" + journalVersion
-                                    + ") is too old to hold this");
-                        }
-                    } else if (entryId == METAENTRY_ID_LEDGER_EXPLICITLAC) {
-                        if (journalVersion >= JournalChannel.V6) {
-                            int explicitLacBufLength = recBuff.getInt();
-                            ByteBuf explicitLacBuf = Unpooled.buffer(explicitLacBufLength);
-                            byte[] explicitLacBufArray = new byte[explicitLacBufLength];
-                            recBuff.get(explicitLacBufArray);
-                            explicitLacBuf.writeBytes(explicitLacBufArray);
-                            byte[] key = masterKeyCache.get(ledgerId);
-                            if (key == null) {
-                                key = ledgerStorage.readMasterKey(ledgerId);
-                            }
-                            LedgerDescriptor handle = handles.getHandle(ledgerId, key, true);
-                            handle.setExplicitLac(explicitLacBuf);
-                        } else {
-                            throw new IOException("Invalid journal. Contains explicitLAC " + " but layout version ("
-                                    + journalVersion + ") is too old to hold this");
-                        }
-                    } else if (entryId < 0) {
-                        /*
-                         * this is possible if bookie code binary is rolledback
-                         * to older version but when it is trying to read
-                         * Journal which was created previously using newer
-                         * code/journalversion, which introduced new special
-                         * entry. So in anycase, if we see unrecognizable
-                         * special entry while replaying journal we should skip
-                         * (ignore) it.
-                         */
-                        LOG.warn("Read unrecognizable entryId: {} for ledger: {} while replaying Journal. Skipping it",
-                                entryId, ledgerId);
-                    } else {
-                        byte[] key = masterKeyCache.get(ledgerId);
-                        if (key == null) {
-                            key = ledgerStorage.readMasterKey(ledgerId);
-                        }
-                        LedgerDescriptor handle = handles.getHandle(ledgerId, key, true);
+                }
+            }
+            if (replayException != null) {
+                throw replayException;
+            }
+        } finally {
+            scanExecutor.shutdownNow();
+            replayExecutor.shutdownNow();
+        }
+    }
 
-                        recBuff.rewind();
-                        handle.addEntry(Unpooled.wrappedBuffer(recBuff));
+    /**
+     * Journal scanner dispatching the records of a journal to the replay executor.
+     */
+    private class ParallelJournalReplayer implements JournalScanner {
+        private final OrderedExecutor replayExecutor;
+        private final Semaphore pendingBytes;
+        private final AtomicLong pendingRecords = new AtomicLong();
+        private volatile IOException replayException;
+
+        ParallelJournalReplayer(OrderedExecutor replayExecutor, Semaphore pendingBytes) {
+            this.replayExecutor = replayExecutor;
+            this.pendingBytes = pendingBytes;
+        }
+
+        @Override
+        public void process(int journalVersion, long offset, ByteBuffer recBuff) throws IOException {
+            if (replayException != null) {
+                throw replayException;
+            }
+
+            // The scan reuses the record buffer
+            ByteBuffer record = ByteBuffer.allocate(recBuff.remaining());
+            record.put(recBuff).flip();
+            int permits = Math.min(record.capacity(), MAX_PENDING_JOURNAL_REPLAY_BYTES);
+            try {
+                pendingBytes.acquire(permits);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while replaying journal", ie);
+            }
+
+            pendingRecords.incrementAndGet();
+            replayExecutor.executeOrdered(record.getLong(0), () -> {
+                try {
+                    if (replayException == null) {
+                        replayRecord(journalVersion, record);
                     }
-                } catch (NoLedgerException nsle) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Skip replaying entries of ledger {} since it was deleted.", ledgerId);
+                } catch (IOException e) {
+                    replayException = e;
+                } catch (Throwable t) {
+                    replayException = new IOException(t);
+                } finally {
+                    pendingBytes.release(permits);
+                    if (pendingRecords.decrementAndGet() == 0) {
+                        synchronized (this) {
+                            notifyAll();
+                        }
                     }
-                } catch (BookieException be) {
-                    throw new IOException(be);
                 }
-            }
-        };
+            });
+        }
 
-        for (Journal journal : journals) {
-            replay(journal, scanner);
+        /**
+         * Wait until all the dispatched records are applied to the ledger storage.
+         */
+        void awaitReplayed() throws IOException {
+            synchronized (this) {
+                while (pendingRecords.get() > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while replaying journal", ie);
+                    }
+                }
+            }
+            if (replayException != null) {
+                throw replayException;
+            }
         }
-        long elapsedTs = System.currentTimeMillis() - startTs;
-        LOG.info("Finished replaying journal in {} ms.", elapsedTs);
     }
 
     /**
@@ -623,9 +759,23 @@ public class BookieImpl implements Bookie {
      *
      * @param journal Journal object corresponding to a journalDir
      * @param scanner Scanner to process replayed entries.
+     * @param parallelReplayer Scanner dispatching the replayed entries to the replay threads, used instead of
+     *                         the scanner when not null.
      * @throws IOException
      */
-    private void replay(Journal journal, JournalScanner scanner) throws IOException {
+    private void replay(Journal journal, JournalScanner scanner, ParallelJournalReplayer parallelReplayer)
+            throws IOException {
+        long startNanos = MathUtils.nowInNano();
+        JournalStats journalStats = journal.getJournalStats();
+        JournalScanner recordScanner = parallelReplayer != null ? parallelReplayer : scanner;
+        LongAdder replayedBytes = new LongAdder();
+        JournalScanner countingScanner = (journalVersion, offset, recBuff) -> {
+            journalStats.getJournalReplayEntries().inc();
+            journalStats.getJournalReplayBytes().addCount(recBuff.remaining());
+            replayedBytes.add(recBuff.remaining());
+            recordScanner.process(journalVersion, offset, recBuff);
+        };
+
         final LogMark markedLog = journal.getLastLogMark().getCurMark();
         List<Long> logs = Journal.listJournalIds(journal.getJournalDirectory(), journalId ->
             journalId >= markedLog.getLogFileId());
@@ -647,12 +797,25 @@ public class BookieImpl implements Bookie {
                 logPosition = markedLog.getLogFileOffset();
             }
             LOG.info("Replaying journal {} from position {}", id, logPosition);
-            long scanOffset = journal.scanJournal(id, logPosition, scanner, conf.isSkipReplayJournalInvalidRecord());
+            long scanOffset = journal.scanJournal(id, logPosition, countingScanner,
+                    conf.isSkipReplayJournalInvalidRecord());
+            if (parallelReplayer != null) {
+                // The log mark can only move once the records are in the ledger storage
+                parallelReplayer.awaitReplayed();
+            }
             // Update LastLogMark after completely replaying journal
             // scanOffset will point to EOF position
             // After LedgerStorage flush, SyncThread should persist this to disk
             journal.setLastLogMark(id, scanOffset);
         }
+
+        long elapsedNanos = MathUtils.elapsedNanos(startNanos);
+        journalStats.getJournalReplayStats().registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+        long throughput = replayedBytes.sum() * TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsedNanos);
+        journalStats.setJournalReplayThroughput(throughput);
+        LOG.info("Replayed {} bytes of journal {} in {} ms ({} MB/s)", replayedBytes.sum(),
+                journal.getJournalDirectory(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                throughput / (1024 * 1024));
     }
 
     @Override
@@ -1162,6 +1325,35 @@ public class BookieImpl implements Bookie {
         }
     }
 
+    @Override
+    public ReferenceCounted readEntryOrRegion(long ledgerId, long entryId, int minEntrySize)
+            throws IOException, NoLedgerException, BookieException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        long entrySize = 0;
+        try {
+            LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Reading {}@{}", entryId, ledgerId);
+            }
+            ReferenceCounted entry = handle.readEntryOrRegion(entryId, minEntrySize);
+            entrySize = entry instanceof FileRegion
+                    ? ((FileRegion) entry).count() : ((ByteBuf) entry).readableBytes();
+            bookieStats.getReadBytes().addCount(entrySize);
+            success = true;
+            return entry;
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            if (success) {
+                bookieStats.getReadEntryStats().registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerSuccessfulValue(entrySize);
+            } else {
+                bookieStats.getReadEntryStats().registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerFailedValue(entrySize);
+            }
+        }
+    }
+
     public long readLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
         return handle.getLastAddConfirmed();
@@ -28,7 +28,11 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 
 /**
  * Provides a buffering layer in front of a FileChannel.
@@ -70,6 +74,19 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
      */
     protected final AtomicLong unpersistedBytes;
 
+    /*
+     * Buffers written with writeGathered and not yet written to the file channel. gatherList holds, in the order
+     * of the writes, the regions of the write buffer and the gathered buffers, that are written to the file
+     * channel together by the next flush.
+     */
+    private final List<ByteBuffer> gatherList = new ArrayList<>();
+    private final List<ByteBuf> gatheredBuffers = new ArrayList<>();
+    private int gatheredBytes = 0;
+    // Index in the write buffer up to which the content is already included in gatherList
+    private int gatherWriteBufferIndex = 0;
+    // Called with the number of bytes of the gathered buffers when they are released
+    private IntConsumer gatheredBuffersReleaseListener = null;
+
     private boolean closed = false;
 
     // make constructor to be public for unit test
@@ -101,6 +118,7 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         if (closed) {
             return;
         }
+        releaseGatheredBuffers();
         ReferenceCountUtil.release(writeBuffer);
         fileChannel.close();
         closed = true;
@@ -144,6 +162,85 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         }
     }
 
+    /**
+     * Write all the data in src like {@link #write(ByteBuf)}, but without copying it into the write buffer. src is
+     * retained, and written by the next flush together with the content of the write buffer, with a single
+     * gathering write to the {@link FileChannel}.
+     *
+     * <p>This saves a memory copy for large buffers. The data written this way can not be read back until it is
+     * flushed.
+     *
+     * @param src The source ByteBuf which contains the data to be written.
+     * @return true if src is retained until the next flush, false if its data was copied like with
+     *         {@link #write(ByteBuf)}
+     * @throws IOException if a write operation fails.
+     */
+    public boolean writeGathered(ByteBuf src) throws IOException {
+        if (!src.isDirect()) {
+            // Heap buffers would be copied into a temporary direct buffer by the file channel anyway
+            write(src);
+            return false;
+        }
+
+        boolean shouldForceWrite = false;
+        synchronized (this) {
+            int len = src.readableBytes();
+            addWriteBufferToGatherList();
+            ByteBuf gathered = src.retainedDuplicate();
+            gatheredBuffers.add(gathered);
+            Collections.addAll(gatherList, gathered.nioBuffers());
+            gatheredBytes += len;
+            position += len;
+
+            // Do not retain more than the capacity of the write buffer
+            if (gatheredBytes >= writeCapacity) {
+                flush();
+            }
+
+            if (doRegularFlushes) {
+                unpersistedBytes.addAndGet(len);
+                if (unpersistedBytes.get() >= unpersistedBytesBound) {
+                    flush();
+                    shouldForceWrite = true;
+                }
+            }
+        }
+        if (shouldForceWrite) {
+            forceWrite(false);
+        }
+        return true;
+    }
+
+    /**
+     * Set a listener called with the number of bytes of the buffers retained by {@link #writeGathered(ByteBuf)},
+     * once they are released, either after being written to the file channel or when the channel is cleared or
+     * closed.
+     */
+    public synchronized void setGatheredBuffersReleaseListener(IntConsumer listener) {
+        this.gatheredBuffersReleaseListener = listener;
+    }
+
+    private void addWriteBufferToGatherList() {
+        int writerIndex = writeBuffer.writerIndex();
+        if (writerIndex > gatherWriteBufferIndex) {
+            gatherList.add(writeBuffer.nioBuffer(gatherWriteBufferIndex, writerIndex - gatherWriteBufferIndex));
+            gatherWriteBufferIndex = writerIndex;
+        }
+    }
+
+    private void releaseGatheredBuffers() {
+        for (int i = 0; i < gatheredBuffers.size(); i++) {
+            ReferenceCountUtil.release(gatheredBuffers.get(i));
+        }
+        gatheredBuffers.clear();
+        gatherList.clear();
+        if (gatheredBytes > 0 && gatheredBuffersReleaseListener != null) {
+            gatheredBuffersReleaseListener.accept(gatheredBytes);
+        }
+        gatheredBytes = 0;
+        gatherWriteBufferIndex = 0;
+    }
+
     /**
      * Get the position where the next write operation will begin writing from.
      * @return
@@ -196,10 +293,23 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
      * @throws IOException if the write fails.
      */
     public synchronized void flush() throws IOException {
-        ByteBuffer toWrite = writeBuffer.internalNioBuffer(0, writeBuffer.writerIndex());
-        do {
-            fileChannel.write(toWrite);
-        } while (toWrite.hasRemaining());
+        if (gatheredBuffers.isEmpty()) {
+            ByteBuffer toWrite = writeBuffer.internalNioBuffer(0, writeBuffer.writerIndex());
+            do {
+                fileChannel.write(toWrite);
+            } while (toWrite.hasRemaining());
+        } else {
+            addWriteBufferToGatherList();
+            ByteBuffer[] toWrite = gatherList.toArray(new ByteBuffer[0]);
+            try {
+                // The buffers are written in order, so everything is written when the last one is
+                do {
+                    fileChannel.write(toWrite);
+                } while (toWrite[toWrite.length - 1].hasRemaining());
+            } finally {
+                releaseGatheredBuffers();
+            }
+        }
         writeBuffer.clear();
         writeBufferStartPosition.set(fileChannel.position());
     }
@@ -233,7 +343,7 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
          */
         if (unpersistedBytesBound > 0) {
             synchronized (this) {
-                unpersistedBytes.set(writeBuffer.readableBytes());
+                unpersistedBytes.set(writeBuffer.readableBytes() + gatheredBytes);
             }
         }
 
@@ -243,6 +353,10 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 
     @Override
     public synchronized int read(ByteBuf dest, long pos, int length) throws IOException {
+        if (!gatheredBuffers.isEmpty()) {
+            // The write buffer does not hold all the data that is not flushed yet
+            flush();
+        }
         long prevPos = pos;
         while (length > 0) {
             // check if it is in the write buffer
@@ -285,11 +399,12 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
     @Override
     public synchronized void clear() {
         super.clear();
+        releaseGatheredBuffers();
         writeBuffer.clear();
     }
 
     public synchronized int getNumOfBytesInWriteBuffer() {
-        return writeBuffer.readableBytes();
+        return writeBuffer.readableBytes() + gatheredBytes;
     }
 
     long getUnpersistedBytes() {
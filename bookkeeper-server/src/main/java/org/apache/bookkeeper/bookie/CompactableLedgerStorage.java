@@ -51,4 +51,13 @@ public interface CompactableLedgerStorage extends LedgerStorage {
      * @throws IOException
      */
     void flushEntriesLocationsIndex() throws IOException;
+
+    /**
+     * Get the tracker of the foreground reads from the entry logs, used to adapt the compaction rate.
+     *
+     * @return the tracker, or null if the storage does not track its reads
+     */
+    default ReadLatencyTracker getEntryLogReadLatencyTracker() {
+        return null;
+    }
 }
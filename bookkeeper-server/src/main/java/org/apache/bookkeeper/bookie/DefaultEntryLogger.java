@@ -31,7 +31,9 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 import io.netty.util.concurrent.FastThreadLocal;
 import java.io.BufferedReader;
 import java.io.File;
@@ -837,6 +839,43 @@ public class DefaultEntryLogger implements EntryLogger {
     }
 
 
+    @Override
+    public ReferenceCounted readEntryOrRegion(long ledgerId, long entryId, long entryLocation, int minEntrySize)
+            throws IOException, Bookie.NoEntryException {
+        long entryLogId = logIdForOffset(entryLocation);
+        long pos = posForOffset(entryLocation);
+        if (!recentlyCreatedEntryLogsStatus.isFlushedLogId(entryLogId)) {
+            // The entry might still be in the write buffer of the log
+            return readEntry(ledgerId, entryId, entryLocation);
+        }
+
+        BufferedReadChannel fc;
+        int entrySize;
+        try {
+            fc = getFCForEntryInternal(ledgerId, entryId, entryLogId, pos);
+            ByteBuf sizeBuff = readEntrySize(ledgerId, entryId, entryLogId, pos, fc);
+            entrySize = sizeBuff.getInt(0);
+            validateEntry(ledgerId, entryId, entryLogId, pos, sizeBuff);
+        } catch (EntryLookupException e) {
+            throw new IOException("Bad entry read from log file id: " + entryLogId, e);
+        }
+        if (entrySize < minEntrySize) {
+            // The header is already read and validated
+            return readEntryData(ledgerId, entryId, entryLogId, pos, fc, entrySize);
+        }
+
+        // The region has its own file descriptor, so it stays readable if the log is compacted and deleted
+        // before the entry is sent
+        DefaultFileRegion region = new DefaultFileRegion(findFile(entryLogId), pos, entrySize);
+        try {
+            region.open();
+        } catch (IOException e) {
+            region.release();
+            throw e;
+        }
+        return region;
+    }
+
     private ByteBuf internalReadEntry(long ledgerId, long entryId, long location, boolean validateEntry)
             throws IOException, Bookie.NoEntryException {
         long entryLogId = logIdForOffset(location);
@@ -857,6 +896,11 @@ public class DefaultEntryLogger implements EntryLogger {
             throw new IOException("Bad entry read from log file id: " + entryLogId, e);
         }
 
+        return readEntryData(ledgerId, entryId, entryLogId, pos, fc, entrySize);
+    }
+
+    private ByteBuf readEntryData(long ledgerId, long entryId, long entryLogId, long pos, BufferedReadChannel fc,
+                                  int entrySize) throws IOException {
         ByteBuf data = allocator.buffer(entrySize, entrySize);
         int rc = readFromLogChannel(entryLogId, fc, data, pos);
         if (rc != entrySize) {
@@ -0,0 +1,232 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.bookkeeper.common.util.ExceptionMessageHelper.exMsg;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+
+/**
+ * A {@link BufferedChannel} writing a journal file with direct I/O.
+ *
+ * <p>The data is accumulated in a page aligned buffer, and written with O_DIRECT at page aligned offsets, so the
+ * journal does not go through the page cache. On flush, the last partial page is padded with zeros, which the
+ * journal replay reads as the end of the journal, and is kept in the buffer to be written again, completed, by
+ * the next flush.
+ *
+ * <p>The write and read buffers of {@link BufferedChannel} are not used, and reading through this channel is not
+ * supported: journal files are replayed with a {@link DirectJournalReader}.
+ */
+class DirectJournalBufferedChannel extends BufferedChannel {
+
+    // Some devices can live with 512 bytes alignment, but others require 4096, which is the page size
+    static final int ALIGNMENT = 4096;
+    private static final byte[] ZEROS = new byte[ALIGNMENT];
+
+    private final NativeIO nativeIO;
+    private final String filename;
+    private final int fd;
+    private final ByteBuf alignedBuffer;
+    private final long bufferAddress;
+
+    // Offset in the file of the first byte of the buffer, always aligned
+    private long bufferFileOffset;
+    // Number of bytes of the buffer that were already written to the file
+    private int bufferFlushedIndex;
+    private boolean closed = false;
+
+    DirectJournalBufferedChannel(ByteBufAllocator allocator, NativeIO nativeIO, String filename, FileChannel fc,
+                                 int capacity) throws IOException {
+        super(allocator, fc, 0, 0, 0L);
+        this.nativeIO = nativeIO;
+        this.filename = filename;
+        this.alignedBuffer = allocateAligned(allocator, Math.max(ALIGNMENT, alignUp(capacity)));
+        this.bufferAddress = alignedBuffer.memoryAddress();
+
+        try {
+            this.fd = nativeIO.open(filename, NativeIO.O_WRONLY | NativeIO.O_DIRECT, 00644);
+            checkState(fd >= 0, "Open should have thrown exception, fd is invalid : %d", fd);
+        } catch (NativeIOException ne) {
+            alignedBuffer.release();
+            throw new IOException(exMsg(ne.getMessage()).kv("file", filename)
+                    .kv("errno", ne.getErrno()).toString(), ne);
+        }
+
+        // The header was written through the file channel, load the beginning of the first page
+        bufferFileOffset = position & ~(ALIGNMENT - 1);
+        int head = (int) (position - bufferFileOffset);
+        ByteBuffer headBuffer = alignedBuffer.nioBuffer(0, head);
+        while (headBuffer.hasRemaining()) {
+            if (fc.read(headBuffer, bufferFileOffset + headBuffer.position()) < 0) {
+                throw new IOException(exMsg("Journal file is shorter than its position")
+                        .kv("file", filename).kv("position", position).toString());
+            }
+        }
+        alignedBuffer.writerIndex(head);
+        bufferFlushedIndex = head;
+    }
+
+    /**
+     * Allocate a direct buffer whose memory address is aligned to {@link #ALIGNMENT}.
+     */
+    static ByteBuf allocateAligned(ByteBufAllocator allocator, int size) {
+        ByteBuf buf = allocator.directBuffer(size + ALIGNMENT);
+        long addr = buf.memoryAddress();
+        int alignOffset = (int) ((ALIGNMENT - (addr & (ALIGNMENT - 1))) & (ALIGNMENT - 1));
+        // The slice shares the reference count of the allocated buffer
+        return buf.slice(alignOffset, size).clear();
+    }
+
+    static int alignUp(int size) {
+        return (size + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    }
+
+    @Override
+    public void write(ByteBuf src) throws IOException {
+        synchronized (this) {
+            int len = src.readableBytes();
+            int copied = 0;
+            while (copied < len) {
+                int bytesToCopy = Math.min(len - copied, alignedBuffer.writableBytes());
+                alignedBuffer.writeBytes(src, src.readerIndex() + copied, bytesToCopy);
+                copied += bytesToCopy;
+
+                if (!alignedBuffer.isWritable()) {
+                    flush();
+                }
+            }
+            position += copied;
+        }
+    }
+
+    @Override
+    public boolean writeGathered(ByteBuf src) throws IOException {
+        // Direct I/O needs the data in the aligned buffer
+        write(src);
+        return false;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        int used = alignedBuffer.writerIndex();
+        if (used == bufferFlushedIndex) {
+            return;
+        }
+
+        int bytesToWrite = alignUp(used);
+        alignedBuffer.setBytes(used, ZEROS, 0, bytesToWrite - used);
+        try {
+            int ret = nativeIO.pwrite(fd, bufferAddress, bytesToWrite, bufferFileOffset);
+            if (ret != bytesToWrite) {
+                throw new IOException(exMsg("Incomplete write")
+                        .kv("filename", filename)
+                        .kv("offset", bufferFileOffset)
+                        .kv("writeSize", bytesToWrite)
+                        .kv("bytesWritten", ret)
+                        .toString());
+            }
+        } catch (NativeIOException ne) {
+            throw new IOException(exMsg("Write error")
+                    .kv("filename", filename)
+                    .kv("offset", bufferFileOffset)
+                    .kv("writeSize", bytesToWrite)
+                    .kv("errno", ne.getErrno())
+                    .toString(), ne);
+        }
+
+        // Keep the last partial page, it will be written again once completed
+        int fullPages = used & ~(ALIGNMENT - 1);
+        if (fullPages > 0) {
+            int tail = used - fullPages;
+            alignedBuffer.setBytes(0, alignedBuffer, fullPages, tail);
+            alignedBuffer.writerIndex(tail);
+            bufferFileOffset += fullPages;
+        }
+        bufferFlushedIndex = alignedBuffer.writerIndex();
+        writeBufferStartPosition.set(position);
+    }
+
+    @Override
+    public long forceWrite(boolean forceMetadata) throws IOException {
+        // Everything written before this point is made durable by the fsync
+        long positionForceWrite = writeBufferStartPosition.get();
+        try {
+            int ret = nativeIO.fsync(fd);
+            checkState(ret == 0, "Fsync should throw exception on non-zero return (%d)", ret);
+        } catch (NativeIOException ne) {
+            throw new IOException(exMsg(ne.getMessage())
+                    .kv("file", filename)
+                    .kv("errno", ne.getErrno()).toString(), ne);
+        }
+        return positionForceWrite;
+    }
+
+    /**
+     * Allocate the disk space of a range of the journal file.
+     *
+     * @return false if the file system does not support it
+     */
+    boolean preallocate(long offset, long len) {
+        try {
+            return nativeIO.fallocate(fd, 0, offset, len) == 0;
+        } catch (NativeIOException ne) {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuf dest, long pos, int length) throws IOException {
+        throw new IOException("Reading from a direct I/O journal channel is not supported");
+    }
+
+    @Override
+    public synchronized int getNumOfBytesInWriteBuffer() {
+        return alignedBuffer.writerIndex() - bufferFlushedIndex;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            int ret = nativeIO.close(fd);
+            checkState(ret == 0, "Close should throw exception on non-zero return (%d)", ret);
+        } catch (NativeIOException ne) {
+            throw new IOException(exMsg(ne.getMessage())
+                    .kv("file", filename)
+                    .kv("errno", ne.getErrno()).toString(), ne);
+        } finally {
+            alignedBuffer.release();
+            super.close();
+        }
+    }
+}
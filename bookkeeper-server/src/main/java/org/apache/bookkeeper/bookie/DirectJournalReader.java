@@ -0,0 +1,125 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.bookkeeper.bookie.DirectJournalBufferedChannel.ALIGNMENT;
+import static org.apache.bookkeeper.common.util.ExceptionMessageHelper.exMsg;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+
+/**
+ * Sequential reader of a journal file with direct I/O, used to replay the journal without filling the page cache.
+ */
+class DirectJournalReader implements Closeable {
+    private final NativeIO nativeIO;
+    private final String filename;
+    private final int fd;
+    private final ByteBuf alignedBuffer;
+    private final long bufferAddress;
+
+    // Offset in the file of the first byte of the buffer, always aligned
+    private long bufferFileOffset = 0;
+    // Number of valid bytes in the buffer
+    private int bufferLimit = 0;
+    private long position;
+
+    DirectJournalReader(ByteBufAllocator allocator, NativeIO nativeIO, String filename, long position,
+                        int bufferSize) throws IOException {
+        this.nativeIO = nativeIO;
+        this.filename = filename;
+        this.position = position;
+        this.alignedBuffer = DirectJournalBufferedChannel.allocateAligned(allocator,
+                Math.max(ALIGNMENT, DirectJournalBufferedChannel.alignUp(bufferSize)));
+        this.bufferAddress = alignedBuffer.memoryAddress();
+
+        try {
+            this.fd = nativeIO.open(filename, NativeIO.O_RDONLY | NativeIO.O_DIRECT, 00644);
+            checkState(fd >= 0, "Open should have thrown exception, fd is invalid : %d", fd);
+        } catch (NativeIOException ne) {
+            alignedBuffer.release();
+            throw new IOException(exMsg(ne.getMessage()).kv("file", filename)
+                    .kv("errno", ne.getErrno()).toString(), ne);
+        }
+    }
+
+    long position() {
+        return position;
+    }
+
+    /**
+     * Read bytes at the current position.
+     *
+     * @return the number of bytes read, or -1 at the end of the file
+     */
+    int read(ByteBuffer dst) throws IOException {
+        if (position < bufferFileOffset || position >= bufferFileOffset + bufferLimit) {
+            if (!fillBuffer()) {
+                return -1;
+            }
+        }
+
+        int offsetInBuffer = (int) (position - bufferFileOffset);
+        int bytesToCopy = Math.min(dst.remaining(), bufferLimit - offsetInBuffer);
+        ByteBuffer src = alignedBuffer.nioBuffer(offsetInBuffer, bytesToCopy);
+        dst.put(src);
+        position += bytesToCopy;
+        return bytesToCopy;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        bufferFileOffset = position & ~(ALIGNMENT - 1);
+        bufferLimit = 0;
+        try {
+            long ret = nativeIO.pread(fd, bufferAddress, alignedBuffer.capacity(), bufferFileOffset);
+            bufferLimit = (int) Math.max(0, ret);
+        } catch (NativeIOException ne) {
+            throw new IOException(exMsg("Read error")
+                    .kv("filename", filename)
+                    .kv("offset", bufferFileOffset)
+                    .kv("readSize", alignedBuffer.capacity())
+                    .kv("errno", ne.getErrno())
+                    .toString(), ne);
+        }
+        return position < bufferFileOffset + bufferLimit;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            int ret = nativeIO.close(fd);
+            checkState(ret == 0, "Close should throw exception on non-zero return (%d)", ret);
+        } catch (NativeIOException ne) {
+            throw new IOException(exMsg(ne.getMessage())
+                    .kv("file", filename)
+                    .kv("errno", ne.getErrno()).toString(), ne);
+        } finally {
+            alignedBuffer.release();
+        }
+    }
+}
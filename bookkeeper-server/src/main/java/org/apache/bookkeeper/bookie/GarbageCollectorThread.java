@@ -30,7 +30,9 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -62,6 +64,8 @@ public class GarbageCollectorThread implements Runnable {
     private static final int SECOND = 1000;
     private static final int ENTRY_LOG_USAGE_SEGMENT_COUNT = 10;
     private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    // I/O cost of the flushes done for each compacted entry log, accounted in bytes when ranking the entry logs
+    private static final long ENTRY_LOG_COMPACTION_FIXED_IO_BYTES = 4 * 1024 * 1024;
 
     // Maps entry log files to the set of ledgers that comprise the file and the size usage per ledger
     private final EntryLogMetadataMap entryLogMetaMap;
@@ -87,6 +91,8 @@ public class GarbageCollectorThread implements Runnable {
     long majorCompactionMaxTimeMillis;
     long lastMajorCompactionTime;
 
+    final boolean compactionOrderByReclaimCost;
+
     @Getter
     final boolean isForceGCAllowWhenNoSpace;
 
@@ -101,6 +107,7 @@ public class GarbageCollectorThread implements Runnable {
     private volatile int numActiveEntryLogs;
     private volatile double entryLogCompactRatio;
     private volatile int[] currentEntryLogUsageBuckets;
+    private volatile long compactionReclaimedBytesPerSecond;
 
     final CompactableLedgerStorage ledgerStorage;
 
@@ -185,7 +192,8 @@ public class GarbageCollectorThread implements Runnable {
             () -> totalEntryLogSize,
             () -> garbageCollector.getNumActiveLedgers(),
             () -> entryLogCompactRatio,
-            () -> currentEntryLogUsageBuckets
+            () -> currentEntryLogUsageBuckets,
+            () -> compactionReclaimedBytesPerSecond
         );
 
         this.garbageCleaner = ledgerId -> {
@@ -208,6 +216,7 @@ public class GarbageCollectorThread implements Runnable {
         isForceGCAllowWhenNoSpace = conf.getIsForceGCAllowWhenNoSpace();
         majorCompactionMaxTimeMillis = conf.getMajorCompactionMaxTimeMillis();
         minorCompactionMaxTimeMillis = conf.getMinorCompactionMaxTimeMillis();
+        compactionOrderByReclaimCost = conf.isCompactionOrderByReclaimCost();
 
         boolean isForceAllowCompaction = conf.isForceAllowCompaction();
 
@@ -229,6 +238,12 @@ public class GarbageCollectorThread implements Runnable {
         } else {
             this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
         }
+        this.compactor.throttler.setThrottledTimeCounter(gcStats.getCompactionThrottledTime());
+        ReadLatencyTracker readLatencyTracker = ledgerStorage.getEntryLogReadLatencyTracker();
+        if (readLatencyTracker != null && conf.getCompactionReadLatencyThresholdMs() > 0) {
+            this.compactor.throttler.setReadLatencyTracker(readLatencyTracker,
+                    conf.getCompactionReadLatencyThresholdMs());
+        }
 
         this.throttler = new AbstractLogCompactor.Throttler(conf);
         if (minorCompactionInterval > 0 && minorCompactionThreshold > 0) {
@@ -580,7 +595,9 @@ public class GarbageCollectorThread implements Runnable {
      * Compact entry logs if necessary.
      *
      * <p>
-     * Compaction will be executed from low unused space to high unused space.
+     * Compaction will be executed from low unused space to high unused space, or, if
+     * compactionOrderByReclaimCost is set, from the highest to the lowest number of
+     * bytes reclaimed per byte read and rewritten.
      * Those entry log files whose remaining size percentage is higher than threshold
      * would not be compacted.
      * </p>
@@ -593,7 +610,7 @@ public class GarbageCollectorThread implements Runnable {
         int[] entryLogUsageBuckets = new int[numBuckets];
         int[] compactedBuckets = new int[numBuckets];
 
-        ArrayList<LinkedList<Long>> compactableBuckets = new ArrayList<>(numBuckets);
+        ArrayList<LinkedList<CompactionCandidate>> compactableBuckets = new ArrayList<>(numBuckets);
         for (int i = 0; i < numBuckets; i++) {
             compactableBuckets.add(new LinkedList<>());
         }
@@ -622,7 +639,8 @@ public class GarbageCollectorThread implements Runnable {
                 return;
             }
 
-            compactableBuckets.get(bucketIndex).add(meta.getEntryLogId());
+            compactableBuckets.get(bucketIndex).add(new CompactionCandidate(meta.getEntryLogId(), bucketIndex,
+                    reclaimableBytesPerIoByte(meta)));
         });
         currentEntryLogUsageBuckets = entryLogUsageBuckets;
         gcStats.setEntryLogUsageBuckets(currentEntryLogUsageBuckets);
@@ -631,54 +649,58 @@ public class GarbageCollectorThread implements Runnable {
                 entryLogUsageBuckets);
 
         final int maxBucket = calculateUsageIndex(numBuckets, threshold);
-        int totalEntryLogIds = 0;
+        List<CompactionCandidate> candidates = new ArrayList<>();
         for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            totalEntryLogIds += compactableBuckets.get(currBucket).size();
+            candidates.addAll(compactableBuckets.get(currBucket));
         }
+        if (compactionOrderByReclaimCost) {
+            candidates.sort(Comparator.comparingDouble((CompactionCandidate c) -> c.reclaimableBytesPerIoByte)
+                    .reversed());
+        }
+        int totalEntryLogIds = candidates.size();
         long lastPrintTimestamp = 0;
         AtomicInteger processedEntryLogCnt = new AtomicInteger(0);
+        long compactionStartNanos = MathUtils.nowInNano();
+        MutableLong reclaimedBytes = new MutableLong(0);
 
-        stopCompaction:
-        for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            LinkedList<Long> entryLogIds = compactableBuckets.get(currBucket);
-            while (!entryLogIds.isEmpty()) {
-                if (timeDiff.getValue() < maxTimeMillis) {
-                    end.setValue(System.currentTimeMillis());
-                    timeDiff.setValue(end.getValue() - start);
-                }
+        for (CompactionCandidate candidate : candidates) {
+            if (timeDiff.getValue() < maxTimeMillis) {
+                end.setValue(System.currentTimeMillis());
+                timeDiff.setValue(end.getValue() - start);
+            }
 
-                if ((maxTimeMillis > 0 && timeDiff.getValue() >= maxTimeMillis) || !running) {
-                    // We allow the usage limit calculation to continue so that we get an accurate
-                    // report of where the usage was prior to running compaction.
-                    break stopCompaction;
-                }
+            if ((maxTimeMillis > 0 && timeDiff.getValue() >= maxTimeMillis) || !running) {
+                // We allow the usage limit calculation to continue so that we get an accurate
+                // report of where the usage was prior to running compaction.
+                break;
+            }
 
-                final int bucketIndex = currBucket;
-                final long logId = entryLogIds.remove();
-                if (System.currentTimeMillis() - lastPrintTimestamp >= MINUTE) {
-                    lastPrintTimestamp = System.currentTimeMillis();
-                    LOG.info("Compaction progress {} / {}, current compaction entryLogId: {}",
-                        processedEntryLogCnt.get(), totalEntryLogIds, logId);
-                }
-                entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
-                    if (meta == null) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Metadata for entry log {} already deleted", logId);
-                        }
-                        return;
-                    }
+            final int bucketIndex = candidate.bucketIndex;
+            final long logId = candidate.entryLogId;
+            if (System.currentTimeMillis() - lastPrintTimestamp >= MINUTE) {
+                lastPrintTimestamp = System.currentTimeMillis();
+                LOG.info("Compaction progress {} / {}, current compaction entryLogId: {}",
+                    processedEntryLogCnt.get(), totalEntryLogIds, logId);
+            }
+            entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
+                if (meta == null) {
                     if (LOG.isDebugEnabled()) {
-                        LOG.debug("Compacting entry log {} with usage {} below threshold {}",
-                                meta.getEntryLogId(), meta.getUsage(), threshold);
+                        LOG.debug("Metadata for entry log {} already deleted", logId);
                     }
+                    return;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Compacting entry log {} with usage {} below threshold {}",
+                            meta.getEntryLogId(), meta.getUsage(), threshold);
+                }
 
-                    long priorRemainingSize = meta.getRemainingSize();
-                    compactEntryLog(meta);
-                    gcStats.getReclaimedSpaceViaCompaction().addCount(meta.getTotalSize() - priorRemainingSize);
-                    compactedBuckets[bucketIndex]++;
-                    processedEntryLogCnt.getAndIncrement();
-                });
-            }
+                long priorRemainingSize = meta.getRemainingSize();
+                compactEntryLog(meta);
+                gcStats.getReclaimedSpaceViaCompaction().addCount(meta.getTotalSize() - priorRemainingSize);
+                reclaimedBytes.add(meta.getTotalSize() - priorRemainingSize);
+                compactedBuckets[bucketIndex]++;
+                processedEntryLogCnt.getAndIncrement();
+            });
         }
 
         if (LOG.isDebugEnabled()) {
@@ -689,6 +711,11 @@ public class GarbageCollectorThread implements Runnable {
                 LOG.debug("Compaction ran for {}ms but was limited by {}ms", timeDiff, maxTimeMillis);
             }
         }
+        long compactionNanos = MathUtils.elapsedNanos(compactionStartNanos);
+        if (processedEntryLogCnt.get() > 0 && compactionNanos > 0) {
+            this.compactionReclaimedBytesPerSecond =
+                    reclaimedBytes.getValue() * TimeUnit.SECONDS.toNanos(1) / compactionNanos;
+        }
         int totalEntryLogNum = Arrays.stream(entryLogUsageBuckets).sum();
         int compactedEntryLogNum = Arrays.stream(compactedBuckets).sum();
         this.entryLogCompactRatio = totalEntryLogNum == 0 ? 0 : (double) compactedEntryLogNum / totalEntryLogNum;
@@ -696,6 +723,28 @@ public class GarbageCollectorThread implements Runnable {
                 + "compacted entry log ratio {}", entryLogUsageBuckets, compactedBuckets, entryLogCompactRatio);
     }
 
+    /**
+     * Bytes reclaimed by compacting an entry log, per byte of I/O. Besides reading the entry log and writing back
+     * its remaining entries, each compacted entry log costs a flush of the compaction log and of the indexes, so
+     * that among the entry logs with the same usage, the largest ones reclaim the most per byte of I/O.
+     */
+    static double reclaimableBytesPerIoByte(EntryLogMetadata meta) {
+        long ioBytes = meta.getTotalSize() + meta.getRemainingSize() + ENTRY_LOG_COMPACTION_FIXED_IO_BYTES;
+        return (double) (meta.getTotalSize() - meta.getRemainingSize()) / ioBytes;
+    }
+
+    private static final class CompactionCandidate {
+        final long entryLogId;
+        final int bucketIndex;
+        final double reclaimableBytesPerIoByte;
+
+        CompactionCandidate(long entryLogId, int bucketIndex, double reclaimableBytesPerIoByte) {
+            this.entryLogId = entryLogId;
+            this.bucketIndex = bucketIndex;
+            this.reclaimableBytesPerIoByte = reclaimableBytesPerIoByte;
+        }
+    }
+
     /**
      * Calculate the index for the batch based on the usage between 0 and 1.
      *
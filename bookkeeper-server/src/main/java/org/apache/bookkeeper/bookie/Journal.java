@@ -613,6 +613,8 @@ public class Journal implements CheckpointSource {
     private final boolean removePagesFromCache;
     private final int journalFormatVersionToWrite;
     private final int journalAlignmentSize;
+    // Entries of at least this size are written with a gathering write instead of being copied, 0 to disable
+    private final int journalWriteGatherThreshold;
     // control PageCache flush interval when syncData disabled to reduce disk io util
     private final long journalPageCacheFlushIntervalMSec;
     // Whether reuse journal files, it will use maxBackupJournal as the journal file pool.
@@ -685,6 +687,7 @@ public class Journal implements CheckpointSource {
         this.bufferedEntriesThreshold = conf.getJournalBufferedEntriesThreshold();
         this.journalFormatVersionToWrite = conf.getJournalFormatVersionToWrite();
         this.journalAlignmentSize = conf.getJournalAlignmentSize();
+        this.journalWriteGatherThreshold = conf.getJournalWriteGatherThresholdBytes();
         this.journalPageCacheFlushIntervalMSec = conf.getJournalPageCacheFlushIntervalMSec();
         this.journalReuseFiles = conf.getJournalReuseFiles();
         this.callbackTime = journalStatsLogger.getThreadScopedCounter("callback-time");
@@ -824,7 +827,7 @@ public class Journal implements CheckpointSource {
             ByteBuffer recBuff = ByteBuffer.allocate(64 * 1024);
             while (true) {
                 // entry start offset
-                long offset = recLog.fc.position();
+                long offset = recLog.position();
                 // start reading entry
                 lenBuff.clear();
                 fullRead(recLog, lenBuff);
@@ -871,14 +874,14 @@ public class Journal implements CheckpointSource {
                     scanner.process(journalVersion, offset, recBuff);
                 }
             }
-            return recLog.fc.position();
+            return recLog.position();
         } catch (IOException e) {
             if (skipInvalidRecord) {
                 LOG.warn("Failed to parse journal file, and skipInvalidRecord is true, skip this journal file reply");
             } else {
                 throw e;
             }
-            return recLog.fc.position();
+            return recLog.position();
         } finally {
             recLog.close();
         }
@@ -1011,6 +1014,8 @@ public class Journal implements CheckpointSource {
                             journalCreationWatcher.stop().elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
 
                     bc = logFile.getBufferedChannel();
+                    // The entries written with gathering writes hold their memory until they are written to the file
+                    bc.setGatheredBuffersReleaseListener(memoryLimitController::releaseMemory);
 
                     lastFlushPosition = bc.position();
                 }
@@ -1197,8 +1202,18 @@ public class Journal implements CheckpointSource {
                     logFile.preAllocIfNeeded(4 + entrySize);
 
                     bc.write(lenBuff);
-                    bc.write(qe.entry);
-                    memoryLimitController.releaseMemory(qe.entry.readableBytes());
+                    boolean gathered = false;
+                    if (journalWriteGatherThreshold > 0 && entrySize >= journalWriteGatherThreshold) {
+                        gathered = bc.writeGathered(qe.entry);
+                    } else {
+                        bc.write(qe.entry);
+                    }
+                    if (gathered) {
+                        // The memory is released by the channel, once the entry is written to the file
+                        journalStats.getJournalGatheredWriteBytes().addCount(entrySize);
+                    } else {
+                        memoryLimitController.releaseMemory(entrySize);
+                    }
                     ReferenceCountUtil.release(qe.entry);
                 }
 
@@ -23,12 +23,15 @@ package org.apache.bookkeeper.bookie;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import io.netty.buffer.UnpooledByteBufAllocator;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.util.PageCacheUtil;
 import org.apache.bookkeeper.util.ZeroBuffer;
@@ -49,12 +52,15 @@ class JournalChannel implements Closeable {
     final int formatVersion;
     BufferedChannel bc;
     long nextPrealloc = 0;
+    // Reader used to scan the journal when direct I/O is enabled
+    DirectJournalReader directReader;
 
     final byte[] magicWord = "BKLG".getBytes(UTF_8);
 
     static final int SECTOR_SIZE = 512;
     private static final int START_OF_FILE = -12345;
     private static final long cacheDropLagBytes = 8 * MB;
+    private static final NativeIO NATIVE_IO = new NativeIOImpl();
 
     // No header
     static final int V1 = 1;
@@ -78,6 +84,7 @@ class JournalChannel implements Closeable {
     private final long preAllocSize;
     private final int journalAlignSize;
     private final boolean fRemoveFromPageCache;
+    private final boolean directIO;
     public final ByteBuffer zeros;
 
     // The position of the file channel's last drop position
@@ -156,7 +163,9 @@ class JournalChannel implements Closeable {
         this.journalAlignSize = journalAlignSize;
         this.zeros = ByteBuffer.allocate(journalAlignSize);
         this.preAllocSize = preAllocSize - preAllocSize % journalAlignSize;
-        this.fRemoveFromPageCache = fRemoveFromPageCache;
+        this.directIO = conf.isJournalDirectIOEnabled();
+        // Direct I/O does not go through the page cache
+        this.fRemoveFromPageCache = fRemoveFromPageCache && !directIO;
         this.configuration = conf;
 
         boolean reuseFile = false;
@@ -185,11 +194,11 @@ class JournalChannel implements Closeable {
             }
             fc = channel.getFileChannel();
             formatVersion = formatVersionToWrite;
-            writeHeader(bcBuilder, writeBufferSize);
+            writeHeader(fn, bcBuilder, writeBufferSize);
         } else if (reuseFile) { // Open an existing journal to write, it needs fileChannelProvider support reuse file.
             fc = channel.getFileChannel();
             formatVersion = formatVersionToWrite;
-            writeHeader(bcBuilder, writeBufferSize);
+            writeHeader(fn, bcBuilder, writeBufferSize);
         } else {  // open an existing file to read.
             fc = channel.getFileChannel();
             // readonly, use fileChannel directly, no need to use BufferedChannel
@@ -239,6 +248,19 @@ class JournalChannel implements Closeable {
                 LOG.error("Bookie journal file can seek to position :", e);
                 throw e;
             }
+
+            if (directIO) {
+                try {
+                    directReader = new DirectJournalReader(UnpooledByteBufAllocator.DEFAULT, NATIVE_IO,
+                            fn.getPath(), fc.position(), writeBufferSize);
+                } catch (IOException e) {
+                    fc.close();
+                    throw e;
+                } catch (LinkageError e) {
+                    fc.close();
+                    throw new IOException("Native IO library is required for journal direct I/O", e);
+                }
+            }
         }
         if (fRemoveFromPageCache) {
             this.fd = PageCacheUtil.getSysFileDescriptor(channel.getFD());
@@ -247,7 +269,7 @@ class JournalChannel implements Closeable {
         }
     }
 
-    private void writeHeader(Journal.BufferedChannelBuilder bcBuilder,
+    private void writeHeader(File fn, Journal.BufferedChannelBuilder bcBuilder,
                              int writeBufferSize) throws IOException {
         int headerSize = (V4 == formatVersion) ? VERSION_HEADER_SIZE : HEADER_SIZE;
         ByteBuffer bb = ByteBuffer.allocate(headerSize);
@@ -258,9 +280,28 @@ class JournalChannel implements Closeable {
         bb.clear();
         fc.write(bb);
 
-        bc = bcBuilder.create(fc, writeBufferSize);
+        if (directIO) {
+            try {
+                bc = new DirectJournalBufferedChannel(UnpooledByteBufAllocator.DEFAULT, NATIVE_IO, fn.getPath(),
+                        fc, writeBufferSize);
+            } catch (LinkageError e) {
+                throw new IOException("Native IO library is required for journal direct I/O", e);
+            }
+        } else {
+            bc = bcBuilder.create(fc, writeBufferSize);
+        }
         forceWrite(true);
         nextPrealloc = this.preAllocSize;
+        preAllocate();
+    }
+
+    // Pre-allocate the journal file up to nextPrealloc
+    private void preAllocate() throws IOException {
+        if (directIO
+                && ((DirectJournalBufferedChannel) bc).preallocate(nextPrealloc - preAllocSize, preAllocSize)) {
+            return;
+        }
+        zeros.clear();
         fc.write(zeros, nextPrealloc - journalAlignSize);
     }
 
@@ -285,18 +326,33 @@ class JournalChannel implements Closeable {
     void preAllocIfNeeded(long size) throws IOException {
         if (bc.position() + size > nextPrealloc) {
             nextPrealloc += preAllocSize;
-            zeros.clear();
-            fc.write(zeros, nextPrealloc - journalAlignSize);
+            preAllocate();
         }
     }
 
     int read(ByteBuffer dst)
             throws IOException {
+        if (directReader != null) {
+            return directReader.read(dst);
+        }
         return fc.read(dst);
     }
 
+    /**
+     * @return the position of the next read of a journal opened for scanning
+     */
+    long position() throws IOException {
+        if (directReader != null) {
+            return directReader.position();
+        }
+        return fc.position();
+    }
+
     @Override
     public void close() throws IOException {
+        if (directReader != null) {
+            directReader.close();
+        }
         if (bc != null) {
             bc.close();
         } else if (fc != null) {
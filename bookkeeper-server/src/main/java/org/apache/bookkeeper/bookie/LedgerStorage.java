@@ -24,6 +24,7 @@ package org.apache.bookkeeper.bookie;
 import com.google.common.util.concurrent.RateLimiter;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCounted;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -144,6 +145,17 @@ public interface LedgerStorage {
      */
     ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException;
 
+    /**
+     * Read an entry, or get the region of the file holding it to send it without reading it in memory.
+     *
+     * @return the file region of an entry of at least minEntrySize bytes that can be sent from a file, or else
+     *         the entry as read by {@link #getEntry(long, long)}
+     */
+    default ReferenceCounted getEntryOrRegion(long ledgerId, long entryId, int minEntrySize)
+            throws IOException, BookieException {
+        return getEntry(ledgerId, entryId);
+    }
+
     /**
      * Get last add confirmed.
      *
@@ -0,0 +1,58 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the latency of the foreground reads from the entry logs, so that background work like compaction can
+ * back off when the disk is busy serving reads.
+ */
+public class ReadLatencyTracker {
+
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+
+    // Totals at the previous sample, only accessed by the sampling thread
+    private long lastTotalLatencyNanos = 0;
+    private long lastReads = 0;
+
+    public void recordRead(long latencyNanos) {
+        totalLatencyNanos.add(latencyNanos);
+        reads.increment();
+    }
+
+    /**
+     * Get the average latency of the reads since the previous sample. Must be called by a single thread.
+     *
+     * @return the average latency in nanoseconds, or -1 if there was no read since the previous sample
+     */
+    public long sampleAverageLatencyNanos() {
+        long currentReads = reads.sum();
+        long currentTotalLatencyNanos = totalLatencyNanos.sum();
+        long deltaReads = currentReads - lastReads;
+        long deltaLatencyNanos = currentTotalLatencyNanos - lastTotalLatencyNanos;
+        lastReads = currentReads;
+        lastTotalLatencyNanos = currentTotalLatencyNanos;
+        return deltaReads > 0 ? deltaLatencyNanos / deltaReads : -1;
+    }
+}
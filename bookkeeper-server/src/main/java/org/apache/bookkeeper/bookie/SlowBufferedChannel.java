@@ -63,6 +63,12 @@ public class SlowBufferedChannel extends BufferedChannel {
         super.write(src);
     }
 
+    @Override
+    public synchronized boolean writeGathered(ByteBuf src) throws IOException {
+        delayMs(addDelay);
+        return super.writeGathered(src);
+    }
+
     @Override
     public void flush() throws IOException {
         delayMs(flushDelay);
@@ -24,6 +24,8 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_ENTRY_LO
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_LEDGER_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COMPACTION_RECLAIMED_BYTES_PER_SECOND;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COMPACTION_THROTTLED_TIME;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COMPACT_RUNTIME;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.DELETED_LEDGER_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOG_COMPACT_RATIO;
@@ -126,6 +128,16 @@ public class GarbageCollectorStats {
         help = "Current proportion of compacted entry log files that have been executed"
     )
     private final Gauge<Double> entryLogCompactRatioGauge;
+    @StatsDoc(
+        name = COMPACTION_THROTTLED_TIME,
+        help = "Time spent by compaction waiting for the compaction rate limit or paused by slow foreground reads"
+    )
+    private final Counter compactionThrottledTime;
+    @StatsDoc(
+        name = COMPACTION_RECLAIMED_BYTES_PER_SECOND,
+        help = "Disk space bytes reclaimed per second by the last compaction"
+    )
+    private final Gauge<Long> compactionReclaimedBytesPerSecondGauge;
     private volatile int[] entryLogUsageBuckets;
     private final Gauge<Integer>[] entryLogUsageBucketsLeGauges;
 
@@ -135,7 +147,8 @@ public class GarbageCollectorStats {
                                  Supplier<Long> activeEntryLogSpaceBytesSupplier,
                                  Supplier<Integer> activeLedgerCountSupplier,
                                  Supplier<Double> entryLogCompactRatioSupplier,
-                                 Supplier<int[]> usageBuckets) {
+                                 Supplier<int[]> usageBuckets,
+                                 Supplier<Long> compactionReclaimedBytesPerSecondSupplier) {
         this.statsLogger = statsLogger;
 
         this.minorCompactionCounter = statsLogger.getCounter(MINOR_COMPACTION_COUNT);
@@ -148,6 +161,7 @@ public class GarbageCollectorStats {
         this.gcLedgerRuntime = statsLogger.getOpStatsLogger(GC_LEDGER_RUNTIME);
         this.compactRuntime = statsLogger.getOpStatsLogger(COMPACT_RUNTIME);
         this.extractMetaRuntime = statsLogger.getOpStatsLogger(EXTRACT_META_RUNTIME);
+        this.compactionThrottledTime = statsLogger.getCounter(COMPACTION_THROTTLED_TIME);
         this.entryLogUsageBuckets = usageBuckets.get();
 
         this.activeEntryLogCountGauge = new Gauge<Integer>() {
@@ -198,6 +212,18 @@ public class GarbageCollectorStats {
             }
         };
         statsLogger.registerGauge(ENTRY_LOG_COMPACT_RATIO, entryLogCompactRatioGauge);
+        this.compactionReclaimedBytesPerSecondGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return compactionReclaimedBytesPerSecondSupplier.get();
+            }
+        };
+        statsLogger.registerGauge(COMPACTION_RECLAIMED_BYTES_PER_SECOND, compactionReclaimedBytesPerSecondGauge);
 
         this.entryLogUsageBucketsLeGauges = new Gauge[entryLogUsageBuckets.length];
         for (int i = 0; i < entryLogUsageBucketsLeGauges.length; i++) {
@@ -31,6 +31,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_W
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_ENQUEUE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_GROUPING_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_QUEUE_SIZE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GATHERED_WRITE_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_MEMORY_MAX;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_MEMORY_USED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE;
@@ -39,6 +40,10 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLU
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_PROCESS_TIME_LATENCY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_LATENCY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_SIZE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_REPLAY_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_REPLAY_ENTRIES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_REPLAY_THROUGHPUT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_REPLAY_TIME;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SYNC;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_WRITE_BYTES;
@@ -162,6 +167,12 @@ public class JournalStats {
         help = "The number of bytes appended to the journal"
     )
     private final Counter journalWriteBytes;
+    @StatsDoc(
+        name = JOURNAL_GATHERED_WRITE_BYTES,
+        help = "The number of bytes appended to the journal with gathering writes, without copying them"
+            + " into the journal write buffer"
+    )
+    private final Counter journalGatheredWriteBytes;
     @StatsDoc(
             name = JOURNAL_MEMORY_MAX,
             help = "The max amount of memory in bytes that can be used by the bookie journal"
@@ -172,6 +183,29 @@ public class JournalStats {
             help = "The actual amount of memory in bytes currently used by the bookie journal"
     )
     private final Gauge<Long> journalMemoryUsedStats;
+    @StatsDoc(
+            name = JOURNAL_REPLAY_TIME,
+            help = "operation stats of replaying the journal on bookie startup"
+    )
+    private final OpStatsLogger journalReplayStats;
+    @StatsDoc(
+            name = JOURNAL_REPLAY_ENTRIES,
+            help = "The number of journal records replayed on bookie startup",
+            parent = JOURNAL_REPLAY_TIME
+    )
+    private final Counter journalReplayEntries;
+    @StatsDoc(
+            name = JOURNAL_REPLAY_BYTES,
+            help = "The number of journal bytes replayed on bookie startup",
+            parent = JOURNAL_REPLAY_TIME
+    )
+    private final Counter journalReplayBytes;
+    @StatsDoc(
+            name = JOURNAL_REPLAY_THROUGHPUT,
+            help = "The throughput in bytes per second of the last journal replay"
+    )
+    private final Gauge<Long> journalReplayThroughputStats;
+    private volatile long journalReplayThroughput = 0;
 
     public JournalStats(StatsLogger statsLogger, final long maxJournalMemoryBytes,
                         Supplier<Long> currentJournalMemoryBytes) {
@@ -195,6 +229,7 @@ public class JournalStats {
                 statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES);
         flushEmptyQueueCounter = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE);
         journalWriteBytes = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_WRITE_BYTES);
+        journalGatheredWriteBytes = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_GATHERED_WRITE_BYTES);
 
         journalMemoryMaxStats = new Gauge<Long>() {
             @Override
@@ -221,6 +256,26 @@ public class JournalStats {
             }
         };
         statsLogger.registerGauge(JOURNAL_MEMORY_USED, journalMemoryUsedStats);
+
+        journalReplayStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_REPLAY_TIME);
+        journalReplayEntries = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_REPLAY_ENTRIES);
+        journalReplayBytes = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_REPLAY_BYTES);
+        journalReplayThroughputStats = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return journalReplayThroughput;
+            }
+        };
+        statsLogger.registerGauge(JOURNAL_REPLAY_THROUGHPUT, journalReplayThroughputStats);
+    }
+
+    public void setJournalReplayThroughput(long bytesPerSecond) {
+        this.journalReplayThroughput = bytesPerSecond;
     }
 
     @VisibleForTesting
@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.bookie.storage;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
 import java.io.IOException;
 import java.util.Collection;
 import org.apache.bookkeeper.bookie.AbstractLogCompactor;
@@ -67,6 +68,22 @@ public interface EntryLogger extends AutoCloseable {
     ByteBuf readEntry(long ledgerId, long entryId, long entryLocation)
             throws IOException, NoEntryException;
 
+    /**
+     * Read an entry from an entrylog location, or get the region of the entry log file holding it so that the
+     * entry can be sent without being read in memory. A region is only returned for an entry of at least
+     * minEntrySize bytes in a log that is already flushed. The entry is verified to match the expected ledger and
+     * entry ID either way.
+     * @param ledgerId the ledgerID to match
+     * @param entryId the entryID to match
+     * @param entryLocation the location of the entry
+     * @param minEntrySize the min size of the entry for a region to be returned
+     * @return the region of the entry, or the entry as read by {@link #readEntry}
+     */
+    default ReferenceCounted readEntryOrRegion(long ledgerId, long entryId, long entryLocation, int minEntrySize)
+            throws IOException, NoEntryException {
+        return readEntry(ledgerId, entryId, entryLocation);
+    }
+
     /**
      * Flush any outstanding writes to disk.
      */
@@ -33,6 +33,7 @@ import java.util.concurrent.ExecutorService;
 import org.apache.bookkeeper.bookie.EntryLogMetadata;
 import org.apache.bookkeeper.bookie.storage.CompactionEntryLog;
 import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
+import org.apache.bookkeeper.common.util.nativeio.IoUring;
 import org.apache.bookkeeper.common.util.nativeio.NativeIO;
 import org.apache.bookkeeper.slogger.Slogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
@@ -54,13 +55,14 @@ public abstract class DirectCompactionEntryLog implements CompactionEntryLog {
                                      File ledgerDir,
                                      long maxFileSize,
                                      ExecutorService writeExecutor,
+                                     IoUring ioUring,
                                      BufferPool writeBuffers,
                                      NativeIO nativeIO,
                                      ByteBufAllocator allocator,
                                      Slogger slog) throws IOException {
         return new WritingDirectCompactionEntryLog(
                 srcLogId, dstLogId, ledgerDir, maxFileSize,
-                writeExecutor, writeBuffers, nativeIO, allocator, slog);
+                writeExecutor, ioUring, writeBuffers, nativeIO, allocator, slog);
     }
 
     static CompactionEntryLog recoverLog(int srcLogId,
@@ -220,6 +222,7 @@ public abstract class DirectCompactionEntryLog implements CompactionEntryLog {
                                         File ledgerDir,
                                         long maxFileSize,
                                         ExecutorService writeExecutor,
+                                        IoUring ioUring,
                                         BufferPool writeBuffers,
                                         NativeIO nativeIO,
                                         ByteBufAllocator allocator,
@@ -228,7 +231,7 @@ public abstract class DirectCompactionEntryLog implements CompactionEntryLog {
 
             this.writer = new WriterWithMetadata(
                     new DirectWriter(dstLogId, compactingFile.toString(), maxFileSize,
-                                     writeExecutor, writeBuffers, nativeIO, slog),
+                                     writeExecutor, ioUring, writeBuffers, nativeIO, slog),
                     new EntryLogMetadata(dstLogId),
                     allocator);
 
@@ -55,6 +55,7 @@ import org.apache.bookkeeper.bookie.storage.CompactionEntryLog;
 import org.apache.bookkeeper.bookie.storage.EntryLogIds;
 import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.common.util.nativeio.IoUring;
 import org.apache.bookkeeper.common.util.nativeio.NativeIO;
 import org.apache.bookkeeper.slogger.Slogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -69,6 +70,7 @@ public class DirectEntryLogger implements EntryLogger {
     private final EntryLogIds ids;
     private final ExecutorService writeExecutor;
     private final ExecutorService flushExecutor;
+    private final IoUring ioUring;
     private final long maxFileSize;
     private final DirectEntryLoggerStats stats;
     private final ByteBufAllocator allocator;
@@ -101,8 +103,34 @@ public class DirectEntryLogger implements EntryLogger {
                              int maxFdCacheTimeSeconds,
                              Slogger slogParent,
                              StatsLogger stats) throws IOException {
+        this(ledgerDir, ids, nativeIO, allocator, writeExecutor, flushExecutor, null, maxFileSize, maxSaneEntrySize,
+             totalWriteBufferSize, totalReadBufferSize, readBufferSize, numReadThreads, maxFdCacheTimeSeconds,
+             slogParent, stats);
+    }
+
+    /**
+     * Create an entry logger whose writes are submitted to an io_uring instance, when not null, instead of the
+     * write executor. The ring is closed with the entry logger.
+     */
+    public DirectEntryLogger(File ledgerDir,
+                             EntryLogIds ids,
+                             NativeIO nativeIO,
+                             ByteBufAllocator allocator,
+                             ExecutorService writeExecutor,
+                             ExecutorService flushExecutor,
+                             IoUring ioUring,
+                             long maxFileSize,
+                             int maxSaneEntrySize,
+                             long totalWriteBufferSize,
+                             long totalReadBufferSize,
+                             int readBufferSize,
+                             int numReadThreads,
+                             int maxFdCacheTimeSeconds,
+                             Slogger slogParent,
+                             StatsLogger stats) throws IOException {
         this.ledgerDir = ledgerDir;
         this.flushExecutor = flushExecutor;
+        this.ioUring = ioUring;
         this.writeExecutor = writeExecutor;
         this.pendingFlushes = new ArrayList<>();
         this.nativeIO = nativeIO;
@@ -150,6 +178,7 @@ public class DirectEntryLogger implements EntryLogger {
             .kv("perThreadBufferSize", perThreadBufferSize)
             .kv("maxCachedReadersPerThread", maxCachedReadersPerThread)
             .kv("maxCachedReaders", maxCachedReaders)
+            .kv("ioUringEntries", ioUring != null ? ioUring.getEntries() : 0)
             .info(Events.ENTRYLOGGER_CREATED);
 
         this.caches = ThreadLocal.withInitial(() -> {
@@ -362,6 +391,9 @@ public class DirectEntryLogger implements EntryLogger {
             c.invalidateAll();
         }
 
+        if (ioUring != null) {
+            ioUring.close();
+        }
         writeBuffers.close();
     }
 
@@ -450,7 +482,7 @@ public class DirectEntryLogger implements EntryLogger {
     private LogWriter newDirectWriter(int newId) throws IOException {
         unflushedLogs.add(newId);
         LogWriter writer = new DirectWriter(newId, logFilename(ledgerDir, newId), maxFileSize,
-                                            writeExecutor, writeBuffers, nativeIO, slog);
+                                            writeExecutor, ioUring, writeBuffers, nativeIO, slog);
         ByteBuf buf = allocator.buffer(Buffer.ALIGNMENT);
         try {
             Header.writeEmptyHeader(buf);
@@ -474,7 +506,7 @@ public class DirectEntryLogger implements EntryLogger {
     public CompactionEntryLog newCompactionLog(long srcLogId) throws IOException {
         int dstLogId = ids.nextId();
         return DirectCompactionEntryLog.newLog((int) srcLogId, dstLogId, ledgerDir,
-                                               maxFileSize, writeExecutor, writeBuffers,
+                                               maxFileSize, writeExecutor, ioUring, writeBuffers,
                                                nativeIO, allocator, slog);
     }
 
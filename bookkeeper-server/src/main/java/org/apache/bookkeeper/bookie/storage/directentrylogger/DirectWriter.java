@@ -29,8 +29,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import org.apache.bookkeeper.common.util.nativeio.IoUring;
 import org.apache.bookkeeper.common.util.nativeio.NativeIO;
 import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
 import org.apache.bookkeeper.slogger.Slogger;
@@ -43,6 +45,8 @@ class DirectWriter implements LogWriter {
     final String filename;
     final BufferPool bufferPool;
     final ExecutorService writeExecutor;
+    // When set, the writes and fsyncs are submitted to the ring instead of the write executor
+    final IoUring ioUring;
     final Object bufferLock = new Object();
     final List<Future<?>> outstandingWrites = new ArrayList<Future<?>>();
     final Slogger slog;
@@ -56,10 +60,21 @@ class DirectWriter implements LogWriter {
                  ExecutorService writeExecutor,
                  BufferPool bufferPool,
                  NativeIO nativeIO, Slogger slog) throws IOException {
+        this(id, filename, maxFileSize, writeExecutor, null, bufferPool, nativeIO, slog);
+    }
+
+    DirectWriter(int id,
+                 String filename,
+                 long maxFileSize,
+                 ExecutorService writeExecutor,
+                 IoUring ioUring,
+                 BufferPool bufferPool,
+                 NativeIO nativeIO, Slogger slog) throws IOException {
         checkArgument(maxFileSize > 0, "Max file size (%d) must be positive");
         this.id = id;
         this.filename = filename;
         this.writeExecutor = writeExecutor;
+        this.ioUring = ioUring;
         this.nativeIO = nativeIO;
         this.slog = slog.ctx(DirectWriter.class);
 
@@ -124,11 +139,37 @@ class DirectWriter implements LogWriter {
         Buffer tmpBuffer = bufferPool.acquire();
         tmpBuffer.reset();
         tmpBuffer.writeByteBuf(buf);
-        Future<?> f = writeExecutor.submit(() -> {
-            writeByteBuf(tmpBuffer, bytesToWrite, offset);
-            return null;
+        addOutstandingWrite(submitWrite(tmpBuffer, bytesToWrite, offset));
+    }
+
+    private Future<?> submitWrite(Buffer buffer, int bytesToWrite, long offsetToWrite) {
+        if (ioUring == null) {
+            return writeExecutor.submit(() -> {
+                writeByteBuf(buffer, bytesToWrite, offsetToWrite);
+                return null;
             });
-        addOutstandingWrite(f);
+        }
+
+        return ioUring.pwrite(fd, buffer.pointer(), bytesToWrite, offsetToWrite).handle((ret, ex) -> {
+            bufferPool.release(buffer);
+            if (ex != null) {
+                int errno = ex instanceof NativeIOException ? ((NativeIOException) ex).getErrno() : -1;
+                throw new CompletionException(new IOException(exMsg("Write error")
+                    .kv("filename", filename)
+                    .kv("offset", offsetToWrite)
+                    .kv("writeSize", bytesToWrite)
+                    .kv("errno", errno)
+                    .toString(), ex));
+            } else if (ret != bytesToWrite) {
+                throw new CompletionException(new IOException(exMsg("Incomplete write")
+                    .kv("filename", filename)
+                    .kv("offset", offsetToWrite)
+                    .kv("writeSize", bytesToWrite)
+                    .kv("bytesWritten", ret)
+                    .toString()));
+            }
+            return null;
+        });
     }
 
     private void writeByteBuf(Buffer buffer, int bytesToWrite, long offsetToWrite) throws IOException{
@@ -210,6 +251,11 @@ class DirectWriter implements LogWriter {
 
         waitForOutstandingWrites();
 
+        if (ioUring != null) {
+            waitForFuture(ioUring.fsync(fd));
+            return;
+        }
+
         try {
             int ret = nativeIO.fsync(fd);
             checkState(ret == 0, "Fsync should throw exception on non-zero return (%d)", ret);
@@ -300,11 +346,7 @@ class DirectWriter implements LogWriter {
                 long offsetToWrite = offset;
                 offset += bytesToWrite;
 
-                Future<?> f = writeExecutor.submit(() -> {
-                    writeByteBuf(bufferToFlush, bytesToWrite, offsetToWrite);
-                    return null;
-                });
-                addOutstandingWrite(f);
+                addOutstandingWrite(submitWrite(bufferToFlush, bytesToWrite, offsetToWrite));
 
                 // must acquire after triggering the write
                 // otherwise it could try to acquire a buffer without kicking off
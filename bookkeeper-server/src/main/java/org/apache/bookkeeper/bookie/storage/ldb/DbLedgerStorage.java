@@ -29,6 +29,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCounted;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.PlatformDependent;
 import java.io.File;
@@ -57,10 +58,12 @@ import org.apache.bookkeeper.bookie.StateManager;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
 import org.apache.bookkeeper.bookie.storage.directentrylogger.DirectEntryLogger;
 import org.apache.bookkeeper.bookie.storage.directentrylogger.EntryLogIdsImpl;
-import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
 import org.apache.bookkeeper.bookie.storage.ldb.SingleDirectoryDbLedgerStorage.LedgerLoggerProcessor;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.Watcher;
+import org.apache.bookkeeper.common.util.nativeio.IoUring;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
 import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -91,8 +94,11 @@ public class DbLedgerStorage implements LedgerStorage {
         "dbStorage_directIOEntryLoggerReadBufferSizeMB";
     public static final String DIRECT_IO_ENTRYLOGGER_MAX_FD_CACHE_TIME_SECONDS =
         "dbStorage_directIOEntryLoggerMaxFdCacheTimeSeconds";
+    public static final String DIRECT_IO_ENTRYLOGGER_IO_URING = "dbStorage_directIOEntryLoggerIoUring";
+    public static final String DIRECT_IO_ENTRYLOGGER_IO_URING_ENTRIES = "dbStorage_directIOEntryLoggerIoUringEntries";
 
     static final String MAX_THROTTLE_TIME_MILLIS = "dbStorage_maxThrottleTimeMs";
+    static final String WRITE_CACHE_BUFFERS = "dbStorage_writeCacheBuffers";
 
     private static final int MB = 1024 * 1024;
 
@@ -103,6 +109,11 @@ public class DbLedgerStorage implements LedgerStorage {
 
     static final String READ_AHEAD_CACHE_BATCH_SIZE = "dbStorage_readAheadCacheBatchSize";
     static final String READ_AHEAD_CACHE_BATCH_BYTES_SIZE = "dbStorage_readAheadCacheBatchBytesSize";
+    static final String READ_CACHE_EVICTION_POLICY = "dbStorage_readCacheEvictionPolicy";
+    static final String READ_CACHE_PROTECTED_RATIO = "dbStorage_readCacheProtectedRatio";
+    static final String READ_AHEAD_ADAPTIVE_ENABLED = "dbStorage_readAheadAdaptiveEnabled";
+    static final String READ_AHEAD_ADAPTIVE_MAX_BATCH_SIZE = "dbStorage_readAheadAdaptiveMaxBatchSize";
+    static final String READ_AHEAD_ADAPTIVE_THREADS = "dbStorage_readAheadAdaptiveThreads";
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE = 100;
     // the default value is -1. this feature(limit of read ahead bytes) is disabled
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_BYTES_SIZE = -1;
@@ -116,6 +127,7 @@ public class DbLedgerStorage implements LedgerStorage {
     private static final long DEFAULT_DIRECT_IO_READBUFFER_SIZE_MB = 8;
 
     private static final int DEFAULT_DIRECT_IO_MAX_FD_CACHE_TIME_SECONDS = 300;
+    private static final int DEFAULT_DIRECT_IO_IO_URING_ENTRIES = 64;
 
     // use the storage assigned to ledger 0 for flags.
     // if the storage configuration changes, the flags may be lost
@@ -224,9 +236,22 @@ public class DbLedgerStorage implements LedgerStorage {
                     numReadThreads = conf.getServerNumIOThreads();
                 }
 
+                NativeIO nativeIO = new NativeIOImpl();
+                IoUring ioUring = null;
+                if (getBooleanVariableOrDefault(conf, DIRECT_IO_ENTRYLOGGER_IO_URING, false)) {
+                    int ioUringEntries = (int) getLongVariableOrDefault(conf, DIRECT_IO_ENTRYLOGGER_IO_URING_ENTRIES,
+                        DEFAULT_DIRECT_IO_IO_URING_ENTRIES);
+                    try {
+                        ioUring = IoUring.create(nativeIO, ioUringEntries, "EntryLoggerIoUring-" + i);
+                    } catch (NativeIOException e) {
+                        log.warn("io_uring is not available for {}, falling back to synchronous writes: {}",
+                            ledgerDir, e.getMessage());
+                    }
+                }
+
                 entrylogger = new DirectEntryLogger(ledgerDir, new EntryLogIdsImpl(ldm, slog),
-                    new NativeIOImpl(),
-                    allocator, entryLoggerWriteExecutor, entryLoggerFlushExecutor,
+                    nativeIO,
+                    allocator, entryLoggerWriteExecutor, entryLoggerFlushExecutor, ioUring,
                     conf.getEntryLogSizeLimit(),
                     conf.getNettyMaxFrameSizeBytes() - 500,
                     perDirectoryTotalWriteBufferSize,
@@ -361,6 +386,12 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerStorage(ledgerId).getEntry(ledgerId, entryId);
     }
 
+    @Override
+    public ReferenceCounted getEntryOrRegion(long ledgerId, long entryId, int minEntrySize)
+            throws IOException, BookieException {
+        return getLedgerStorage(ledgerId).getEntryOrRegion(ledgerId, entryId, minEntrySize);
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         return getLedgerStorage(ledgerId).getLastAddConfirmed(ledgerId);
@@ -484,9 +515,10 @@ public class DbLedgerStorage implements LedgerStorage {
         int dirIndex = MathUtils.signSafeMod(ledgerId, ledgerDirs.size());
         String indexBasePath = indexDirs.get(dirIndex).toString();
 
-        EntryLocationIndex entryLocationIndex = new EntryLocationIndex(serverConf,
-                (basePath, subPath, dbConfigType, conf1) ->
-                        new KeyValueStorageRocksDB(basePath, subPath, DbConfigType.Default, conf1, true),
+        // Open the index in read-only mode
+        KeyValueStorageFactory storageFactory = EntryLocationIndex.getReadOnlyStorageFactory(
+                serverConf.getEntryLocationIndexStorage());
+        EntryLocationIndex entryLocationIndex = new EntryLocationIndex(serverConf, storageFactory,
                 indexBasePath, NullStatsLogger.INSTANCE);
         try {
             long lastEntryId = entryLocationIndex.getLastEntryInLedger(ledgerId);
@@ -52,9 +52,13 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_MISSES = "write-cache-misses";
     private static final String READ_CACHE_HITS = "read-cache-hits";
     private static final String READ_CACHE_MISSES = "read-cache-misses";
+    private static final String ZERO_COPY_READS = "zero-copy-reads";
     private static final String READAHEAD_BATCH_COUNT = "readahead-batch-count";
     private static final String READAHEAD_BATCH_SIZE = "readahead-batch-size";
     private static final String READAHEAD_TIME = "readahead-time";
+    private static final String READAHEAD_PREFETCHED_ENTRIES = "readahead-prefetched-entries";
+    private static final String READAHEAD_PREFETCH_HITS = "readahead-prefetch-hits";
+    private static final String READAHEAD_WASTED_BYTES = "readahead-wasted-bytes";
     private static final String FLUSH = "flush";
     private static final String FLUSH_ENTRYLOG = "flush-entrylog";
     private static final String FLUSH_LOCATIONS_INDEX = "flush-locations-index";
@@ -65,9 +69,11 @@ class DbLedgerStorageStats {
     private static final String THROTTLED_WRITE_REQUESTS = "throttled-write-requests";
     // throttled-write-requests is deprecated, use new metric: throttled-write
     private static final String THROTTLED_WRITE = "throttled-write";
+    private static final String THROTTLED_WRITE_TIME = "throttled-write-time";
     private static final String REJECTED_WRITE_REQUESTS = "rejected-write-requests";
     private static final String WRITE_CACHE_SIZE = "write-cache-size";
     private static final String WRITE_CACHE_COUNT = "write-cache-count";
+    private static final String WRITE_CACHE_BUFFERS_IN_USE = "write-cache-buffers-in-use";
     private static final String READ_CACHE_SIZE = "read-cache-size";
     private static final String READ_CACHE_COUNT = "read-cache-count";
 
@@ -119,6 +125,12 @@ class DbLedgerStorageStats {
         parent = READ_ENTRY
     )
     private final Counter readCacheMissCounter;
+    @StatsDoc(
+        name = ZERO_COPY_READS,
+        help = "number of entries sent straight from the entry log files, without being read in memory",
+        parent = READ_ENTRY
+    )
+    private final Counter zeroCopyReadCounter;
     @StatsDoc(
         name = READAHEAD_BATCH_COUNT,
         help = "the distribution of num of entries to read in one readahead batch"
@@ -134,6 +146,22 @@ class DbLedgerStorageStats {
             help = "Time spent on readahead operations"
     )
     private final Counter readAheadTime;
+    @StatsDoc(
+            name = READAHEAD_PREFETCHED_ENTRIES,
+            help = "number of entries prefetched by the adaptive readahead"
+    )
+    private final Counter readAheadPrefetchedEntriesCounter;
+    @StatsDoc(
+            name = READAHEAD_PREFETCH_HITS,
+            help = "number of reads served by an entry prefetched by the adaptive readahead",
+            parent = READ_ENTRY
+    )
+    private final Counter readAheadPrefetchHitCounter;
+    @StatsDoc(
+            name = READAHEAD_WASTED_BYTES,
+            help = "estimated number of bytes prefetched by the adaptive readahead and never read"
+    )
+    private final Counter readAheadWastedBytesCounter;
     @StatsDoc(
         name = FLUSH,
         help = "operation stats of flushing write cache to entry log files"
@@ -169,6 +197,11 @@ class DbLedgerStorageStats {
             help = "The stats of throttled write due to write cache is full"
     )
     private final OpStatsLogger throttledWriteStats;
+    @StatsDoc(
+            name = THROTTLED_WRITE_TIME,
+            help = "Time spent by write requests waiting for a free write cache buffer"
+    )
+    private final Counter throttledWriteTime;
     @StatsDoc(
         name = REJECTED_WRITE_REQUESTS,
         help = "The number of requests rejected due to write cache is full"
@@ -185,6 +218,11 @@ class DbLedgerStorageStats {
         help = "Current number of entries in write cache"
     )
     private final Gauge<Long> writeCacheCountGauge;
+    @StatsDoc(
+        name = WRITE_CACHE_BUFFERS_IN_USE,
+        help = "Current number of write cache buffers that are active or waiting to be flushed"
+    )
+    private final Gauge<Long> writeCacheBuffersInUseGauge;
     @StatsDoc(
         name = READ_CACHE_SIZE,
         help = "Current number of bytes in read cache"
@@ -199,6 +237,7 @@ class DbLedgerStorageStats {
     DbLedgerStorageStats(StatsLogger stats,
                          Supplier<Long> writeCacheSizeSupplier,
                          Supplier<Long> writeCacheCountSupplier,
+                         Supplier<Long> writeCacheBuffersInUseSupplier,
                          Supplier<Long> readCacheSizeSupplier,
                          Supplier<Long> readCacheCountSupplier) {
         addEntryStats = stats.getThreadScopedOpStatsLogger(ADD_ENTRY);
@@ -207,11 +246,15 @@ class DbLedgerStorageStats {
         readFromEntryLogTime = stats.getThreadScopedCounter(READ_ENTRYLOG_TIME);
         readCacheHitCounter = stats.getCounter(READ_CACHE_HITS);
         readCacheMissCounter = stats.getCounter(READ_CACHE_MISSES);
+        zeroCopyReadCounter = stats.getCounter(ZERO_COPY_READS);
         writeCacheHitCounter = stats.getCounter(WRITE_CACHE_HITS);
         writeCacheMissCounter = stats.getCounter(WRITE_CACHE_MISSES);
         readAheadBatchCountStats = stats.getOpStatsLogger(READAHEAD_BATCH_COUNT);
         readAheadBatchSizeStats = stats.getOpStatsLogger(READAHEAD_BATCH_SIZE);
         readAheadTime = stats.getThreadScopedCounter(READAHEAD_TIME);
+        readAheadPrefetchedEntriesCounter = stats.getCounter(READAHEAD_PREFETCHED_ENTRIES);
+        readAheadPrefetchHitCounter = stats.getCounter(READAHEAD_PREFETCH_HITS);
+        readAheadWastedBytesCounter = stats.getCounter(READAHEAD_WASTED_BYTES);
         flushStats = stats.getOpStatsLogger(FLUSH);
         flushEntryLogStats = stats.getOpStatsLogger(FLUSH_ENTRYLOG);
         flushLocationIndexStats = stats.getOpStatsLogger(FLUSH_LOCATIONS_INDEX);
@@ -220,6 +263,7 @@ class DbLedgerStorageStats {
 
         throttledWriteRequests = stats.getThreadScopedCounter(THROTTLED_WRITE_REQUESTS);
         throttledWriteStats = stats.getOpStatsLogger(THROTTLED_WRITE);
+        throttledWriteTime = stats.getThreadScopedCounter(THROTTLED_WRITE_TIME);
         rejectedWriteRequests = stats.getThreadScopedCounter(REJECTED_WRITE_REQUESTS);
 
         writeCacheSizeGauge = new Gauge<Long>() {
@@ -246,6 +290,18 @@ class DbLedgerStorageStats {
             }
         };
         stats.registerGauge(WRITE_CACHE_COUNT, writeCacheCountGauge);
+        writeCacheBuffersInUseGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return writeCacheBuffersInUseSupplier.get();
+            }
+        };
+        stats.registerGauge(WRITE_CACHE_BUFFERS_IN_USE, writeCacheBuffersInUseGauge);
         readCacheSizeGauge = new Gauge<Long>() {
             @Override
             public Long getDefaultValue() {
@@ -45,6 +45,9 @@ import org.slf4j.LoggerFactory;
  */
 public class EntryLocationIndex implements Closeable {
 
+    public static final String ROCKSDB_STORAGE = "rocksdb";
+    public static final String SORTED_RUNS_STORAGE = "sortedRuns";
+
     private final KeyValueStorage locationsDb;
     private final ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
     private final EntryLocationIndexStats stats;
@@ -65,6 +68,43 @@ public class EntryLocationIndex implements Closeable {
             });
     }
 
+    /**
+     * Get the factory of the storage configured to keep the entry location index.
+     */
+    public static KeyValueStorageFactory getStorageFactory(ServerConfiguration conf) {
+        return getStorageFactory(conf.getEntryLocationIndexStorage());
+    }
+
+    /**
+     * Get the factory of an entry location index storage type, either {@link #ROCKSDB_STORAGE} or
+     * {@link #SORTED_RUNS_STORAGE}.
+     */
+    public static KeyValueStorageFactory getStorageFactory(String storage) {
+        if (ROCKSDB_STORAGE.equalsIgnoreCase(storage)) {
+            return KeyValueStorageRocksDB.factory;
+        } else if (SORTED_RUNS_STORAGE.equalsIgnoreCase(storage)) {
+            return KeyValueStorageSortedRuns.factory;
+        } else {
+            throw new IllegalArgumentException("Unknown entry location index storage: " + storage);
+        }
+    }
+
+    /**
+     * Get a factory opening an entry location index storage of the given type read-only, to inspect it without
+     * modifying it.
+     */
+    public static KeyValueStorageFactory getReadOnlyStorageFactory(String storage) {
+        if (ROCKSDB_STORAGE.equalsIgnoreCase(storage)) {
+            return (basePath, subPath, dbConfigType, conf) ->
+                    new KeyValueStorageRocksDB(basePath, subPath, dbConfigType, conf, true);
+        } else if (SORTED_RUNS_STORAGE.equalsIgnoreCase(storage)) {
+            return (basePath, subPath, dbConfigType, conf) ->
+                    new KeyValueStorageSortedRuns(basePath, subPath, dbConfigType, conf, true);
+        } else {
+            throw new IllegalArgumentException("Unknown entry location index storage: " + storage);
+        }
+    }
+
     @Override
     public void close() throws IOException {
         locationsDb.close();
@@ -165,6 +205,22 @@ public class EntryLocationIndex implements Closeable {
         }
     }
 
+    /**
+     * Add the locations of multiple entries in a single call, avoiding the encoding of the keys one by one.
+     *
+     * @param locations
+     *            groups of 4 longs: ledgerId, entryId, location and a 4th long that is ignored
+     * @param count
+     *            the number of entries
+     */
+    public void addLocations(Batch batch, long[] locations, int count) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("Add locations - count: {}", count);
+        }
+
+        batch.putAll(locations, count);
+    }
+
     public void updateLocations(Iterable<EntryLocation> newLocations) throws IOException {
         if (log.isDebugEnabled()) {
             log.debug("Update locations -- {}", Iterables.size(newLocations));
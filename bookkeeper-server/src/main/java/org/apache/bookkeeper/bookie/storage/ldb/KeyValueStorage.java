@@ -171,6 +171,31 @@ public interface KeyValueStorage extends Closeable {
     public interface Batch extends Closeable {
         void put(byte[] key, byte[] value) throws IOException;
 
+        /**
+         * Put multiple entries whose keys are made of 2 longs and values of 1 long, in the same encoding of
+         * {@link ArrayUtil#setLong}.
+         *
+         * <p>The entries are put in the order of the array, so that a later entry overrides an earlier one with the
+         * same key.
+         *
+         * @param items
+         *            groups of 4 longs: the 2 longs of the key, the value and a 4th long that is ignored, which
+         *            is the layout sorted by {@link ArrayGroupSort}
+         * @param count
+         *            the number of entries
+         */
+        default void putAll(long[] items, int count) throws IOException {
+            byte[] key = new byte[16];
+            byte[] value = new byte[8];
+            for (int i = 0; i < count * 4; i += 4) {
+                ArrayUtil.setLong(key, 0, items[i]);
+                ArrayUtil.setLong(key, 8, items[i + 1]);
+                ArrayUtil.setLong(value, 0, items[i + 2]);
+                // The batch copies the key and the value, so the arrays can be reused
+                put(key, value);
+            }
+        }
+
         void remove(byte[] key) throws IOException;
 
         void deleteRange(byte[] beginKey, byte[] endKey) throws IOException;
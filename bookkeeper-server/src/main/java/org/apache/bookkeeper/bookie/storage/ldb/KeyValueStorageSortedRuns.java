@@ -0,0 +1,1617 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * KeyValueStorage implementation specialized for the entry location index.
+ *
+ * <p>Keys are (ledgerId, entryId) pairs and values are 8 bytes locations. Every batch flush is written as a new
+ * immutable file (a "run") with the records sorted by key, so all the entries of a ledger are contiguous. Runs are
+ * memory mapped and a sparse index holding one key every {@code indexInterval} records is kept in memory: a lookup
+ * is a binary search over the sparse index followed by a binary search over a couple of pages of the mapped file.
+ *
+ * <p>Deletions are stored as range tombstones tagged with a sequence number, hiding the records of all the runs
+ * written before them. Runs are merged in background whenever a run is not bigger than the one written after it,
+ * which keeps the number of runs logarithmic in the number of flushes. Tombstones are discarded once the oldest run
+ * has been merged past them. The tombstones of each deletion batch are appended to the tombstones file, which is
+ * only rewritten when a merge discards some of them.
+ *
+ * <p>Single key puts and deletes are buffered in memory, visible to the readers, and written as one run when the
+ * storage is synced, when a batch is flushed or once {@code maxPendingWrites} keys are buffered. Like the unsynced
+ * writes of RocksDB, they are lost on a crash until then.
+ *
+ * <p>Readers never block: they work on an immutable snapshot of the runs and tombstones that is replaced by writers.
+ *
+ * <p>The storage can be opened read-only to inspect the index of a bookie, possibly while the bookie is running: it
+ * then leaves the directory untouched, without recovering interrupted flushes or merges nor merging runs.
+ */
+public class KeyValueStorageSortedRuns implements KeyValueStorage {
+
+    static KeyValueStorageFactory factory = KeyValueStorageSortedRuns::new;
+
+    private static final String SORTED_RUNS_INDEX_INTERVAL = "dbStorage_sortedRuns_indexInterval";
+    private static final String SORTED_RUNS_MAX_BATCH_SIZE = "dbStorage_sortedRuns_maxBatchSize";
+    private static final String SORTED_RUNS_MAX_RUNS = "dbStorage_sortedRuns_maxRuns";
+    private static final String SORTED_RUNS_MAX_PENDING_WRITES = "dbStorage_sortedRuns_maxPendingWrites";
+
+    private static final int DEFAULT_INDEX_INTERVAL = 256;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1_000_000;
+    private static final int DEFAULT_MAX_RUNS = 16;
+    private static final int DEFAULT_MAX_PENDING_WRITES = 10_000;
+
+    static final int KEY_SIZE = 16;
+    static final int VALUE_SIZE = 8;
+    private static final int RECORD_SIZE = KEY_SIZE + VALUE_SIZE;
+
+    private static final int RUN_MAGIC = 0x424b5352; // "BKSR"
+    private static final int TOMBSTONES_MAGIC = 0x424b5354; // "BKST"
+    private static final int FORMAT_VERSION = 1;
+    // The tombstones are appended until the end of the file, the last 8 bytes of the header are reserved
+    private static final int TOMBSTONES_FORMAT_VERSION = 1;
+    private static final int RUN_HEADER_SIZE = 32;
+    private static final int TOMBSTONES_HEADER_SIZE = 16;
+    private static final int TOMBSTONE_SIZE = 40;
+
+    // Records are mapped in chunks of 2^25 records (768 MB) to stay below the 2 GB limit of a single mapping
+    private static final int CHUNK_SHIFT = 25;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    private static final String RUN_FILE_SUFFIX = ".run";
+    private static final String TOMBSTONES_FILE = "tombstones";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // File always present in a RocksDB database directory
+    private static final String ROCKSDB_CURRENT_FILE = "CURRENT";
+
+    // A read-only open retries when a run was merged away by the bookie while listing the directory
+    private static final int READ_ONLY_OPEN_ATTEMPTS = 5;
+
+    // Value of a buffered single key delete
+    private static final byte[] DELETED = new byte[0];
+    // The buffered writes are newer than all the runs: their puts win and their deletes hide the records of the runs
+    private static final long PENDING_SEQ = Long.MAX_VALUE;
+    private static final long PENDING_DELETES_SEQ = PENDING_SEQ - 1;
+
+    private final File dbDir;
+    private final int indexInterval;
+    private final int maxBatchSize;
+    private final int maxRuns;
+    private final int maxPendingWrites;
+    private final boolean readOnly;
+
+    // Serializes the writers of the storage state. Readers only access the current snapshot.
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Serializes the background merges with the explicit compactions
+    private final ReentrantLock mergeLock = new ReentrantLock();
+    private final ExecutorService mergeExecutor;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean closed = false;
+
+    // Guarded by writeLock
+    private long nextSeq;
+    private FileChannel tombstonesChannel;
+    private final AtomicLong nextFileId = new AtomicLong();
+
+    // Buffered single key writes, modified with writeLock held
+    private final ConcurrentSkipListMap<PendingKey, byte[]> pendingWrites = new ConcurrentSkipListMap<>();
+    private int pendingWritesCount = 0;
+    private final AtomicLong pendingWritesVersion = new AtomicLong();
+    // Snapshot including the buffered writes, built by the range reads and reused until the next write
+    private volatile PendingView pendingView;
+
+    public KeyValueStorageSortedRuns(String basePath, String subPath, DbConfigType dbConfigType,
+                                     ServerConfiguration conf) throws IOException {
+        this(basePath, subPath, dbConfigType, conf, false);
+    }
+
+    public KeyValueStorageSortedRuns(String basePath, String subPath, DbConfigType dbConfigType,
+                                     ServerConfiguration conf, boolean readOnly) throws IOException {
+        this.dbDir = new File(basePath, subPath);
+        this.readOnly = readOnly;
+        this.indexInterval = conf.getInt(SORTED_RUNS_INDEX_INTERVAL, DEFAULT_INDEX_INTERVAL);
+        this.maxBatchSize = conf.getInt(SORTED_RUNS_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+        this.maxRuns = conf.getInt(SORTED_RUNS_MAX_RUNS, DEFAULT_MAX_RUNS);
+        this.maxPendingWrites = conf.getInt(SORTED_RUNS_MAX_PENDING_WRITES, DEFAULT_MAX_PENDING_WRITES);
+        checkArgument(indexInterval > 0, "Index interval must be positive");
+        checkArgument(maxBatchSize > 0, "Max batch size must be positive");
+        checkArgument(maxRuns > 1, "Max number of runs must be at least 2");
+        checkArgument(maxPendingWrites > 0, "Max pending writes must be positive");
+
+        if (readOnly) {
+            if (!dbDir.isDirectory()) {
+                throw new IOException("Sorted runs storage directory " + dbDir + " does not exist");
+            }
+        } else if (!dbDir.isDirectory() && !dbDir.mkdirs()) {
+            throw new IOException("Failed to create directory " + dbDir);
+        }
+        if (new File(dbDir, ROCKSDB_CURRENT_FILE).exists()) {
+            throw new IOException("Directory " + dbDir + " holds a RocksDB database. It needs to be migrated with the"
+                    + " migrate-db-ledger-locations-index command before using the sorted runs storage");
+        }
+
+        if (readOnly) {
+            this.snapshot = recoverReadOnly();
+            this.mergeExecutor = null;
+        } else {
+            this.snapshot = recover();
+            // Compact the tombstones file, dropping the partial record of an interrupted append if any
+            rewriteTombstones(snapshot.tombstones);
+            this.mergeExecutor = Executors.newSingleThreadExecutor(
+                    new DefaultThreadFactory("db-storage-runs-merge"));
+        }
+
+        log.info("Opened sorted runs storage at {}{} with {} runs, {} records and {} tombstones", dbDir,
+                readOnly ? " (read-only)" : "", snapshot.runs.length, countRecords(snapshot),
+                snapshot.tombstones.size);
+        scheduleMerge();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (readOnly) {
+            closed = true;
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            flushPendingWrites();
+            closed = true;
+        } finally {
+            writeLock.unlock();
+        }
+
+        // Interrupting a merge aborts it and its temporary file gets deleted at next startup
+        mergeExecutor.shutdownNow();
+        try {
+            if (!mergeExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Timed out waiting for sorted runs merge to complete in {}", dbDir);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing sorted runs storage", e);
+        }
+
+        writeLock.lock();
+        try {
+            tombstonesChannel.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) throws IOException {
+        checkKey(key);
+        checkArgument(value.length == VALUE_SIZE, "Sorted runs storage only supports 8 bytes values");
+        addPendingWrite(key, value.clone());
+    }
+
+    @Override
+    public byte[] get(byte[] key) throws IOException {
+        byte[] value = new byte[VALUE_SIZE];
+        return get(key, value) < 0 ? null : value;
+    }
+
+    @Override
+    public int get(byte[] key, byte[] value) throws IOException {
+        checkKey(key);
+        if (value.length < VALUE_SIZE) {
+            throw new IOException("Value array is too small to fit the result");
+        }
+
+        long ledgerId = ArrayUtil.getLong(key, 0);
+        long entryId = ArrayUtil.getLong(key, 8);
+        // The buffered writes are looked up before the snapshot, which already holds them once they are removed
+        byte[] pending = pendingWrites.get(new PendingKey(ledgerId, entryId));
+        if (pending == DELETED) {
+            return -1;
+        } else if (pending != null) {
+            System.arraycopy(pending, 0, value, 0, VALUE_SIZE);
+            return VALUE_SIZE;
+        }
+        Snapshot s = snapshot;
+
+        // Newest runs take precedence over the older ones
+        for (int i = s.runs.length - 1; i >= 0; i--) {
+            Run run = s.runs[i];
+            if (!run.mayContain(ledgerId, entryId)) {
+                continue;
+            }
+
+            int pos = run.lowerBound(ledgerId, entryId);
+            if (pos < run.count && run.ledgerAt(pos) == ledgerId && run.entryAt(pos) == entryId) {
+                if (s.tombstones.find(ledgerId, entryId, run.maxSeq, Long.MAX_VALUE) >= 0) {
+                    // A tombstone hiding this record also hides all the older versions
+                    return -1;
+                }
+
+                ArrayUtil.setLong(value, 0, run.valueAt(pos));
+                return VALUE_SIZE;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public Entry<byte[], byte[]> getFloor(byte[] key) throws IOException {
+        checkKey(key);
+        long ledgerId = ArrayUtil.getLong(key, 0);
+        long entryId = ArrayUtil.getLong(key, 8);
+        Snapshot s = readSnapshot();
+
+        Run found = null;
+        int foundPos = -1;
+        for (int i = s.runs.length - 1; i >= 0; i--) {
+            Run run = s.runs[i];
+            int pos = previousVisible(s.tombstones, run, run.lowerBound(ledgerId, entryId) - 1);
+            if (pos >= 0 && (found == null || compareKeys(run.ledgerAt(pos), run.entryAt(pos),
+                    found.ledgerAt(foundPos), found.entryAt(foundPos)) > 0)) {
+                found = run;
+                foundPos = pos;
+            }
+        }
+
+        return found == null ? null : toEntry(found, foundPos);
+    }
+
+    @Override
+    public Entry<byte[], byte[]> getCeil(byte[] key) throws IOException {
+        checkKey(key);
+        long ledgerId = ArrayUtil.getLong(key, 0);
+        long entryId = ArrayUtil.getLong(key, 8);
+        Snapshot s = readSnapshot();
+
+        Run found = null;
+        int foundPos = -1;
+        for (int i = s.runs.length - 1; i >= 0; i--) {
+            Run run = s.runs[i];
+            int pos = nextVisible(s.tombstones, run, run.lowerBound(ledgerId, entryId), run.maxSeq, Long.MAX_VALUE);
+            if (pos < run.count && (found == null || compareKeys(run.ledgerAt(pos), run.entryAt(pos),
+                    found.ledgerAt(foundPos), found.entryAt(foundPos)) < 0)) {
+                found = run;
+                foundPos = pos;
+            }
+        }
+
+        return found == null ? null : toEntry(found, foundPos);
+    }
+
+    @Override
+    public void delete(byte[] key) throws IOException {
+        checkKey(key);
+        if (ArrayUtil.getLong(key, 8) == -1L) {
+            // Deletes all the entries of the ledger, written right away after the buffered writes
+            try (Batch batch = newBatch()) {
+                batch.remove(key);
+                batch.flush();
+            }
+        } else {
+            addPendingWrite(key, DELETED);
+        }
+    }
+
+    @Override
+    public String getDBPath() {
+        return dbDir.getPath();
+    }
+
+    /**
+     * Merge all the runs into a single one, discarding every overwritten and deleted record.
+     */
+    @Override
+    public void compact() throws IOException {
+        checkWritable();
+        mergeLock.lock();
+        try {
+            Snapshot s = snapshot;
+            if (s.runs.length == 0 || (s.runs.length == 1 && s.tombstones.size == 0)) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            long recordsBefore = countRecords(s);
+            merge(s, 0, s.runs.length);
+            log.info("Compacted {} sorted runs in {} in {} ms, records: {} -> {}", s.runs.length, dbDir,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), recordsBefore,
+                    countRecords(snapshot));
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    /**
+     * Write the buffered single key writes. The batches are durable once flushed.
+     */
+    @Override
+    public void sync() throws IOException {
+        if (readOnly) {
+            return;
+        }
+
+        boolean flushed;
+        writeLock.lock();
+        try {
+            flushed = flushPendingWrites();
+        } finally {
+            writeLock.unlock();
+        }
+        if (flushed) {
+            scheduleMerge();
+        }
+    }
+
+    @Override
+    public CloseableIterator<byte[]> keys() {
+        return keys(null, null);
+    }
+
+    @Override
+    public CloseableIterator<byte[]> keys(byte[] firstKey, byte[] lastKey) {
+        final MergingCursor cursor = newCursor(firstKey, lastKey);
+
+        return new CloseableIterator<byte[]>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasCurrent();
+            }
+
+            @Override
+            public byte[] next() {
+                checkState(cursor.hasCurrent());
+                byte[] key = toKey(cursor.ledgerId(), cursor.entryId());
+                cursor.advance();
+                return key;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public CloseableIterator<Entry<byte[], byte[]>> iterator() {
+        final MergingCursor cursor = newCursor(null, null);
+
+        return new CloseableIterator<Entry<byte[], byte[]>>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasCurrent();
+            }
+
+            @Override
+            public Entry<byte[], byte[]> next() {
+                checkState(cursor.hasCurrent());
+                byte[] value = new byte[VALUE_SIZE];
+                ArrayUtil.setLong(value, 0, cursor.value());
+                Entry<byte[], byte[]> entry = new SimpleImmutableEntry<>(toKey(cursor.ledgerId(), cursor.entryId()),
+                        value);
+                cursor.advance();
+                return entry;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * @return the number of records stored in the runs, including the ones that were overwritten or deleted and
+     *         not yet merged away
+     */
+    @Override
+    public long count() throws IOException {
+        return countRecords(readSnapshot());
+    }
+
+    @Override
+    public Batch newBatch() {
+        return new SortedRunsBatch();
+    }
+
+    private MergingCursor newCursor(byte[] firstKey, byte[] lastKey) {
+        Snapshot s = readSnapshot();
+        long firstLedgerId = 0;
+        long firstEntryId = 0;
+        if (firstKey != null) {
+            checkKey(firstKey);
+            firstLedgerId = ArrayUtil.getLong(firstKey, 0);
+            firstEntryId = ArrayUtil.getLong(firstKey, 8);
+        }
+
+        if (lastKey != null) {
+            checkKey(lastKey);
+            return new MergingCursor(s.runs, s.tombstones, Long.MAX_VALUE, firstLedgerId, firstEntryId, true,
+                    ArrayUtil.getLong(lastKey, 0), ArrayUtil.getLong(lastKey, 8));
+        } else {
+            return new MergingCursor(s.runs, s.tombstones, Long.MAX_VALUE, firstLedgerId, firstEntryId, false,
+                    0, 0);
+        }
+    }
+
+    /**
+     * Snapshot of the runs and tombstones including the buffered single key writes, as an in-memory run and
+     * tombstones newer than all the others.
+     */
+    private Snapshot readSnapshot() {
+        long version = pendingWritesVersion.get();
+        if (pendingWrites.isEmpty()) {
+            return snapshot;
+        }
+        PendingView view = pendingView;
+        if (view != null && view.version == version && view.base == snapshot) {
+            return view.snapshot;
+        }
+
+        // The buffered writes are read before the snapshot, which already holds them once they are removed
+        ByteBuffer records = ByteBuffer.allocate(pendingWrites.size() * RECORD_SIZE);
+        List<Tombstone> deletes = new ArrayList<>();
+        int count = 0;
+        for (Map.Entry<PendingKey, byte[]> e : pendingWrites.entrySet()) {
+            PendingKey key = e.getKey();
+            if (e.getValue() == DELETED) {
+                deletes.add(new Tombstone(PENDING_DELETES_SEQ, key.ledgerId, key.entryId, key.ledgerId,
+                        key.entryId + 1));
+            } else if (records.remaining() >= RECORD_SIZE) {
+                records.putLong(key.ledgerId);
+                records.putLong(key.entryId);
+                records.put(e.getValue());
+                ++count;
+            }
+        }
+        Snapshot s = snapshot;
+
+        Run[] runs = s.runs;
+        if (count > 0) {
+            runs = Arrays.copyOf(runs, runs.length + 1);
+            runs[runs.length - 1] = new Run(null, -1L, PENDING_SEQ, PENDING_SEQ, count,
+                    new ByteBuffer[] { records }, indexInterval);
+        }
+        Snapshot merged = new Snapshot(runs, deletes.isEmpty() ? s.tombstones : s.tombstones.withAdded(deletes));
+        pendingView = new PendingView(version, s, merged);
+        return merged;
+    }
+
+    private void addPendingWrite(byte[] key, byte[] value) throws IOException {
+        checkWritable();
+        boolean flushed = false;
+        writeLock.lock();
+        try {
+            checkState(!closed, "Storage is closed");
+            if (pendingWrites.put(new PendingKey(ArrayUtil.getLong(key, 0), ArrayUtil.getLong(key, 8)), value)
+                    == null) {
+                ++pendingWritesCount;
+            }
+            pendingWritesVersion.incrementAndGet();
+            if (pendingWritesCount >= maxPendingWrites) {
+                flushed = flushPendingWrites();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (flushed) {
+            scheduleMerge();
+        }
+    }
+
+    /**
+     * Write the buffered single key writes as a new run. Must be called with the write lock held.
+     *
+     * @return whether there was any buffered write
+     */
+    private boolean flushPendingWrites() throws IOException {
+        if (pendingWritesCount == 0) {
+            return false;
+        }
+
+        long[] puts = new long[pendingWritesCount * 4];
+        int putsCount = 0;
+        List<Tombstone> deletes = new ArrayList<>();
+        for (Map.Entry<PendingKey, byte[]> e : pendingWrites.entrySet()) {
+            PendingKey key = e.getKey();
+            if (e.getValue() == DELETED) {
+                deletes.add(new Tombstone(0, key.ledgerId, key.entryId, key.ledgerId, key.entryId + 1));
+            } else {
+                int idx = putsCount * 4;
+                puts[idx] = key.ledgerId;
+                puts[idx + 1] = key.entryId;
+                puts[idx + 2] = ArrayUtil.getLong(e.getValue(), 0);
+                puts[idx + 3] = putsCount;
+                ++putsCount;
+            }
+        }
+
+        writeLocked(puts, putsCount, deletes);
+        // Only removed once the new snapshot holds them
+        pendingWrites.clear();
+        pendingWritesCount = 0;
+        pendingWritesVersion.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Write the content of a batch as a new run, after having recorded its deletions. The buffered single key
+     * writes, issued before the batch, are written first.
+     */
+    private void write(long[] puts, int putsCount, List<Tombstone> deletes) throws IOException {
+        if (putsCount == 0 && deletes.isEmpty()) {
+            return;
+        }
+
+        checkWritable();
+        writeLock.lock();
+        try {
+            checkState(!closed, "Storage is closed");
+            flushPendingWrites();
+            writeLocked(puts, putsCount, deletes);
+        } finally {
+            writeLock.unlock();
+        }
+
+        scheduleMerge();
+    }
+
+    private void writeLocked(long[] puts, int putsCount, List<Tombstone> deletes) throws IOException {
+        if (putsCount == 0 && deletes.isEmpty()) {
+            return;
+        }
+
+        Snapshot s = snapshot;
+        Tombstones tombstones = s.tombstones;
+        Run[] runs = s.runs;
+
+        if (!deletes.isEmpty()) {
+            // Deletions are made durable first, so that a crash can only lose the puts of this batch
+            long seq = nextSeq++;
+            List<Tombstone> added = new ArrayList<>(deletes.size());
+            for (Tombstone t : deletes) {
+                added.add(new Tombstone(seq, t.beginLedgerId, t.beginEntryId, t.endLedgerId, t.endEntryId));
+            }
+            appendTombstones(added);
+            tombstones = tombstones.withAdded(added);
+        }
+
+        if (putsCount > 0) {
+            // Puts get a sequence number greater than the deletions of the same batch. The puts that were
+            // issued before a deletion have already been dropped from the batch.
+            Run run = writeSortedPuts(puts, putsCount, nextSeq++);
+            runs = Arrays.copyOf(runs, runs.length + 1);
+            runs[runs.length - 1] = run;
+        }
+
+        snapshot = new Snapshot(runs, tombstones);
+    }
+
+    private Run writeSortedPuts(long[] puts, int putsCount, long seq) throws IOException {
+        int length = putsCount * 4;
+
+        // ArrayGroupSort compares signed longs while keys are compared as unsigned
+        for (int i = 0; i < length; i += 4) {
+            puts[i] ^= Long.MIN_VALUE;
+            puts[i + 1] ^= Long.MIN_VALUE;
+        }
+        ArrayGroupSort.sort(puts, 0, length);
+
+        RunWriter writer = new RunWriter(seq, seq);
+        try {
+            int i = 0;
+            while (i < length) {
+                // When the same key was put multiple times, the last put wins
+                int last = i;
+                int j = i + 4;
+                while (j < length && puts[j] == puts[i] && puts[j + 1] == puts[i + 1]) {
+                    if (puts[j + 3] > puts[last + 3]) {
+                        last = j;
+                    }
+                    j += 4;
+                }
+
+                writer.append(puts[i] ^ Long.MIN_VALUE, puts[i + 1] ^ Long.MIN_VALUE, puts[last + 2]);
+                i = j;
+            }
+
+            return writer.finish();
+        } catch (IOException e) {
+            writer.abort();
+            throw e;
+        }
+    }
+
+    private void checkWritable() throws IOException {
+        if (readOnly) {
+            throw new IOException("Sorted runs storage " + dbDir + " is opened read-only");
+        }
+    }
+
+    private void scheduleMerge() {
+        if (closed || readOnly) {
+            return;
+        }
+
+        try {
+            mergeExecutor.execute(this::mergeRuns);
+        } catch (RejectedExecutionException e) {
+            // Storage is being closed
+        }
+    }
+
+    private void mergeRuns() {
+        mergeLock.lock();
+        try {
+            while (!closed) {
+                Snapshot s = snapshot;
+                int from = pickMergeCandidate(s.runs);
+                if (from < 0) {
+                    return;
+                }
+
+                merge(s, from, from + 2);
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.error("Failed to merge sorted runs in {}", dbDir, e);
+            }
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    /**
+     * Pick two adjacent runs to merge. A run is merged with the previous one when that one is not bigger, like a
+     * carry in a binary counter. If there are still too many runs, the two adjacent runs with the smallest combined
+     * size are merged.
+     *
+     * @return the index of the older of the two runs to merge or -1 if no merge is needed
+     */
+    private int pickMergeCandidate(Run[] runs) {
+        for (int i = runs.length - 1; i > 0; i--) {
+            if (runs[i - 1].count <= runs[i].count) {
+                return i - 1;
+            }
+        }
+
+        if (runs.length > maxRuns) {
+            int candidate = 0;
+            for (int i = 1; i < runs.length - 1; i++) {
+                if ((long) runs[i].count + runs[i + 1].count
+                        < (long) runs[candidate].count + runs[candidate + 1].count) {
+                    candidate = i;
+                }
+            }
+            return candidate;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Merge the runs [from, to) of the snapshot into a single run.
+     *
+     * <p>Must be called with the merge lock held: only merges remove runs, so the merged runs are still at the same
+     * position when the new snapshot gets installed, while new runs can only have been appended.
+     */
+    private void merge(Snapshot s, int from, int to) throws IOException {
+        Run[] toMerge = Arrays.copyOfRange(s.runs, from, to);
+        long maxSeq = toMerge[toMerge.length - 1].maxSeq;
+
+        RunWriter writer = new RunWriter(toMerge[0].minSeq, maxSeq);
+        Run merged;
+        try {
+            // Apply the tombstones that were written after each run, up to the newest merged run
+            MergingCursor cursor = new MergingCursor(toMerge, s.tombstones, maxSeq, 0, 0, false, 0, 0);
+            while (cursor.hasCurrent()) {
+                writer.append(cursor.ledgerId(), cursor.entryId(), cursor.value());
+                cursor.advance();
+            }
+            merged = writer.finish();
+        } catch (IOException e) {
+            writer.abort();
+            throw e;
+        }
+
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            List<Run> runs = new ArrayList<>(current.runs.length);
+            runs.addAll(Arrays.asList(current.runs).subList(0, from));
+            if (merged.count > 0) {
+                runs.add(merged);
+            }
+            runs.addAll(Arrays.asList(current.runs).subList(to, current.runs.length));
+
+            // Once the oldest run is merged, no run is left that could be hidden by the applied tombstones
+            Tombstones tombstones = from == 0 ? current.tombstones.withoutUpTo(maxSeq) : current.tombstones;
+            snapshot = new Snapshot(runs.toArray(new Run[0]), tombstones);
+
+            // Mapped buffers of the deleted runs are released when the last reader is done with them
+            for (Run run : toMerge) {
+                deleteFile(run.file);
+            }
+            if (merged.count == 0) {
+                deleteFile(merged.file);
+            }
+            if (tombstones != current.tombstones) {
+                // The tombstones file only keeps growing with the deletions until a merge discards some of them
+                rewriteTombstones(tombstones);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Merged {} runs into {} with {} records", toMerge.length, merged.file, merged.count);
+        }
+    }
+
+    private Snapshot recoverReadOnly() throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return recover();
+            } catch (NoSuchFileException e) {
+                if (attempt >= READ_ONLY_OPEN_ATTEMPTS) {
+                    throw e;
+                }
+                log.info("Sorted run {} was removed while opening {}, retrying", e.getFile(), dbDir);
+            }
+        }
+    }
+
+    /**
+     * Load the runs and the tombstones. Unless the storage is read-only, the leftovers of the flushes and merges
+     * interrupted by a crash are deleted.
+     */
+    private Snapshot recover() throws IOException {
+        File[] files = dbDir.listFiles();
+        if (files == null) {
+            throw new IOException("Failed to list directory " + dbDir);
+        }
+
+        List<Run> runs = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TMP_SUFFIX)) {
+                // Leftover of an interrupted flush or merge, or a flush or merge in progress in a running bookie
+                if (!readOnly) {
+                    deleteFile(file);
+                }
+            } else if (name.endsWith(RUN_FILE_SUFFIX)) {
+                Run run = Run.open(file, indexInterval);
+                runs.add(run);
+                nextFileId.set(Math.max(nextFileId.get(), run.fileId + 1));
+            }
+        }
+
+        // A merge could have been interrupted after the merged run was made durable and before the source runs were
+        // deleted. Those are fully contained in the merged run and can be discarded.
+        runs.sort(Comparator.comparingLong((Run r) -> r.minSeq)
+                .thenComparing(r -> r.maxSeq, Comparator.reverseOrder()));
+        List<Run> liveRuns = new ArrayList<>(runs.size());
+        for (Run run : runs) {
+            if (!liveRuns.isEmpty() && run.minSeq <= liveRuns.get(liveRuns.size() - 1).maxSeq) {
+                if (!readOnly) {
+                    log.info("Discarding sorted run {} already merged", run.file);
+                    deleteFile(run.file);
+                }
+            } else {
+                liveRuns.add(run);
+            }
+        }
+
+        Tombstones tombstones = readTombstones();
+        nextSeq = 1;
+        for (Run run : liveRuns) {
+            nextSeq = Math.max(nextSeq, run.maxSeq + 1);
+        }
+        for (Tombstone tombstone : tombstones.items) {
+            nextSeq = Math.max(nextSeq, tombstone.seq + 1);
+        }
+
+        return new Snapshot(liveRuns.toArray(new Run[0]), tombstones);
+    }
+
+    private Tombstones readTombstones() throws IOException {
+        File file = new File(dbDir, TOMBSTONES_FILE);
+        if (!file.exists()) {
+            return Tombstones.EMPTY;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(TOMBSTONES_HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != TOMBSTONES_MAGIC || header.getInt() != TOMBSTONES_FORMAT_VERSION) {
+                throw new IOException("Invalid tombstones file " + file);
+            }
+
+            // A partial record at the end is an append interrupted by a crash, whose batch was not flushed
+            long count = (channel.size() - TOMBSTONES_HEADER_SIZE) / TOMBSTONE_SIZE;
+            if (count > Integer.MAX_VALUE / TOMBSTONE_SIZE) {
+                throw new IOException("Corrupted tombstones file " + file);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) (count * TOMBSTONE_SIZE));
+            readFully(channel, buffer, TOMBSTONES_HEADER_SIZE);
+            buffer.flip();
+            Tombstone[] items = new Tombstone[(int) count];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = new Tombstone(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                        buffer.getLong());
+            }
+            return new Tombstones(items);
+        }
+    }
+
+    /**
+     * Append the tombstones of a deletion batch to the tombstones file. Must be called with the write lock held.
+     */
+    private void appendTombstones(List<Tombstone> tombstones) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(tombstones.size() * TOMBSTONE_SIZE);
+        for (Tombstone t : tombstones) {
+            putTombstone(buffer, t);
+        }
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            tombstonesChannel.write(buffer);
+        }
+        tombstonesChannel.force(false);
+    }
+
+    /**
+     * Replace the tombstones file with one holding only the given tombstones, and reopen it for the next appends.
+     * Must be called with the write lock held, or from the constructor.
+     */
+    private void rewriteTombstones(Tombstones tombstones) throws IOException {
+        File file = new File(dbDir, TOMBSTONES_FILE);
+        File tmpFile = new File(dbDir, TOMBSTONES_FILE + TMP_SUFFIX);
+
+        ByteBuffer buffer = ByteBuffer.allocate(TOMBSTONES_HEADER_SIZE + tombstones.size * TOMBSTONE_SIZE);
+        buffer.putInt(TOMBSTONES_MAGIC);
+        buffer.putInt(TOMBSTONES_FORMAT_VERSION);
+        buffer.putLong(0L);
+        for (Tombstone t : tombstones.items) {
+            putTombstone(buffer, t);
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+
+        if (tombstonesChannel != null) {
+            tombstonesChannel.close();
+        }
+        tombstonesChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void putTombstone(ByteBuffer buffer, Tombstone t) {
+        buffer.putLong(t.seq);
+        buffer.putLong(t.beginLedgerId);
+        buffer.putLong(t.beginEntryId);
+        buffer.putLong(t.endLedgerId);
+        buffer.putLong(t.endEntryId);
+    }
+
+    private static int previousVisible(Tombstones tombstones, Run run, int pos) {
+        while (pos >= 0) {
+            int t = tombstones.find(run.ledgerAt(pos), run.entryAt(pos), run.maxSeq, Long.MAX_VALUE);
+            if (t < 0) {
+                return pos;
+            }
+
+            // Skip all the records hidden by the same tombstone
+            Tombstone tombstone = tombstones.items[t];
+            pos = run.lowerBound(tombstone.beginLedgerId, tombstone.beginEntryId) - 1;
+        }
+        return -1;
+    }
+
+    private static int nextVisible(Tombstones tombstones, Run run, int pos, long afterSeq, long upToSeq) {
+        while (pos < run.count) {
+            int t = tombstones.find(run.ledgerAt(pos), run.entryAt(pos), afterSeq, upToSeq);
+            if (t < 0) {
+                return pos;
+            }
+
+            // Skip all the records hidden by the same tombstone
+            Tombstone tombstone = tombstones.items[t];
+            pos = run.lowerBound(tombstone.endLedgerId, tombstone.endEntryId);
+        }
+        return run.count;
+    }
+
+    static int compareKeys(long ledgerId1, long entryId1, long ledgerId2, long entryId2) {
+        // Keys are compared as the big-endian byte arrays they are serialized to
+        int res = Long.compareUnsigned(ledgerId1, ledgerId2);
+        return res != 0 ? res : Long.compareUnsigned(entryId1, entryId2);
+    }
+
+    private static long countRecords(Snapshot s) {
+        long count = 0;
+        for (Run run : s.runs) {
+            count += run.count;
+        }
+        return count;
+    }
+
+    private static byte[] toKey(long ledgerId, long entryId) {
+        byte[] key = new byte[KEY_SIZE];
+        ArrayUtil.setLong(key, 0, ledgerId);
+        ArrayUtil.setLong(key, 8, entryId);
+        return key;
+    }
+
+    private static Entry<byte[], byte[]> toEntry(Run run, int pos) {
+        byte[] value = new byte[VALUE_SIZE];
+        ArrayUtil.setLong(value, 0, run.valueAt(pos));
+        return new SimpleImmutableEntry<>(toKey(run.ledgerAt(pos), run.entryAt(pos)), value);
+    }
+
+    private static void checkKey(byte[] key) {
+        checkArgument(key.length == KEY_SIZE, "Sorted runs storage only supports 16 bytes keys");
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Make the renames of the directory durable. Forcing a file doesn't persist its name in the parent directory.
+     */
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(dbDir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (!file.delete()) {
+            log.warn("Failed to delete {}", file);
+        }
+    }
+
+    private static final class Snapshot {
+        // From the oldest to the newest
+        final Run[] runs;
+        final Tombstones tombstones;
+
+        Snapshot(Run[] runs, Tombstones tombstones) {
+            this.runs = runs;
+            this.tombstones = tombstones;
+        }
+    }
+
+    private static final class PendingKey implements Comparable<PendingKey> {
+        final long ledgerId;
+        final long entryId;
+
+        PendingKey(long ledgerId, long entryId) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+        }
+
+        @Override
+        public int compareTo(PendingKey other) {
+            return compareKeys(ledgerId, entryId, other.ledgerId, other.entryId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PendingKey)) {
+                return false;
+            }
+            PendingKey other = (PendingKey) obj;
+            return ledgerId == other.ledgerId && entryId == other.entryId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ledgerId) * 31 + Long.hashCode(entryId);
+        }
+    }
+
+    private static final class PendingView {
+        // Version of the buffered writes and snapshot the view was built from
+        final long version;
+        final Snapshot base;
+        final Snapshot snapshot;
+
+        PendingView(long version, Snapshot base, Snapshot snapshot) {
+            this.version = version;
+            this.base = base;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Immutable file of records sorted by key.
+     *
+     * <p>File layout: a 32 bytes header (magic, version, min seq, max seq, records count) followed by the records,
+     * each made of ledgerId, entryId and value. A run produced by a merge covers the sequence numbers of all the
+     * merged runs.
+     */
+    private static final class Run {
+        final File file;
+        final long fileId;
+        final long minSeq;
+        final long maxSeq;
+        final int count;
+
+        private final ByteBuffer[] chunks;
+        private final int indexInterval;
+        private final long[] indexLedgerIds;
+        private final long[] indexEntryIds;
+
+        private Run(File file, long fileId, long minSeq, long maxSeq, int count, ByteBuffer[] chunks,
+                    int indexInterval) {
+            this.file = file;
+            this.fileId = fileId;
+            this.minSeq = minSeq;
+            this.maxSeq = maxSeq;
+            this.count = count;
+            this.chunks = chunks;
+            this.indexInterval = indexInterval;
+
+            int indexSize = (int) ((count + (long) indexInterval - 1) / indexInterval);
+            this.indexLedgerIds = new long[indexSize];
+            this.indexEntryIds = new long[indexSize];
+            for (int i = 0; i < indexSize; i++) {
+                indexLedgerIds[i] = ledgerAt(i * indexInterval);
+                indexEntryIds[i] = entryAt(i * indexInterval);
+            }
+        }
+
+        static Run open(File file, int indexInterval) throws IOException {
+            String name = file.getName();
+            long fileId = Long.parseLong(name.substring(0, name.length() - RUN_FILE_SUFFIX.length()), 16);
+
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(RUN_HEADER_SIZE);
+                readFully(channel, header, 0);
+                header.flip();
+                if (header.getInt() != RUN_MAGIC || header.getInt() != FORMAT_VERSION) {
+                    throw new IOException("Invalid sorted run file " + file);
+                }
+
+                long minSeq = header.getLong();
+                long maxSeq = header.getLong();
+                long count = header.getLong();
+                if (count < 0 || count > Integer.MAX_VALUE
+                        || channel.size() < RUN_HEADER_SIZE + count * RECORD_SIZE) {
+                    throw new IOException("Truncated sorted run file " + file);
+                }
+
+                int chunksCount = (int) ((count + CHUNK_RECORDS - 1) / CHUNK_RECORDS);
+                ByteBuffer[] chunks = new ByteBuffer[chunksCount];
+                for (int i = 0; i < chunksCount; i++) {
+                    long records = Math.min(CHUNK_RECORDS, count - (long) i * CHUNK_RECORDS);
+                    // The mapping stays valid after the channel is closed
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            RUN_HEADER_SIZE + (long) i * CHUNK_RECORDS * RECORD_SIZE, records * RECORD_SIZE);
+                }
+
+                return new Run(file, fileId, minSeq, maxSeq, (int) count, chunks, indexInterval);
+            }
+        }
+
+        long ledgerAt(int pos) {
+            return chunks[pos >>> CHUNK_SHIFT].getLong((pos & CHUNK_MASK) * RECORD_SIZE);
+        }
+
+        long entryAt(int pos) {
+            return chunks[pos >>> CHUNK_SHIFT].getLong((pos & CHUNK_MASK) * RECORD_SIZE + 8);
+        }
+
+        long valueAt(int pos) {
+            return chunks[pos >>> CHUNK_SHIFT].getLong((pos & CHUNK_MASK) * RECORD_SIZE + KEY_SIZE);
+        }
+
+        boolean mayContain(long ledgerId, long entryId) {
+            return count > 0
+                    && compareKeys(ledgerId, entryId, indexLedgerIds[0], indexEntryIds[0]) >= 0
+                    && compareKeys(ledgerId, entryId, ledgerAt(count - 1), entryAt(count - 1)) <= 0;
+        }
+
+        /**
+         * @return the position of the first record whose key is greater or equal than the given key, or
+         *         {@code count} if there is none
+         */
+        int lowerBound(long ledgerId, long entryId) {
+            // First sparse index point whose key is >= than the searched key
+            int low = 0;
+            int high = indexLedgerIds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareKeys(indexLedgerIds[mid], indexEntryIds[mid], ledgerId, entryId) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            // The searched position is within the block preceding that index point
+            low = Math.max(0, (low - 1) * indexInterval);
+            high = high == indexLedgerIds.length ? count : high * indexInterval;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareKeys(ledgerAt(mid), entryAt(mid), ledgerId, entryId) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Writes a new run. Records must be appended in key order.
+     */
+    private final class RunWriter implements Closeable {
+        private final File file;
+        private final File tmpFile;
+        private final long fileId;
+        private final long minSeq;
+        private final long maxSeq;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private long position = RUN_HEADER_SIZE;
+        private long count = 0;
+
+        RunWriter(long minSeq, long maxSeq) throws IOException {
+            this.fileId = nextFileId.getAndIncrement();
+            this.minSeq = minSeq;
+            this.maxSeq = maxSeq;
+            this.file = new File(dbDir, String.format("%016x%s", fileId, RUN_FILE_SUFFIX));
+            this.tmpFile = new File(dbDir, file.getName() + TMP_SUFFIX);
+            this.channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void append(long ledgerId, long entryId, long value) throws IOException {
+            if (buffer.remaining() < RECORD_SIZE) {
+                flushBuffer();
+            }
+
+            buffer.putLong(ledgerId);
+            buffer.putLong(entryId);
+            buffer.putLong(value);
+            ++count;
+        }
+
+        Run finish() throws IOException {
+            if (count > Integer.MAX_VALUE) {
+                throw new IOException("Too many records in sorted run " + file);
+            }
+            flushBuffer();
+
+            buffer.putInt(RUN_MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putLong(minSeq);
+            buffer.putLong(maxSeq);
+            buffer.putLong(count);
+            buffer.flip();
+            long headerPosition = 0;
+            while (buffer.hasRemaining()) {
+                headerPosition += channel.write(buffer, headerPosition);
+            }
+
+            channel.force(true);
+            channel.close();
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+            return Run.open(file, indexInterval);
+        }
+
+        void abort() {
+            try {
+                close();
+            } catch (IOException e) {
+                log.warn("Failed to close {}", tmpFile, e);
+            }
+            if (tmpFile.exists()) {
+                deleteFile(tmpFile);
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Iterates over the union of multiple runs in key order, returning only the newest version of each key and
+     * skipping the records hidden by a tombstone.
+     */
+    private static final class MergingCursor {
+        private final Run[] runs;
+        private final int[] positions;
+        private final Tombstones tombstones;
+        private final long upToSeq;
+        private final boolean bounded;
+        private final long endLedgerId;
+        private final long endEntryId;
+        private int current;
+
+        /**
+         * @param upToSeq only consider the tombstones up to this sequence number
+         * @param bounded whether the iteration stops at the (non-inclusive) end key
+         */
+        MergingCursor(Run[] runs, Tombstones tombstones, long upToSeq, long startLedgerId, long startEntryId,
+                      boolean bounded, long endLedgerId, long endEntryId) {
+            this.runs = runs;
+            this.positions = new int[runs.length];
+            this.tombstones = tombstones;
+            this.upToSeq = upToSeq;
+            this.bounded = bounded;
+            this.endLedgerId = endLedgerId;
+            this.endEntryId = endEntryId;
+
+            for (int i = 0; i < runs.length; i++) {
+                positions[i] = nextVisible(tombstones, runs[i], runs[i].lowerBound(startLedgerId, startEntryId),
+                        runs[i].maxSeq, upToSeq);
+            }
+            findCurrent();
+        }
+
+        boolean hasCurrent() {
+            return current >= 0;
+        }
+
+        long ledgerId() {
+            return runs[current].ledgerAt(positions[current]);
+        }
+
+        long entryId() {
+            return runs[current].entryAt(positions[current]);
+        }
+
+        long value() {
+            return runs[current].valueAt(positions[current]);
+        }
+
+        void advance() {
+            long ledgerId = ledgerId();
+            long entryId = entryId();
+            for (int i = 0; i < runs.length; i++) {
+                Run run = runs[i];
+                int pos = positions[i];
+                if (pos < run.count && run.ledgerAt(pos) == ledgerId && run.entryAt(pos) == entryId) {
+                    positions[i] = nextVisible(tombstones, run, pos + 1, run.maxSeq, upToSeq);
+                }
+            }
+            findCurrent();
+        }
+
+        private void findCurrent() {
+            current = -1;
+            // Go from the newest run so that it wins when the same key is present in multiple runs
+            for (int i = runs.length - 1; i >= 0; i--) {
+                Run run = runs[i];
+                int pos = positions[i];
+                if (pos < run.count && (current < 0 || compareKeys(run.ledgerAt(pos), run.entryAt(pos),
+                        ledgerId(), entryId()) < 0)) {
+                    current = i;
+                }
+            }
+
+            if (current >= 0 && bounded && compareKeys(ledgerId(), entryId(), endLedgerId, endEntryId) >= 0) {
+                current = -1;
+            }
+        }
+    }
+
+    /**
+     * Deletion of the key range [begin, end), hiding the records of the runs older than its sequence number.
+     */
+    private static final class Tombstone {
+        final long seq;
+        final long beginLedgerId;
+        final long beginEntryId;
+        final long endLedgerId;
+        final long endEntryId;
+
+        Tombstone(long seq, long beginLedgerId, long beginEntryId, long endLedgerId, long endEntryId) {
+            this.seq = seq;
+            this.beginLedgerId = beginLedgerId;
+            this.beginEntryId = beginEntryId;
+            this.endLedgerId = endLedgerId;
+            this.endEntryId = endEntryId;
+        }
+
+        boolean covers(long ledgerId, long entryId) {
+            return compareKeys(beginLedgerId, beginEntryId, ledgerId, entryId) <= 0
+                    && compareKeys(endLedgerId, endEntryId, ledgerId, entryId) > 0;
+        }
+    }
+
+    /**
+     * Immutable set of tombstones, sorted by begin key.
+     */
+    private static final class Tombstones {
+        static final Tombstones EMPTY = new Tombstones(new Tombstone[0]);
+
+        final Tombstone[] items;
+        final int size;
+
+        // Max end key among the tombstones [0, i], used to stop searching for a covering tombstone early
+        private final long[] maxEndLedgerIds;
+        private final long[] maxEndEntryIds;
+
+        Tombstones(Tombstone[] items) {
+            Arrays.sort(items, (a, b) -> compareKeys(a.beginLedgerId, a.beginEntryId, b.beginLedgerId,
+                    b.beginEntryId));
+            this.items = items;
+            this.size = items.length;
+            this.maxEndLedgerIds = new long[size];
+            this.maxEndEntryIds = new long[size];
+            for (int i = 0; i < size; i++) {
+                Tombstone t = items[i];
+                if (i == 0 || compareKeys(t.endLedgerId, t.endEntryId, maxEndLedgerIds[i - 1],
+                        maxEndEntryIds[i - 1]) > 0) {
+                    maxEndLedgerIds[i] = t.endLedgerId;
+                    maxEndEntryIds[i] = t.endEntryId;
+                } else {
+                    maxEndLedgerIds[i] = maxEndLedgerIds[i - 1];
+                    maxEndEntryIds[i] = maxEndEntryIds[i - 1];
+                }
+            }
+        }
+
+        /**
+         * Find a tombstone covering the key, with afterSeq < seq <= upToSeq.
+         *
+         * @return the index of the tombstone or -1 if the key is not covered
+         */
+        int find(long ledgerId, long entryId, long afterSeq, long upToSeq) {
+            if (size == 0) {
+                return -1;
+            }
+
+            // Number of tombstones starting before or at the key
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareKeys(items[mid].beginLedgerId, items[mid].beginEntryId, ledgerId, entryId) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            for (int i = low - 1; i >= 0; i--) {
+                if (compareKeys(maxEndLedgerIds[i], maxEndEntryIds[i], ledgerId, entryId) <= 0) {
+                    // None of the remaining tombstones reaches the key
+                    break;
+                }
+
+                Tombstone t = items[i];
+                if (t.seq > afterSeq && t.seq <= upToSeq && t.covers(ledgerId, entryId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Tombstones withAdded(List<Tombstone> added) {
+            List<Tombstone> newItems = new ArrayList<>(size + added.size());
+            newItems.addAll(Arrays.asList(items));
+            newItems.addAll(added);
+            return new Tombstones(newItems.toArray(new Tombstone[0]));
+        }
+
+        Tombstones withoutUpTo(long seq) {
+            List<Tombstone> newItems = new ArrayList<>(size);
+            for (Tombstone t : items) {
+                if (t.seq > seq) {
+                    newItems.add(t);
+                }
+            }
+            return newItems.size() == size ? this : new Tombstones(newItems.toArray(new Tombstone[0]));
+        }
+    }
+
+    private class SortedRunsBatch implements Batch {
+        // Groups of 4 longs: ledgerId, entryId, value and insertion order
+        private long[] puts = new long[4 * 1024];
+        private int putsCount = 0;
+        private long order = 0;
+        private final List<Tombstone> deletes = new ArrayList<>();
+
+        @Override
+        public void put(byte[] key, byte[] value) throws IOException {
+            checkKey(key);
+            checkArgument(value.length == VALUE_SIZE, "Sorted runs storage only supports 8 bytes values");
+
+            int idx = putsCount * 4;
+            if (idx == puts.length) {
+                puts = Arrays.copyOf(puts, puts.length * 2);
+            }
+            puts[idx] = ArrayUtil.getLong(key, 0);
+            puts[idx + 1] = ArrayUtil.getLong(key, 8);
+            puts[idx + 2] = ArrayUtil.getLong(value, 0);
+            puts[idx + 3] = order++;
+            ++putsCount;
+            flushIfNeeded();
+        }
+
+        @Override
+        public void putAll(long[] items, int count) throws IOException {
+            // The items already have the layout of the puts, copy them in chunks that fit in the batch
+            int copied = 0;
+            while (copied < count) {
+                int chunk = Math.min(count - copied, Math.max(1, maxBatchSize - batchCount()));
+                int idx = putsCount * 4;
+                if (idx + chunk * 4 > puts.length) {
+                    puts = Arrays.copyOf(puts, Math.max(puts.length * 2, idx + chunk * 4));
+                }
+                System.arraycopy(items, copied * 4, puts, idx, chunk * 4);
+                for (int i = idx + 3; i < idx + chunk * 4; i += 4) {
+                    puts[i] = order++;
+                }
+                putsCount += chunk;
+                copied += chunk;
+                flushIfNeeded();
+            }
+        }
+
+        @Override
+        public void remove(byte[] key) throws IOException {
+            checkKey(key);
+            long ledgerId = ArrayUtil.getLong(key, 0);
+            long entryId = ArrayUtil.getLong(key, 8);
+            if (entryId != -1L) {
+                addDelete(ledgerId, entryId, ledgerId, entryId + 1);
+            } else {
+                addDelete(ledgerId, entryId, ledgerId + 1, 0);
+            }
+        }
+
+        @Override
+        public void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+            checkKey(beginKey);
+            checkKey(endKey);
+            addDelete(ArrayUtil.getLong(beginKey, 0), ArrayUtil.getLong(beginKey, 8),
+                    ArrayUtil.getLong(endKey, 0), ArrayUtil.getLong(endKey, 8));
+        }
+
+        private void addDelete(long beginLedgerId, long beginEntryId, long endLedgerId, long endEntryId)
+                throws IOException {
+            if (compareKeys(beginLedgerId, beginEntryId, endLedgerId, endEntryId) >= 0) {
+                return;
+            }
+
+            Tombstone tombstone = new Tombstone(0, beginLedgerId, beginEntryId, endLedgerId, endEntryId);
+
+            // Drop the puts of this batch that are overridden by the deletion
+            int length = putsCount * 4;
+            int kept = 0;
+            for (int i = 0; i < length; i += 4) {
+                if (!tombstone.covers(puts[i], puts[i + 1])) {
+                    if (kept != i) {
+                        System.arraycopy(puts, i, puts, kept, 4);
+                    }
+                    kept += 4;
+                }
+            }
+            putsCount = kept / 4;
+
+            deletes.add(tombstone);
+            flushIfNeeded();
+        }
+
+        private void flushIfNeeded() throws IOException {
+            if (batchCount() >= maxBatchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public void clear() {
+            putsCount = 0;
+            order = 0;
+            deletes.clear();
+        }
+
+        @Override
+        public int batchCount() {
+            return putsCount + deletes.size();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            try {
+                write(puts, putsCount, deletes);
+            } finally {
+                clear();
+            }
+        }
+
+        @Override
+        public void close() {
+            clear();
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(KeyValueStorageSortedRuns.class);
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MathUtils;
+
+/**
+ * Tracks the reads of a single ledger to size the read-ahead.
+ *
+ * <p>Sequential readers get a read-ahead window that doubles at each sequential read, up to a max size, while
+ * random accesses shrink the window until read-ahead is disabled for the ledger. When a sequential reader gets
+ * close to the end of the entries that were already prefetched, the next batch is prefetched, so that a catch-up
+ * reader does not have to wait for a cache miss.
+ *
+ * <p>It also keeps track of the prefetched entries that were actually read, and estimates the bytes that were
+ * wasted by prefetching entries that were never read.
+ */
+class LedgerReadPattern {
+
+    // Max distance between 2 reads to still consider them sequential
+    private static final int MAX_SEQUENTIAL_GAP = 2;
+
+    private static final long STALE_TIME_NANOS = TimeUnit.MINUTES.toNanos(
+            TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES);
+
+    private final DbLedgerStorageStats stats;
+    private final int initialWindow;
+    private final int maxWindow;
+
+    private long lastEntryId = -1;
+    private int window;
+
+    // Range of prefetched entries [prefetchStartEntryId, prefetchEndEntryId)
+    private long prefetchStartEntryId = -1;
+    private long prefetchEndEntryId = -1;
+    private boolean prefetchInProgress = false;
+    private long prefetchedEntries = 0;
+    private long prefetchedBytes = 0;
+
+    private volatile long lastAccessNanos;
+
+    /**
+     * Read-ahead to issue after a read.
+     */
+    static final class PrefetchRequest {
+        final long firstEntryId;
+        // Location of the first entry or -1 if it has to be looked up in the locations index
+        final long firstEntryLocation;
+        final int maxEntries;
+
+        PrefetchRequest(long firstEntryId, long firstEntryLocation, int maxEntries) {
+            this.firstEntryId = firstEntryId;
+            this.firstEntryLocation = firstEntryLocation;
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    LedgerReadPattern(int initialWindow, int maxWindow, DbLedgerStorageStats stats) {
+        this.stats = stats;
+        this.initialWindow = initialWindow;
+        this.maxWindow = Math.max(initialWindow, maxWindow);
+        this.window = initialWindow;
+        this.lastAccessNanos = MathUtils.nowInNano();
+    }
+
+    /**
+     * Record a read served from the read cache.
+     *
+     * @return the read-ahead to issue or null
+     */
+    synchronized PrefetchRequest recordCacheHit(long entryId) {
+        boolean prefetchHit = entryId >= prefetchStartEntryId && entryId < prefetchEndEntryId;
+        if (prefetchHit) {
+            stats.getReadAheadPrefetchHitCounter().inc();
+        }
+        updatePattern(entryId);
+
+        // Prefetch the next batch once the reader has consumed half of the prefetched entries
+        if (prefetchHit && window > 0 && !prefetchInProgress
+                && entryId >= prefetchEndEntryId - Math.max(1, window / 2)) {
+            return startPrefetch(prefetchEndEntryId, -1);
+        }
+        return null;
+    }
+
+    /**
+     * Record a read that had to go to the entry log.
+     *
+     * @param nextEntryLocation the location in the entry log following the entry that was read
+     * @return the read-ahead to issue or null
+     */
+    synchronized PrefetchRequest recordCacheMiss(long entryId, long nextEntryLocation) {
+        updatePattern(entryId);
+
+        if (window > 0 && !prefetchInProgress) {
+            return startPrefetch(entryId + 1, nextEntryLocation);
+        }
+        return null;
+    }
+
+    /**
+     * Record the completion of a prefetch started by {@link #recordCacheHit} or {@link #recordCacheMiss}.
+     */
+    synchronized void prefetchCompleted(long firstEntryId, int entries, long bytes) {
+        prefetchInProgress = false;
+        if (firstEntryId != prefetchEndEntryId) {
+            // Not a continuation of the previous prefetch
+            prefetchStartEntryId = firstEntryId;
+        }
+        prefetchEndEntryId = firstEntryId + entries;
+        prefetchedEntries += entries;
+        prefetchedBytes += bytes;
+        stats.getReadAheadPrefetchedEntriesCounter().addCount(entries);
+    }
+
+    synchronized int getWindow() {
+        return window;
+    }
+
+    boolean isStale() {
+        return MathUtils.elapsedNanos(lastAccessNanos) > STALE_TIME_NANOS;
+    }
+
+    private void updatePattern(long entryId) {
+        lastAccessNanos = MathUtils.nowInNano();
+
+        boolean sequential = lastEntryId >= 0 && entryId > lastEntryId
+                && entryId - lastEntryId <= MAX_SEQUENTIAL_GAP;
+        if (sequential) {
+            window = Math.min(maxWindow, Math.max(initialWindow, window * 2));
+        } else if (lastEntryId >= 0) {
+            // Random access: the prefetched entries that were not read yet will likely never be
+            if (entryId < prefetchStartEntryId || entryId >= prefetchEndEntryId) {
+                long unread = prefetchEndEntryId - Math.max(prefetchStartEntryId, lastEntryId + 1);
+                if (unread > 0 && prefetchedEntries > 0) {
+                    stats.getReadAheadWastedBytesCounter().addCount(unread * (prefetchedBytes / prefetchedEntries));
+                }
+                prefetchStartEntryId = -1;
+                prefetchEndEntryId = -1;
+            }
+            window /= 4;
+        }
+
+        lastEntryId = entryId;
+    }
+
+    private PrefetchRequest startPrefetch(long firstEntryId, long firstEntryLocation) {
+        prefetchInProgress = true;
+        return new PrefetchRequest(firstEntryId, firstEntryLocation, window);
+    }
+}
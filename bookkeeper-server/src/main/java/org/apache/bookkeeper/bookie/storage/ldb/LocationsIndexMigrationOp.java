@@ -0,0 +1,145 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.BookieImpl;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.time.DurationFormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copy the locations index from one storage type to the storage type configured with
+ * {@link ServerConfiguration#getEntryLocationIndexStorage()}.
+ *
+ * <p>The existing index is opened read-only and copied to a temporary directory, which is swapped in once the copy
+ * is complete. If the copy fails, the temporary directory is deleted and the existing index is left untouched. The
+ * existing index is moved to a backup directory, which is left in place once the migration is done.
+ */
+public class LocationsIndexMigrationOp {
+    private final ServerConfiguration conf;
+    private final String sourceStorage;
+
+    public LocationsIndexMigrationOp(ServerConfiguration conf, String sourceStorage) {
+        this.conf = conf;
+        this.sourceStorage = sourceStorage;
+    }
+
+    private static final int BATCH_COMMIT_SIZE = 100_000;
+
+    private static final String LOCATIONS = "locations";
+    private static final String MIGRATION_TMP = "locations.MIGRATION-tmp";
+
+    public void initiate() throws IOException {
+        KeyValueStorageFactory targetFactory = EntryLocationIndex.getStorageFactory(conf);
+        if (EntryLocationIndex.getStorageFactory(sourceStorage) == targetFactory) {
+            throw new IOException("Locations index is already configured to use " + sourceStorage + " storage");
+        }
+        KeyValueStorageFactory sourceFactory = EntryLocationIndex.getReadOnlyStorageFactory(sourceStorage);
+
+        LOG.info("Starting locations index migration from {} to {}", sourceStorage,
+                conf.getEntryLocationIndexStorage());
+        File[] indexDirs = conf.getIndexDirs();
+        if (indexDirs == null) {
+            indexDirs = conf.getLedgerDirs();
+        }
+
+        long startTime = System.nanoTime();
+        for (File indexDir : indexDirs) {
+            String iBasePath = BookieImpl.getCurrentDirectory(indexDir).toString();
+            Path indexCurrentPath = FileSystems.getDefault().getPath(iBasePath, LOCATIONS);
+            Path tmpPath = FileSystems.getDefault().getPath(iBasePath, MIGRATION_TMP);
+            // Leftover of a previous migration that failed
+            deleteRecursively(tmpPath);
+
+            long count = 0;
+            try {
+                try (KeyValueStorage source = sourceFactory.newKeyValueStorage(iBasePath, LOCATIONS,
+                             DbConfigType.EntryLocation, conf);
+                     KeyValueStorage target = targetFactory.newKeyValueStorage(iBasePath, MIGRATION_TMP,
+                             DbConfigType.EntryLocation, conf);
+                     CloseableIterator<Entry<byte[], byte[]>> iterator = source.iterator();
+                     Batch batch = target.newBatch()) {
+                    while (iterator.hasNext()) {
+                        Entry<byte[], byte[]> entry = iterator.next();
+                        batch.put(entry.getKey(), entry.getValue());
+
+                        if (++count % BATCH_COMMIT_SIZE == 0) {
+                            batch.flush();
+                            batch.clear();
+                            LOG.info("Migrated {} locations in {}", count, iBasePath);
+                        }
+                    }
+
+                    batch.flush();
+                    target.sync();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Failed to migrate locations index in {}, leaving it unchanged", iBasePath, e);
+                deleteRecursively(tmpPath);
+                throw e;
+            }
+
+            String backupName = "locations.BACKUP-"
+                    + new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date());
+            Path backupPath = FileSystems.getDefault().getPath(iBasePath, backupName);
+            Files.move(indexCurrentPath, backupPath, StandardCopyOption.ATOMIC_MOVE);
+            try {
+                Files.move(tmpPath, indexCurrentPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOG.error("Failed to swap in the migrated locations index in {}, restoring the previous one",
+                        iBasePath, e);
+                Files.move(backupPath, indexCurrentPath, StandardCopyOption.ATOMIC_MOVE);
+                deleteRecursively(tmpPath);
+                throw e;
+            }
+
+            LOG.info("Completed migration of {} locations in {}, previous index moved to {}", count, iBasePath,
+                    backupPath);
+        }
+
+        LOG.info("Migrating locations index is done. Total time: {}",
+                DurationFormatUtils.formatDurationHMS(
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (Files.exists(path)) {
+            FileUtils.deleteDirectory(path.toFile());
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocationsIndexMigrationOp.class);
+}
@@ -20,6 +20,7 @@
  */
 package org.apache.bookkeeper.bookie.storage.ldb;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.bookkeeper.bookie.storage.ldb.WriteCache.align64;
 
 import io.netty.buffer.ByteBuf;
@@ -30,6 +31,7 @@ import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
@@ -45,186 +47,308 @@ import org.slf4j.LoggerFactory;
  * ring-buffer fashion. When the read cache is full, the oldest segment
  * is cleared and rotated to make space for new entries to be added to
  * the read cache.
+ *
+ * <p>With a protected ratio greater than 0, the cache uses a segmented LRU eviction instead: the memory is split
+ * between a probationary ring, where all the new entries are inserted, and a protected ring. An entry that is read
+ * a second time while in the probationary ring is promoted to the protected ring, and an entry that is read while
+ * in the oldest segment of the protected ring gets moved to the current one, to survive its rotation. Entries
+ * inserted by the read-ahead are not counted as read until they are actually read. This way a large
+ * sequential scan only churns the probationary ring, and does not evict the entries that are read many times, like
+ * the tail of ledgers with multiple readers.
  */
 public class ReadCache implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(ReadCache.class);
 
-    private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
-
-    private final List<ByteBuf> cacheSegments;
-    private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
+    static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
 
-    private int currentSegmentIdx;
-    private final AtomicInteger currentSegmentOffset = new AtomicInteger(0);
+    // Set in the entry size stored in the index once the entry has been read
+    private static final long ACCESSED_FLAG = 1L << 32;
 
-    private final int segmentSize;
+    // Where new entries are inserted. It's the whole cache when the segmented LRU is disabled
+    private final SegmentRing probationRing;
+    // Where re-read entries are promoted, or null when the segmented LRU is disabled
+    private final SegmentRing protectedRing;
 
     private ByteBufAllocator allocator;
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize) {
         this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
     }
 
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, 0);
+    }
+
+    /**
+     * @param protectedRatio the fraction of the cache memory reserved to the entries that are read more than once,
+     *                       or 0 to use a plain FIFO eviction
+     */
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, double protectedRatio) {
+        checkArgument(protectedRatio >= 0 && protectedRatio < 1, "Invalid protected ratio %s", protectedRatio);
         this.allocator = allocator;
-        int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
-        segmentSize = (int) (maxCacheSize / segmentsCount);
-
-        cacheSegments = new ArrayList<>();
-        cacheIndexes = new ArrayList<>();
-
-        for (int i = 0; i < segmentsCount; i++) {
-            cacheSegments.add(Unpooled.directBuffer(segmentSize, segmentSize));
-            ConcurrentLongLongPairHashMap concurrentLongLongPairHashMap = ConcurrentLongLongPairHashMap.newBuilder()
-                    .expectedItems(4096)
-                    .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
-                    .build();
-            cacheIndexes.add(concurrentLongLongPairHashMap);
+        if (protectedRatio > 0) {
+            long protectedSize = (long) (maxCacheSize * protectedRatio);
+            probationRing = new SegmentRing(maxCacheSize - protectedSize, maxSegmentSize);
+            protectedRing = new SegmentRing(protectedSize, maxSegmentSize);
+        } else {
+            probationRing = new SegmentRing(maxCacheSize, maxSegmentSize);
+            protectedRing = null;
         }
     }
 
     @Override
     public void close() {
-        cacheSegments.forEach(ReferenceCountUtil::safeRelease);
+        probationRing.close();
+        if (protectedRing != null) {
+            protectedRing.close();
+        }
     }
 
     public void put(long ledgerId, long entryId, ByteBuf entry) {
-        int entrySize = entry.readableBytes();
-        int alignedSize = align64(entrySize);
+        put(ledgerId, entryId, entry, false);
+    }
 
-        lock.readLock().lock();
+    /**
+     * @param accessed whether the entry is inserted after being read, rather than being read-ahead
+     */
+    public void put(long ledgerId, long entryId, ByteBuf entry, boolean accessed) {
+        probationRing.put(ledgerId, entryId, entry, accessed);
+    }
 
-        try {
-            if (entrySize > segmentSize) {
-                log.warn("entrySize {} > segmentSize {}, skip update read cache!", entrySize, segmentSize);
-                return;
-            }
-            int offset = currentSegmentOffset.getAndAdd(alignedSize);
-            if (offset + entrySize > segmentSize) {
-                // Roll-over the segment (outside the read-lock)
-            } else {
-                // Copy entry into read cache segment
-                cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(),
-                        entry.readableBytes());
-                cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
-                return;
-            }
-        } finally {
-            lock.readLock().unlock();
+    public ByteBuf get(long ledgerId, long entryId) {
+        if (protectedRing == null) {
+            return probationRing.get(ledgerId, entryId, allocator, null);
         }
 
-        // We could not insert in segment, we to get the write lock and roll-over to
-        // next segment
-        lock.writeLock().lock();
-
-        try {
-            int offset = currentSegmentOffset.getAndAdd(entrySize);
-            if (offset + entrySize > segmentSize) {
-                // Rollover to next segment
-                currentSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
-                currentSegmentOffset.set(alignedSize);
-                cacheIndexes.get(currentSegmentIdx).clear();
-                offset = 0;
-            }
-
-            // Copy entry into read cache segment
-            cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(), entry.readableBytes());
-            cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
-        } finally {
-            lock.writeLock().unlock();
+        ByteBuf entry = protectedRing.get(ledgerId, entryId, allocator, protectedRing);
+        if (entry != null) {
+            return entry;
         }
+
+        return probationRing.get(ledgerId, entryId, allocator, protectedRing);
     }
 
-    public ByteBuf get(long ledgerId, long entryId) {
-        lock.readLock().lock();
-
-        try {
-            // We need to check all the segments, starting from the current one and looking
-            // backward to minimize the
-            // checks for recently inserted entries
-            int size = cacheSegments.size();
-            for (int i = 0; i < size; i++) {
-                int segmentIdx = (currentSegmentIdx + (size - i)) % size;
-
-                LongPair res = cacheIndexes.get(segmentIdx).get(ledgerId, entryId);
-                if (res != null) {
-                    int entryOffset = (int) res.first;
-                    int entryLen = (int) res.second;
-
-                    ByteBuf entry = allocator.buffer(entryLen, entryLen);
-                    entry.writeBytes(cacheSegments.get(segmentIdx), entryOffset, entryLen);
-                    return entry;
-                }
+    public boolean hasEntry(long ledgerId, long entryId) {
+        return probationRing.hasEntry(ledgerId, entryId)
+                || (protectedRing != null && protectedRing.hasEntry(ledgerId, entryId));
+    }
+
+    /**
+     * @return the total size of cached entries
+     */
+    public long size() {
+        return probationRing.size() + (protectedRing != null ? protectedRing.size() : 0);
+    }
+
+    /**
+     * @return the total number of cached entries
+     */
+    public long count() {
+        return probationRing.count() + (protectedRing != null ? protectedRing.count() : 0);
+    }
+
+    /**
+     * Ring of memory segments, each one with the index of the entries it contains.
+     */
+    private static class SegmentRing {
+        private final List<ByteBuf> cacheSegments;
+        private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
+        // Bytes of the entries moved out of each segment, which are not cached there anymore
+        private final AtomicLongArray movedBytes;
+
+        private int currentSegmentIdx;
+        private final AtomicInteger currentSegmentOffset = new AtomicInteger(0);
+
+        private final int segmentSize;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        SegmentRing(long maxCacheSize, int maxSegmentSize) {
+            int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
+            segmentSize = (int) (maxCacheSize / segmentsCount);
+
+            cacheSegments = new ArrayList<>();
+            cacheIndexes = new ArrayList<>();
+
+            for (int i = 0; i < segmentsCount; i++) {
+                cacheSegments.add(Unpooled.directBuffer(segmentSize, segmentSize));
+                ConcurrentLongLongPairHashMap concurrentLongLongPairHashMap = ConcurrentLongLongPairHashMap
+                        .newBuilder()
+                        .expectedItems(4096)
+                        .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+                        .build();
+                cacheIndexes.add(concurrentLongLongPairHashMap);
             }
-        } finally {
-            lock.readLock().unlock();
+            movedBytes = new AtomicLongArray(segmentsCount);
         }
 
-        // Entry not found in any segment
-        return null;
-    }
+        void close() {
+            cacheSegments.forEach(ReferenceCountUtil::safeRelease);
+        }
 
-    public boolean hasEntry(long ledgerId, long entryId) {
-        lock.readLock().lock();
+        void put(long ledgerId, long entryId, ByteBuf entry, boolean accessed) {
+            int entrySize = entry.readableBytes();
+            int alignedSize = align64(entrySize);
+            long indexedSize = accessed ? (entrySize | ACCESSED_FLAG) : entrySize;
 
-        try {
-            int size = cacheSegments.size();
-            for (int i = 0; i < size; i++) {
-                int segmentIdx = (currentSegmentIdx + (size - i)) % size;
+            lock.readLock().lock();
 
-                LongPair res = cacheIndexes.get(segmentIdx).get(ledgerId, entryId);
-                if (res != null) {
-                    return true;
+            try {
+                if (entrySize > segmentSize) {
+                    log.warn("entrySize {} > segmentSize {}, skip update read cache!", entrySize, segmentSize);
+                    return;
+                }
+                int offset = currentSegmentOffset.getAndAdd(alignedSize);
+                if (offset + entrySize > segmentSize) {
+                    // Roll-over the segment (outside the read-lock)
+                } else {
+                    // Copy entry into read cache segment
+                    cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(),
+                            entry.readableBytes());
+                    cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, indexedSize);
+                    return;
                 }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            // We could not insert in segment, we to get the write lock and roll-over to
+            // next segment
+            lock.writeLock().lock();
+
+            try {
+                int offset = currentSegmentOffset.getAndAdd(entrySize);
+                if (offset + entrySize > segmentSize) {
+                    // Rollover to next segment
+                    currentSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
+                    currentSegmentOffset.set(alignedSize);
+                    cacheIndexes.get(currentSegmentIdx).clear();
+                    movedBytes.set(currentSegmentIdx, 0);
+                    offset = 0;
+                }
+
+                // Copy entry into read cache segment
+                cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(),
+                        entry.readableBytes());
+                cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, indexedSize);
+            } finally {
+                lock.writeLock().unlock();
             }
-        } finally {
-            lock.readLock().unlock();
         }
 
-        // Entry not found in any segment
-        return false;
-    }
+        /**
+         * @param promoteTo the ring where to move the entry when it is read again, this ring to move the entries
+         *                  read in its oldest segment to the current one, or null to never move the entries
+         */
+        ByteBuf get(long ledgerId, long entryId, ByteBufAllocator allocator, SegmentRing promoteTo) {
+            ByteBuf entry = null;
+            boolean promote = false;
+            lock.readLock().lock();
+
+            try {
+                // We need to check all the segments, starting from the current one and looking
+                // backward to minimize the
+                // checks for recently inserted entries
+                int size = cacheSegments.size();
+                for (int i = 0; i < size; i++) {
+                    int segmentIdx = (currentSegmentIdx + (size - i)) % size;
+
+                    LongPair res = cacheIndexes.get(segmentIdx).get(ledgerId, entryId);
+                    if (res != null) {
+                        int entryOffset = (int) res.first;
+                        int entryLen = (int) res.second;
+
+                        entry = allocator.buffer(entryLen, entryLen);
+                        entry.writeBytes(cacheSegments.get(segmentIdx), entryOffset, entryLen);
+
+                        if (promoteTo == this) {
+                            promote = i == size - 1;
+                        } else if (promoteTo != null) {
+                            promote = (res.second & ACCESSED_FLAG) != 0;
+                            if (!promote) {
+                                cacheIndexes.get(segmentIdx).put(ledgerId, entryId, res.first,
+                                        res.second | ACCESSED_FLAG);
+                            }
+                        }
+
+                        // Only keep the copy of the entry in the ring it is moved to. If the entry is read
+                        // concurrently, only the thread removing it from the index moves it
+                        if (promote) {
+                            promote = cacheIndexes.get(segmentIdx).remove(ledgerId, entryId, res.first, res.second);
+                            if (promote) {
+                                movedBytes.addAndGet(segmentIdx, align64(entryLen));
+                            }
+                        }
+                        break;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
 
-    /**
-     * @return the total size of cached entries
-     */
-    public long size() {
-        lock.readLock().lock();
-
-        try {
-            long size = 0;
-            for (int i = 0; i < cacheIndexes.size(); i++) {
-                if (i == currentSegmentIdx) {
-                    size += currentSegmentOffset.get();
-                } else if (!cacheIndexes.get(i).isEmpty()) {
-                    size += segmentSize;
-                } else {
-                    // the segment is empty
+            if (promote) {
+                promoteTo.put(ledgerId, entryId, entry, true);
+            }
+
+            // Null if the entry was not found in any segment
+            return entry;
+        }
+
+        boolean hasEntry(long ledgerId, long entryId) {
+            lock.readLock().lock();
+
+            try {
+                int size = cacheSegments.size();
+                for (int i = 0; i < size; i++) {
+                    int segmentIdx = (currentSegmentIdx + (size - i)) % size;
+
+                    LongPair res = cacheIndexes.get(segmentIdx).get(ledgerId, entryId);
+                    if (res != null) {
+                        return true;
+                    }
                 }
+            } finally {
+                lock.readLock().unlock();
             }
 
-            return size;
-        } finally {
-            lock.readLock().unlock();
+            // Entry not found in any segment
+            return false;
         }
-    }
 
-    /**
-     * @return the total number of cached entries
-     */
-    public long count() {
-        lock.readLock().lock();
+        long size() {
+            lock.readLock().lock();
+
+            try {
+                long size = 0;
+                for (int i = 0; i < cacheIndexes.size(); i++) {
+                    if (i == currentSegmentIdx) {
+                        size += currentSegmentOffset.get() - movedBytes.get(i);
+                    } else if (!cacheIndexes.get(i).isEmpty()) {
+                        size += segmentSize - movedBytes.get(i);
+                    } else {
+                        // the segment is empty
+                    }
+                }
 
-        try {
-            long count = 0;
-            for (int i = 0; i < cacheIndexes.size(); i++) {
-                count += cacheIndexes.get(i).size();
+                return size;
+            } finally {
+                lock.readLock().unlock();
             }
+        }
 
-            return count;
-        } finally {
-            lock.readLock().unlock();
+        long count() {
+            lock.readLock().lock();
+
+            try {
+                long count = 0;
+                for (int i = 0; i < cacheIndexes.size(); i++) {
+                    count += cacheIndexes.get(i).size();
+                }
+
+                return count;
+            } finally {
+                lock.readLock().unlock();
+            }
         }
     }
 }
@@ -31,23 +31,30 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.FileRegion;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.PrimitiveIterator.OfLong;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.BookieException;
@@ -64,6 +71,7 @@ import org.apache.bookkeeper.bookie.LedgerCache;
 import org.apache.bookkeeper.bookie.LedgerDirsManager;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
 import org.apache.bookkeeper.bookie.LedgerEntryPage;
+import org.apache.bookkeeper.bookie.ReadLatencyTracker;
 import org.apache.bookkeeper.bookie.StateManager;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
 import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorageDataFormats.LedgerData;
@@ -99,11 +107,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final GarbageCollectorThread gcThread;
 
-    // Write cache where all new entries are inserted into
-    protected volatile WriteCache writeCache;
-
-    // Write cache that is used to swap with writeCache during flushes
-    protected volatile WriteCache writeCacheBeingFlushed;
+    // Ring of write caches. New entries are inserted into the cache of the active epoch, while the caches of the
+    // epochs in [flushedEpoch, activeEpoch) are sealed and waiting to be flushed. The caches of the other epochs are
+    // empty and can be rotated in without waiting for a flush.
+    private final WriteCache[] writeCaches;
+    private volatile long activeEpoch = 0;
+    private volatile long flushedEpoch = 0;
 
     // Cache where we insert entries for speculative reading
     private final ReadCache readCache;
@@ -113,7 +122,6 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     protected final ReentrantLock flushMutex = new ReentrantLock();
 
     protected final AtomicBoolean hasFlushBeenTriggered = new AtomicBoolean(false);
-    private final AtomicBoolean isFlushOngoing = new AtomicBoolean(false);
 
     private static String dbStoragerExecutorName = "db-storage";
     private final ExecutorService executor = Executors.newSingleThreadExecutor(
@@ -124,6 +132,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 }
             });
 
+    private static String readAheadExecutorName = "db-storage-read-ahead";
+    // Executor used for the asynchronous prefetch of the adaptive read-ahead, null when disabled
+    private final ExecutorService readAheadExecutor;
+
     // Executor used to for db index cleanup
     private final ScheduledExecutorService cleanupExecutor = Executors
             .newSingleThreadScheduledExecutor(new DefaultThreadFactory("db-storage-cleanup"));
@@ -142,11 +154,29 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     private final long maxThrottleTimeNanos;
 
     private final DbLedgerStorageStats dbLedgerStorageStats;
+    // Latency of the reads from the entry log, to adapt the compaction rate
+    private final ReadLatencyTracker entryLogReadLatencyTracker = new ReadLatencyTracker();
 
     private static final long DEFAULT_MAX_THROTTLE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
 
     private final long maxReadAheadBytesSize;
 
+    private final boolean adaptiveReadAhead;
+    private final int maxAdaptiveReadAheadBatchSize;
+    private final ConcurrentLongHashMap<LedgerReadPattern> readPatterns;
+    private final LongFunction<LedgerReadPattern> readPatternProvider;
+
+    static final String READ_CACHE_EVICTION_POLICY_FIFO = "fifo";
+    static final String READ_CACHE_EVICTION_POLICY_SLRU = "slru";
+    private static final double DEFAULT_READ_CACHE_PROTECTED_RATIO = 0.8;
+
+    private static final int DEFAULT_WRITE_CACHE_BUFFERS = 2;
+
+    private static final int DEFAULT_ADAPTIVE_READ_AHEAD_MAX_BATCH_SIZE_MULTIPLIER = 10;
+    private static final int DEFAULT_ADAPTIVE_READ_AHEAD_THREADS = 1;
+    // Max number of prefetches waiting for a read-ahead thread, further ones are skipped
+    private static final int MAX_PENDING_ADAPTIVE_READ_AHEADS = 1000;
+
     private final Counter flushExecutorTime;
     private final boolean singleLedgerDirs;
 
@@ -178,8 +208,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 .scopeLabel("indexDir", indexBaseDir);
 
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        int writeCacheBuffers = conf.getInt(DbLedgerStorage.WRITE_CACHE_BUFFERS, DEFAULT_WRITE_CACHE_BUFFERS);
+        checkArgument(writeCacheBuffers >= 2, "At least 2 write cache buffers are required, got %s",
+                writeCacheBuffers);
+        // Each buffer must be able to hold the largest entry, otherwise such an entry can never be added
+        int maxEntrySize = conf.getNettyMaxFrameSizeBytes();
+        int maxWriteCacheBuffers = (int) Math.max(2, Math.min(writeCacheBuffers, writeCacheMaxSize / maxEntrySize));
+        if (writeCacheBuffers > maxWriteCacheBuffers) {
+            log.warn("Using {} write cache buffers instead of {}, so that each one can hold an entry of {} bytes",
+                    maxWriteCacheBuffers, writeCacheBuffers, maxEntrySize);
+            writeCacheBuffers = maxWriteCacheBuffers;
+        }
+        this.writeCaches = new WriteCache[writeCacheBuffers];
+        for (int i = 0; i < writeCacheBuffers; i++) {
+            writeCaches[i] = new WriteCache(allocator, writeCacheMaxSize / writeCacheBuffers);
+        }
         this.singleLedgerDirs = conf.getLedgerDirs().length == 1;
 
         readCacheMaxSize = readCacheSize;
@@ -189,16 +232,53 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         // Do not attempt to perform read-ahead more than half the total size of the cache
         maxReadAheadBytesSize = readCacheMaxSize / 2;
 
+        this.adaptiveReadAhead = conf.getBoolean(DbLedgerStorage.READ_AHEAD_ADAPTIVE_ENABLED, false);
+        this.maxAdaptiveReadAheadBatchSize = conf.getInt(DbLedgerStorage.READ_AHEAD_ADAPTIVE_MAX_BATCH_SIZE,
+                readAheadCacheBatchSize * DEFAULT_ADAPTIVE_READ_AHEAD_MAX_BATCH_SIZE_MULTIPLIER);
+        if (adaptiveReadAhead) {
+            int readAheadThreads = conf.getInt(DbLedgerStorage.READ_AHEAD_ADAPTIVE_THREADS,
+                    DEFAULT_ADAPTIVE_READ_AHEAD_THREADS);
+            this.readAheadExecutor = new ThreadPoolExecutor(readAheadThreads, readAheadThreads,
+                    0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_ADAPTIVE_READ_AHEADS),
+                    new DefaultThreadFactory(readAheadExecutorName) {
+                        @Override
+                        protected Thread newThread(Runnable r, String name) {
+                            return super.newThread(ThreadRegistry.registerThread(r, readAheadExecutorName), name);
+                        }
+                    });
+            this.readPatterns = ConcurrentLongHashMap.<LedgerReadPattern>newBuilder()
+                    .expectedItems(16 * 1024)
+                    .concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
+                    .build();
+            log.info("Adaptive read-ahead enabled with max batch size {} and {} threads",
+                    maxAdaptiveReadAheadBatchSize, readAheadThreads);
+        } else {
+            this.readAheadExecutor = null;
+            this.readPatterns = null;
+        }
+
         long maxThrottleTimeMillis = conf.getLong(DbLedgerStorage.MAX_THROTTLE_TIME_MILLIS,
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        String readCacheEvictionPolicy = conf.getString(DbLedgerStorage.READ_CACHE_EVICTION_POLICY,
+                READ_CACHE_EVICTION_POLICY_FIFO);
+        double readCacheProtectedRatio;
+        if (READ_CACHE_EVICTION_POLICY_FIFO.equals(readCacheEvictionPolicy)) {
+            readCacheProtectedRatio = 0;
+        } else if (READ_CACHE_EVICTION_POLICY_SLRU.equals(readCacheEvictionPolicy)) {
+            readCacheProtectedRatio = conf.getDouble(DbLedgerStorage.READ_CACHE_PROTECTED_RATIO,
+                    DEFAULT_READ_CACHE_PROTECTED_RATIO);
+        } else {
+            throw new IllegalArgumentException("Unknown read cache eviction policy: " + readCacheEvictionPolicy);
+        }
+        readCache = new ReadCache(allocator, readCacheMaxSize, ReadCache.DEFAULT_MAX_SEGMENT_SIZE,
+                readCacheProtectedRatio);
 
         ledgerIndex = new LedgerMetadataIndex(conf,
                 KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
         entryLocationIndex = new EntryLocationIndex(conf,
-                KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+                EntryLocationIndex.getStorageFactory(conf), indexBaseDir, ledgerIndexDirStatsLogger);
 
         transientLedgerInfoCache = ConcurrentLongHashMap.<TransientLedgerInfo>newBuilder()
                 .expectedItems(16 * 1024)
@@ -214,11 +294,26 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         dbLedgerStorageStats = new DbLedgerStorageStats(
             ledgerIndexDirStatsLogger,
-            () -> writeCache.size() + writeCacheBeingFlushed.size(),
-            () -> writeCache.count() + writeCacheBeingFlushed.count(),
+            () -> {
+                long size = 0;
+                for (WriteCache cache : writeCaches) {
+                    size += cache.size();
+                }
+                return size;
+            },
+            () -> {
+                long count = 0;
+                for (WriteCache cache : writeCaches) {
+                    count += cache.count();
+                }
+                return count;
+            },
+            () -> activeEpoch - flushedEpoch + 1,
             () -> readCache.size(),
             () -> readCache.count()
         );
+        readPatternProvider = ledgerId -> new LedgerReadPattern(readAheadCacheBatchSize, maxAdaptiveReadAheadBatchSize,
+                dbLedgerStorageStats);
 
         flushExecutorTime = ledgerIndexDirStatsLogger.getThreadScopedCounter("db-storage-thread-time");
 
@@ -263,6 +358,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
             return isStale;
         });
+
+        if (readPatterns != null) {
+            readPatterns.removeIf((ledgerId, readPattern) -> readPattern.isStale());
+        }
     }
 
     @Override
@@ -342,6 +441,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         try {
             flush();
 
+            if (readAheadExecutor != null) {
+                readAheadExecutor.shutdownNow();
+                readAheadExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+
             gcThread.shutdown();
             entryLogger.close();
 
@@ -351,8 +455,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             ledgerIndex.close();
             entryLocationIndex.close();
 
-            writeCache.close();
-            writeCacheBeingFlushed.close();
+            for (WriteCache cache : writeCaches) {
+                cache.close();
+            }
             readCache.close();
             executor.shutdown();
 
@@ -381,26 +486,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return false;
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
-        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
-        long stamp = writeCacheRotationLock.tryOptimisticRead();
-        WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-        if (!writeCacheRotationLock.validate(stamp)) {
-            // Fallback to regular read lock approach
-            stamp = writeCacheRotationLock.readLock();
-            try {
-                localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
+        // We need to try to read from all the write caches that were not flushed yet, since recent entries could be
+        // found in any of them. The write caches are already thread safe on their own and a write cache is only
+        // cleared after its entries are persisted, so reading the flushed epoch before the active one is enough to
+        // not miss an entry.
+        boolean inCache = false;
+        long firstEpoch = flushedEpoch;
+        long lastEpoch = activeEpoch;
+        for (long epoch = lastEpoch; epoch >= firstEpoch && epoch > lastEpoch - writeCaches.length; epoch--) {
+            if (getWriteCache(epoch).hasEntry(ledgerId, entryId)) {
+                inCache = true;
+                break;
             }
         }
 
-        boolean inCache = localWriteCache.hasEntry(ledgerId, entryId)
-             || localWriteCacheBeingFlushed.hasEntry(ledgerId, entryId)
-             || readCache.hasEntry(ledgerId, entryId);
+        inCache = inCache || readCache.hasEntry(ledgerId, entryId);
 
         if (inCache) {
             return true;
@@ -486,7 +586,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         // If the stamp is 0, the lock was exclusively acquired, validation will fail, and we can skip this put.
         if (stamp != 0) {
-            inserted = writeCache.put(ledgerId, entryId, entry);
+            inserted = getWriteCache(activeEpoch).put(ledgerId, entryId, entry);
         }
 
         if (stamp == 0 || !writeCacheRotationLock.validate(stamp)) {
@@ -495,14 +595,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             // without being sure about this last entry being flushed or not.
             stamp = writeCacheRotationLock.readLock();
             try {
-                inserted = writeCache.put(ledgerId, entryId, entry);
+                inserted = getWriteCache(activeEpoch).put(ledgerId, entryId, entry);
             } finally {
                 writeCacheRotationLock.unlockRead(stamp);
             }
         }
 
         if (!inserted) {
-            triggerFlushAndAddEntry(ledgerId, entryId, entry);
+            rotateAndAddEntry(ledgerId, entryId, entry);
         }
 
         // after successfully insert the entry, update LAC and notify the watchers
@@ -512,42 +612,43 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return entryId;
     }
 
-    private void triggerFlushAndAddEntry(long ledgerId, long entryId, ByteBuf entry)
+    private void rotateAndAddEntry(long ledgerId, long entryId, ByteBuf entry)
             throws IOException, BookieException {
-        long throttledStartTime = MathUtils.nowInNano();
-        dbLedgerStorageStats.getThrottledWriteRequests().inc();
-        long absoluteTimeoutNanos = System.nanoTime() + maxThrottleTimeNanos;
-
-        while (System.nanoTime() < absoluteTimeoutNanos) {
-            // Write cache is full, we need to trigger a flush so that it gets rotated
-            // If the flush has already been triggered or flush has already switched the
-            // cache, we don't need to trigger another flush
-            if (!isFlushOngoing.get() && hasFlushBeenTriggered.compareAndSet(false, true)) {
-                // Trigger an early flush in background
-                log.info("Write cache is full, triggering flush");
-                executor.execute(() -> {
-                        long startTime = System.nanoTime();
-                        try {
-                            flush();
-                        } catch (IOException e) {
-                            log.error("Error during flush", e);
-                        } finally {
-                            flushExecutorTime.addLatency(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                        }
-                    });
-            }
+        long throttledStartTime = -1;
 
+        while (true) {
+            long epoch;
             long stamp = writeCacheRotationLock.readLock();
             try {
-                if (writeCache.put(ledgerId, entryId, entry)) {
-                    // We succeeded in putting the entry in write cache in the
-                    recordSuccessfulEvent(dbLedgerStorageStats.getThrottledWriteStats(), throttledStartTime);
+                epoch = activeEpoch;
+                if (getWriteCache(epoch).put(ledgerId, entryId, entry)) {
+                    if (throttledStartTime >= 0) {
+                        // We succeeded in putting the entry in write cache after waiting for a flush
+                        dbLedgerStorageStats.getThrottledWriteTime().addLatency(
+                                MathUtils.elapsedNanos(throttledStartTime), TimeUnit.NANOSECONDS);
+                        recordSuccessfulEvent(dbLedgerStorageStats.getThrottledWriteStats(), throttledStartTime);
+                    }
                     return;
                 }
             } finally {
                 writeCacheRotationLock.unlockRead(stamp);
             }
 
+            // The active write cache is full, move on to the next one if it was already flushed and trigger the
+            // flush of the full ones in background. Adds are only throttled when all the write caches are full.
+            boolean rotated = rotateWriteCache(epoch);
+            triggerFlush();
+            if (rotated) {
+                continue;
+            }
+
+            if (throttledStartTime < 0) {
+                throttledStartTime = MathUtils.nowInNano();
+                dbLedgerStorageStats.getThrottledWriteRequests().inc();
+            } else if (MathUtils.elapsedNanos(throttledStartTime) > maxThrottleTimeNanos) {
+                break;
+            }
+
             // Wait some time and try again
             try {
                 Thread.sleep(1);
@@ -559,15 +660,35 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         // Timeout expired and we weren't able to insert in write cache
         dbLedgerStorageStats.getRejectedWriteRequests().inc();
+        dbLedgerStorageStats.getThrottledWriteTime().addLatency(
+                MathUtils.elapsedNanos(throttledStartTime), TimeUnit.NANOSECONDS);
         recordFailedEvent(dbLedgerStorageStats.getThrottledWriteStats(), throttledStartTime);
         throw new OperationRejectedException();
     }
 
+    private void triggerFlush() {
+        // If the flush has already been triggered and did not start yet, we don't need to trigger another flush
+        if (hasFlushBeenTriggered.compareAndSet(false, true)) {
+            // Trigger an early flush in background
+            log.info("Write cache is full, triggering flush");
+            executor.execute(() -> {
+                    long startTime = System.nanoTime();
+                    try {
+                        flushFullWriteCaches();
+                    } catch (IOException e) {
+                        log.error("Error during flush", e);
+                    } finally {
+                        flushExecutorTime.addLatency(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                    }
+                });
+        }
+    }
+
     @Override
     public ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException {
         long startTime = MathUtils.nowInNano();
         try {
-            ByteBuf entry = doGetEntry(ledgerId, entryId);
+            ByteBuf entry = (ByteBuf) doGetEntry(ledgerId, entryId, -1);
             recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
             return entry;
         } catch (IOException e) {
@@ -576,7 +697,32 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
-    private ByteBuf doGetEntry(long ledgerId, long entryId) throws IOException, BookieException {
+    /**
+     * Read an entry, or get the region of the entry log holding it when it is neither in the write caches nor in
+     * the read cache. The region doesn't go through the read cache and doesn't trigger read-ahead: the page cache
+     * already reads ahead the file sent to the socket. Smaller entries are read from the same location, as with
+     * {@link #getEntry(long, long)}.
+     */
+    @Override
+    public ReferenceCounted getEntryOrRegion(long ledgerId, long entryId, int minEntrySize)
+            throws IOException, BookieException {
+        long startTime = MathUtils.nowInNano();
+        try {
+            ReferenceCounted entry = doGetEntry(ledgerId, entryId, minEntrySize);
+            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+            return entry;
+        } catch (IOException e) {
+            recordFailedEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Read an entry, or get its region if it is read from the entry log and is at least minRegionSize bytes. A
+     * negative minRegionSize always reads the entry.
+     */
+    private ReferenceCounted doGetEntry(long ledgerId, long entryId, int minRegionSize)
+            throws IOException, BookieException {
         if (log.isDebugEnabled()) {
             log.debug("Get Entry: {}@{}", ledgerId, entryId);
         }
@@ -585,43 +731,29 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return getLastEntry(ledgerId);
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
-        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
-        long stamp = writeCacheRotationLock.tryOptimisticRead();
-        WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-        if (!writeCacheRotationLock.validate(stamp)) {
-            // Fallback to regular read lock approach
-            stamp = writeCacheRotationLock.readLock();
-            try {
-                localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
+        // First try to read from the write caches of recent entries, from the newest to the oldest. If there are
+        // flushes pending, the entry might be in one of the full write caches waiting to be flushed.
+        ByteBuf entry;
+        long firstEpoch = flushedEpoch;
+        long lastEpoch = activeEpoch;
+        for (long epoch = lastEpoch; epoch >= firstEpoch && epoch > lastEpoch - writeCaches.length; epoch--) {
+            entry = getWriteCache(epoch).get(ledgerId, entryId);
+            if (entry != null) {
+                dbLedgerStorageStats.getWriteCacheHitCounter().inc();
+                return entry;
             }
         }
 
-        // First try to read from the write cache of recent entries
-        ByteBuf entry = localWriteCache.get(ledgerId, entryId);
-        if (entry != null) {
-            dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-            return entry;
-        }
-
-        // If there's a flush going on, the entry might be in the flush buffer
-        entry = localWriteCacheBeingFlushed.get(ledgerId, entryId);
-        if (entry != null) {
-            dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-            return entry;
-        }
-
         dbLedgerStorageStats.getWriteCacheMissCounter().inc();
 
         // Try reading from read-ahead cache
         entry = readCache.get(ledgerId, entryId);
         if (entry != null) {
             dbLedgerStorageStats.getReadCacheHitCounter().inc();
+            if (adaptiveReadAhead) {
+                LedgerReadPattern readPattern = getOrAddReadPattern(ledgerId);
+                scheduleReadAhead(ledgerId, readPattern, readPattern.recordCacheHit(entryId));
+            }
             return entry;
         }
 
@@ -645,22 +777,99 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         long readEntryStartNano = MathUtils.nowInNano();
         try {
-            entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
+            if (minRegionSize >= 0) {
+                ReferenceCounted entryOrRegion = entryLogger.readEntryOrRegion(ledgerId, entryId, entryLocation,
+                        minRegionSize);
+                if (entryOrRegion instanceof FileRegion) {
+                    dbLedgerStorageStats.getZeroCopyReadCounter().inc();
+                    return entryOrRegion;
+                }
+                entry = (ByteBuf) entryOrRegion;
+            } else {
+                entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
+            }
         } finally {
-            dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
-                    MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
+            long readEntryNanos = MathUtils.elapsedNanos(readEntryStartNano);
+            dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(readEntryNanos, TimeUnit.NANOSECONDS);
+            entryLogReadLatencyTracker.recordRead(readEntryNanos);
         }
 
-        readCache.put(ledgerId, entryId, entry);
+        readCache.put(ledgerId, entryId, entry, true);
 
         // Try to read more entries
         long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
-        fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
+        if (adaptiveReadAhead) {
+            LedgerReadPattern readPattern = getOrAddReadPattern(ledgerId);
+            scheduleReadAhead(ledgerId, readPattern, readPattern.recordCacheMiss(entryId, nextEntryLocation));
+        } else {
+            fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation, readAheadCacheBatchSize);
+        }
 
         return entry;
     }
 
-    private void fillReadAheadCache(long originalLedgerId, long firstEntryId, long firstEntryLocation) {
+    private LedgerReadPattern getOrAddReadPattern(long ledgerId) {
+        return readPatterns.computeIfAbsent(ledgerId, readPatternProvider);
+    }
+
+    /**
+     * Issue the read-ahead decided by the read pattern of the ledger, off the read thread.
+     */
+    private void scheduleReadAhead(long ledgerId, LedgerReadPattern readPattern,
+                                   LedgerReadPattern.PrefetchRequest request) {
+        if (request == null) {
+            return;
+        }
+
+        try {
+            readAheadExecutor.execute(() -> {
+                int count = 0;
+                long size = 0;
+                try {
+                    long firstEntryLocation = request.firstEntryLocation;
+                    if (firstEntryLocation < 0) {
+                        firstEntryLocation = entryLocationIndex.getLocation(ledgerId, request.firstEntryId);
+                    }
+                    if (firstEntryLocation != 0) {
+                        ReadAheadResult result = fillReadAheadCache(ledgerId, request.firstEntryId,
+                                firstEntryLocation, request.maxEntries);
+                        count = result.count;
+                        size = result.size;
+                    }
+                } catch (Throwable t) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Exception during adaptive read ahead for ledger: {}", ledgerId, t);
+                    }
+                } finally {
+                    readPattern.prefetchCompleted(request.firstEntryId, count, size);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Too many read-aheads pending, skip this one
+            readPattern.prefetchCompleted(request.firstEntryId, 0, 0);
+        }
+    }
+
+    /**
+     * Number of entries and bytes inserted in the read cache by a read-ahead.
+     */
+    private static final class ReadAheadResult {
+        final int count;
+        final long size;
+
+        ReadAheadResult(int count, long size) {
+            this.count = count;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Read the entries following an entry of a ledger in the same entry log, and insert them in the read cache.
+     *
+     * @return the number of entries and bytes read
+     */
+    private ReadAheadResult fillReadAheadCache(long originalLedgerId, long firstEntryId, long firstEntryLocation,
+                                    int maxEntries) {
         long readAheadStartNano = MathUtils.nowInNano();
         int count = 0;
         long size = 0;
@@ -670,7 +879,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             long currentEntryLogId = firstEntryLogId;
             long currentEntryLocation = firstEntryLocation;
 
-            while (chargeReadAheadCache(count, size) && currentEntryLogId == firstEntryLogId) {
+            while (chargeReadAheadCache(count, size, maxEntries) && currentEntryLogId == firstEntryLogId) {
                 ByteBuf entry = entryLogger.readEntry(originalLedgerId,
                         firstEntryId, currentEntryLocation);
 
@@ -706,11 +915,17 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             dbLedgerStorageStats.getReadAheadTime().addLatency(
                     MathUtils.elapsedNanos(readAheadStartNano), TimeUnit.NANOSECONDS);
         }
+        return new ReadAheadResult(count, size);
     }
 
     protected boolean chargeReadAheadCache(int currentReadAheadCount, long currentReadAheadBytes) {
+        return chargeReadAheadCache(currentReadAheadCount, currentReadAheadBytes, readAheadCacheBatchSize);
+    }
+
+    protected boolean chargeReadAheadCache(int currentReadAheadCount, long currentReadAheadBytes,
+                                           int maxReadAheadCount) {
         // compatible with old logic
-        boolean chargeSizeCondition = currentReadAheadCount < readAheadCacheBatchSize
+        boolean chargeSizeCondition = currentReadAheadCount < maxReadAheadCount
                 && currentReadAheadBytes < maxReadAheadBytesSize;
         if (chargeSizeCondition && readAheadCacheBatchBytesSize > 0) {
             // exact limits limit the size and count for each batch
@@ -722,42 +937,24 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     public ByteBuf getLastEntry(long ledgerId) throws IOException, BookieException {
         throwIfLimbo(ledgerId);
 
-        long stamp = writeCacheRotationLock.readLock();
-        try {
-            // First try to read from the write cache of recent entries
-            ByteBuf entry = writeCache.getLastEntry(ledgerId);
+        // First try to read from the write caches of recent entries, from the newest to the oldest, since the last
+        // entry of a ledger is in the newest write cache that has entries of the ledger
+        long firstEpoch = flushedEpoch;
+        long lastEpoch = activeEpoch;
+        for (long epoch = lastEpoch; epoch >= firstEpoch && epoch > lastEpoch - writeCaches.length; epoch--) {
+            ByteBuf entry = getWriteCache(epoch).getLastEntry(ledgerId);
             if (entry != null) {
                 if (log.isDebugEnabled()) {
                     long foundLedgerId = entry.readLong(); // ledgerId
                     long entryId = entry.readLong();
                     entry.resetReaderIndex();
-                    if (log.isDebugEnabled()) {
-                        log.debug("Found last entry for ledger {} in write cache: {}@{}", ledgerId, foundLedgerId,
-                                entryId);
-                    }
-                }
-
-                dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-                return entry;
-            }
-
-            // If there's a flush going on, the entry might be in the flush buffer
-            entry = writeCacheBeingFlushed.getLastEntry(ledgerId);
-            if (entry != null) {
-                if (log.isDebugEnabled()) {
-                    entry.readLong(); // ledgerId
-                    long entryId = entry.readLong();
-                    entry.resetReaderIndex();
-                    if (log.isDebugEnabled()) {
-                        log.debug("Found last entry for ledger {} in write cache being flushed: {}", ledgerId, entryId);
-                    }
+                    log.debug("Found last entry for ledger {} in write cache of epoch {}: {}@{}", ledgerId, epoch,
+                            foundLedgerId, entryId);
                 }
 
                 dbLedgerStorageStats.getWriteCacheHitCounter().inc();
                 return entry;
             }
-        } finally {
-            writeCacheRotationLock.unlockRead(stamp);
         }
 
         dbLedgerStorageStats.getWriteCacheMissCounter().inc();
@@ -775,8 +972,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         long readEntryStartNano = MathUtils.nowInNano();
         ByteBuf content = entryLogger.readEntry(ledgerId, lastEntryId, entryLocation);
-        dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
-                MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
+        long readEntryNanos = MathUtils.elapsedNanos(readEntryStartNano);
+        dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(readEntryNanos, TimeUnit.NANOSECONDS);
+        entryLogReadLatencyTracker.recordRead(readEntryNanos);
         return content;
     }
 
@@ -784,7 +982,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     boolean isFlushRequired() {
         long stamp = writeCacheRotationLock.readLock();
         try {
-            return !writeCache.isEmpty();
+            return flushedEpoch != activeEpoch || !getWriteCache(activeEpoch).isEmpty();
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
         }
@@ -809,50 +1007,23 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
 
         try {
-            if (writeCache.isEmpty()) {
-                return;
-            }
-            // Swap the write cache so that writes can continue to happen while the flush is
-            // ongoing
-            swapWriteCache();
-
-            long sizeToFlush = writeCacheBeingFlushed.size();
-            if (log.isDebugEnabled()) {
-                log.debug("Flushing entries. count: {} -- size {} Mb", writeCacheBeingFlushed.count(),
-                        sizeToFlush / 1024.0 / 1024);
+            // Seal the active write cache so that writes can continue to happen on the next one while the flush is
+            // ongoing. If all the write caches are full, the sealed ones need to be flushed first.
+            long sizeFlushed = 0;
+            if (!sealActiveWriteCache()) {
+                sizeFlushed += flushSealedWriteCaches();
+                checkState(sealActiveWriteCache(), "Write cache could not be sealed after flush");
             }
 
-            // Write all the pending entries into the entry logger and collect the offset
-            // position for each entry
-
-            Batch batch = entryLocationIndex.newBatch();
-            writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
-                long location = entryLogger.addEntry(ledgerId, entry);
-                entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
-            });
-
-            long entryLoggerStart = MathUtils.nowInNano();
-            entryLogger.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
-
-            long batchFlushStartTime = MathUtils.nowInNano();
-            batch.flush();
-            batch.close();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
-            if (log.isDebugEnabled()) {
-                log.debug("DB batch flushed time : {} s",
-                        MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+            if (flushedEpoch == activeEpoch) {
+                // Nothing to flush
+                return;
             }
 
-            long ledgerIndexStartTime = MathUtils.nowInNano();
-            ledgerIndex.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLedgerIndexStats(), ledgerIndexStartTime);
+            long sizeToFlush = sizeFlushed + flushSealedWriteCaches();
 
             lastCheckpoint = thisCheckpoint;
 
-            // Discard all the entry from the write cache, since they're now persisted
-            writeCacheBeingFlushed.clear();
-
             double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
             double flushThroughput = sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds;
 
@@ -882,8 +1053,6 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                         log.warn("Failed to cleanup db indexes", t);
                     }
                 });
-
-                isFlushOngoing.set(false);
             } finally {
                 flushMutex.unlock();
             }
@@ -891,26 +1060,165 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     }
 
     /**
-     * Swap the current write cache with the replacement cache.
+     * Locations of the entries written by a flush, in groups of 4 longs: ledgerId, entryId, location and an unused
+     * long, to be added to the locations index in bulk.
+     */
+    @VisibleForTesting
+    static final class FlushedLocations {
+        long[] locations;
+        int count = 0;
+
+        FlushedLocations(int expectedCount) {
+            this.locations = new long[4 * Math.max(1, expectedCount)];
+        }
+
+        void add(long ledgerId, long entryId, long location) {
+            int idx = count * 4;
+            if (idx == locations.length) {
+                // Entries can still be added to a write cache while it is being flushed
+                locations = Arrays.copyOf(locations, locations.length * 2);
+            }
+            locations[idx] = ledgerId;
+            locations[idx + 1] = entryId;
+            locations[idx + 2] = location;
+            ++count;
+        }
+    }
+
+    private WriteCache getWriteCache(long epoch) {
+        return writeCaches[(int) (epoch % writeCaches.length)];
+    }
+
+    /**
+     * Move on to the write cache of the next epoch, if it is free, after the write cache of the given epoch is full.
+     *
+     * @return true if the active epoch is not the given one anymore
+     */
+    private boolean rotateWriteCache(long fullEpoch) {
+        long stamp = writeCacheRotationLock.writeLock();
+        try {
+            if (activeEpoch != fullEpoch) {
+                // Already rotated by another thread
+                return true;
+            }
+            if (activeEpoch - flushedEpoch >= writeCaches.length - 1) {
+                // All the other write caches are waiting to be flushed
+                return false;
+            }
+            activeEpoch++;
+            return true;
+        } finally {
+            writeCacheRotationLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Seal the active write cache, if not empty, so that it can be flushed.
+     *
+     * @return false if all the write caches are full and the active one could not be sealed
      */
-    private void swapWriteCache() {
+    private boolean sealActiveWriteCache() {
         long stamp = writeCacheRotationLock.writeLock();
         try {
-            // First, swap the current write-cache map with an empty one so that writes will
-            // go on unaffected. Only a single flush is happening at the same time
-            WriteCache tmp = writeCacheBeingFlushed;
-            writeCacheBeingFlushed = writeCache;
-            writeCache = tmp;
-
-            // Set to true before updating hasFlushBeenTriggered to false.
-            isFlushOngoing.set(true);
-            // since the cache is switched, we can allow flush to be triggered
+            if (!getWriteCache(activeEpoch).isEmpty()) {
+                if (activeEpoch - flushedEpoch >= writeCaches.length - 1) {
+                    return false;
+                }
+                activeEpoch++;
+            }
+
+            // Since the write caches to flush are now sealed, we can allow flush to be triggered for the next ones
             hasFlushBeenTriggered.set(false);
+            return true;
         } finally {
             writeCacheRotationLock.unlockWrite(stamp);
         }
     }
 
+    /**
+     * Write the entries of the sealed write caches into the entry logger and the locations index, then release the
+     * write caches. Must be called with the flush mutex held.
+     *
+     * @return the number of bytes flushed
+     */
+    private long flushSealedWriteCaches() throws IOException {
+        long firstEpoch = flushedEpoch;
+        long endEpoch = activeEpoch;
+
+        long sizeToFlush = 0;
+        long countToFlush = 0;
+        for (long epoch = firstEpoch; epoch < endEpoch; epoch++) {
+            sizeToFlush += getWriteCache(epoch).size();
+            countToFlush += getWriteCache(epoch).count();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Flushing entries of {} write caches. count: {} -- size {} Mb", endEpoch - firstEpoch,
+                    countToFlush, sizeToFlush / 1024.0 / 1024);
+        }
+
+        // Write all the pending entries into the entry logger and collect the offset
+        // position for each entry, to add all of them to the locations index in a single call
+        FlushedLocations flushedLocations = new FlushedLocations((int) countToFlush);
+        for (long epoch = firstEpoch; epoch < endEpoch; epoch++) {
+            getWriteCache(epoch).forEach((ledgerId, entryId, entry) -> {
+                long location = entryLogger.addEntry(ledgerId, entry);
+                flushedLocations.add(ledgerId, entryId, location);
+            });
+        }
+
+        long entryLoggerStart = MathUtils.nowInNano();
+        entryLogger.flush();
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
+
+        long batchFlushStartTime = MathUtils.nowInNano();
+        Batch batch = entryLocationIndex.newBatch();
+        entryLocationIndex.addLocations(batch, flushedLocations.locations, flushedLocations.count);
+        batch.flush();
+        batch.close();
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
+        if (log.isDebugEnabled()) {
+            log.debug("DB batch flushed time : {} s",
+                    MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        long ledgerIndexStartTime = MathUtils.nowInNano();
+        ledgerIndex.flush();
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushLedgerIndexStats(), ledgerIndexStartTime);
+
+        // Discard all the entry from the write caches, since they're now persisted, and make them available for
+        // the next rotations
+        for (long epoch = firstEpoch; epoch < endEpoch; epoch++) {
+            getWriteCache(epoch).clear();
+        }
+        flushedEpoch = endEpoch;
+        return sizeToFlush;
+    }
+
+    /**
+     * Flush the write caches that were sealed when they got full, leaving the active one open to the adds.
+     */
+    private void flushFullWriteCaches() throws IOException {
+        flushMutex.lock();
+        long startTime = MathUtils.nowInNano();
+        try {
+            // The write caches that are sealed from now on need another flush
+            hasFlushBeenTriggered.set(false);
+            if (flushedEpoch == activeEpoch) {
+                // Already flushed by a checkpoint
+                return;
+            }
+
+            long sizeFlushed = flushSealedWriteCaches();
+            recordSuccessfulEvent(dbLedgerStorageStats.getFlushStats(), startTime);
+            dbLedgerStorageStats.getFlushSizeStats().registerSuccessfulValue(sizeFlushed);
+        } catch (IOException e) {
+            recordFailedEvent(dbLedgerStorageStats.getFlushStats(), startTime);
+            throw e;
+        } finally {
+            flushMutex.unlock();
+        }
+    }
+
     @Override
     public void flush() throws IOException {
         Checkpoint cp = checkpointSource.newCheckpoint();
@@ -926,10 +1234,13 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             log.debug("Deleting ledger {}", ledgerId);
         }
 
-        // Delete entries from this ledger that are still in the write cache
+        // Delete entries from this ledger that are still in the write caches, including the ones waiting to be
+        // flushed
         long stamp = writeCacheRotationLock.readLock();
         try {
-            writeCache.deleteLedger(ledgerId);
+            for (long epoch = flushedEpoch; epoch <= activeEpoch; epoch++) {
+                getWriteCache(epoch).deleteLedger(ledgerId);
+            }
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
         }
@@ -946,6 +1257,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         if (tli != null) {
             tli.close();
         }
+
+        if (readPatterns != null) {
+            readPatterns.remove(ledgerId);
+        }
     }
 
     @Override
@@ -1073,6 +1388,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         // No-op. Location index is already flushed in updateEntriesLocations() call
     }
 
+    @Override
+    public ReadLatencyTracker getEntryLogReadLatencyTracker() {
+        return entryLogReadLatencyTracker;
+    }
+
     /**
      * Add an already existing ledger to the index.
      *
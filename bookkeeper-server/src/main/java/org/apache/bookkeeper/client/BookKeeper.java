@@ -117,6 +117,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     // The stats logger for this client.
     private final StatsLogger statsLogger;
     private final BookKeeperClientStats clientStats;
+    private final BookieReadLatencyTracker readLatencyTracker = new BookieReadLatencyTracker();
+    private final LedgerRecoveryBudget recoveryBudget;
     private final double bookieQuarantineRatio;
 
     // Inner high priority thread for WatchTask. Disable external use.
@@ -424,12 +426,13 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         }
 
         this.internalConf = ClientInternalConf.fromConfigAndFeatureProvider(conf, this.featureProvider);
+        this.recoveryBudget = new LedgerRecoveryBudget(conf.getRecoveryMaxOutstandingEntries());
 
         // initialize resources
         this.scheduler = OrderedScheduler.newSchedulerBuilder().numThreads(1).name("BookKeeperClientScheduler").build();
         this.highPriorityTaskExecutor =
                 OrderedScheduler.newSchedulerBuilder().numThreads(1).name("BookKeeperHighPriorityThread").build();
-        this.mainWorkerPool = OrderedExecutor.newBuilder()
+        this.mainWorkerPool = OrderedExecutor.newBuilder(conf.isWorkStealingExecutorEnabled())
                 .name("BookKeeperClientWorker")
                 .numThreads(conf.getNumWorkerThreads())
                 .statsLogger(rootStatsLogger)
@@ -553,6 +556,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     BookKeeper() {
         conf = new ClientConfiguration();
         internalConf = ClientInternalConf.fromConfig(conf);
+        recoveryBudget = new LedgerRecoveryBudget(conf.getRecoveryMaxOutstandingEntries());
         statsLogger = NullStatsLogger.INSTANCE;
         clientStats = BookKeeperClientStats.newInstance(statsLogger);
         scheduler = null;
@@ -1669,6 +1673,16 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public BookieReadLatencyTracker getReadLatencyTracker() {
+                return readLatencyTracker;
+            }
+
+            @Override
+            public LedgerRecoveryBudget getRecoveryBudget() {
+                return recoveryBudget;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
@@ -0,0 +1,139 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.bookkeeper.net.BookieId;
+
+/**
+ * Tracks the read latency of each bookie seen by the client, to read an entry first from the fastest replica and to
+ * send the speculative reads once the first read is slower than usual.
+ *
+ * <p>Each bookie keeps an exponentially weighted moving average of its read latencies, and the last
+ * {@link #SAMPLES} latencies from which the 95th percentile is estimated.
+ */
+public class BookieReadLatencyTracker {
+
+    // Weight of a new sample in the moving average
+    static final double EWMA_ALPHA = 0.2;
+    static final int SAMPLES = 128;
+    // Number of samples before the percentile is used
+    static final int MIN_SAMPLES = 16;
+    // Number of new samples before the percentile is computed again
+    static final int PERCENTILE_REFRESH_SAMPLES = 16;
+
+    private final ConcurrentHashMap<BookieId, BookieLatency> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Record the time it took for a bookie to respond to a read. Failed reads are recorded as well, so that a bookie
+     * timing out is read last.
+     */
+    public void recordReadLatency(BookieId bookie, long latencyNanos) {
+        latencies.computeIfAbsent(bookie, k -> new BookieLatency()).record(latencyNanos);
+    }
+
+    /**
+     * @return the moving average of the read latency of the bookie, or -1 if no read was recorded
+     */
+    public long getAverageLatencyNanos(BookieId bookie) {
+        BookieLatency latency = latencies.get(bookie);
+        return latency == null ? -1L : latency.average();
+    }
+
+    /**
+     * @return the 95th percentile of the recent read latencies of the bookie, or -1 if not enough reads were
+     *         recorded
+     */
+    public long getP95LatencyNanos(BookieId bookie) {
+        BookieLatency latency = latencies.get(bookie);
+        return latency == null ? -1L : latency.p95();
+    }
+
+    /**
+     * Reorder the write set so that the replicas are read by increasing average latency, weighted by the number of
+     * requests pending on each bookie. The bookies which failed recently are read last, and the bookies without
+     * recorded reads first, so that their latency gets known. The relative order of the write set is kept for equal
+     * scores.
+     */
+    void reorderReadSequence(List<BookieId> ensemble, BookiesHealthInfo healthInfo,
+                             DistributionSchedule.WriteSet writeSet) {
+        int size = writeSet.size();
+        long[] scores = new long[size];
+        for (int i = 0; i < size; i++) {
+            BookieId bookie = ensemble.get(writeSet.get(i));
+            if (healthInfo.getBookieFailureHistory(bookie) >= 0) {
+                scores[i] = Long.MAX_VALUE;
+            } else {
+                long average = getAverageLatencyNanos(bookie);
+                scores[i] = average < 0 ? 0 : average * (healthInfo.getBookiePendingRequests(bookie) + 1);
+            }
+        }
+
+        // Insertion sort, write sets are small
+        for (int i = 1; i < size; i++) {
+            long score = scores[i];
+            int index = writeSet.get(i);
+            int j = i - 1;
+            while (j >= 0 && scores[j] > score) {
+                scores[j + 1] = scores[j];
+                writeSet.set(j + 1, writeSet.get(j));
+                j--;
+            }
+            scores[j + 1] = score;
+            writeSet.set(j + 1, index);
+        }
+    }
+
+    private static class BookieLatency {
+        // Guarded by this
+        private double average = -1;
+        private final long[] samples = new long[SAMPLES];
+        private long count = 0;
+        private long p95 = -1;
+        private long p95Count = 0;
+
+        synchronized void record(long latencyNanos) {
+            average = average < 0 ? latencyNanos : EWMA_ALPHA * latencyNanos + (1 - EWMA_ALPHA) * average;
+            samples[(int) (count % SAMPLES)] = latencyNanos;
+            count++;
+        }
+
+        synchronized long average() {
+            return (long) average;
+        }
+
+        synchronized long p95() {
+            if (count < MIN_SAMPLES) {
+                return -1L;
+            }
+            if (p95 < 0 || count - p95Count >= PERCENTILE_REFRESH_SAMPLES) {
+                int n = (int) Math.min(count, SAMPLES);
+                long[] sorted = Arrays.copyOf(samples, n);
+                Arrays.sort(sorted);
+                p95 = sorted[(int) Math.ceil(n * 0.95) - 1];
+                p95Count = count;
+            }
+            return p95;
+        }
+    }
+}
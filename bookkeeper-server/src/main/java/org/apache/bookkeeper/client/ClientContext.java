@@ -42,5 +42,7 @@ public interface ClientContext {
     OrderedExecutor getMainWorkerPool();
     OrderedScheduler getScheduler();
     BookKeeperClientStats getClientStats();
+    BookieReadLatencyTracker getReadLatencyTracker();
+    LedgerRecoveryBudget getRecoveryBudget();
     boolean isClientClosed();
 }
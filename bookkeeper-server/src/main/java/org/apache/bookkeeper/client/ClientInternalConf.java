@@ -40,7 +40,11 @@ class ClientInternalConf {
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
     final boolean enableStickyReads;
+    final boolean enableLatencyAwareRead;
+    final boolean enableAdaptiveSpeculativeReadTimeout;
     final int recoveryReadBatchSize;
+    final int recoveryReadWindowSize;
+    final boolean recoveryBatchReadEnabled;
     final int throttleValue;
     final int bookieFailureHistoryExpirationMSec;
     final int maxAllowedEnsembleChanges;
@@ -70,6 +74,8 @@ class ClientInternalConf {
         this.enableReorderReadSequence = conf.isReorderReadSequenceEnabled();
         this.enableParallelRecoveryRead = conf.getEnableParallelRecoveryRead();
         this.recoveryReadBatchSize = conf.getRecoveryReadBatchSize();
+        this.recoveryReadWindowSize = conf.getRecoveryReadWindowSize();
+        this.recoveryBatchReadEnabled = conf.isRecoveryBatchReadEnabled();
         this.waitForWriteSetMs = conf.getWaitTimeoutOnBackpressureMillis();
         this.addEntryQuorumTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getAddEntryQuorumTimeout());
         this.throttleValue = conf.getThrottleValue();
@@ -83,6 +89,8 @@ class ClientInternalConf {
         this.enableBookieFailureTracking = conf.getEnableBookieFailureTracking();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.enableStickyReads = conf.isStickyReadsEnabled();
+        this.enableLatencyAwareRead = conf.isLatencyAwareReadEnabled();
+        this.enableAdaptiveSpeculativeReadTimeout = conf.isAdaptiveSpeculativeReadTimeoutEnabled();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
 
         if (conf.getFirstSpeculativeReadTimeout() > 0) {
@@ -70,7 +70,12 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
     @Override
     public ScheduledFuture<?> initiateSpeculativeRequest(final ScheduledExecutorService scheduler,
             final SpeculativeRequestExecutor requestExecutor) {
-        return scheduleSpeculativeRead(scheduler, requestExecutor, firstSpeculativeRequestTimeout);
+        int timeout = requestExecutor.getFirstSpeculativeRequestTimeout(firstSpeculativeRequestTimeout);
+        if (timeout != firstSpeculativeRequestTimeout) {
+            // An adaptive timeout stays within the bounds of the policy
+            timeout = Math.max(1, Math.min(maxSpeculativeRequestTimeout, timeout));
+        }
+        return scheduleSpeculativeRead(scheduler, requestExecutor, timeout);
     }
 
     private ScheduledFuture<?> scheduleSpeculativeRead(final ScheduledExecutorService scheduler,
@@ -2329,6 +2329,13 @@ public class LedgerHandle implements WriteHandle {
         return LedgerMetadataUtils.getCurrentEnsemble(versionedMetadata.getValue());
     }
 
+    /**
+     * Whether the reads of this ledger stick to a single bookie.
+     */
+    boolean isStickyReadEnabled() {
+        return stickyBookieIndex != STICKY_READ_BOOKIE_INDEX_UNSET;
+    }
+
     /**
      * Return a {@link WriteSet} suitable for reading a particular entry.
      * This will include all bookies that are part of the ensemble for the entry.
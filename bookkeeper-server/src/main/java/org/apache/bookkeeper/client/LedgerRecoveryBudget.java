@@ -0,0 +1,91 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounds the number of entries being read or written back by all the ledger recoveries of a client, so that
+ * recovering many ledgers at the same time doesn't flood the bookies.
+ *
+ * <p>The permits are acquired without blocking: a recovery which doesn't get its permits registers a callback
+ * which is run once permits are released, and tries again from there.
+ */
+class LedgerRecoveryBudget {
+
+    private final int maxPermits;
+
+    // Guarded by this
+    private int availablePermits;
+    private final ArrayDeque<Runnable> waiters = new ArrayDeque<>();
+
+    /**
+     * @param maxPermits the max number of outstanding entries, 0 or less for no limit
+     */
+    LedgerRecoveryBudget(int maxPermits) {
+        this.maxPermits = maxPermits;
+        this.availablePermits = maxPermits;
+    }
+
+    /**
+     * Try to acquire permits, or register a callback to run once permits are released.
+     *
+     * <p>The permits requested are capped to the budget, so that a request larger than the budget can be
+     * satisfied once the other recoveries are done.
+     *
+     * @param permits the number of permits to acquire
+     * @param onAvailable the callback to run when permits are released, if they couldn't be acquired
+     * @return the number of permits acquired, which must be released, or 0 if the callback was registered
+     */
+    int acquireOrWait(int permits, Runnable onAvailable) {
+        if (maxPermits <= 0) {
+            return permits;
+        }
+        int requested = Math.min(permits, maxPermits);
+        synchronized (this) {
+            if (availablePermits >= requested) {
+                availablePermits -= requested;
+                return requested;
+            }
+            waiters.add(onAvailable);
+            return 0;
+        }
+    }
+
+    void release(int permits) {
+        if (maxPermits <= 0 || permits <= 0) {
+            return;
+        }
+        List<Runnable> toRun;
+        synchronized (this) {
+            availablePermits += permits;
+            if (waiters.isEmpty()) {
+                return;
+            }
+            toRun = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        // The waiters try again to acquire their permits, and register again if there are still not enough
+        toRun.forEach(Runnable::run);
+    }
+}
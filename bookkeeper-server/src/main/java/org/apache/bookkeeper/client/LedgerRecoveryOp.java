@@ -18,10 +18,15 @@
 package org.apache.bookkeeper.client;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
+import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryListener;
 import org.apache.bookkeeper.proto.checksum.DigestManager.RecoveryData;
 import org.slf4j.Logger;
@@ -32,6 +37,11 @@ import org.slf4j.LoggerFactory;
  * with entry-id of -1 (BookieProtocol.LAST_ADD_CONFIRMED) to all bookies. Then
  * starting from the last confirmed entry (from hints in the ledger entries),
  * it reads forward until it is not able to find a particular entry.
+ *
+ * <p>The entries are read in batches of {@link ClientInternalConf#recoveryReadBatchSize} entries. Several batches
+ * may be read at the same time, as long as the entries read but not written back yet fit in the recovery read
+ * window and in the recovery budget shared by all the recoveries of the client. The entries read are still
+ * written back in order.
  */
 class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
@@ -45,6 +55,15 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     volatile boolean readDone;
     volatile long startEntryToRead;
     volatile long endEntryToRead;
+    volatile long firstEntryToRecover;
+    volatile long startTimeNanos;
+
+    // Guarded by this
+    final ArrayDeque<RecoveryReadChunk> pendingChunks = new ArrayDeque<>();
+    boolean delivering = false;
+    boolean waitingForBudget = false;
+    boolean callbackDone = false;
+    int heldPermits = 0;
 
     // keep a copy of metadata for recovery.
     LedgerMetadata metadataForRecovery;
@@ -69,6 +88,93 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
     }
 
+    class RecoveryBatchedReadOp extends BatchedReadOp {
+
+        RecoveryBatchedReadOp(LedgerHandle lh,
+                              ClientContext clientCtx,
+                              long startEntryId, int maxCount, long maxSize) {
+            super(lh, clientCtx, startEntryId, maxCount, maxSize, true);
+        }
+
+        @Override
+        protected LedgerMetadata getLedgerMetadata() {
+            return metadataForRecovery;
+        }
+
+    }
+
+    /**
+     * A batch of entries being read. The entries read are buffered until the previous batches are written back.
+     */
+    class RecoveryReadChunk implements ReadEntryListener {
+        final long firstEntryId;
+        final long lastEntryId;
+
+        // Guarded by LedgerRecoveryOp.this
+        final ArrayDeque<ReadResult> results = new ArrayDeque<>();
+        long numDelivered = 0;
+
+        RecoveryReadChunk(long firstEntryId, long lastEntryId) {
+            this.firstEntryId = firstEntryId;
+            this.lastEntryId = lastEntryId;
+        }
+
+        long size() {
+            return lastEntryId - firstEntryId + 1;
+        }
+
+        void read() {
+            if (!useBatchRead()) {
+                readEntries(firstEntryId);
+                return;
+            }
+            RecoveryBatchedReadOp op = new RecoveryBatchedReadOp(lh, clientCtx, firstEntryId, (int) size(),
+                    clientCtx.getConf().nettyMaxFrameSizeBytes);
+            op.future().whenComplete((entries, cause) -> {
+                long nextEntryId = firstEntryId;
+                if (cause == null) {
+                    try (LedgerEntries ledgerEntries = entries) {
+                        for (org.apache.bookkeeper.client.api.LedgerEntry entry : ledgerEntries) {
+                            onEntryComplete(BKException.Code.OK, lh, new LedgerEntry((LedgerEntryImpl) entry), null);
+                            nextEntryId++;
+                        }
+                    }
+                } else if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to batch read entries from {} of ledger {} while recovering it",
+                            firstEntryId, lh.getId(), cause);
+                }
+                // A batch read returns the entries of a single bookie, so read the rest from all the replicas,
+                // which tells apart the entries not written from the entries missing on a bookie.
+                if (nextEntryId <= lastEntryId) {
+                    readEntries(nextEntryId);
+                }
+            });
+            op.initiate();
+        }
+
+        private void readEntries(long startEntryId) {
+            new RecoveryReadOp(lh, clientCtx, startEntryId, lastEntryId, this, null).initiate();
+        }
+
+        @Override
+        public void onEntryComplete(int rc, LedgerHandle lh, LedgerEntry entry, Object ctx) {
+            synchronized (LedgerRecoveryOp.this) {
+                results.add(new ReadResult(rc, entry));
+            }
+            deliverReadEntries();
+        }
+    }
+
+    static class ReadResult {
+        final int rc;
+        final LedgerEntry entry;
+
+        ReadResult(int rc, LedgerEntry entry) {
+            this.rc = rc;
+            this.entry = entry;
+        }
+    }
+
     public LedgerRecoveryOp(LedgerHandle lh, ClientContext clientCtx) {
         readCount = new AtomicLong(0);
         writeCount = new AtomicLong(0);
@@ -92,6 +198,7 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     }
 
     public CompletableFuture<LedgerHandle> initiate() {
+        startTimeNanos = MathUtils.nowInNano();
         ReadLastConfirmedOp rlcop = new ReadLastConfirmedOp(clientCtx.getBookieClient(),
                                                             lh.distributionSchedule,
                                                             lh.macManager,
@@ -124,11 +231,12 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
                                 lh.length = data.getLength();
                                 lh.pendingAddsSequenceHead = lh.lastAddConfirmed;
                                 startEntryToRead = endEntryToRead = lh.lastAddConfirmed;
+                                firstEntryToRecover = lh.lastAddConfirmed + 1;
                             }
                             // keep a copy of ledger metadata before proceeding
                             // ledger recovery
                             metadataForRecovery = lh.getLedgerMetadata();
-                            doRecoveryRead();
+                            readMoreEntries();
                         } else if (rc == BKException.Code.TimeoutException) {
                             submitCallback(rc);
                         } else if (rc == BKException.Code.UnauthorizedAccessException) {
@@ -150,9 +258,25 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     }
 
     private void submitCallback(int rc) {
+        int permits;
+        synchronized (this) {
+            if (callbackDone) {
+                return;
+            }
+            callbackDone = true;
+            permits = heldPermits;
+            heldPermits = 0;
+        }
+        clientCtx.getRecoveryBudget().release(permits);
+
         if (BKException.Code.OK == rc) {
             clientCtx.getClientStats().getRecoverAddCountLogger().registerSuccessfulValue(writeCount.get());
             clientCtx.getClientStats().getRecoverReadCountLogger().registerSuccessfulValue(readCount.get());
+            long elapsedNanos = MathUtils.elapsedNanos(startTimeNanos);
+            if (elapsedNanos > 0) {
+                clientCtx.getClientStats().getRecoverEntriesRateLogger()
+                        .registerSuccessfulValue(writeCount.get() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+            }
             promise.complete(lh);
         } else {
             clientCtx.getClientStats().getRecoverAddCountLogger().registerFailedValue(writeCount.get());
@@ -162,14 +286,80 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     }
 
     /**
-     * Try to read past the last confirmed.
+     * Try to read past the last confirmed, as long as the window and the budget allow it.
      */
-    private void doRecoveryRead() {
-        if (!promise.isDone()) {
-            startEntryToRead = endEntryToRead + 1;
-            endEntryToRead = endEntryToRead + clientCtx.getConf().recoveryReadBatchSize;
-            new RecoveryReadOp(lh, clientCtx, startEntryToRead, endEntryToRead, this, null)
-                .initiate();
+    private void readMoreEntries() {
+        int batchSize = clientCtx.getConf().recoveryReadBatchSize;
+        while (true) {
+            RecoveryReadChunk chunk;
+            synchronized (this) {
+                if (callbackDone || readDone || waitingForBudget || !hasRoomInWindow(batchSize)) {
+                    return;
+                }
+                int permits = clientCtx.getRecoveryBudget().acquireOrWait(batchSize, this::onBudgetAvailable);
+                if (permits == 0) {
+                    waitingForBudget = true;
+                    return;
+                }
+                heldPermits += permits;
+                startEntryToRead = endEntryToRead + 1;
+                endEntryToRead = endEntryToRead + batchSize;
+                chunk = new RecoveryReadChunk(startEntryToRead, endEntryToRead);
+                pendingChunks.add(chunk);
+            }
+            chunk.read();
+        }
+    }
+
+    private void onBudgetAvailable() {
+        synchronized (this) {
+            waitingForBudget = false;
+        }
+        readMoreEntries();
+    }
+
+    // Must be called while holding the lock of this
+    private boolean hasRoomInWindow(int batchSize) {
+        int windowSize = clientCtx.getConf().recoveryReadWindowSize;
+        if (windowSize < batchSize) {
+            // read a single batch at a time
+            return pendingChunks.isEmpty();
+        }
+        long outstandingEntries = endEntryToRead - (firstEntryToRecover - 1 + writeCount.get());
+        return outstandingEntries + batchSize <= windowSize;
+    }
+
+    private boolean useBatchRead() {
+        ClientInternalConf conf = clientCtx.getConf();
+        // With striping, the consecutive entries are not stored on the same bookies
+        return conf.recoveryBatchReadEnabled && conf.useV2WireProtocol && conf.batchReadEnabled
+                && metadataForRecovery.getEnsembleSize() == metadataForRecovery.getWriteQuorumSize();
+    }
+
+    /**
+     * Process the entries read in order, a single thread at a time.
+     */
+    private void deliverReadEntries() {
+        synchronized (this) {
+            if (delivering) {
+                return;
+            }
+            delivering = true;
+        }
+        while (true) {
+            ReadResult result;
+            synchronized (this) {
+                RecoveryReadChunk chunk = pendingChunks.peek();
+                if (chunk == null || chunk.results.isEmpty()) {
+                    delivering = false;
+                    return;
+                }
+                result = chunk.results.poll();
+                if (++chunk.numDelivered == chunk.size()) {
+                    pendingChunks.poll();
+                }
+            }
+            onEntryComplete(result.rc, lh, result.entry, null);
         }
     }
 
@@ -202,10 +392,8 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             }
             if (BKException.Code.OK == rc) {
                 lh.asyncRecoveryAddEntry(data, 0, data.length, this, null);
-                if (entry.getEntryId() == endEntryToRead) {
-                    // trigger next batch read
-                    doRecoveryRead();
-                }
+                // trigger next batch read
+                readMoreEntries();
                 return;
             }
         }
@@ -242,8 +430,20 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             return;
         }
         long numAdd = writeCount.incrementAndGet();
+        clientCtx.getClientStats().getRecoverEntriesCounter().inc();
+        int permits = 0;
+        synchronized (this) {
+            if (heldPermits > 0) {
+                heldPermits--;
+                permits = 1;
+            }
+        }
+        clientCtx.getRecoveryBudget().release(permits);
+
         if (readDone && readCount.get() == numAdd) {
             submitCallback(rc);
+        } else {
+            readMoreEntries();
         }
     }
 
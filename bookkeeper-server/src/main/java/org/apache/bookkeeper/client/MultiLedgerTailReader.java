@@ -0,0 +1,195 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.MultiLedgerReadResult;
+import org.apache.bookkeeper.proto.checksum.DigestManager;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the new entries of many ledgers with a single request per bookie, for consumers tailing a large number of
+ * ledgers which would otherwise send one read request per ledger.
+ *
+ * <p>The ledgers are grouped by the first bookie of the write set of their next entry, and each bookie is asked for
+ * the entries following the next entry of each of its ledgers. Like {@link LedgerHandle#readUnconfirmedAsync}, the
+ * entries read may not be confirmed yet, and a single replica is read: the ledgers without new entries on that
+ * bookie are simply left out of the result. With striped ledgers, only the entries stored on the bookie are
+ * returned, which stops at the first entry of the ledger stored elsewhere.
+ *
+ * <p>The client must use the v2 protocol, see
+ * {@link org.apache.bookkeeper.conf.ClientConfiguration#setUseV2WireProtocol(boolean)}.
+ */
+public class MultiLedgerTailReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MultiLedgerTailReader.class);
+
+    private final int maxEntriesPerLedger;
+    private final long maxSize;
+
+    /**
+     * @param maxEntriesPerLedger the max number of entries read per ledger in a request
+     * @param maxSize the max size of the response of a bookie, the ledgers which don't fit are left out
+     */
+    public MultiLedgerTailReader(int maxEntriesPerLedger, long maxSize) {
+        this.maxEntriesPerLedger = maxEntriesPerLedger;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Read the entries following the next entry of each ledger, without checking the last add confirmed.
+     *
+     * @param nextEntryIds the id of the next entry to read of each ledger
+     * @return a future completed with the entries read by ledger id, which must be closed by the caller. The ledgers
+     *         without new entries, or which didn't fit in the responses, are not in the result
+     */
+    public CompletableFuture<Map<Long, LedgerEntries>> readUnconfirmed(Map<LedgerHandle, Long> nextEntryIds) {
+        Map<BookieId, List<LedgerHandle>> handlesByBookie = new LinkedHashMap<>();
+        Map<BookieId, List<Long>> entryIdsByBookie = new HashMap<>();
+        ClientContext clientCtx = null;
+        for (Map.Entry<LedgerHandle, Long> e : nextEntryIds.entrySet()) {
+            LedgerHandle lh = e.getKey();
+            long entryId = e.getValue();
+            clientCtx = lh.clientCtx;
+            DistributionSchedule.WriteSet writeSet = lh.distributionSchedule.getWriteSet(entryId);
+            BookieId bookie = lh.getLedgerMetadata().getEnsembleAt(entryId).get(writeSet.get(0));
+            writeSet.recycle();
+            handlesByBookie.computeIfAbsent(bookie, k -> new ArrayList<>()).add(lh);
+            entryIdsByBookie.computeIfAbsent(bookie, k -> new ArrayList<>()).add(entryId);
+        }
+
+        if (handlesByBookie.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+
+        PendingRead pendingRead = new PendingRead(handlesByBookie.size());
+        for (Map.Entry<BookieId, List<LedgerHandle>> e : handlesByBookie.entrySet()) {
+            List<LedgerHandle> handles = e.getValue();
+            List<Long> entryIds = entryIdsByBookie.get(e.getKey());
+            long[] ledgerIds = new long[handles.size()];
+            long[] startEntryIds = new long[handles.size()];
+            Map<Long, LedgerHandle> handlesById = new HashMap<>();
+            for (int i = 0; i < handles.size(); i++) {
+                ledgerIds[i] = handles.get(i).getId();
+                startEntryIds[i] = entryIds.get(i);
+                handlesById.put(ledgerIds[i], handles.get(i));
+            }
+            clientCtx.getBookieClient().multiLedgerReadEntries(e.getKey(), ledgerIds, startEntryIds,
+                    maxEntriesPerLedger, maxSize,
+                    (rc, results, ctx) -> pendingRead.complete(e.getKey(), rc, results, handlesById), null);
+        }
+        return pendingRead.future;
+    }
+
+    private static class PendingRead {
+        final CompletableFuture<Map<Long, LedgerEntries>> future = new CompletableFuture<>();
+
+        // Guarded by this
+        final Map<Long, LedgerEntries> entries = new HashMap<>();
+        int pendingBookies;
+        int firstErrorCode = BKException.Code.OK;
+
+        PendingRead(int pendingBookies) {
+            this.pendingBookies = pendingBookies;
+        }
+
+        void complete(BookieId bookie, int rc, List<MultiLedgerReadResult> results,
+                      Map<Long, LedgerHandle> handlesById) {
+            Map<Long, LedgerEntries> bookieEntries = new HashMap<>();
+            if (rc == BKException.Code.OK) {
+                for (MultiLedgerReadResult result : results) {
+                    LedgerHandle lh = handlesById.get(result.getLedgerId());
+                    if (lh == null || result.getRc() != BKException.Code.OK || result.getEntries().size() == 0) {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("No entry read from bookie {}: {}", bookie, result);
+                        }
+                        continue;
+                    }
+                    LedgerEntries ledgerEntries = toLedgerEntries(lh, bookie, result);
+                    if (ledgerEntries != null) {
+                        bookieEntries.put(lh.getId(), ledgerEntries);
+                    }
+                }
+            } else {
+                LOG.warn("Failed to read the entries of multiple ledgers from bookie {}: {}",
+                        bookie, BKException.getMessage(rc));
+            }
+
+            synchronized (this) {
+                entries.putAll(bookieEntries);
+                if (rc != BKException.Code.OK && firstErrorCode == BKException.Code.OK) {
+                    firstErrorCode = rc;
+                }
+                if (--pendingBookies > 0) {
+                    return;
+                }
+            }
+
+            if (firstErrorCode == BKException.Code.OK) {
+                future.complete(entries);
+            } else {
+                entries.values().forEach(LedgerEntries::close);
+                future.completeExceptionally(BKException.create(firstErrorCode));
+            }
+        }
+
+        private static LedgerEntries toLedgerEntries(LedgerHandle lh, BookieId bookie, MultiLedgerReadResult result) {
+            ByteBufList buffers = result.getEntries();
+            List<LedgerEntry> ledgerEntries = new ArrayList<>(buffers.size());
+            for (int i = 0; i < buffers.size(); i++) {
+                long entryId = result.getStartEntryId() + i;
+                ByteBuf buffer = buffers.getBuffer(i);
+                ByteBuf content;
+                try {
+                    content = lh.macManager.verifyDigestAndReturnData(entryId, buffer);
+                } catch (BKException.BKDigestMatchException e) {
+                    lh.clientCtx.getClientStats().getReadOpDmCounter().inc();
+                    LOG.error("Mac mismatch reading {}@{} from bookie {}", lh.getId(), entryId, bookie);
+                    ledgerEntries.forEach(LedgerEntry::close);
+                    return null;
+                }
+                /*
+                 * The length is a long and it is the last field of the metadata of an entry.
+                 * Consequently, we have to subtract 8 from METADATA_LENGTH to get the length.
+                 */
+                LedgerEntryImpl entry = LedgerEntryImpl.create(lh.getId(), entryId);
+                entry.setLength(buffer.getLong(DigestManager.METADATA_LENGTH - 8));
+                // The response is released once the callback returns
+                entry.setEntryBuf(content.retain());
+                ledgerEntries.add(entry);
+            }
+            return LedgerEntriesImpl.create(ledgerEntries);
+        }
+    }
+}
@@ -166,7 +166,8 @@ class PendingAddOp implements WriteCallback {
             return;
         }
 
-        if (addEntrySuccessBookies.size() >= lh.getLedgerMetadata().getAckQuorumSize()) {
+        if (clientCtx.getConf().enforceMinNumFaultDomainsForWrite
+                && addEntrySuccessBookies.size() >= lh.getLedgerMetadata().getAckQuorumSize()) {
             // If ackQuorum number of bookies have acknowledged the write but still not complete, indicates
             // failures due to not having been written to enough fault domains. Increment corresponding
             // counter.
@@ -276,7 +277,10 @@ class PendingAddOp implements WriteCallback {
         boolean ackQuorum = false;
         if (BKException.Code.OK == rc) {
             ackQuorum = ackSet.completeBookieAndCheck(bookieIndex);
-            addEntrySuccessBookies.add(ensemble.get(bookieIndex));
+            // Only needed to check the fault domains of the bookies, and adding to the set allocates
+            if (clientCtx.getConf().enforceMinNumFaultDomainsForWrite) {
+                addEntrySuccessBookies.add(ensemble.get(bookieIndex));
+            }
         }
 
         if (completed) {
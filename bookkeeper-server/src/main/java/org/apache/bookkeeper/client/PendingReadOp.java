@@ -97,6 +97,12 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
         final ReadContext rctx = (ReadContext) ctx;
         final SingleLedgerEntryRequest entry = (SingleLedgerEntryRequest) rctx.entry;
 
+        if ((clientCtx.getConf().enableLatencyAwareRead || clientCtx.getConf().enableAdaptiveSpeculativeReadTimeout)
+                && rc != BKException.Code.NoSuchEntryException && rc != BKException.Code.NoSuchLedgerExistsException) {
+            // A bookie failing or timing out gets slower, a missing entry is a regular response
+            clientCtx.getReadLatencyTracker().recordReadLatency(rctx.to, MathUtils.elapsedNanos(rctx.sendTimeNanos));
+        }
+
         if (rc != BKException.Code.OK) {
             entry.logErrorAndReattemptRead(rctx.bookieIndex, rctx.to, "Error: " + BKException.getMessage(rc), rc);
             return;
@@ -395,8 +401,15 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
 
         @Override
         boolean complete(int bookieIndex, BookieId host, ByteBuf buffer) {
+            int replica = isComplete() ? NOT_FOUND : writeSet.indexOf(bookieIndex);
             boolean completed = super.complete(bookieIndex, host, buffer);
             if (completed) {
+                synchronized (this) {
+                    // The replica won if it was read speculatively, rather than after the previous replicas failed
+                    if (replica > 0 && erroredReplicas.get(0, replica).cardinality() < replica) {
+                        clientCtx.getClientStats().getSpeculativeReadWinsCounter().inc();
+                    }
+                }
                 int numReplicasTried = getNextReplicaIndexToReadFrom();
                 // Check if any speculative reads were issued and mark any slow bookies before
                 // the first successful speculative read as "slow"
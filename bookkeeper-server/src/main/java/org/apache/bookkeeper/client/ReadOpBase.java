@@ -28,9 +28,11 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks;
 import org.slf4j.Logger;
@@ -121,7 +123,8 @@ public abstract class ReadOpBase implements Runnable {
 
         final List<BookieId> ensemble;
         final DistributionSchedule.WriteSet writeSet;
-
+        // The replica read first
+        final BookieId firstReplica;
 
         LedgerEntryRequest(List<BookieId> ensemble, final long eId) {
             this.ensemble = ensemble;
@@ -135,6 +138,10 @@ public abstract class ReadOpBase implements Runnable {
             } else {
                 writeSet = lh.getWriteSetForReadOperation(eId);
             }
+            if (clientCtx.getConf().enableLatencyAwareRead && !lh.isStickyReadEnabled()) {
+                clientCtx.getReadLatencyTracker().reorderReadSequence(ensemble, lh.getBookiesHealthInfo(), writeSet);
+            }
+            this.firstReplica = ensemble.get(writeSet.get(0));
         }
 
         public void close() {
@@ -243,6 +250,22 @@ public abstract class ReadOpBase implements Runnable {
             return String.format("L%d-E%d", lh.getId(), eId);
         }
 
+        /**
+         * With adaptive speculative reads, wait for the 95th percentile of the recent read latencies of the replica
+         * read first before reading from the next one.
+         */
+        @Override
+        public int getFirstSpeculativeRequestTimeout(int defaultTimeout) {
+            if (!clientCtx.getConf().enableAdaptiveSpeculativeReadTimeout) {
+                return defaultTimeout;
+            }
+            long p95Nanos = clientCtx.getReadLatencyTracker().getP95LatencyNanos(firstReplica);
+            if (p95Nanos < 0) {
+                return defaultTimeout;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(p95Nanos) + 1);
+        }
+
         /**
          * Issues a speculative request and indicates if more speculative
          * requests should be issued.
@@ -272,6 +295,7 @@ public abstract class ReadOpBase implements Runnable {
         final int bookieIndex;
         final BookieId to;
         final PendingReadOp.LedgerEntryRequest entry;
+        final long sendTimeNanos = MathUtils.nowInNano();
         long lac = LedgerHandle.INVALID_ENTRY_ID;
 
         ReadContext(int bookieIndex, BookieId to, PendingReadOp.LedgerEntryRequest entry) {
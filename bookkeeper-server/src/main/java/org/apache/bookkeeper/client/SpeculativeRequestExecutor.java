@@ -39,4 +39,15 @@ public interface SpeculativeRequestExecutor {
      * @return whether more speculative requests should be issued
      */
     ListenableFuture<Boolean> issueSpeculativeRequest();
+
+    /**
+     * Get the time to wait before issuing the first speculative request. Implementations can derive it from the
+     * latency observed for the first request.
+     *
+     * @param defaultTimeout the first speculative request timeout of the policy, in milliseconds
+     * @return the time to wait before issuing the first speculative request, in milliseconds
+     */
+    default int getFirstSpeculativeRequestTimeout(int defaultTimeout) {
+        return defaultTimeout;
+    }
 }
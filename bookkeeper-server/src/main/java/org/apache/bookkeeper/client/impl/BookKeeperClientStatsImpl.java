@@ -114,6 +114,16 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         help = "the distribution of entries read in ledger recovery requests"
     )
     private final OpStatsLogger recoverReadEntriesStats;
+    @StatsDoc(
+        name = LEDGER_RECOVER_ENTRIES,
+        help = "The number of entries written back by ledger recovery"
+    )
+    private final Counter recoverEntriesCounter;
+    @StatsDoc(
+        name = LEDGER_RECOVER_ENTRIES_RATE,
+        help = "the distribution of the number of entries recovered per second in ledger recovery requests"
+    )
+    private final OpStatsLogger recoverEntriesRateStats;
 
     @StatsDoc(
         name = ENSEMBLE_CHANGES,
@@ -140,6 +150,11 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         help = "The number of speculative read requests"
     )
     private final Counter speculativeReadCounter;
+    @StatsDoc(
+        name = SPECULATIVE_READ_WINS,
+        help = "The number of entries read from a replica sent a speculative read before the first replica responded"
+    )
+    private final Counter speculativeReadWinsCounter;
 
     @StatsDoc(
         name = WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS_LATENCY,
@@ -177,6 +192,8 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         this.readLacOpLogger = stats.getOpStatsLogger(READ_LAC_OP);
         this.recoverAddEntriesStats = stats.getOpStatsLogger(LEDGER_RECOVER_ADD_ENTRIES);
         this.recoverReadEntriesStats = stats.getOpStatsLogger(LEDGER_RECOVER_READ_ENTRIES);
+        this.recoverEntriesCounter = stats.getCounter(LEDGER_RECOVER_ENTRIES);
+        this.recoverEntriesRateStats = stats.getOpStatsLogger(LEDGER_RECOVER_ENTRIES_RATE);
 
         this.ensembleChangeCounter = stats.getCounter(ENSEMBLE_CHANGES);
         this.lacUpdateHitsCounter = stats.getCounter(LAC_UPDATE_HITS);
@@ -184,6 +201,7 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         this.clientChannelWriteWaitStats = stats.getOpStatsLogger(CLIENT_CHANNEL_WRITE_WAIT);
 
         speculativeReadCounter = stats.getCounter(SPECULATIVE_READ_COUNT);
+        speculativeReadWinsCounter = stats.getCounter(SPECULATIVE_READ_WINS);
 
         this.writeDelayedDueToNotEnoughFaultDomainsLatency =
                 stats.getOpStatsLogger(WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS_LATENCY);
@@ -245,6 +263,14 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         return recoverReadEntriesStats;
     }
     @Override
+    public Counter getRecoverEntriesCounter() {
+        return recoverEntriesCounter;
+    }
+    @Override
+    public OpStatsLogger getRecoverEntriesRateLogger() {
+        return recoverEntriesRateStats;
+    }
+    @Override
     public Counter getReadOpDmCounter() {
         return readOpDmCounter;
     }
@@ -257,6 +283,10 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         return speculativeReadCounter;
     }
     @Override
+    public Counter getSpeculativeReadWinsCounter() {
+        return speculativeReadWinsCounter;
+    }
+    @Override
     public Counter getEnsembleChangeCounter() {
         return ensembleChangeCounter;
     }
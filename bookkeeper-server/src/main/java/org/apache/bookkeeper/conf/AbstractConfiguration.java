@@ -92,6 +92,7 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_CREATION_TIME = "storeSystemTimeAsLedgerCreationTime";
 
     protected static final String ENABLE_BUSY_WAIT = "enableBusyWait";
+    protected static final String ENABLE_WORK_STEALING_EXECUTOR = "enableWorkStealingExecutor";
     protected static final String ENABLE_HEALTH_CHECK = "enableHealthCheck";
 
     // Metastore settings, only being used when LEDGER_MANAGER_FACTORY_CLASS is MSLedgerManagerFactory
@@ -1203,6 +1204,37 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getThis();
     }
 
+    /**
+     * Return whether the ordered worker pools balance the ordering keys across their threads.
+     *
+     * <p>Default is false
+     *
+     * @return the value of the option
+     */
+    public boolean isWorkStealingExecutorEnabled() {
+        return getBoolean(ENABLE_WORK_STEALING_EXECUTOR, false);
+    }
+
+    /**
+     * Option to run the main workers pool of the client, and the request worker pools of the bookie, on work
+     * stealing executors.
+     *
+     * <p>Default is false.
+     *
+     * <p>The tasks of a ledger are still executed in order, but the ledgers are no longer pinned to a thread: a
+     * thread without work runs the pending tasks of the ledgers hashed to the busy threads, so that a few hot
+     * ledgers don't leave the other threads of the pool idle.
+     *
+     * @param workStealingExecutorEnabled
+     *            if enabled, balance the ledgers across the threads of the worker pools
+     *
+     * @see #isWorkStealingExecutorEnabled()
+     */
+    public T setWorkStealingExecutorEnabled(boolean workStealingExecutorEnabled) {
+        setProperty(ENABLE_WORK_STEALING_EXECUTOR, workStealingExecutorEnabled);
+        return getThis();
+    }
+
     /**
      * Return the flag indicating whether to limit stats logging.
      *
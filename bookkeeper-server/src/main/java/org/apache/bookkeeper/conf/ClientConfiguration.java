@@ -115,7 +115,11 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String LATENCY_AWARE_READ_ENABLED = "latencyAwareReadEnabled";
+    protected static final String ADAPTIVE_SPECULATIVE_READ_TIMEOUT_ENABLED = "adaptiveSpeculativeReadTimeoutEnabled";
     protected static final String RECOVERY_BATCH_READ_ENABLED = "recoveryBatchReadEnabled";
+    protected static final String RECOVERY_READ_WINDOW_SIZE = "recoveryReadWindowSize";
+    protected static final String RECOVERY_MAX_OUTSTANDING_ENTRIES = "recoveryMaxOutstandingEntries";
     // Add Parameters
     protected static final String OPPORTUNISTIC_STRIPING = "opportunisticStriping";
     protected static final String DELAY_ENSEMBLE_CHANGE = "delayEnsembleChange";
@@ -204,6 +208,11 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     //For batch read api, it the batch read is not stable, we can fail back to single read by this config.
     protected static final String BATCH_READ_ENABLED = "batchReadEnabled";
 
+    // Add batching, only with the v2 wire protocol
+    protected static final String ADD_ENTRY_BATCHING_ENABLED = "addEntryBatchingEnabled";
+    protected static final String ADD_ENTRY_BATCH_MAX_ENTRIES = "addEntryBatchMaxEntries";
+    protected static final String ADD_ENTRY_BATCH_MAX_BYTES = "addEntryBatchMaxBytes";
+
     /**
      * Construct a default client-side configuration.
      */
@@ -999,6 +1008,56 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the replicas of an entry are read in the order of their observed read latency.
+     *
+     * @return true if latency aware reads are enabled, otherwise false.
+     */
+    public boolean isLatencyAwareReadEnabled() {
+        return getBoolean(LATENCY_AWARE_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable latency aware reads.
+     *
+     * <p>If this flag is enabled, the client tracks a moving average of the read latency of each bookie, and reads
+     * an entry first from the replica with the lowest average latency weighted by its number of pending requests.
+     * The replicas which failed recently are read last. The order is applied on top of the read sequence of the
+     * placement policy, see {@link #setReorderReadSequenceEnabled(boolean)}.
+     *
+     * @param enabled the flag to enable/disable latency aware reads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareReadEnabled(boolean enabled) {
+        setProperty(LATENCY_AWARE_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether the first speculative read timeout is derived from the read latency of the bookie read first.
+     *
+     * @return true if the speculative read timeout is adaptive, otherwise false.
+     */
+    public boolean isAdaptiveSpeculativeReadTimeoutEnabled() {
+        return getBoolean(ADAPTIVE_SPECULATIVE_READ_TIMEOUT_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable adaptive speculative read timeouts.
+     *
+     * <p>If this flag is enabled, the speculative read of an entry is sent once the first read has been outstanding
+     * for longer than the 95th percentile of the recent read latencies of the bookie it was sent to, bounded by
+     * {@link #getMaxSpeculativeReadTimeout()}. The first speculative read timeout is used until enough reads are
+     * observed. Speculative reads must be enabled, see {@link #setFirstSpeculativeReadTimeout(int)}.
+     *
+     * @param enabled the flag to enable/disable adaptive speculative read timeouts.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setAdaptiveSpeculativeReadTimeoutEnabled(boolean enabled) {
+        setProperty(ADAPTIVE_SPECULATIVE_READ_TIMEOUT_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Multiplier to use when determining time between successive speculative read LAC requests.
      *
@@ -1219,6 +1278,63 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         setProperty(RECOVERY_BATCH_READ_ENABLED, enabled);
         return this;
     }
+
+    /**
+     * Get the max number of entries of a ledger which are being read or written back at the same time
+     * during the recovery of a ledger.
+     *
+     * @return recovery read window size.
+     */
+    public int getRecoveryReadWindowSize() {
+        return getInt(RECOVERY_READ_WINDOW_SIZE, 0);
+    }
+
+    /**
+     * Set the max number of entries of a ledger which are being read or written back at the same time
+     * during the recovery of a ledger.
+     *
+     * <p>The recovery keeps reading batches of {@link #getRecoveryReadBatchSize()} entries, without waiting
+     * for the previous batches to be read or written back, as long as the entries read but not written back yet
+     * fit in the window. The entries are still written back in order. If the window is smaller than the
+     * recovery read batch size, a single batch is read at a time, which is the default.
+     *
+     * <p>When {@link #isRecoveryBatchReadEnabled()} is set, the batches are read with a single batch read
+     * request if the ledger is not striped and the client uses the v2 protocol with batch reads enabled.
+     *
+     * @param windowSize
+     *          recovery read window size.
+     * @return client configuration.
+     */
+    public ClientConfiguration setRecoveryReadWindowSize(int windowSize) {
+        setProperty(RECOVERY_READ_WINDOW_SIZE, windowSize);
+        return this;
+    }
+
+    /**
+     * Get the max number of entries being read or written back by all the ledger recoveries of the client.
+     *
+     * @return the max number of outstanding recovery entries, 0 for no limit.
+     */
+    public int getRecoveryMaxOutstandingEntries() {
+        return getInt(RECOVERY_MAX_OUTSTANDING_ENTRIES, 0);
+    }
+
+    /**
+     * Set the max number of entries being read or written back by all the ledger recoveries of the client.
+     *
+     * <p>It bounds the load put on the bookies when many ledgers are recovered at the same time, e.g. after
+     * a broker failover. A recovery waits for the entries of the other recoveries to be written back before
+     * reading more entries. A budget smaller than the recovery read batch size lets a single batch be read at
+     * a time by the whole client.
+     *
+     * @param maxOutstandingEntries
+     *          the max number of outstanding recovery entries, 0 for no limit.
+     * @return client configuration.
+     */
+    public ClientConfiguration setRecoveryMaxOutstandingEntries(int maxOutstandingEntries) {
+        setProperty(RECOVERY_MAX_OUTSTANDING_ENTRIES, maxOutstandingEntries);
+        return this;
+    }
     /**
      * Get Ensemble Placement Policy Class.
      *
@@ -2084,6 +2200,74 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return getBoolean(BATCH_READ_ENABLED, true);
     }
 
+    /**
+     * Whether consecutive adds of a ledger to the same bookie are coalesced into a single request.
+     *
+     * <p>Only used with the v2 wire protocol. The adds issued while a previous write is being flushed to the
+     * channel are sent together, and acknowledged by the bookie with a single response. All the bookies must
+     * support the add entry batch request before enabling it.
+     *
+     * @return whether add batching is enabled
+     */
+    public boolean isAddEntryBatchingEnabled() {
+        return getBoolean(ADD_ENTRY_BATCHING_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable add batching with the v2 wire protocol.
+     *
+     * @param enabled
+     *          whether add batching is enabled
+     * @return client configuration.
+     */
+    public ClientConfiguration setAddEntryBatchingEnabled(boolean enabled) {
+        setProperty(ADD_ENTRY_BATCHING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of entries coalesced into a single add request.
+     *
+     * @return the max number of entries of an add batch
+     */
+    public int getAddEntryBatchMaxEntries() {
+        return getInt(ADD_ENTRY_BATCH_MAX_ENTRIES, 64);
+    }
+
+    /**
+     * Set the max number of entries coalesced into a single add request.
+     *
+     * @param maxEntries
+     *          the max number of entries of an add batch
+     * @return client configuration.
+     */
+    public ClientConfiguration setAddEntryBatchMaxEntries(int maxEntries) {
+        setProperty(ADD_ENTRY_BATCH_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the max size in bytes of the entries coalesced into a single add request. Larger entries are never
+     * batched.
+     *
+     * @return the max size of an add batch
+     */
+    public int getAddEntryBatchMaxBytes() {
+        return getInt(ADD_ENTRY_BATCH_MAX_BYTES, 64 * 1024);
+    }
+
+    /**
+     * Set the max size in bytes of the entries coalesced into a single add request.
+     *
+     * @param maxBytes
+     *          the max size of an add batch
+     * @return client configuration.
+     */
+    public ClientConfiguration setAddEntryBatchMaxBytes(int maxBytes) {
+        setProperty(ADD_ENTRY_BATCH_MAX_BYTES, maxBytes);
+        return this;
+    }
+
     @Override
     protected ClientConfiguration getThis() {
         return this;
@@ -106,6 +106,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String COMPACTION_RATE = "compactionRate";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
+    protected static final String COMPACTION_ORDER_BY_RECLAIM_COST = "compactionOrderByReclaimCost";
+    protected static final String COMPACTION_READ_LATENCY_THRESHOLD_MS = "compactionReadLatencyThresholdMs";
 
     // Gc Parameters
     protected static final String GC_WAIT_TIME = "gcWaitTime";
@@ -146,14 +148,17 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_REMOVE_FROM_PAGE_CACHE = "journalRemoveFromPageCache";
     protected static final String JOURNAL_PRE_ALLOC_SIZE = "journalPreAllocSizeMB";
     protected static final String JOURNAL_WRITE_BUFFER_SIZE = "journalWriteBufferSizeKB";
+    protected static final String JOURNAL_WRITE_GATHER_THRESHOLD = "journalWriteGatherThresholdBytes";
     protected static final String JOURNAL_ALIGNMENT_SIZE = "journalAlignmentSize";
     protected static final String NUM_JOURNAL_CALLBACK_THREADS = "numJournalCallbackThreads";
+    protected static final String NUM_JOURNAL_REPLAY_THREADS = "numJournalReplayThreads";
     protected static final String JOURNAL_FORMAT_VERSION_TO_WRITE = "journalFormatVersionToWrite";
     protected static final String JOURNAL_QUEUE_SIZE = "journalQueueSize";
     protected static final String JOURNAL_MAX_MEMORY_SIZE_MB = "journalMaxMemorySizeMb";
     protected static final String JOURNAL_PAGECACHE_FLUSH_INTERVAL_MSEC = "journalPageCacheFlushIntervalMSec";
     protected static final String JOURNAL_CHANNEL_PROVIDER = "journalChannelProvider";
     protected static final String JOURNAL_REUSE_FILES = "journalReuseFiles";
+    protected static final String JOURNAL_DIRECT_IO = "journalDirectIO";
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
     protected static final String MAX_READS_IN_PROGRESS_LIMIT = "maxReadsInProgressLimit";
@@ -343,11 +348,24 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String MAX_OPERATION_NUMBERS_IN_SINGLE_ROCKSDB_WRITE_BATCH =
         "maxOperationNumbersInSingleRocksdbWriteBatch";
 
+    // Storage used for the DbLedgerStorage entry location index
+    protected static final String ENTRY_LOCATION_INDEX_STORAGE = "entryLocationIndexStorage";
+
     protected static final String SKIP_REPLAY_JOURNAL_INVALID_RECORD = "skipReplayJournalInvalidRecord";
 
     protected static final String MAX_BATCH_READ_SIZE = "maxBatchReadSize";
     protected static final int DEFAULT_MAX_BATCH_READ_SIZE = 5 * 1024 * 1024; // 5MB
 
+    protected static final String READ_ENTRY_ZERO_COPY_ENABLED = "readEntryZeroCopyEnabled";
+    protected static final String READ_ENTRY_ZERO_COPY_MIN_SIZE = "readEntryZeroCopyMinSize";
+
+    protected static final String ADMISSION_CONTROL_ENABLED = "admissionControlEnabled";
+    protected static final String ADMISSION_CONTROL_CLASSES = "admissionControlClasses";
+    protected static final String ADMISSION_CONTROL_CLASS_MAPPING = "admissionControlClassMapping";
+    protected static final String ADMISSION_CONTROL_MAX_IN_FLIGHT_REQUESTS = "admissionControlMaxInFlightRequests";
+    protected static final String ADMISSION_CONTROL_MAX_QUEUED_REQUESTS_PER_CLASS =
+            "admissionControlMaxQueuedRequestsPerClass";
+
     /**
      * Construct a default configuration object.
      */
@@ -863,6 +881,28 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the size from which the journal entries are not copied into the journal write buffer, but written to
+     * the journal file together with the content of the write buffer, with a gathering write.
+     *
+     * @return the size in bytes, or 0 if all the entries are copied into the write buffer
+     */
+    public int getJournalWriteGatherThresholdBytes() {
+        return this.getInt(JOURNAL_WRITE_GATHER_THRESHOLD, 0);
+    }
+
+    /**
+     * Set the size from which the journal entries are written with a gathering write instead of being copied
+     * into the journal write buffer.
+     *
+     * @param thresholdBytes the size in bytes, or 0 to always copy the entries into the write buffer
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalWriteGatherThresholdBytes(int thresholdBytes) {
+        setProperty(JOURNAL_WRITE_GATHER_THRESHOLD, thresholdBytes);
+        return this;
+    }
+
     /**
      * Max number of older journal files kept.
      *
@@ -1031,6 +1071,28 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the journal files are written and replayed with direct I/O, bypassing the page cache.
+     *
+     * <p>It requires the native-io library, and the journal files are opened by path, regardless of the
+     * configured {@link #getJournalChannelProvider()}.
+     *
+     * @return true if direct I/O is used for the journal
+     */
+    public boolean isJournalDirectIOEnabled() {
+        return this.getBoolean(JOURNAL_DIRECT_IO, false);
+    }
+
+    /**
+     * Set whether the journal files are written and replayed with direct I/O.
+     * @param enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalDirectIOEnabled(boolean enabled) {
+        setProperty(JOURNAL_DIRECT_IO, enabled);
+        return this;
+    }
+
     /**
      * Get max number of adds in progress. 0 == unlimited.
      *
@@ -2182,6 +2244,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getInt(NUM_JOURNAL_CALLBACK_THREADS, 1);
     }
 
+    /**
+     * Set the number of threads applying the replayed journal records to the ledger storage on startup.
+     *
+     * @param numThreads
+     *          number of journal replay threads, 0 to replay the journals sequentially.
+     * @return server configuration
+     */
+    public ServerConfiguration setNumJournalReplayThreads(int numThreads) {
+        setProperty(NUM_JOURNAL_REPLAY_THREADS, numThreads);
+        return this;
+    }
+
+    /**
+     * Get the number of threads applying the replayed journal records to the ledger storage on startup.
+     *
+     * <p>When greater than 0, the journal directories are scanned concurrently, and the records are applied to the
+     * ledger storage by these threads, the records of a ledger always being applied in order by the same thread.
+     * With 0, the journals are replayed one after the other on the bookie thread.
+     *
+     * @return the number of journal replay threads.
+     */
+    public int getNumJournalReplayThreads() {
+        return getInt(NUM_JOURNAL_REPLAY_THREADS, 0);
+    }
+
     /**
      * Set sorted-ledger storage enabled or not.
      *
@@ -2974,6 +3061,51 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether to compact first the entry logs that reclaim the most bytes per byte of I/O, instead of the entry
+     * logs with the lowest usage. Default is false.
+     *
+     * @return whether compaction is ordered by reclaimable bytes per I/O cost
+     */
+    public boolean isCompactionOrderByReclaimCost() {
+        return getBoolean(COMPACTION_ORDER_BY_RECLAIM_COST, false);
+    }
+
+    /**
+     * Set whether to compact first the entry logs that reclaim the most bytes per byte of I/O.
+     *
+     * @param orderByReclaimCost whether compaction is ordered by reclaimable bytes per I/O cost
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionOrderByReclaimCost(boolean orderByReclaimCost) {
+        setProperty(COMPACTION_ORDER_BY_RECLAIM_COST, orderByReclaimCost);
+        return this;
+    }
+
+    /**
+     * Get the average latency of the foreground reads from the entry logs above which compaction slows down.
+     * Compaction is paused while the latency is above twice this value. Default is 0, which disables the
+     * adaptation of the compaction rate to the foreground reads.
+     *
+     * @return the foreground read latency threshold in milliseconds
+     */
+    public long getCompactionReadLatencyThresholdMs() {
+        return getLong(COMPACTION_READ_LATENCY_THRESHOLD_MS, 0);
+    }
+
+    /**
+     * Set the average latency of the foreground reads from the entry logs above which compaction slows down.
+     *
+     * @param thresholdMs the foreground read latency threshold in milliseconds, 0 to disable
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionReadLatencyThresholdMs(long thresholdMs) {
+        setProperty(COMPACTION_READ_LATENCY_THRESHOLD_MS, thresholdMs);
+        return this;
+    }
+
     /**
      * Should we remove pages from page cache after force write.
      *
@@ -4125,6 +4257,33 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getInt(MAX_OPERATION_NUMBERS_IN_SINGLE_ROCKSDB_WRITE_BATCH, 100000);
     }
 
+    /**
+     * Get the storage used by DbLedgerStorage to keep the entry location index.
+     *
+     * <p>Supported values are {@code rocksdb} (default) and {@code sortedRuns}, which keeps the
+     * (ledgerId, entryId) to location mappings in append-only sorted files without going through RocksDB.
+     *
+     * @return the entry location index storage type
+     */
+    public String getEntryLocationIndexStorage() {
+        return getString(ENTRY_LOCATION_INDEX_STORAGE, "rocksdb");
+    }
+
+    /**
+     * Set the storage used by DbLedgerStorage to keep the entry location index.
+     *
+     * <p>Switching the storage of an existing bookie requires migrating the index first with the
+     * {@code migrate-db-ledger-locations-index} command.
+     *
+     * @param entryLocationIndexStorage
+     *          the entry location index storage type, either {@code rocksdb} or {@code sortedRuns}
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLocationIndexStorage(String entryLocationIndexStorage) {
+        this.setProperty(ENTRY_LOCATION_INDEX_STORAGE, entryLocationIndexStorage);
+        return this;
+    }
+
     /**
      * Set the max batch read size.
      *
@@ -4145,6 +4304,165 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this.getLong(MAX_BATCH_READ_SIZE, DEFAULT_MAX_BATCH_READ_SIZE);
     }
 
+    /**
+     * Whether the entries read from a flushed entry log are sent to the client straight from the file, with
+     * sendfile, instead of being copied in memory first.
+     *
+     * <p>Only applies to v2 protocol reads on connections without TLS, for the ledger storages that support it.
+     *
+     * @return true if zero-copy reads are enabled
+     */
+    public boolean isReadEntryZeroCopyEnabled() {
+        return getBoolean(READ_ENTRY_ZERO_COPY_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable zero-copy reads from the entry logs.
+     *
+     * @param enabled
+     *          whether zero-copy reads are enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setReadEntryZeroCopyEnabled(boolean enabled) {
+        setProperty(READ_ENTRY_ZERO_COPY_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the min size of the entries sent with zero-copy reads. Smaller entries are cheaper to copy than to
+     * send from the file.
+     *
+     * @return the min size of the entries sent with zero-copy reads
+     */
+    public int getReadEntryZeroCopyMinSize() {
+        return getInt(READ_ENTRY_ZERO_COPY_MIN_SIZE, 64 * 1024);
+    }
+
+    /**
+     * Set the min size of the entries sent with zero-copy reads.
+     *
+     * @param minSize
+     *          the min size of the entries sent with zero-copy reads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadEntryZeroCopyMinSize(int minSize) {
+        setProperty(READ_ENTRY_ZERO_COPY_MIN_SIZE, minSize);
+        return this;
+    }
+
+    /**
+     * Whether the normal priority requests are scheduled by the admission control before being handed to the read
+     * and add worker thread pools, so that a client can't starve the other clients of the bookie.
+     *
+     * @return true if the admission control is enabled
+     */
+    public boolean isAdmissionControlEnabled() {
+        return getBoolean(ADMISSION_CONTROL_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the admission control of the requests.
+     *
+     * @param enabled
+     *          whether the admission control is enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setAdmissionControlEnabled(boolean enabled) {
+        setProperty(ADMISSION_CONTROL_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the classes of requests of the admission control, as {@code name:weight[:maxBytesPerSecond]}. A class
+     * with twice the weight of another gets twice its share of the worker threads when both have pending requests.
+     * The requests which don't match any mapping belong to the {@code default} class, with a weight of 1 and no
+     * rate limit unless it is defined here.
+     *
+     * @return the classes of requests
+     */
+    public String[] getAdmissionControlClasses() {
+        return getStringArray(ADMISSION_CONTROL_CLASSES);
+    }
+
+    /**
+     * Set the classes of requests of the admission control.
+     *
+     * @param classes
+     *          the classes of requests, as name:weight[:maxBytesPerSecond]
+     * @return server configuration
+     */
+    public ServerConfiguration setAdmissionControlClasses(String[] classes) {
+        setProperty(ADMISSION_CONTROL_CLASSES, classes);
+        return this;
+    }
+
+    /**
+     * Get the mapping of the requests to the classes of the admission control, as
+     * {@code principal:<client principal>=<class>} or {@code ledgers:<first ledger id>-<last ledger id>=<class>}.
+     * The principal mappings take precedence over the ledger id ranges, which must not overlap.
+     *
+     * @return the mapping of the requests to the classes
+     */
+    public String[] getAdmissionControlClassMapping() {
+        return getStringArray(ADMISSION_CONTROL_CLASS_MAPPING);
+    }
+
+    /**
+     * Set the mapping of the requests to the classes of the admission control.
+     *
+     * @param mapping
+     *          the mapping of the requests to the classes
+     * @return server configuration
+     */
+    public ServerConfiguration setAdmissionControlClassMapping(String[] mapping) {
+        setProperty(ADMISSION_CONTROL_CLASS_MAPPING, mapping);
+        return this;
+    }
+
+    /**
+     * Get the max number of requests handed by the admission control to each of the read and add worker thread
+     * pools at a time. The other requests wait in the queue of their class.
+     *
+     * @return the max number of requests in flight per thread pool
+     */
+    public int getAdmissionControlMaxInFlightRequests() {
+        return getInt(ADMISSION_CONTROL_MAX_IN_FLIGHT_REQUESTS, 256);
+    }
+
+    /**
+     * Set the max number of requests handed by the admission control to each worker thread pool at a time.
+     *
+     * @param maxInFlightRequests
+     *          the max number of requests in flight per thread pool
+     * @return server configuration
+     */
+    public ServerConfiguration setAdmissionControlMaxInFlightRequests(int maxInFlightRequests) {
+        setProperty(ADMISSION_CONTROL_MAX_IN_FLIGHT_REQUESTS, maxInFlightRequests);
+        return this;
+    }
+
+    /**
+     * Get the max number of requests waiting in the admission control queue of a class. After the quota is
+     * reached, the new requests of the class are rejected with a too many requests error.
+     *
+     * @return the max number of queued requests per class
+     */
+    public int getAdmissionControlMaxQueuedRequestsPerClass() {
+        return getInt(ADMISSION_CONTROL_MAX_QUEUED_REQUESTS_PER_CLASS, 10000);
+    }
+
+    /**
+     * Set the max number of requests waiting in the admission control queue of a class.
+     *
+     * @param maxQueuedRequests
+     *          the max number of queued requests per class
+     * @return server configuration
+     */
+    public ServerConfiguration setAdmissionControlMaxQueuedRequestsPerClass(int maxQueuedRequests) {
+        setProperty(ADMISSION_CONTROL_MAX_QUEUED_REQUESTS_PER_CLASS, maxQueuedRequests);
+        return this;
+    }
+
     /**
      * Get the path of a file from resources.
      *
@@ -107,6 +107,13 @@ class AuthHandler {
                             req.getProtocolVersion(), BookieProtocol.EUA,
                             req.getLedgerId(), req.getEntryId());
                     NettyChannelUtil.writeAndFlushWithVoidPromise(ctx.channel(), response);
+                } else if (req.getOpCode() == BookieProtocol.ADD_ENTRY_BATCH) {
+                    final BookieProtocol.AddResponse response = BookieProtocol.AddResponse.create(
+                            req.getProtocolVersion(), BookieProtocol.EUA,
+                            req.getLedgerId(), req.getEntryId());
+                    ((BookieProtocol.BatchedAddRequest) req).release();
+                    req.recycle();
+                    NettyChannelUtil.writeAndFlushWithVoidPromise(ctx.channel(), response);
                 } else if (req.getOpCode() == BookieProtocol.READENTRY) {
                     final BookieProtocol.ReadResponse response = new BookieProtocol.ReadResponse(
                             req.getProtocolVersion(), BookieProtocol.EUA,
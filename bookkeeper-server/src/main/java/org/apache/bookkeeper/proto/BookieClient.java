@@ -29,6 +29,7 @@ import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.MultiLedgerReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
@@ -222,6 +223,23 @@ public interface BookieClient {
             int maxCount, long maxSize, BatchedReadEntryCallback cb, Object ctx,
             int flags, byte[] masterKey, boolean allowFastFail);
 
+    /**
+     * Read the entries following a given entry for a list of ledgers from bookie at address {@code address}, with
+     * a single request. The entries of each ledger are read until an entry is missing or
+     * {@code maxEntriesPerLedger} entries are read. The ledgers which don't fit in {@code maxSize} are left out
+     * of the results and should be read again. Only supported with the v2 protocol.
+     *
+     * @param address address of the bookie to read from
+     * @param ledgerIds ids of the ledgers to read
+     * @param startEntryIds id of the first entry to read for each ledger
+     * @param maxEntriesPerLedger the max number of entries read per ledger
+     * @param maxSize the max size of the entries read
+     * @param cb the callback notified when the request completes
+     * @param ctx a context object passed to the callback on completion
+     */
+    void multiLedgerReadEntries(BookieId address, long[] ledgerIds, long[] startEntryIds,
+            int maxEntriesPerLedger, long maxSize, MultiLedgerReadEntriesCallback cb, Object ctx);
+
     /**
      * Send a long poll request to bookie, waiting for the last add confirmed
      * to be updated. The client can also request that the full entry is returned
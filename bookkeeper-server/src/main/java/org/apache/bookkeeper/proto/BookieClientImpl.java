@@ -59,6 +59,7 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallba
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureGetListOfEntriesOfLedger;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.MultiLedgerReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
@@ -370,6 +371,17 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }
     }
 
+    private void completeMultiLedgerRead(final int rc,
+            final long orderingKey,
+            final MultiLedgerReadEntriesCallback cb,
+            final Object ctx) {
+        try {
+            executor.executeOrdered(orderingKey, () -> cb.readEntriesComplete(rc, null, ctx));
+        } catch (RejectedExecutionException ree) {
+            cb.readEntriesComplete(getRc(BKException.Code.InterruptedException), null, ctx);
+        }
+    }
+
     private static class ChannelReadyForAddEntryCallback
         implements GenericCallback<PerChannelBookieClient> {
         private final Handle<ChannelReadyForAddEntryCallback> recyclerHandle;
@@ -529,6 +541,25 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }, ledgerId);
     }
 
+    @Override
+    public void multiLedgerReadEntries(final BookieId address, final long[] ledgerIds, final long[] startEntryIds,
+            final int maxEntriesPerLedger, final long maxSize, final MultiLedgerReadEntriesCallback cb,
+            final Object ctx) {
+        final PerChannelBookieClientPool client = lookupClient(address);
+        if (client == null) {
+            completeMultiLedgerRead(getRc(BKException.Code.BookieHandleNotAvailableException), ledgerIds[0], cb, ctx);
+            return;
+        }
+
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                completeMultiLedgerRead(rc, ledgerIds[0], cb, ctx);
+            } else {
+                pcbc.multiLedgerReadEntries(ledgerIds, startEntryIds, maxEntriesPerLedger, maxSize, cb, ctx, false);
+            }
+        }, ledgerIds[0]);
+    }
+
     @Override
     public void readEntryWaitForLACUpdate(final BookieId addr,
                                           final long ledgerId,
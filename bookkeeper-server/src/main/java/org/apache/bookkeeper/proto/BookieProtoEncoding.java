@@ -133,6 +133,27 @@ public class BookieProtoEncoding {
                 }
                 r.recycle();
                 return buf;
+            } else if (r instanceof BookieProtocol.MultiLedgerReadRequest) {
+                BookieProtocol.MultiLedgerReadRequest mr = (BookieProtocol.MultiLedgerReadRequest) r;
+                int ledgerCount = mr.getLedgerIds().length;
+                int totalHeaderSize = 4 // for request type
+                        + 8 // for request id
+                        + 8 // for max size
+                        + 4 // for max entries per ledger
+                        + 4 // for ledger count
+                        + ledgerCount * 16; // for ledger id and start entry id of each ledger
+                ByteBuf buf = allocator.buffer(totalHeaderSize + 4 /* frame size */);
+                buf.writeInt(totalHeaderSize);
+                buf.writeInt(PacketHeader.toInt(r.getProtocolVersion(), r.getOpCode(), r.getFlags()));
+                buf.writeLong(mr.getRequestId());
+                buf.writeLong(mr.getMaxSize());
+                buf.writeInt(mr.getMaxEntriesPerLedger());
+                buf.writeInt(ledgerCount);
+                for (int i = 0; i < ledgerCount; i++) {
+                    buf.writeLong(mr.getLedgerIds()[i]);
+                    buf.writeLong(mr.getStartEntryIds()[i]);
+                }
+                return buf;
             } else if (r instanceof BookieProtocol.ReadRequest) {
                 int totalHeaderSize = 4 // for request type
                     + 8 // for ledgerId
@@ -193,6 +214,39 @@ public class BookieProtoEncoding {
                         masterKey, packet);
             }
 
+            case BookieProtocol.ADD_ENTRY_BATCH: {
+                byte[] masterKey = readMasterKey(packet);
+                int count = packet.readInt();
+                if (count <= 0) {
+                    throw new IllegalStateException("Received add entry batch with " + count + " entries");
+                }
+                int[] lengths = new int[count];
+                long totalLength = 0;
+                for (int i = 0; i < count; i++) {
+                    lengths[i] = packet.readInt();
+                    if (lengths[i] < 16) {
+                        // An entry starts with its ledger id and entry id
+                        throw new IllegalStateException("Received add entry batch with an entry of "
+                                + lengths[i] + " bytes");
+                    }
+                    totalLength += lengths[i];
+                }
+                if (totalLength != packet.readableBytes()) {
+                    throw new IllegalStateException("Received add entry batch with " + totalLength
+                            + " bytes of entries in a payload of " + packet.readableBytes() + " bytes");
+                }
+                BookieProtocol.ParsedAddRequest[] addRequests = new BookieProtocol.ParsedAddRequest[count];
+                int offset = packet.readerIndex();
+                for (int i = 0; i < count; i++) {
+                    // Each entry is a slice of the packet, retained by its own add request
+                    ByteBuf entry = packet.slice(offset, lengths[i]);
+                    addRequests[i] = BookieProtocol.ParsedAddRequest.create(
+                            version, entry.getLong(0), entry.getLong(8), flags, masterKey, entry);
+                    offset += lengths[i];
+                }
+                return new BookieProtocol.BatchedAddRequest(version, flags, masterKey, addRequests);
+            }
+
             case BookieProtocol.READENTRY:
                 ledgerId = packet.readLong();
                 entryId = packet.readLong();
@@ -219,6 +273,24 @@ public class BookieProtoEncoding {
                     return BookieProtocol.BatchedReadRequest.create(version, ledgerId, entryId, flags, null,
                             requestId, maxCount, maxSize);
                 }
+            case BookieProtocol.MULTI_LEDGER_READ_ENTRY: {
+                long multiRequestId = packet.readLong();
+                long multiMaxSize = packet.readLong();
+                int maxEntriesPerLedger = packet.readInt();
+                int ledgerCount = packet.readInt();
+                if (ledgerCount <= 0 || ledgerCount * 16L != packet.readableBytes()) {
+                    throw new IllegalStateException("Received multi ledger read with " + ledgerCount
+                            + " ledgers in a payload of " + packet.readableBytes() + " bytes");
+                }
+                long[] ledgerIds = new long[ledgerCount];
+                long[] startEntryIds = new long[ledgerCount];
+                for (int i = 0; i < ledgerCount; i++) {
+                    ledgerIds[i] = packet.readLong();
+                    startEntryIds[i] = packet.readLong();
+                }
+                return new BookieProtocol.MultiLedgerReadRequest(version, flags, multiRequestId, multiMaxSize,
+                        maxEntriesPerLedger, ledgerIds, startEntryIds);
+            }
             case BookieProtocol.AUTH:
                 BookkeeperProtocol.AuthMessage.Builder builder = BookkeeperProtocol.AuthMessage.newBuilder();
                 builder.mergeFrom(new ByteBufInputStream(packet), extensionRegistry);
@@ -332,6 +404,41 @@ public class BookieProtoEncoding {
                         }
                         return byteBufList;
                     }
+                } else if (msg instanceof BookieProtocol.MultiLedgerReadResponse) {
+                    BookieProtocol.MultiLedgerReadResponse mr = (BookieProtocol.MultiLedgerReadResponse) r;
+                    int responseSize = RESPONSE_HEADERS_SIZE + 8 /* request_id */ + 4 /* ledger count */;
+                    for (int i = 0; i < mr.getLedgerCount(); i++) {
+                        ByteBufList entries = mr.getEntries(i);
+                        responseSize += 8 /* ledger id */ + 8 /* start entry id */ + 4 /* rc */ + 4 /* entry count */
+                                + entries.size() * 4 + entries.readableBytes();
+                    }
+                    ByteBuf buf = allocator.buffer(4 /* frame size */ + RESPONSE_HEADERS_SIZE + 12);
+                    buf.writeInt(responseSize);
+                    buf.writeInt(PacketHeader.toInt(r.getProtocolVersion(), r.getOpCode(), (short) 0));
+                    buf.writeInt(r.getErrorCode());
+                    buf.writeLong(r.getLedgerId());
+                    buf.writeLong(r.getEntryId());
+                    buf.writeLong(mr.getRequestId());
+                    buf.writeInt(mr.getLedgerCount());
+                    ByteBufList byteBufList = ByteBufList.get(buf);
+                    for (int i = 0; i < mr.getLedgerCount(); i++) {
+                        // The metadata of a ledger is followed by its entries, the response owns the entries
+                        ByteBufList entries = mr.getEntries(i);
+                        ByteBuf ledgerHeader = allocator.buffer(24 + entries.size() * 4);
+                        ledgerHeader.writeLong(mr.getLedgerId(i));
+                        ledgerHeader.writeLong(mr.getStartEntryId(i));
+                        ledgerHeader.writeInt(mr.getErrorCode(i));
+                        ledgerHeader.writeInt(entries.size());
+                        for (int j = 0; j < entries.size(); j++) {
+                            ledgerHeader.writeInt(entries.getBuffer(j).readableBytes());
+                        }
+                        byteBufList.add(ledgerHeader);
+                        for (int j = 0; j < entries.size(); j++) {
+                            byteBufList.add(entries.getBuffer(j).retain());
+                        }
+                    }
+                    mr.release();
+                    return byteBufList;
                 } else if (msg instanceof BookieProtocol.AddResponse) {
                     ByteBuf buf = allocator.buffer(RESPONSE_HEADERS_SIZE + 4 /* frame size */);
                     buf.writeInt(RESPONSE_HEADERS_SIZE);
@@ -400,6 +507,34 @@ public class BookieProtoEncoding {
                 }
                 return new BookieProtocol.BatchedReadResponse(version, rc, ledgerId, entryId, requestId, data == null
                         ? ByteBufList.get() : data.retain());
+            case BookieProtocol.MULTI_LEDGER_READ_ENTRY: {
+                rc = buffer.readInt();
+                ledgerId = buffer.readLong();
+                entryId = buffer.readLong();
+                long multiRequestId = buffer.readLong();
+                int ledgerCount = buffer.readInt();
+                long[] ledgerIds = new long[ledgerCount];
+                long[] startEntryIds = new long[ledgerCount];
+                int[] errorCodes = new int[ledgerCount];
+                ByteBufList[] entries = new ByteBufList[ledgerCount];
+                for (int i = 0; i < ledgerCount; i++) {
+                    ledgerIds[i] = buffer.readLong();
+                    startEntryIds[i] = buffer.readLong();
+                    errorCodes[i] = buffer.readInt();
+                    int entryCount = buffer.readInt();
+                    int[] entrySizes = new int[entryCount];
+                    for (int j = 0; j < entryCount; j++) {
+                        entrySizes[j] = buffer.readInt();
+                    }
+                    entries[i] = ByteBufList.get();
+                    for (int j = 0; j < entryCount; j++) {
+                        entries[i].add(buffer.retainedSlice(buffer.readerIndex(), entrySizes[j]));
+                        buffer.skipBytes(entrySizes[j]);
+                    }
+                }
+                return new BookieProtocol.MultiLedgerReadResponse(version, rc, ledgerId, entryId, multiRequestId,
+                        ledgerIds, startEntryIds, errorCodes, entries);
+            }
             case BookieProtocol.AUTH:
                 ByteBufInputStream bufStream = new ByteBufInputStream(buffer);
                 BookkeeperProtocol.AuthMessage.Builder builder = BookkeeperProtocol.AuthMessage.newBuilder();
@@ -411,6 +546,17 @@ public class BookieProtoEncoding {
             }
         }
 
+        static ByteBuf serializeReadResponseHeaders(BookieProtocol.Response r, long payloadSize,
+                                                    ByteBufAllocator allocator) {
+            ByteBuf buf = allocator.buffer(4 /* frame size */ + RESPONSE_HEADERS_SIZE);
+            buf.writeInt(RESPONSE_HEADERS_SIZE + (int) payloadSize);
+            buf.writeInt(PacketHeader.toInt(r.getProtocolVersion(), r.getOpCode(), (short) 0));
+            buf.writeInt(r.getErrorCode());
+            buf.writeLong(r.getLedgerId());
+            buf.writeLong(r.getEntryId());
+            return buf;
+        }
+
         public static void serializeAddResponseInto(int rc, BookieProtocol.ParsedAddRequest req, ByteBuf buf) {
             buf.writeInt(RESPONSE_HEADERS_SIZE); // Frame size
             buf.writeInt(PacketHeader.toInt(req.getProtocolVersion(), req.getOpCode(), (short) 0));
@@ -593,6 +739,12 @@ public class BookieProtoEncoding {
 
             if (msg instanceof ByteBuf) {
                 ctx.write(msg, promise);
+            } else if (msg instanceof BookieProtocol.ReadFileRegionResponse) {
+                // The headers are followed by the file region, which is written with sendfile
+                BookieProtocol.ReadFileRegionResponse rr = (BookieProtocol.ReadFileRegionResponse) msg;
+                ctx.write(ResponseEnDeCoderPreV3.serializeReadResponseHeaders(rr, rr.getRegion().count(),
+                        ctx.alloc()), ctx.voidPromise());
+                ctx.write(rr.getRegion(), promise);
             } else if (msg instanceof BookkeeperProtocol.Response) {
                 ctx.write(repV3.encode(msg, ctx.alloc()), promise);
             } else if (msg instanceof BookieProtocol.Response) {
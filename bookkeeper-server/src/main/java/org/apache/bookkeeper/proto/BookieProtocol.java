@@ -22,6 +22,7 @@ package org.apache.bookkeeper.proto;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.FileRegion;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCountUtil;
@@ -134,6 +135,21 @@ public interface BookieProtocol {
     byte WRITE_LAC = 5;
     byte GET_BOOKIE_INFO = 6;
     byte BATCH_READ_ENTRY = 7;
+    /**
+     * Add a sequence of entries of the same ledger in a single request. After the master key, the payload is a
+     * 4-byte integer with the number of entries, the 4-byte length of each entry and then the entries, each laid
+     * out exactly as in an ADDENTRY request. The bookie sends back a single ADDENTRY response for the last entry
+     * once all the entries are written, with the error code of the first failed entry if any.
+     */
+    byte ADD_ENTRY_BATCH = 8;
+    /**
+     * Read the entries following a given entry for a list of ledgers. The payload is the 8-byte request id, the
+     * 8-byte max size of the response, the 4-byte max number of entries per ledger, the 4-byte number of ledgers
+     * and the 8-byte ledger id and 8-byte first entry id of each ledger. The response lists, for each ledger read,
+     * the ledger id, the first entry id, the error code and the entries read. The ledgers that didn't fit in the
+     * max size of the response are left out.
+     */
+    byte MULTI_LEDGER_READ_ENTRY = 9;
 
     /**
      * The error code that indicates success.
@@ -307,6 +323,41 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * A batch of add requests of the same ledger, parsed on the bookie side.
+     * The ledger_id and entry_id are the ones of the last entry of the batch.
+     */
+    class BatchedAddRequest extends Request {
+        final ParsedAddRequest[] addRequests;
+
+        BatchedAddRequest(byte protocolVersion, short flags, byte[] masterKey, ParsedAddRequest[] addRequests) {
+            ParsedAddRequest last = addRequests[addRequests.length - 1];
+            init(protocolVersion, ADD_ENTRY_BATCH, last.getLedgerId(), last.getEntryId(), flags, masterKey);
+            this.addRequests = addRequests;
+        }
+
+        ParsedAddRequest[] getAddRequests() {
+            return addRequests;
+        }
+
+        ParsedAddRequest getLastAddRequest() {
+            return addRequests[addRequests.length - 1];
+        }
+
+        void release() {
+            for (ParsedAddRequest add : addRequests) {
+                add.release();
+            }
+        }
+
+        @Override
+        public void recycle() {
+            for (ParsedAddRequest add : addRequests) {
+                add.recycle();
+            }
+        }
+    }
+
     /**
      * A Request that reads data.
      */
@@ -421,6 +472,54 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * A request to read the entries following a given entry for a list of ledgers.
+     * The ledger_id and entry_id are the ones of the first ledger.
+     */
+    class MultiLedgerReadRequest extends Request {
+        final long requestId;
+        final long maxSize;
+        final int maxEntriesPerLedger;
+        final long[] ledgerIds;
+        final long[] startEntryIds;
+
+        MultiLedgerReadRequest(byte protocolVersion, short flags, long requestId, long maxSize,
+                               int maxEntriesPerLedger, long[] ledgerIds, long[] startEntryIds) {
+            init(protocolVersion, MULTI_LEDGER_READ_ENTRY, ledgerIds[0], startEntryIds[0], flags, null);
+            this.requestId = requestId;
+            this.maxSize = maxSize;
+            this.maxEntriesPerLedger = maxEntriesPerLedger;
+            this.ledgerIds = ledgerIds;
+            this.startEntryIds = startEntryIds;
+        }
+
+        long getRequestId() {
+            return requestId;
+        }
+
+        long getMaxSize() {
+            return maxSize;
+        }
+
+        int getMaxEntriesPerLedger() {
+            return maxEntriesPerLedger;
+        }
+
+        long[] getLedgerIds() {
+            return ledgerIds;
+        }
+
+        long[] getStartEntryIds() {
+            return startEntryIds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("MultiLedgerRead(%d ledgers, first %d@%d)",
+                    ledgerIds.length, ledgerId, entryId);
+        }
+    }
+
     /**
      * An authentication request.
      */
@@ -552,6 +651,27 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * A read response whose entry is sent straight from a region of an entry log file.
+     */
+    class ReadFileRegionResponse extends Response {
+        final FileRegion region;
+
+        ReadFileRegionResponse(byte protocolVersion, long ledgerId, long entryId, FileRegion region) {
+            init(protocolVersion, READENTRY, EOK, ledgerId, entryId);
+            this.region = region;
+        }
+
+        FileRegion getRegion() {
+            return region;
+        }
+
+        @Override
+        boolean release() {
+            return region.release();
+        }
+    }
+
     /**
      * The response for batched read.
      * The ledger_id and entry_id will be used as start_ledger_id and start_entry_id.
@@ -620,6 +740,64 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * The response to a {@link MultiLedgerReadRequest}, with the entries read for each ledger.
+     */
+    class MultiLedgerReadResponse extends Response {
+        final long requestId;
+        final long[] ledgerIds;
+        final long[] startEntryIds;
+        final int[] errorCodes;
+        final ByteBufList[] entries;
+
+        MultiLedgerReadResponse(byte protocolVersion, int errorCode, long ledgerId, long entryId, long requestId) {
+            this(protocolVersion, errorCode, ledgerId, entryId, requestId,
+                    new long[0], new long[0], new int[0], new ByteBufList[0]);
+        }
+
+        MultiLedgerReadResponse(byte protocolVersion, int errorCode, long ledgerId, long entryId, long requestId,
+                                long[] ledgerIds, long[] startEntryIds, int[] errorCodes, ByteBufList[] entries) {
+            init(protocolVersion, MULTI_LEDGER_READ_ENTRY, errorCode, ledgerId, entryId);
+            this.requestId = requestId;
+            this.ledgerIds = ledgerIds;
+            this.startEntryIds = startEntryIds;
+            this.errorCodes = errorCodes;
+            this.entries = entries;
+        }
+
+        long getRequestId() {
+            return requestId;
+        }
+
+        int getLedgerCount() {
+            return ledgerIds.length;
+        }
+
+        long getLedgerId(int index) {
+            return ledgerIds[index];
+        }
+
+        long getStartEntryId(int index) {
+            return startEntryIds[index];
+        }
+
+        int getErrorCode(int index) {
+            return errorCodes[index];
+        }
+
+        ByteBufList getEntries(int index) {
+            return entries[index];
+        }
+
+        @Override
+        boolean release() {
+            for (ByteBufList list : entries) {
+                ReferenceCountUtil.release(list);
+            }
+            return true;
+        }
+    }
+
     /**
      * A response that adds data.
      */
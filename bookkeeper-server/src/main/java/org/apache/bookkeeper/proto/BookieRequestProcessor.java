@@ -112,6 +112,12 @@ public class BookieRequestProcessor implements RequestProcessor {
      */
     private final HashedWheelTimer requestTimer;
 
+    /**
+     * The admission control of the normal priority requests of the read and write thread pools, null if disabled.
+     */
+    private final RequestAdmissionController readAdmissionController;
+    private final RequestAdmissionController writeAdmissionController;
+
     // Expose Stats
     private final BKStats bkStats = BKStats.getInstance();
     private final boolean statsEnabled;
@@ -131,6 +137,9 @@ public class BookieRequestProcessor implements RequestProcessor {
 
     private final boolean throttleReadResponses;
 
+    // Min size of the entries sent with zero-copy reads, -1 if disabled
+    private final int readEntryZeroCopyMinSize;
+
     public BookieRequestProcessor(ServerConfiguration serverCfg, Bookie bookie, StatsLogger statsLogger,
                                   SecurityHandlerFactory shFactory, ByteBufAllocator allocator,
                                   ChannelGroup allChannels) throws SecurityException {
@@ -141,6 +150,8 @@ public class BookieRequestProcessor implements RequestProcessor {
         this.preserveMdcForTaskExecution = serverCfg.getPreserveMdcForTaskExecution();
         this.bookie = bookie;
         this.throttleReadResponses = serverCfg.isReadWorkerThreadsThrottlingEnabled();
+        this.readEntryZeroCopyMinSize = serverCfg.isReadEntryZeroCopyEnabled()
+                ? serverCfg.getReadEntryZeroCopyMinSize() : -1;
         this.readThreadPool = createExecutor(
                 this.serverCfg.getNumReadWorkerThreads(),
                 "BookieReadThreadPool",
@@ -177,6 +188,19 @@ public class BookieRequestProcessor implements RequestProcessor {
                 this.serverCfg.getRequestTimerTickDurationMs(),
                 TimeUnit.MILLISECONDS, this.serverCfg.getRequestTimerNumTicks());
 
+        if (serverCfg.isAdmissionControlEnabled() && readThreadPool != null) {
+            this.readAdmissionController = new RequestAdmissionController(serverCfg, readThreadPool, requestTimer,
+                    statsLogger.scopeLabel("pool", "read"));
+        } else {
+            this.readAdmissionController = null;
+        }
+        if (serverCfg.isAdmissionControlEnabled() && writeThreadPool != null) {
+            this.writeAdmissionController = new RequestAdmissionController(serverCfg, writeThreadPool, requestTimer,
+                    statsLogger.scopeLabel("pool", "write"));
+        } else {
+            this.writeAdmissionController = null;
+        }
+
         if (waitTimeoutOnBackpressureMillis > 0) {
             blacklistedChannels = Optional.of(CacheBuilder.newBuilder()
                     .expireAfterWrite(waitTimeoutOnBackpressureMillis, TimeUnit.MILLISECONDS)
@@ -286,7 +310,7 @@ public class BookieRequestProcessor implements RequestProcessor {
         if (numThreads <= 0) {
             return null;
         } else {
-            return OrderedExecutor.newBuilder()
+            return OrderedExecutor.newBuilder(serverCfg.isWorkStealingExecutorEnabled())
                     .numThreads(numThreads)
                     .name(nameFormat)
                     .traceTaskExecution(serverCfg.getEnableTaskExecutionStats())
@@ -377,6 +401,10 @@ public class BookieRequestProcessor implements RequestProcessor {
                     checkArgument(r instanceof BookieProtocol.ParsedAddRequest);
                     processAddRequest((BookieProtocol.ParsedAddRequest) r, requestHandler);
                     break;
+                case BookieProtocol.ADD_ENTRY_BATCH:
+                    checkArgument(r instanceof BookieProtocol.BatchedAddRequest);
+                    processAddRequest((BookieProtocol.BatchedAddRequest) r, requestHandler);
+                    break;
                 case BookieProtocol.READENTRY:
                     checkArgument(r instanceof BookieProtocol.ReadRequest);
                     processReadRequest((BookieProtocol.ReadRequest) r, requestHandler);
@@ -385,6 +413,10 @@ public class BookieRequestProcessor implements RequestProcessor {
                     checkArgument(r instanceof BookieProtocol.BatchedReadRequest);
                     processReadRequest((BookieProtocol.BatchedReadRequest) r, requestHandler);
                     break;
+                case BookieProtocol.MULTI_LEDGER_READ_ENTRY:
+                    checkArgument(r instanceof BookieProtocol.MultiLedgerReadRequest);
+                    processMultiLedgerReadRequest((BookieProtocol.MultiLedgerReadRequest) r, requestHandler);
+                    break;
                 case BookieProtocol.AUTH:
                     LOG.info("Ignoring auth operation from client {}",
                             requestHandler.ctx().channel().remoteAddress());
@@ -444,81 +476,100 @@ public class BookieRequestProcessor implements RequestProcessor {
         WriteEntryProcessorV3 write = new WriteEntryProcessorV3(r, requestHandler, this);
 
         final OrderedExecutor threadPool;
+        RequestAdmissionController admissionController = null;
         if (RequestUtils.isHighPriority(r)) {
             threadPool = highPriorityThreadPool;
         } else {
             threadPool = writeThreadPool;
+            admissionController = writeAdmissionController;
         }
 
         if (null == threadPool) {
             write.run();
+        } else if (null != admissionController) {
+            admissionController.execute(requestHandler, r.getAddRequest().getLedgerId(),
+                    r.getAddRequest().getBody().size(), write, () -> rejectAddRequestV3(r, write));
         } else {
             try {
                 threadPool.executeOrdered(r.getAddRequest().getLedgerId(), write);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
-                              r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
-                }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-                BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
-                        .setLedgerId(r.getAddRequest().getLedgerId())
-                        .setEntryId(r.getAddRequest().getEntryId())
-                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                        .setHeader(write.getHeader())
-                        .setStatus(addResponse.getStatus())
-                        .setAddResponse(addResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+                rejectAddRequestV3(r, write);
             }
         }
     }
 
+    private void rejectAddRequestV3(BookkeeperProtocol.Request r, WriteEntryProcessorV3 write) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
+                      r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
+        }
+        getRequestStats().getAddEntryRejectedCounter().inc();
+        BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
+                .setLedgerId(r.getAddRequest().getLedgerId())
+                .setEntryId(r.getAddRequest().getEntryId())
+                .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                .setHeader(write.getHeader())
+                .setStatus(addResponse.getStatus())
+                .setAddResponse(addResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+    }
+
     private void processForceLedgerRequestV3(final BookkeeperProtocol.Request r,
                                              final BookieRequestHandler requestHandler) {
         ForceLedgerProcessorV3 forceLedger = new ForceLedgerProcessorV3(r, requestHandler, this);
 
         final OrderedExecutor threadPool;
+        RequestAdmissionController admissionController = null;
         if (RequestUtils.isHighPriority(r)) {
             threadPool = highPriorityThreadPool;
         } else {
             threadPool = writeThreadPool;
+            admissionController = writeAdmissionController;
         }
 
         if (null == threadPool) {
             forceLedger.run();
+        } else if (null != admissionController) {
+            admissionController.execute(requestHandler, r.getForceLedgerRequest().getLedgerId(), 0, forceLedger,
+                    () -> rejectForceLedgerRequestV3(r, forceLedger));
         } else {
             try {
                 threadPool.executeOrdered(r.getForceLedgerRequest().getLedgerId(), forceLedger);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to force ledger {}. Too many pending requests",
-                              r.getForceLedgerRequest().getLedgerId());
-                }
-                BookkeeperProtocol.ForceLedgerResponse.Builder forceLedgerResponse =
-                        BookkeeperProtocol.ForceLedgerResponse.newBuilder()
-                        .setLedgerId(r.getForceLedgerRequest().getLedgerId())
-                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                        .setHeader(forceLedger.getHeader())
-                        .setStatus(forceLedgerResponse.getStatus())
-                        .setForceLedgerResponse(forceLedgerResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                forceLedger.sendResponse(
-                    forceLedgerResponse.getStatus(),
-                    resp,
-                    requestStats.getForceLedgerRequestStats());
+                rejectForceLedgerRequestV3(r, forceLedger);
             }
         }
     }
 
+    private void rejectForceLedgerRequestV3(BookkeeperProtocol.Request r, ForceLedgerProcessorV3 forceLedger) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to force ledger {}. Too many pending requests",
+                      r.getForceLedgerRequest().getLedgerId());
+        }
+        BookkeeperProtocol.ForceLedgerResponse.Builder forceLedgerResponse =
+                BookkeeperProtocol.ForceLedgerResponse.newBuilder()
+                .setLedgerId(r.getForceLedgerRequest().getLedgerId())
+                .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                .setHeader(forceLedger.getHeader())
+                .setStatus(forceLedgerResponse.getStatus())
+                .setForceLedgerResponse(forceLedgerResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        forceLedger.sendResponse(
+            forceLedgerResponse.getStatus(),
+            resp,
+            requestStats.getForceLedgerRequestStats());
+    }
+
     private void processReadRequestV3(final BookkeeperProtocol.Request r, final BookieRequestHandler requestHandler) {
         ExecutorService fenceThread = null == highPriorityThreadPool ? null :
                 highPriorityThreadPool.chooseThread(requestHandler.ctx());
 
         final ReadEntryProcessorV3 read;
         final OrderedExecutor threadPool;
+        RequestAdmissionController admissionController = null;
         if (RequestUtils.isLongPollReadRequest(r.getReadRequest())) {
             ExecutorService lpThread = longPollThreadPool.chooseThread(requestHandler.ctx());
 
@@ -537,35 +588,43 @@ public class BookieRequestProcessor implements RequestProcessor {
                 threadPool = highPriorityThreadPool;
             } else {
                 threadPool = readThreadPool;
+                admissionController = readAdmissionController;
             }
         }
 
         if (null == threadPool) {
             read.run();
+        } else if (null != admissionController) {
+            admissionController.execute(requestHandler, r.getReadRequest().getLedgerId(), 0, read,
+                    () -> rejectReadRequestV3(r, read));
         } else {
             try {
                 threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
-                              r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
-                }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
-                    .setLedgerId(r.getReadRequest().getLedgerId())
-                    .setEntryId(r.getReadRequest().getEntryId())
-                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                    .setHeader(read.getHeader())
-                    .setStatus(readResponse.getStatus())
-                    .setReadResponse(readResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
-                onReadRequestFinish();
+                rejectReadRequestV3(r, read);
             }
         }
     }
 
+    private void rejectReadRequestV3(BookkeeperProtocol.Request r, ReadEntryProcessorV3 read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
+                      r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
+            .setLedgerId(r.getReadRequest().getLedgerId())
+            .setEntryId(r.getReadRequest().getEntryId())
+            .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+            .setHeader(read.getHeader())
+            .setStatus(readResponse.getStatus())
+            .setReadResponse(readResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
+        onReadRequestFinish();
+    }
+
     private void processStartTLSRequestV3(final BookkeeperProtocol.Request r,
                                           final BookieRequestHandler requestHandler) {
         BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder();
@@ -656,35 +715,90 @@ public class BookieRequestProcessor implements RequestProcessor {
         // If it's a high priority add (usually as part of recovery process), we want to make sure it gets
         // executed as fast as possible, so bypass the normal writeThreadPool and execute in highPriorityThreadPool
         final OrderedExecutor threadPool;
+        RequestAdmissionController admissionController = null;
         if (r.isHighPriority()) {
             threadPool = highPriorityThreadPool;
         } else {
             threadPool = writeThreadPool;
+            admissionController = writeAdmissionController;
         }
 
         if (null == threadPool) {
             write.run();
+        } else if (null != admissionController) {
+            admissionController.execute(requestHandler, r.getLedgerId(), r.getData().readableBytes(), write,
+                    () -> rejectAddRequest(r, write));
         } else {
             try {
                 threadPool.executeOrdered(r.getLedgerId(), write);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
-                }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-
-                write.sendWriteReqResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getAddRequestStats());
-                r.release();
-                r.recycle();
-                write.recycle();
+                rejectAddRequest(r, write);
+            }
+        }
+    }
+
+    private void rejectAddRequest(BookieProtocol.ParsedAddRequest r, WriteEntryProcessor write) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
+                    r.entryId);
+        }
+        getRequestStats().getAddEntryRejectedCounter().inc();
+
+        write.sendWriteReqResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+            requestStats.getAddRequestStats());
+        r.release();
+        r.recycle();
+        write.recycle();
+    }
+
+    private void processAddRequest(final BookieProtocol.BatchedAddRequest r,
+                                   final BookieRequestHandler requestHandler) {
+        WriteBatchEntryProcessor write = WriteBatchEntryProcessor.create(r, requestHandler, this);
+
+        final OrderedExecutor threadPool;
+        RequestAdmissionController admissionController = null;
+        if (r.isHighPriority()) {
+            threadPool = highPriorityThreadPool;
+        } else {
+            threadPool = writeThreadPool;
+            admissionController = writeAdmissionController;
+        }
+
+        if (null == threadPool) {
+            write.run();
+        } else if (null != admissionController) {
+            int bytes = 0;
+            for (BookieProtocol.ParsedAddRequest addRequest : r.getAddRequests()) {
+                bytes += addRequest.getData().readableBytes();
+            }
+            admissionController.execute(requestHandler, r.getLedgerId(), bytes, write,
+                    () -> rejectAddRequest(r, write));
+        } else {
+            try {
+                threadPool.executeOrdered(r.getLedgerId(), write);
+            } catch (RejectedExecutionException e) {
+                rejectAddRequest(r, write);
             }
         }
     }
 
+    private void rejectAddRequest(BookieProtocol.BatchedAddRequest r, WriteBatchEntryProcessor write) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to add entries up to {}:{}. Too many pending requests",
+                    r.ledgerId, r.entryId);
+        }
+        getRequestStats().getAddEntryRejectedCounter().inc();
+
+        write.sendWriteReqResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r.getLastAddRequest()),
+            requestStats.getAddRequestStats());
+        r.release();
+        r.recycle();
+    }
+
     private void processReadRequest(final BookieProtocol.ReadRequest r, final BookieRequestHandler requestHandler) {
         ExecutorService fenceThreadPool =
                 null == highPriorityThreadPool ? null : highPriorityThreadPool.chooseThread(requestHandler.ctx());
@@ -698,37 +812,96 @@ public class BookieRequestProcessor implements RequestProcessor {
         // gets executed as fast as possible, so bypass the normal readThreadPool
         // and execute in highPriorityThreadPool
         final OrderedExecutor threadPool;
+        RequestAdmissionController admissionController = null;
         if (r.isHighPriority() || r.isFencing()) {
             threadPool = highPriorityThreadPool;
         } else {
             threadPool = readThreadPool;
+            admissionController = readAdmissionController;
         }
 
         if (null == threadPool) {
             read.run();
+        } else if (null != admissionController) {
+            admissionController.execute(requestHandler, r.getLedgerId(), 0, read, () -> rejectReadRequest(r, read));
         } else {
             try {
                 threadPool.executeOrdered(r.getLedgerId(), read);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
-                }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                read.sendResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getReadRequestStats());
-                onReadRequestFinish();
-                read.recycle();
+                rejectReadRequest(r, read);
+            }
+        }
+    }
+
+    private void rejectReadRequest(BookieProtocol.ReadRequest r, ReadEntryProcessor read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
+                    r.entryId);
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        read.sendResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+            requestStats.getReadRequestStats());
+        onReadRequestFinish();
+        read.recycle();
+    }
+
+    private void processMultiLedgerReadRequest(final BookieProtocol.MultiLedgerReadRequest r,
+                                               final BookieRequestHandler requestHandler) {
+        MultiLedgerReadEntryProcessor read = MultiLedgerReadEntryProcessor.create(r, requestHandler, this,
+                throttleReadResponses, serverCfg.getMaxBatchReadSize());
+        if (null == readThreadPool) {
+            read.run();
+        } else if (null != readAdmissionController) {
+            readAdmissionController.execute(requestHandler, r.getLedgerId(), 0, read,
+                    () -> rejectMultiLedgerReadRequest(r, read));
+        } else {
+            try {
+                readThreadPool.executeOrdered(r.getLedgerId(), read);
+            } catch (RejectedExecutionException e) {
+                rejectMultiLedgerReadRequest(r, read);
             }
         }
     }
 
+    private void rejectMultiLedgerReadRequest(BookieProtocol.MultiLedgerReadRequest r,
+                                              MultiLedgerReadEntryProcessor read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process {}. Too many pending requests", r);
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        read.sendResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+            requestStats.getReadRequestStats());
+        onReadRequestFinish();
+    }
+
+    /**
+     * Charge the entries of a read response to the rate of the admission control class of the request.
+     */
+    void onReadResponse(BookieRequestHandler requestHandler, long ledgerId, Object response) {
+        if (null != readAdmissionController) {
+            readAdmissionController.chargeReadResponse(requestHandler, ledgerId,
+                    RequestAdmissionController.getReadResponseSize(response));
+        }
+    }
+
+    void onReadResponseBytes(BookieRequestHandler requestHandler, long ledgerId, long bytes) {
+        if (null != readAdmissionController) {
+            readAdmissionController.chargeReadResponse(requestHandler, ledgerId, bytes);
+        }
+    }
+
     public long getWaitTimeoutOnBackpressureMillis() {
         return waitTimeoutOnBackpressureMillis;
     }
 
+    int getReadEntryZeroCopyMinSize() {
+        return readEntryZeroCopyMinSize;
+    }
+
     public void blacklistChannel(Channel channel) {
         blacklistedChannels
                 .ifPresent(x -> x.put(channel, true));
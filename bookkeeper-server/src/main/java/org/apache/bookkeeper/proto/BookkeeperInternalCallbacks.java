@@ -22,6 +22,7 @@
 package org.apache.bookkeeper.proto;
 
 import io.netty.buffer.ByteBuf;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -232,6 +233,16 @@ public class BookkeeperInternalCallbacks {
         void readEntriesComplete(int rc, long ledgerId, long startEntryId, ByteBufList bufList, Object ctx);
     }
 
+    /**
+     * Declaration of a callback implementation for calls from BookieClient objects.
+     * Such calls are for replies of multi ledger read operations (operations to read the entries
+     * following a given entry for a list of ledgers). The ledgers which didn't fit in the response
+     * are not in the results.
+     */
+    public interface MultiLedgerReadEntriesCallback {
+        void readEntriesComplete(int rc, List<MultiLedgerReadResult> results, Object ctx);
+    }
+
     /**
      * Listener on entries responded.
      */
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.proto.BookieProtocol.MultiLedgerReadRequest;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes multi ledger read requests.
+ *
+ * <p>The entries of each ledger are read from its start entry until an entry is missing or the max number of
+ * entries per ledger is reached. The ledgers are read in the order of the request until the response reaches its
+ * max size: the ledgers which don't fit are left out of the response, and the client asks for them again. The first
+ * entry of the first ledger is always sent, so that a large entry can't stall the reader.
+ */
+class MultiLedgerReadEntryProcessor extends PacketProcessorBase<MultiLedgerReadRequest> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MultiLedgerReadEntryProcessor.class);
+
+    // See BookieProtoEncoding.ResponseEnDeCoderPreV3#encode on MultiLedgerReadResponse case.
+    private static final int RESPONSE_HEADER_SIZE = 24 + 8 + 4;
+    private static final int LEDGER_HEADER_SIZE = 8 + 8 + 4 + 4;
+
+    private final boolean throttleReadResponses;
+    private final long maxBatchReadSize;
+
+    private MultiLedgerReadEntryProcessor(boolean throttleReadResponses, long maxBatchReadSize) {
+        this.throttleReadResponses = throttleReadResponses;
+        this.maxBatchReadSize = maxBatchReadSize;
+    }
+
+    public static MultiLedgerReadEntryProcessor create(MultiLedgerReadRequest request,
+                                                       BookieRequestHandler requestHandler,
+                                                       BookieRequestProcessor requestProcessor,
+                                                       boolean throttleReadResponses,
+                                                       long maxBatchReadSize) {
+        MultiLedgerReadEntryProcessor processor =
+                new MultiLedgerReadEntryProcessor(throttleReadResponses, maxBatchReadSize);
+        processor.init(request, requestHandler, requestProcessor);
+        requestProcessor.onReadRequestStart(requestHandler.ctx().channel());
+        return processor;
+    }
+
+    @Override
+    protected void processPacket() {
+        if (!requestHandler.ctx().channel().isOpen()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Dropping multi ledger read request for closed channel: {}",
+                        requestHandler.ctx().channel());
+            }
+            requestProcessor.onReadRequestFinish();
+            return;
+        }
+
+        long startTimeNanos = MathUtils.nowInNano();
+        long[] ledgerIds = request.getLedgerIds();
+        long[] startEntryIds = request.getStartEntryIds();
+        int maxEntries = request.getMaxEntriesPerLedger() > 0 ? request.getMaxEntriesPerLedger() : Integer.MAX_VALUE;
+        long maxSize = Math.min(request.getMaxSize(), maxBatchReadSize);
+
+        int[] errorCodes = new int[ledgerIds.length];
+        ByteBufList[] entries = new ByteBufList[ledgerIds.length];
+        long frameSize = RESPONSE_HEADER_SIZE;
+        int ledgerCount = 0;
+        while (ledgerCount < ledgerIds.length) {
+            frameSize += LEDGER_HEADER_SIZE;
+            if (ledgerCount > 0 && frameSize > maxSize) {
+                break;
+            }
+            ByteBufList ledgerEntries = ByteBufList.get();
+            int errorCode = BookieProtocol.EOK;
+            for (int i = 0; i < maxEntries; i++) {
+                ByteBuf entry;
+                try {
+                    entry = requestProcessor.getBookie().readEntry(ledgerIds[ledgerCount],
+                            startEntryIds[ledgerCount] + i);
+                } catch (Throwable t) {
+                    if (i == 0) {
+                        errorCode = toErrorCode(t, ledgerIds[ledgerCount], startEntryIds[ledgerCount]);
+                    }
+                    break;
+                }
+                frameSize += entry.readableBytes() + 4;
+                if (frameSize > maxSize && (ledgerCount > 0 || i > 0)) {
+                    entry.release();
+                    break;
+                }
+                ledgerEntries.add(entry);
+            }
+            errorCodes[ledgerCount] = errorCode;
+            entries[ledgerCount] = ledgerEntries;
+            ledgerCount++;
+            if (frameSize > maxSize) {
+                break;
+            }
+        }
+
+        long[] readLedgerIds = new long[ledgerCount];
+        long[] readStartEntryIds = new long[ledgerCount];
+        int[] readErrorCodes = new int[ledgerCount];
+        ByteBufList[] readEntries = new ByteBufList[ledgerCount];
+        System.arraycopy(ledgerIds, 0, readLedgerIds, 0, ledgerCount);
+        System.arraycopy(startEntryIds, 0, readStartEntryIds, 0, ledgerCount);
+        System.arraycopy(errorCodes, 0, readErrorCodes, 0, ledgerCount);
+        System.arraycopy(entries, 0, readEntries, 0, ledgerCount);
+
+        requestProcessor.getRequestStats().getReadEntryStats()
+                .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        BookieProtocol.Response response = new BookieProtocol.MultiLedgerReadResponse(request.getProtocolVersion(),
+                BookieProtocol.EOK, request.getLedgerId(), request.getEntryId(), request.getRequestId(),
+                readLedgerIds, readStartEntryIds, readErrorCodes, readEntries);
+        sendReadReqResponse(BookieProtocol.EOK, response, requestProcessor.getRequestStats().getReadRequestStats(),
+                throttleReadResponses);
+    }
+
+    private static int toErrorCode(Throwable t, long ledgerId, long entryId) {
+        if (t instanceof Bookie.NoLedgerException) {
+            return BookieProtocol.ENOLEDGER;
+        } else if (t instanceof Bookie.NoEntryException) {
+            return BookieProtocol.ENOENTRY;
+        } else if (t instanceof IOException) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error reading {}@{}", ledgerId, entryId, t);
+            }
+            return BookieProtocol.EIO;
+        } else if (t instanceof BookieException.DataUnknownException) {
+            LOG.error("Ledger {} is in an unknown state", ledgerId, t);
+            return BookieProtocol.EUNKNOWNLEDGERSTATE;
+        } else if (t instanceof BookieException) {
+            LOG.error("Unauthorized access to ledger {}", ledgerId, t);
+            return BookieProtocol.EUA;
+        } else {
+            LOG.error("Unexpected exception reading at {}:{} : {}", ledgerId, entryId, t.getMessage(), t);
+            return BookieProtocol.EBADREQ;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MultiLedgerReadEntry(%d ledgers, %d, %d)", request.getLedgerIds().length,
+                request.getMaxEntriesPerLedger(), request.getMaxSize());
+    }
+}
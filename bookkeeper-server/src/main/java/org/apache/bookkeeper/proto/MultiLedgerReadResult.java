@@ -0,0 +1,73 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import org.apache.bookkeeper.util.ByteBufList;
+
+/**
+ * The entries read from a ledger by a multi ledger read request.
+ *
+ * <p>The entries are only valid during the {@link BookkeeperInternalCallbacks.MultiLedgerReadEntriesCallback}
+ * callback: they must be retained to be used after it returns.
+ */
+public class MultiLedgerReadResult {
+
+    private final long ledgerId;
+    private final long startEntryId;
+    private final int rc;
+    private final ByteBufList entries;
+
+    public MultiLedgerReadResult(long ledgerId, long startEntryId, int rc, ByteBufList entries) {
+        this.ledgerId = ledgerId;
+        this.startEntryId = startEntryId;
+        this.rc = rc;
+        this.entries = entries;
+    }
+
+    public long getLedgerId() {
+        return ledgerId;
+    }
+
+    /**
+     * Get the id of the first entry read, the following entries have consecutive ids.
+     */
+    public long getStartEntryId() {
+        return startEntryId;
+    }
+
+    /**
+     * Get the result code of the read of the ledger, {@link org.apache.bookkeeper.client.BKException.Code#OK} if
+     * at least one entry was read.
+     */
+    public int getRc() {
+        return rc;
+    }
+
+    public ByteBufList getEntries() {
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MultiLedgerReadResult(ledger=%d, start=%d, rc=%d, entries=%d)",
+                ledgerId, startEntryId, rc, entries.size());
+    }
+}
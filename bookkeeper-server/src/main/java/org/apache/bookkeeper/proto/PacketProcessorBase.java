@@ -72,6 +72,7 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
     }
 
     protected void sendReadReqResponse(int rc, Object response, OpStatsLogger statsLogger, boolean throttle) {
+        requestProcessor.onReadResponse(requestHandler, request.getLedgerId(), response);
         if (throttle) {
             sendResponseAndWait(rc, response, statsLogger);
         } else {
@@ -176,11 +177,11 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
 
     @Override
     public void run() {
-        if (request instanceof BookieProtocol.ReadRequest) {
+        if (request instanceof BookieProtocol.ReadRequest || request instanceof BookieProtocol.MultiLedgerReadRequest) {
             requestProcessor.getRequestStats().getReadEntrySchedulingDelayStats()
                     .registerSuccessfulEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
         }
-        if (request instanceof BookieProtocol.ParsedAddRequest) {
+        if (request instanceof BookieProtocol.ParsedAddRequest || request instanceof BookieProtocol.BatchedAddRequest) {
             requestProcessor.getRequestStats().getWriteThreadQueuedLatency()
                     .registerSuccessfulEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
         }
@@ -189,7 +190,8 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
             sendResponse(BookieProtocol.EBADVERSION,
                          ResponseBuilder.buildErrorResponse(BookieProtocol.EBADVERSION, request),
                          requestProcessor.getRequestStats().getReadRequestStats());
-            if (request instanceof BookieProtocol.ReadRequest) {
+            if (request instanceof BookieProtocol.ReadRequest
+                    || request instanceof BookieProtocol.MultiLedgerReadRequest) {
                 requestProcessor.onReadRequestFinish();
             }
             if (request instanceof BookieProtocol.ParsedAddRequest) {
@@ -197,6 +199,11 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
                 request.recycle();
                 requestProcessor.onAddRequestFinish();
             }
+            if (request instanceof BookieProtocol.BatchedAddRequest) {
+                ((BookieProtocol.BatchedAddRequest) request).release();
+                request.recycle();
+                requestProcessor.onAddRequestFinish();
+            }
             return;
         }
         processPacket();
@@ -76,13 +76,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -108,6 +109,7 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallba
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetListOfEntriesOfLedgerCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.MultiLedgerReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallbackCtx;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
@@ -146,7 +148,6 @@ import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
 import org.apache.bookkeeper.util.ByteBufList;
 import org.apache.bookkeeper.util.StringUtils;
 import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
-import org.apache.bookkeeper.util.collections.SynchronizedHashMultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -176,6 +177,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private static final int DEFAULT_HIGH_PRIORITY_VALUE = 100; // We may add finer grained priority later.
     private static final AtomicLong txnIdGenerator = new AtomicLong(0);
     static final String CONSOLIDATION_HANDLER_NAME = "consolidation";
+    // Frame size, request header and master key in front of the entry of a v2 add request
+    private static final int V2_ADD_REQUEST_PREFIX_SIZE = 4 + 4 + BookieProtocol.MASTER_KEY_LENGTH;
 
     final BookieId bookieId;
     final BookieAddressResolver bookieAddressResolver;
@@ -191,10 +194,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
             ConcurrentOpenHashMap.<CompletionKey, CompletionValue>newBuilder().autoShrink(true).build();
 
-    // Map that hold duplicated read requests. The idea is to only use this map (synchronized) when there is a duplicate
-    // read request for the same ledgerId/entryId
-    private final SynchronizedHashMultiMap<CompletionKey, CompletionValue> completionObjectsV2Conflicts =
-        new SynchronizedHashMultiMap<>();
+    // The v2 requests are keyed by ledgerId/entryId/operation, which may be duplicated, e.g. by concurrent reads
+    // of the same entry
+    private final V2CompletionTable<CompletionValue> v2CompletionObjects = new V2CompletionTable<>();
 
     private final StatsLogger statsLogger;
     @StatsDoc(
@@ -318,6 +320,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
     private final boolean useV2WireProtocol;
     private final boolean preserveMdcForTaskExecution;
+    private final boolean addEntryBatchingEnabled;
+    private final int addEntryBatchMaxEntries;
+    private final int addEntryBatchMaxBytes;
+
+    // Adds waiting to be sent as a batch, by ledger. Also guards addBatchFlushScheduled and the writes of the
+    // batches, so that the adds of a ledger are written to the channel in order.
+    private final Map<Long, PendingAddBatch> pendingAddBatches = new HashMap<>();
+    private boolean addBatchFlushScheduled = false;
 
     /**
      * The following member variables do not need to be concurrent, or volatile
@@ -405,6 +415,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.startTLSTimeout = conf.getStartTLSTimeout();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.preserveMdcForTaskExecution = conf.getPreserveMdcForTaskExecution();
+        this.addEntryBatchingEnabled = useV2WireProtocol && conf.isAddEntryBatchingEnabled();
+        this.addEntryBatchMaxEntries = conf.getAddEntryBatchMaxEntries();
+        this.addEntryBatchMaxBytes = conf.getAddEntryBatchMaxBytes();
 
         this.authProviderFactory = authProviderFactory;
         this.extRegistry = extRegistry;
@@ -528,7 +541,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     protected long getNumPendingCompletionRequests() {
-        return completionObjects.size();
+        return completionObjects.size() + v2CompletionObjects.size();
     }
 
     protected ChannelFuture connect() {
@@ -703,8 +716,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setTxnId(txnId);
         ByteString body = ByteStringUtil.byteBufListToByteString(toSend);
         toSend.retain();
-        Runnable cleanupActionFailedBeforeWrite = toSend::release;
-        Runnable cleanupActionAfterWrite = cleanupActionFailedBeforeWrite;
         WriteLacRequest.Builder writeLacBuilder = WriteLacRequest.newBuilder()
                 .setLedgerId(ledgerId)
                 .setLac(lac)
@@ -715,8 +726,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setHeader(headerBuilder)
                 .setWriteLacRequest(writeLacBuilder)
                 .build();
-        writeAndFlush(channel, completionKey, writeLacRequest, false, cleanupActionFailedBeforeWrite,
-                cleanupActionAfterWrite);
+        writeAndFlush(channel, completionKey, writeLacRequest, false, toSend, toSend);
     }
 
     void forceLedger(final long ledgerId, ForceLedgerCallback cb, Object ctx) {
@@ -775,25 +785,34 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                   Object ctx, final int options, boolean allowFastFail, final EnumSet<WriteFlag> writeFlags) {
         Object request = null;
         CompletionKey completionKey = null;
-        Runnable cleanupActionFailedBeforeWrite = null;
-        Runnable cleanupActionAfterWrite = null;
+        ReferenceCounted releaseOnFailedWrite = null;
+        ReferenceCounted releaseAfterWrite = null;
         if (useV2WireProtocol) {
             if (writeFlags.contains(WriteFlag.DEFERRED_SYNC)) {
                 LOG.error("invalid writeflags {} for v2 protocol", writeFlags);
                 cb.writeComplete(BKException.Code.IllegalOpException, ledgerId, entryId, bookieId, ctx);
                 return;
             }
+            if (addEntryBatchingEnabled) {
+                if (toSend instanceof ByteBuf && ((ByteBuf) toSend).readableBytes() - V2_ADD_REQUEST_PREFIX_SIZE
+                        <= addEntryBatchMaxBytes) {
+                    addToBatch(ledgerId, masterKey, entryId, (ByteBuf) toSend, cb, ctx, options, allowFastFail);
+                    return;
+                }
+                // Keep the adds of the ledger in order
+                flushAddBatch(ledgerId);
+            }
             completionKey = acquireV2Key(ledgerId, entryId, OperationType.ADD_ENTRY);
 
             if (toSend instanceof ByteBuf) {
                 ByteBuf byteBuf = ((ByteBuf) toSend).retainedDuplicate();
                 request = byteBuf;
-                cleanupActionFailedBeforeWrite = byteBuf::release;
+                releaseOnFailedWrite = byteBuf;
             } else {
                 ByteBufList byteBufList = (ByteBufList) toSend;
                 byteBufList.retain();
                 request = byteBufList;
-                cleanupActionFailedBeforeWrite = byteBufList::release;
+                releaseOnFailedWrite = byteBufList;
             }
         } else {
             final long txnId = getTxnId();
@@ -811,8 +830,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             ByteBufList bufToSend = (ByteBufList) toSend;
             ByteString body = ByteStringUtil.byteBufListToByteString(bufToSend);
             bufToSend.retain();
-            cleanupActionFailedBeforeWrite = bufToSend::release;
-            cleanupActionAfterWrite = cleanupActionFailedBeforeWrite;
+            releaseOnFailedWrite = bufToSend;
+            releaseAfterWrite = bufToSend;
             AddRequest.Builder addBuilder = AddRequest.newBuilder()
                     .setLedgerId(ledgerId)
                     .setEntryId(entryId)
@@ -838,8 +857,149 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                               acquireAddCompletion(completionKey,
                                                    cb, ctx, ledgerId, entryId));
         // addEntry times out on backpressure
-        writeAndFlush(channel, completionKey, request, allowFastFail, cleanupActionFailedBeforeWrite,
-                cleanupActionAfterWrite);
+        writeAndFlush(channel, completionKey, request, allowFastFail, releaseOnFailedWrite, releaseAfterWrite);
+    }
+
+    private void addToBatch(long ledgerId, byte[] masterKey, long entryId, ByteBuf toSend, WriteCallback cb,
+                            Object ctx, int options, boolean allowFastFail) {
+        boolean scheduleFlush = false;
+        synchronized (pendingAddBatches) {
+            PendingAddBatch batch = pendingAddBatches.get(ledgerId);
+            int entrySize = toSend.readableBytes() - V2_ADD_REQUEST_PREFIX_SIZE;
+            if (batch != null && !batch.canAppend(entryId, options, allowFastFail, entrySize)) {
+                pendingAddBatches.remove(ledgerId);
+                batch.send();
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new PendingAddBatch(ledgerId, masterKey, options, allowFastFail);
+                pendingAddBatches.put(ledgerId, batch);
+            }
+            batch.append(entryId, toSend.retainedDuplicate(), entrySize, cb, ctx);
+            if (batch.size() >= addEntryBatchMaxEntries) {
+                pendingAddBatches.remove(ledgerId);
+                batch.send();
+            }
+
+            if (!addBatchFlushScheduled && !pendingAddBatches.isEmpty()) {
+                addBatchFlushScheduled = true;
+                scheduleFlush = true;
+            }
+        }
+
+        if (scheduleFlush) {
+            // The adds that come in until the event loop gets to the flush are batched, so the batches grow with
+            // the load on the channel
+            Channel c = channel;
+            if (c == null) {
+                flushAddBatches();
+                return;
+            }
+            try {
+                c.eventLoop().execute(this::flushAddBatches);
+            } catch (RejectedExecutionException e) {
+                flushAddBatches();
+            }
+        }
+    }
+
+    private void flushAddBatch(long ledgerId) {
+        synchronized (pendingAddBatches) {
+            PendingAddBatch batch = pendingAddBatches.remove(ledgerId);
+            if (batch != null) {
+                batch.send();
+            }
+        }
+    }
+
+    private void flushAddBatches() {
+        synchronized (pendingAddBatches) {
+            addBatchFlushScheduled = false;
+            for (PendingAddBatch batch : pendingAddBatches.values()) {
+                batch.send();
+            }
+            pendingAddBatches.clear();
+        }
+    }
+
+    private void sendV2AddEntry(long ledgerId, long entryId, ByteBuf request, WriteCallback cb, Object ctx,
+                                boolean allowFastFail) {
+        CompletionKey completionKey = acquireV2Key(ledgerId, entryId, OperationType.ADD_ENTRY);
+        putCompletionKeyValue(completionKey, acquireAddCompletion(completionKey, cb, ctx, ledgerId, entryId));
+        writeAndFlush(channel, completionKey, request, allowFastFail, request, null);
+    }
+
+    /**
+     * Consecutive adds of a ledger, sent to the bookie as a single add entry batch request.
+     */
+    private class PendingAddBatch {
+        final long ledgerId;
+        final byte[] masterKey;
+        final int options;
+        final boolean allowFastFail;
+        final List<ByteBuf> requests = new ArrayList<>();
+        final List<WriteCallback> callbacks = new ArrayList<>();
+        final List<Object> ctxs = new ArrayList<>();
+        long lastEntryId = INVALID_ENTRY_ID;
+        int entriesSize = 0;
+
+        PendingAddBatch(long ledgerId, byte[] masterKey, int options, boolean allowFastFail) {
+            this.ledgerId = ledgerId;
+            this.masterKey = masterKey;
+            this.options = options;
+            this.allowFastFail = allowFastFail;
+        }
+
+        boolean canAppend(long entryId, int options, boolean allowFastFail, int entrySize) {
+            return entryId == lastEntryId + 1
+                    && options == this.options
+                    && allowFastFail == this.allowFastFail
+                    && entriesSize + entrySize <= addEntryBatchMaxBytes;
+        }
+
+        void append(long entryId, ByteBuf request, int entrySize, WriteCallback cb, Object ctx) {
+            requests.add(request);
+            callbacks.add(cb);
+            ctxs.add(ctx);
+            lastEntryId = entryId;
+            entriesSize += entrySize;
+        }
+
+        int size() {
+            return requests.size();
+        }
+
+        void send() {
+            int count = requests.size();
+            if (count == 1) {
+                // Nothing to batch, send it as a regular add
+                sendV2AddEntry(ledgerId, lastEntryId, requests.get(0), callbacks.get(0), ctxs.get(0), allowFastFail);
+                return;
+            }
+
+            int headerSize = 4 // for request type
+                    + BookieProtocol.MASTER_KEY_LENGTH
+                    + 4 // for the number of entries
+                    + 4 * count; // for the entry lengths
+            ByteBuf header = allocator.buffer(4 + headerSize);
+            header.writeInt(headerSize + entriesSize);
+            header.writeInt(BookieProtocol.PacketHeader.toInt(
+                    BookieProtocol.CURRENT_PROTOCOL_VERSION, BookieProtocol.ADD_ENTRY_BATCH, (short) options));
+            header.writeBytes(masterKey, 0, BookieProtocol.MASTER_KEY_LENGTH);
+            header.writeInt(count);
+            ByteBufList request = ByteBufList.get(header);
+            for (ByteBuf add : requests) {
+                int entrySize = add.readableBytes() - V2_ADD_REQUEST_PREFIX_SIZE;
+                header.writeInt(entrySize);
+                request.add(add.retainedSlice(add.readerIndex() + V2_ADD_REQUEST_PREFIX_SIZE, entrySize));
+                add.release();
+            }
+
+            // The bookie acknowledges the batch with the response to the add of the last entry
+            CompletionKey completionKey = acquireV2Key(ledgerId, lastEntryId, OperationType.ADD_ENTRY);
+            putCompletionKeyValue(completionKey, new AddBatchCompletion(completionKey, this));
+            writeAndFlush(channel, completionKey, request, allowFastFail, request, null);
+        }
     }
 
     public void readLac(final long ledgerId, ReadLacCallback cb, Object ctx) {
@@ -1040,6 +1200,31 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, request, allowFastFail, null, null);
     }
 
+    /**
+     * Read the entries following the given entry of each ledger with a single request. Only supported with the v2
+     * protocol.
+     */
+    public void multiLedgerReadEntries(final long[] ledgerIds,
+                                       final long[] startEntryIds,
+                                       final int maxEntriesPerLedger,
+                                       final long maxSize,
+                                       final MultiLedgerReadEntriesCallback cb,
+                                       final Object ctx,
+                                       boolean allowFastFail) {
+        if (!useV2WireProtocol) {
+            throw new UnsupportedOperationException("Unsupported multi ledger read operation for v3 protocol.");
+        }
+        final long txnId = getTxnId();
+        Object request = new BookieProtocol.MultiLedgerReadRequest(BookieProtocol.CURRENT_PROTOCOL_VERSION,
+                BookieProtocol.FLAG_NONE, txnId, maxSize, maxEntriesPerLedger, ledgerIds, startEntryIds);
+        CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.MULTI_LEDGER_READ_ENTRY);
+        MultiLedgerReadCompletion readCompletion = new MultiLedgerReadCompletion(
+                completionKey, cb, ctx, ledgerIds[0], startEntryIds[0]);
+        putCompletionKeyValue(completionKey, readCompletion);
+
+        writeAndFlush(channel, completionKey, request, allowFastFail, null, null);
+    }
+
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
         final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
@@ -1071,7 +1256,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     public void checkTimeoutOnPendingOperations() {
         int timedOutOperations = completionObjects.removeIf(timeoutCheck);
 
-        timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
+        // Only the sections of the table holding a request older than the shortest timeout are scanned
+        timedOutOperations += v2CompletionObjects.removeIf(MathUtils.nowInNano(),
+                Math.min(addEntryTimeoutNanos, readEntryTimeoutNanos), CompletionValue::maybeTimeout);
 
         if (timedOutOperations > 0) {
             LOG.info("Timed-out {} operations to channel {} for {}",
@@ -1165,14 +1352,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private void writeAndFlush(final Channel channel,
                            final CompletionKey key,
                            final Object request,
-                               final boolean allowFastFail, final Runnable cleanupActionFailedBeforeWrite,
-                               final Runnable cleanupActionAfterWrite) {
+                               final boolean allowFastFail, final ReferenceCounted releaseOnFailedWrite,
+                               final ReferenceCounted releaseAfterWrite) {
         if (channel == null) {
             LOG.warn("Operation {} failed: channel == null", StringUtils.requestToString(request));
             errorOut(key);
-            if (cleanupActionFailedBeforeWrite != null) {
-                cleanupActionFailedBeforeWrite.run();
-            }
+            ReferenceCountUtil.release(releaseOnFailedWrite);
             return;
         }
 
@@ -1187,53 +1372,90 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     StringUtils.requestToString(request));
 
             errorOut(key, BKException.Code.TooManyRequestsException);
-            if (cleanupActionFailedBeforeWrite != null) {
-                cleanupActionFailedBeforeWrite.run();
-            }
+            ReferenceCountUtil.release(releaseOnFailedWrite);
             return;
         }
 
         try {
-            final long startTime = MathUtils.nowInNano();
-
-            ChannelPromise promise = channel.newPromise().addListener(future -> {
-                try {
-                    if (future.isSuccess()) {
-                        nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                        CompletionValue completion = completionObjects.get(key);
-                        if (completion != null) {
-                            completion.setOutstanding();
-                        }
-                    } else {
-                        nettyOpLogger.registerFailedEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                        errorOut(key);
-                    }
-                } finally {
-                    if (cleanupActionAfterWrite != null) {
-                        cleanupActionAfterWrite.run();
-                    }
-                }
-            });
+            ChannelPromise promise = channel.newPromise()
+                    .addListener(WriteListener.create(this, key, MathUtils.nowInNano(), releaseAfterWrite));
             channel.writeAndFlush(request, promise);
         } catch (Throwable e) {
             LOG.warn("Operation {} failed", StringUtils.requestToString(request), e);
             errorOut(key);
-            if (cleanupActionFailedBeforeWrite != null) {
-                cleanupActionFailedBeforeWrite.run();
+            ReferenceCountUtil.release(releaseOnFailedWrite);
+        }
+    }
+
+    /**
+     * Completes the write of a request to the channel. It is recycled, since a listener is created for every
+     * request sent.
+     */
+    private static class WriteListener implements ChannelFutureListener {
+        PerChannelBookieClient client;
+        CompletionKey key;
+        long startTime;
+        ReferenceCounted releaseAfterWrite;
+
+        static WriteListener create(PerChannelBookieClient client, CompletionKey key, long startTime,
+                                    ReferenceCounted releaseAfterWrite) {
+            WriteListener listener = RECYCLER.get();
+            listener.client = client;
+            listener.key = key;
+            listener.startTime = startTime;
+            listener.releaseAfterWrite = releaseAfterWrite;
+            return listener;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            try {
+                if (future.isSuccess()) {
+                    client.nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime),
+                            TimeUnit.NANOSECONDS);
+                    CompletionValue completion = client.peekCompletionValue(key);
+                    if (completion != null) {
+                        completion.setOutstanding();
+                    }
+                } else {
+                    client.nettyOpLogger.registerFailedEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                    client.errorOut(key);
+                }
+            } finally {
+                ReferenceCountUtil.release(releaseAfterWrite);
+                recycle();
             }
         }
+
+        void recycle() {
+            client = null;
+            key = null;
+            startTime = -1;
+            releaseAfterWrite = null;
+            recyclerHandle.recycle(this);
+        }
+
+        private final Handle<WriteListener> recyclerHandle;
+
+        private WriteListener(Handle<WriteListener> recyclerHandle) {
+            this.recyclerHandle = recyclerHandle;
+        }
+
+        private static final Recycler<WriteListener> RECYCLER = new Recycler<WriteListener>() {
+            @Override
+            protected WriteListener newObject(Handle<WriteListener> handle) {
+                return new WriteListener(handle);
+            }
+        };
     }
 
     void errorOut(final CompletionKey key) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = getCompletionValue(key);
         if (completion != null) {
             completion.errorOut();
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut());
         }
     }
 
@@ -1241,12 +1463,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = getCompletionValue(key);
         if (completion != null) {
             completion.errorOut(rc);
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut(rc));
         }
     }
 
@@ -1275,11 +1494,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     void errorOutOutstandingEntries(int rc) {
-        Optional<CompletionKey> multikey = completionObjectsV2Conflicts.getAnyKey();
-        while (multikey.isPresent()) {
-            multikey.ifPresent(k -> errorOut(k, rc));
-            multikey = completionObjectsV2Conflicts.getAnyKey();
-        }
+        v2CompletionObjects.removeAll(completion -> completion.errorOut(rc));
         for (CompletionKey key : completionObjects.keys()) {
             errorOut(key, rc);
         }
@@ -1408,11 +1623,19 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         CompletionKey key;
         if (OperationType.BATCH_READ_ENTRY == operationType) {
             key = new TxnCompletionKey(((BookieProtocol.BatchedReadResponse) response).getRequestId(), operationType);
+        } else if (OperationType.MULTI_LEDGER_READ_ENTRY == operationType) {
+            key = new TxnCompletionKey(((BookieProtocol.MultiLedgerReadResponse) response).getRequestId(),
+                    operationType);
         } else {
-            key = acquireV2Key(response.ledgerId, response.entryId, operationType);
+            key = null;
+        }
+        CompletionValue completionValue;
+        if (key == null) {
+            completionValue = v2CompletionObjects.remove(response.ledgerId, response.entryId,
+                    operationType.getNumber());
+        } else {
+            completionValue = getCompletionValue(key);
         }
-        CompletionValue completionValue = getCompletionValue(key);
-        key.release();
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1494,6 +1717,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 return OperationType.GET_BOOKIE_INFO;
             case BookieProtocol.BATCH_READ_ENTRY:
                 return OperationType.BATCH_READ_ENTRY;
+            case BookieProtocol.MULTI_LEDGER_READ_ENTRY:
+                return OperationType.MULTI_LEDGER_READ_ENTRY;
             default:
                 throw new IllegalArgumentException("Invalid operation type " + opCode);
         }
@@ -1521,6 +1746,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 return StatusCode.EREADONLY;
             case BookieProtocol.ETOOMANYREQUESTS:
                 return StatusCode.ETOOMANYREQUESTS;
+            case BookieProtocol.EUNKNOWNLEDGERSTATE:
+                return StatusCode.EUNKNOWNLEDGERSTATE;
             default:
                 throw new IllegalArgumentException("Invalid error code: " + errorCode);
         }
@@ -2109,6 +2336,69 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    class MultiLedgerReadCompletion extends CompletionValue {
+
+        final MultiLedgerReadEntriesCallback cb;
+
+        public MultiLedgerReadCompletion(final CompletionKey key,
+                                         final MultiLedgerReadEntriesCallback originalCallback,
+                                         final Object originalCtx,
+                                         long ledgerId, final long entryId) {
+            super("MultiLedgerRead", originalCtx, ledgerId, entryId,
+                    readEntryOpLogger, readTimeoutOpLogger);
+            this.cb = new MultiLedgerReadEntriesCallback() {
+                @Override
+                public void readEntriesComplete(int rc, List<MultiLedgerReadResult> results, Object ctx) {
+                    logOpResult(rc);
+                    originalCallback.readEntriesComplete(rc, results, originalCtx);
+                    key.release();
+                }
+            };
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(
+                    () -> cb.readEntriesComplete(rc, null, ctx));
+        }
+
+        @Override
+        public void setOutstanding() {
+            readEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV2Response(long ledgerId,
+                                     long entryId,
+                                     StatusCode status,
+                                     BookieProtocol.Response response) {
+            readEntryOutstanding.dec();
+            if (!(response instanceof BookieProtocol.MultiLedgerReadResponse)) {
+                return;
+            }
+            BookieProtocol.MultiLedgerReadResponse readResponse = (BookieProtocol.MultiLedgerReadResponse) response;
+            int rc = convertStatus(status, BKException.Code.ReadException);
+            List<MultiLedgerReadResult> results = new ArrayList<>(readResponse.getLedgerCount());
+            for (int i = 0; i < readResponse.getLedgerCount(); i++) {
+                int ledgerRc = convertStatus(getStatusCodeFromErrorCode(readResponse.getErrorCode(i)),
+                        BKException.Code.ReadException);
+                results.add(new MultiLedgerReadResult(readResponse.getLedgerId(i), readResponse.getStartEntryId(i),
+                        ledgerRc, readResponse.getEntries(i)));
+            }
+            cb.readEntriesComplete(rc, results, ctx);
+        }
+
+        @Override
+        public void handleV3Response(Response response) {
+            // V3 protocol doesn't support multi ledger reads.
+        }
+    }
+
     class StartTLSCompletion extends CompletionValue {
         final StartTLSCallback cb;
 
@@ -2382,6 +2672,68 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    class AddBatchCompletion extends CompletionValue {
+        final CompletionKey key;
+        final PendingAddBatch batch;
+
+        AddBatchCompletion(CompletionKey key, PendingAddBatch batch) {
+            super("AddBatch", null, batch.ledgerId, batch.lastEntryId, addEntryOpLogger, addTimeoutOpLogger);
+            this.key = key;
+            this.batch = batch;
+        }
+
+        private void writeComplete(int rc) {
+            long firstEntryId = entryId - batch.size() + 1;
+            for (int i = 0; i < batch.size(); i++) {
+                logOpResult(rc);
+                batch.callbacks.get(i).writeComplete(rc, ledgerId, firstEntryId + i, bookieId, batch.ctxs.get(i));
+            }
+            key.release();
+        }
+
+        @Override
+        boolean maybeTimeout() {
+            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
+                timeout();
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> writeComplete(rc));
+        }
+
+        @Override
+        public void setOutstanding() {
+            addEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV2Response(
+                long ledgerId, long entryId, StatusCode status,
+                BookieProtocol.Response response) {
+            addEntryOutstanding.dec();
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledger", ledgerId, "last entry", entryId);
+            }
+            writeComplete(convertStatus(status, BKException.Code.WriteException));
+        }
+
+        @Override
+        public void handleV3Response(
+                BookkeeperProtocol.Response response) {
+            // Add batches are only sent with the v2 protocol
+        }
+    }
+
     // visible for testing
     CompletionKey newCompletionKey(long txnId, OperationType operationType) {
         return new TxnCompletionKey(txnId, operationType);
@@ -2460,20 +2812,32 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
-        CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
-        if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
-            // There's a pending read request on same ledger/entry. Use the multimap to track all of them
-            completionObjectsV2Conflicts.put(key, value);
+        if (key instanceof EntryCompletionKey) {
+            EntryCompletionKey entryKey = (EntryCompletionKey) key;
+            v2CompletionObjects.put(entryKey.ledgerId, entryKey.entryId, entryKey.operationType.getNumber(),
+                    value.startTime, value);
+        } else {
+            completionObjects.put(key, value);
         }
     }
 
     private CompletionValue getCompletionValue(CompletionKey key) {
-        CompletionValue completionValue = completionObjects.remove(key);
-        if (completionValue == null) {
-            // If there's no completion object here, try in the multimap
-            completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
+        if (key instanceof EntryCompletionKey) {
+            EntryCompletionKey entryKey = (EntryCompletionKey) key;
+            return v2CompletionObjects.remove(entryKey.ledgerId, entryKey.entryId,
+                    entryKey.operationType.getNumber());
+        } else {
+            return completionObjects.remove(key);
+        }
+    }
+
+    private CompletionValue peekCompletionValue(CompletionKey key) {
+        if (key instanceof EntryCompletionKey) {
+            EntryCompletionKey entryKey = (EntryCompletionKey) key;
+            return v2CompletionObjects.get(entryKey.ledgerId, entryKey.entryId, entryKey.operationType.getNumber());
+        } else {
+            return completionObjects.get(key);
         }
-        return completionValue;
     }
 
     private long getTxnId() {
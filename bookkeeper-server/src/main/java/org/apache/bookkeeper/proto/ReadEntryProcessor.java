@@ -17,7 +17,13 @@
  */
 package org.apache.bookkeeper.proto;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.FileRegion;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslHandler;
 import io.netty.util.Recycler;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
@@ -128,9 +134,24 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
     }
 
     protected ReferenceCounted readData() throws Exception {
+        int zeroCopyMinSize = requestProcessor.getReadEntryZeroCopyMinSize();
+        if (zeroCopyMinSize >= 0 && canSendFileRegion(requestHandler.ctx().channel())) {
+            return requestProcessor.getBookie().readEntryOrRegion(request.getLedgerId(), request.getEntryId(),
+                    zeroCopyMinSize);
+        }
         return requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId());
     }
 
+    /**
+     * File regions are written with sendfile, which is only supported by the socket transports and bypasses the
+     * TLS handler: the entry is copied on other channels.
+     */
+    @VisibleForTesting
+    static boolean canSendFileRegion(Channel channel) {
+        return (channel instanceof EpollSocketChannel || channel instanceof NioSocketChannel)
+                && channel.pipeline().get(SslHandler.class) == null;
+    }
+
     private void sendResponse(ReferenceCounted data, int errorCode, long startTimeNanos) {
         final RequestStats stats = requestProcessor.getRequestStats();
         final OpStatsLogger logger = stats.getReadEntryStats();
@@ -151,6 +172,10 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
     }
 
     protected BookieProtocol.Response buildReadResponse(ReferenceCounted data) {
+        if (data instanceof FileRegion) {
+            return new BookieProtocol.ReadFileRegionResponse(request.getProtocolVersion(), request.getLedgerId(),
+                    request.getEntryId(), (FileRegion) data);
+        }
         return ResponseBuilder.buildReadResponse((ByteBuf) data, request);
     }
 
@@ -320,6 +320,7 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
     }
 
     protected void sendResponse(ReadResponse readResponse) {
+        requestProcessor.onReadResponseBytes(requestHandler, readResponse.getLedgerId(), readResponse.getBody().size());
         Response.Builder response = Response.newBuilder()
                 .setHeader(getHeader())
                 .setStatus(readResponse.getStatus())
@@ -0,0 +1,441 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.proto;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADMISSION_CONTROL_QUEUED_LATENCY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADMISSION_CONTROL_REJECTED;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.SERVER_SCOPE;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.util.Timer;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the requests of a worker thread pool, so that a client sending a lot of requests can't starve the other
+ * clients of the bookie.
+ *
+ * <p>The requests are classified by the principal of the client or by the range of their ledger id, see
+ * {@link ServerConfiguration#getAdmissionControlClassMapping()}, and queued per class. At most
+ * {@link ServerConfiguration#getAdmissionControlMaxInFlightRequests()} requests are handed to the thread pool at a
+ * time, picked from the class queues with weighted fair queuing: each request gets a finish tag, which grows with
+ * its cost divided by the weight of its class, and the request with the smallest tag is dispatched first.
+ *
+ * <p>A class can also be limited to a number of bytes per second. The bytes of the adds are charged when they are
+ * queued, and the bytes of the reads when their response is sent. A class which exceeded its rate is skipped until
+ * its budget is refilled. A request is rejected with {@link BookieProtocol#ETOOMANYREQUESTS} when the queue of its
+ * class is full.
+ *
+ * <p>The requests are queued and charged without locking. A single thread at a time dispatches them: the thread which
+ * triggers a dispatch while none is running does it, and runs it again as long as other threads triggered a dispatch
+ * in the meantime. The finish tags and the budgets of the classes are only updated by the dispatching thread.
+ */
+@StatsDoc(
+    name = SERVER_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Bookie request admission control stats"
+)
+class RequestAdmissionController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestAdmissionController.class);
+
+    static final String DEFAULT_CLASS = "default";
+
+    // The fixed cost of a request in bytes, so that the requests without payload, like the reads, are accounted for
+    private static final long REQUEST_COST_BYTES = 1024;
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final String PRINCIPAL_PREFIX = "principal:";
+    private static final String LEDGERS_PREFIX = "ledgers:";
+
+    private final OrderedExecutor threadPool;
+    private final Timer timer;
+    private final int maxInFlightRequests;
+    private final int maxQueuedRequestsPerClass;
+
+    private final RequestClass defaultClass;
+    private final RequestClass[] classes;
+    private final Map<String, RequestClass> classesByPrincipal = new HashMap<>();
+    // Sorted non-overlapping ranges of ledger ids
+    private final long[] rangeFirstLedgerIds;
+    private final long[] rangeLastLedgerIds;
+    private final RequestClass[] rangeClasses;
+
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    // The number of dispatches triggered, the dispatching thread runs until it handled all of them
+    private final AtomicInteger pendingDispatches = new AtomicInteger();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    // Only accessed by the dispatching thread
+    private long virtualTime = 0;
+
+    RequestAdmissionController(ServerConfiguration conf, OrderedExecutor threadPool, Timer timer,
+                               StatsLogger statsLogger) {
+        this.threadPool = threadPool;
+        this.timer = timer;
+        this.maxInFlightRequests = conf.getAdmissionControlMaxInFlightRequests();
+        this.maxQueuedRequestsPerClass = conf.getAdmissionControlMaxQueuedRequestsPerClass();
+
+        Map<String, RequestClass> classesByName = new HashMap<>();
+        for (String definition : conf.getAdmissionControlClasses()) {
+            String[] parts = definition.trim().split(":");
+            checkArgument(parts.length == 2 || parts.length == 3,
+                    "Invalid admission control class, expected name:weight[:maxBytesPerSecond]: %s", definition);
+            int weight = Integer.parseInt(parts[1]);
+            checkArgument(weight > 0, "Invalid weight of admission control class %s", definition);
+            long maxBytesPerSecond = parts.length == 3 ? Long.parseLong(parts[2]) : 0;
+            classesByName.put(parts[0], new RequestClass(parts[0], weight, maxBytesPerSecond, statsLogger));
+        }
+        this.defaultClass = classesByName.computeIfAbsent(DEFAULT_CLASS,
+                name -> new RequestClass(name, 1, 0, statsLogger));
+        this.classes = classesByName.values().toArray(new RequestClass[0]);
+
+        TreeMap<Long, Map.Entry<Long, RequestClass>> ranges = new TreeMap<>();
+        for (String mapping : conf.getAdmissionControlClassMapping()) {
+            mapping = mapping.trim();
+            int separator = mapping.lastIndexOf('=');
+            checkArgument(separator > 0, "Invalid admission control class mapping: %s", mapping);
+            RequestClass requestClass = classesByName.get(mapping.substring(separator + 1));
+            checkArgument(requestClass != null, "Unknown admission control class in mapping: %s", mapping);
+            String key = mapping.substring(0, separator);
+            if (key.startsWith(PRINCIPAL_PREFIX)) {
+                classesByPrincipal.put(key.substring(PRINCIPAL_PREFIX.length()), requestClass);
+            } else if (key.startsWith(LEDGERS_PREFIX)) {
+                String[] bounds = key.substring(LEDGERS_PREFIX.length()).split("-");
+                checkArgument(bounds.length == 2, "Invalid ledger id range in mapping: %s", mapping);
+                long first = Long.parseLong(bounds[0]);
+                long last = Long.parseLong(bounds[1]);
+                checkArgument(first <= last, "Invalid ledger id range in mapping: %s", mapping);
+                ranges.put(first, new AbstractMap.SimpleImmutableEntry<>(last, requestClass));
+            } else {
+                throw new IllegalArgumentException("Invalid admission control class mapping: " + mapping);
+            }
+        }
+        this.rangeFirstLedgerIds = new long[ranges.size()];
+        this.rangeLastLedgerIds = new long[ranges.size()];
+        this.rangeClasses = new RequestClass[ranges.size()];
+        int i = 0;
+        for (Map.Entry<Long, Map.Entry<Long, RequestClass>> range : ranges.entrySet()) {
+            rangeFirstLedgerIds[i] = range.getKey();
+            rangeLastLedgerIds[i] = range.getValue().getKey();
+            rangeClasses[i] = range.getValue().getValue();
+            checkArgument(i == 0 || rangeFirstLedgerIds[i] > rangeLastLedgerIds[i - 1],
+                    "Overlapping ledger id ranges in the admission control class mapping");
+            i++;
+        }
+
+        LOG.info("Admission control of {} with classes {}, max {} requests in flight", threadPool,
+                classesByName.keySet(), maxInFlightRequests);
+    }
+
+    /**
+     * Execute a request in the thread pool once it is admitted.
+     *
+     * @param requestHandler the handler of the channel of the request
+     * @param ledgerId the ledger id of the request, also used to order its execution
+     * @param bytes the payload size of the request, charged to the rate of its class
+     * @param task the request to execute
+     * @param onRejected run instead of the request if it is rejected
+     */
+    void execute(BookieRequestHandler requestHandler, long ledgerId, int bytes, Runnable task, Runnable onRejected) {
+        RequestClass requestClass = classify(requestHandler, ledgerId);
+        if (requestClass.queuedRequests.incrementAndGet() > maxQueuedRequestsPerClass) {
+            requestClass.queuedRequests.decrementAndGet();
+            requestClass.rejectedRequests.inc();
+            onRejected.run();
+            return;
+        }
+        requestClass.charge(bytes);
+        requestClass.queue.add(new QueuedRequest(requestClass, ledgerId, bytes, task, onRejected));
+        dispatch();
+    }
+
+    /**
+     * Charge the bytes of a read response to the rate of the class of the request.
+     */
+    void chargeReadResponse(BookieRequestHandler requestHandler, long ledgerId, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        classify(requestHandler, ledgerId).charge(bytes);
+    }
+
+    private void dispatch() {
+        if (pendingDispatches.getAndIncrement() != 0) {
+            // The dispatching thread will run again
+            return;
+        }
+        int dispatches = 1;
+        do {
+            dispatchRequests();
+            dispatches = pendingDispatches.addAndGet(-dispatches);
+        } while (dispatches != 0);
+    }
+
+    // Only run by the dispatching thread
+    private void dispatchRequests() {
+        while (inFlightRequests.get() < maxInFlightRequests) {
+            long nowNanos = MathUtils.nowInNano();
+            RequestClass next = null;
+            long nextFinishTag = Long.MAX_VALUE;
+            long minRefillDelayNanos = Long.MAX_VALUE;
+            for (RequestClass requestClass : classes) {
+                QueuedRequest head = requestClass.queue.peek();
+                if (head == null) {
+                    continue;
+                }
+                long refillDelayNanos = requestClass.refillDelayNanos(nowNanos);
+                if (refillDelayNanos > 0) {
+                    minRefillDelayNanos = Math.min(minRefillDelayNanos, refillDelayNanos);
+                    continue;
+                }
+                long finishTag = requestClass.headFinishTag(head, virtualTime);
+                if (next == null || finishTag < nextFinishTag) {
+                    next = requestClass;
+                    nextFinishTag = finishTag;
+                }
+            }
+
+            if (next == null) {
+                if (minRefillDelayNanos != Long.MAX_VALUE && dispatchScheduled.compareAndSet(false, true)) {
+                    // All the pending requests belong to classes over their rate
+                    timer.newTimeout(timeout -> {
+                        dispatchScheduled.set(false);
+                        dispatch();
+                    }, minRefillDelayNanos, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+
+            QueuedRequest request = next.pollHead();
+            virtualTime = nextFinishTag;
+            inFlightRequests.incrementAndGet();
+
+            request.requestClass.queuedLatency.registerSuccessfulEvent(
+                    MathUtils.elapsedNanos(request.enqueueNanos), TimeUnit.NANOSECONDS);
+            try {
+                threadPool.executeOrdered(request.ledgerId, request);
+            } catch (RejectedExecutionException e) {
+                inFlightRequests.decrementAndGet();
+                request.requestClass.rejectedRequests.inc();
+                request.onRejected.run();
+            }
+        }
+    }
+
+    private void onRequestExecuted() {
+        inFlightRequests.decrementAndGet();
+        dispatch();
+    }
+
+    @VisibleForTesting
+    RequestClass classify(BookieRequestHandler requestHandler, long ledgerId) {
+        if (!classesByPrincipal.isEmpty()) {
+            AuthHandler.ServerSideHandler authHandler =
+                    requestHandler.ctx().pipeline().get(AuthHandler.ServerSideHandler.class);
+            if (authHandler != null) {
+                RequestClass requestClass =
+                        classesByPrincipal.get(authHandler.connectionPeer.getAuthorizedId().getName());
+                if (requestClass != null) {
+                    return requestClass;
+                }
+            }
+        }
+        if (rangeFirstLedgerIds.length > 0) {
+            int index = Arrays.binarySearch(rangeFirstLedgerIds, ledgerId);
+            if (index < 0) {
+                // The range starting before the ledger id, if any
+                index = -index - 2;
+            }
+            if (index >= 0 && ledgerId <= rangeLastLedgerIds[index]) {
+                return rangeClasses[index];
+            }
+        }
+        return defaultClass;
+    }
+
+    /**
+     * Get the size of the entries of a v2 read response.
+     */
+    static long getReadResponseSize(Object response) {
+        if (response instanceof BookieProtocol.ReadResponse) {
+            BookieProtocol.ReadResponse readResponse = (BookieProtocol.ReadResponse) response;
+            return readResponse.hasData() ? readResponse.getData().readableBytes() : 0;
+        } else if (response instanceof BookieProtocol.BatchedReadResponse) {
+            ByteBufList data = ((BookieProtocol.BatchedReadResponse) response).getData();
+            return data != null ? data.readableBytes() : 0;
+        } else if (response instanceof BookieProtocol.ReadFileRegionResponse) {
+            return ((BookieProtocol.ReadFileRegionResponse) response).getRegion().count();
+        } else if (response instanceof BookieProtocol.MultiLedgerReadResponse) {
+            BookieProtocol.MultiLedgerReadResponse multiLedgerResponse =
+                    (BookieProtocol.MultiLedgerReadResponse) response;
+            long size = 0;
+            for (int i = 0; i < multiLedgerResponse.getLedgerCount(); i++) {
+                size += multiLedgerResponse.getEntries(i).readableBytes();
+            }
+            return size;
+        } else {
+            return 0;
+        }
+    }
+
+    private class QueuedRequest implements Runnable {
+        final RequestClass requestClass;
+        final long ledgerId;
+        final int bytes;
+        final long enqueueNanos;
+        final Runnable task;
+        final Runnable onRejected;
+
+        QueuedRequest(RequestClass requestClass, long ledgerId, int bytes, Runnable task, Runnable onRejected) {
+            this.requestClass = requestClass;
+            this.ledgerId = ledgerId;
+            this.bytes = bytes;
+            this.enqueueNanos = MathUtils.nowInNano();
+            this.task = task;
+            this.onRejected = onRejected;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                onRequestExecuted();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static class RequestClass {
+        final String name;
+        final int weight;
+        // 0 if unlimited
+        final long maxBytesPerSecond;
+
+        final ConcurrentLinkedQueue<QueuedRequest> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queuedRequests = new AtomicInteger();
+        // The bytes charged since the last dispatch
+        final AtomicLong chargedBytes = new AtomicLong();
+
+        // Only accessed by the dispatching thread
+        long lastFinishTag = 0;
+        QueuedRequest taggedHead = null;
+        long headFinishTag;
+        // The bytes which can be admitted, negative when the class exceeded its rate
+        long availableBytes;
+        long lastRefillNanos;
+
+        @StatsDoc(
+            name = ADMISSION_CONTROL_QUEUED_LATENCY,
+            help = "operation stats of the time spent by the requests of a class in the admission control queue"
+        )
+        final OpStatsLogger queuedLatency;
+        @StatsDoc(
+            name = ADMISSION_CONTROL_REJECTED,
+            help = "Counter for the requests of a class rejected because its admission control queue is full"
+        )
+        final Counter rejectedRequests;
+
+        RequestClass(String name, int weight, long maxBytesPerSecond, StatsLogger statsLogger) {
+            this.name = name;
+            this.weight = weight;
+            this.maxBytesPerSecond = maxBytesPerSecond;
+            this.availableBytes = maxBytesPerSecond;
+            this.lastRefillNanos = MathUtils.nowInNano();
+            StatsLogger classStatsLogger = statsLogger.scopeLabel("class", name);
+            this.queuedLatency = classStatsLogger.getOpStatsLogger(ADMISSION_CONTROL_QUEUED_LATENCY);
+            this.rejectedRequests = classStatsLogger.getCounter(ADMISSION_CONTROL_REJECTED);
+        }
+
+        void charge(long bytes) {
+            if (maxBytesPerSecond > 0 && bytes > 0) {
+                chargedBytes.addAndGet(bytes);
+            }
+        }
+
+        /**
+         * Get the finish tag of the request at the head of the queue, set when it is first seen by the dispatcher.
+         */
+        long headFinishTag(QueuedRequest head, long virtualTime) {
+            if (taggedHead != head) {
+                taggedHead = head;
+                headFinishTag = Math.max(virtualTime, lastFinishTag) + (REQUEST_COST_BYTES + head.bytes) / weight;
+            }
+            return headFinishTag;
+        }
+
+        QueuedRequest pollHead() {
+            QueuedRequest head = queue.poll();
+            queuedRequests.decrementAndGet();
+            lastFinishTag = headFinishTag;
+            taggedHead = null;
+            return head;
+        }
+
+        long refillDelayNanos(long nowNanos) {
+            if (maxBytesPerSecond <= 0) {
+                return 0;
+            }
+            availableBytes -= chargedBytes.getAndSet(0);
+            refill(nowNanos);
+            if (availableBytes >= 0) {
+                return 0;
+            }
+            return Math.max(1, (long) (-availableBytes * NANOS_PER_SECOND / maxBytesPerSecond));
+        }
+
+        private void refill(long nowNanos) {
+            long elapsedNanos = nowNanos - lastRefillNanos;
+            long refilledBytes = (long) (elapsedNanos / NANOS_PER_SECOND * maxBytesPerSecond);
+            if (refilledBytes > 0) {
+                // At most one second of burst
+                availableBytes = Math.min(maxBytesPerSecond, availableBytes + refilledBytes);
+                lastRefillNanos = nowNanos;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -25,12 +25,16 @@ import org.apache.bookkeeper.util.ByteBufList;
 
 class ResponseBuilder {
     static BookieProtocol.Response buildErrorResponse(int errorCode, BookieProtocol.Request r) {
-        if (r.getOpCode() == BookieProtocol.ADDENTRY) {
+        if (r.getOpCode() == BookieProtocol.ADDENTRY || r.getOpCode() == BookieProtocol.ADD_ENTRY_BATCH) {
+            // A batch is acknowledged as an add of its last entry
             return BookieProtocol.AddResponse.create(r.getProtocolVersion(), errorCode,
                                                   r.getLedgerId(), r.getEntryId());
         } else if (r.getOpCode() == BookieProtocol.READENTRY) {
             return new BookieProtocol.ReadResponse(r.getProtocolVersion(), errorCode,
                                                    r.getLedgerId(), r.getEntryId());
+        } else if (r.getOpCode() == BookieProtocol.MULTI_LEDGER_READ_ENTRY) {
+            return new BookieProtocol.MultiLedgerReadResponse(r.getProtocolVersion(), errorCode,
+                    r.getLedgerId(), r.getEntryId(), ((BookieProtocol.MultiLedgerReadRequest) r).getRequestId());
         } else {
             assert(r.getOpCode() == BookieProtocol.BATCH_READ_ENTRY);
             return new BookieProtocol.BatchedReadResponse(r.getProtocolVersion(), errorCode,
@@ -0,0 +1,289 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Table of the pending v2 requests of a channel, keyed by ledger id, entry id and operation type.
+ *
+ * <p>The keys are stored in the primitive arrays of open hash sections with linear probing, so tracking a request
+ * neither allocates nor hashes a key object, and the sections are locked independently. The same key can be added
+ * more than once, e.g. when the same entry is read twice at the same time: a response completes any of them.
+ *
+ * <p>Each section tracks the start time of its oldest request, so that the timeout check only scans the sections
+ * which may hold a timed out request.
+ */
+class V2CompletionTable<V> {
+
+    private static final int DEFAULT_EXPECTED_ITEMS = 256;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final float FILL_FACTOR = 0.66f;
+    private static final float IDLE_FACTOR = 0.15f;
+
+    private final Section<V>[] sections;
+
+    V2CompletionTable() {
+        this(DEFAULT_EXPECTED_ITEMS, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @SuppressWarnings("unchecked")
+    V2CompletionTable(int expectedItems, int concurrencyLevel) {
+        int numSections = alignToPowerOfTwo(concurrencyLevel);
+        int perSectionCapacity = alignToPowerOfTwo(Math.max(expectedItems / numSections, 2));
+        this.sections = new Section[numSections];
+        for (int i = 0; i < numSections; i++) {
+            sections[i] = new Section<>(perSectionCapacity);
+        }
+    }
+
+    void put(long ledgerId, long entryId, int opType, long startTimeNanos, V value) {
+        long h = hash(ledgerId, entryId);
+        getSection(h).put(h, ledgerId, entryId, opType, startTimeNanos, value);
+    }
+
+    V get(long ledgerId, long entryId, int opType) {
+        long h = hash(ledgerId, entryId);
+        return getSection(h).get(h, ledgerId, entryId, opType);
+    }
+
+    V remove(long ledgerId, long entryId, int opType) {
+        long h = hash(ledgerId, entryId);
+        return getSection(h).remove(h, ledgerId, entryId, opType);
+    }
+
+    /**
+     * Remove the values matching the predicate, skipping the sections without any value older than
+     * minElapsedNanos.
+     *
+     * @return the number of values removed
+     */
+    int removeIf(long nowNanos, long minElapsedNanos, Predicate<V> predicate) {
+        int removed = 0;
+        for (Section<V> s : sections) {
+            removed += s.removeIf(nowNanos, minElapsedNanos, predicate);
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all the values, passing them to the consumer outside of the locks of the table.
+     */
+    void removeAll(Consumer<V> consumer) {
+        for (Section<V> s : sections) {
+            s.removeAll().forEach(consumer);
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Section<V> s : sections) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    private Section<V> getSection(long hash) {
+        return sections[(int) (hash >>> 32) & (sections.length - 1)];
+    }
+
+    private static final class Section<V> {
+        private final int initCapacity;
+        private int capacity;
+        private long[] ledgerIds;
+        private long[] entryIds;
+        private int[] opTypes;
+        private long[] startTimes;
+        private Object[] values;
+        private volatile int size = 0;
+        // Lower bound of the start times of the values
+        private long minStartTime = Long.MAX_VALUE;
+
+        Section(int capacity) {
+            this.initCapacity = capacity;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            this.capacity = capacity;
+            this.ledgerIds = new long[capacity];
+            this.entryIds = new long[capacity];
+            this.opTypes = new int[capacity];
+            this.startTimes = new long[capacity];
+            this.values = new Object[capacity];
+        }
+
+        synchronized void put(long h, long ledgerId, long entryId, int opType, long startTime, V value) {
+            if (size + 1 > capacity * FILL_FACTOR) {
+                rehash(capacity * 2);
+            }
+            insert(h, ledgerId, entryId, opType, startTime, value);
+            size++;
+            minStartTime = Math.min(minStartTime, startTime);
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long h, long ledgerId, long entryId, int opType) {
+            int bucket = find(h, ledgerId, entryId, opType);
+            return bucket < 0 ? null : (V) values[bucket];
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(long h, long ledgerId, long entryId, int opType) {
+            int bucket = find(h, ledgerId, entryId, opType);
+            if (bucket < 0) {
+                return null;
+            }
+            V value = (V) values[bucket];
+            removeAt(bucket);
+            maybeShrink();
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized int removeIf(long nowNanos, long minElapsedNanos, Predicate<V> predicate) {
+            if (size == 0 || nowNanos - minStartTime < minElapsedNanos) {
+                return 0;
+            }
+            int removed = 0;
+            long newMinStartTime = Long.MAX_VALUE;
+            int bucket = 0;
+            while (bucket < capacity) {
+                V value = (V) values[bucket];
+                if (value != null && predicate.test(value)) {
+                    removeAt(bucket);
+                    removed++;
+                    // check the value shifted into the bucket, if any
+                    continue;
+                }
+                if (value != null) {
+                    newMinStartTime = Math.min(newMinStartTime, startTimes[bucket]);
+                }
+                bucket++;
+            }
+            minStartTime = newMinStartTime;
+            maybeShrink();
+            return removed;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized List<V> removeAll() {
+            List<V> removed = new ArrayList<>(size);
+            for (int bucket = 0; bucket < capacity; bucket++) {
+                if (values[bucket] != null) {
+                    removed.add((V) values[bucket]);
+                }
+            }
+            allocate(initCapacity);
+            size = 0;
+            minStartTime = Long.MAX_VALUE;
+            return removed;
+        }
+
+        private int find(long h, long ledgerId, long entryId, int opType) {
+            int mask = capacity - 1;
+            int bucket = (int) h & mask;
+            while (values[bucket] != null) {
+                if (ledgerIds[bucket] == ledgerId && entryIds[bucket] == entryId && opTypes[bucket] == opType) {
+                    return bucket;
+                }
+                bucket = (bucket + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(long h, long ledgerId, long entryId, int opType, long startTime, Object value) {
+            int mask = capacity - 1;
+            int bucket = (int) h & mask;
+            while (values[bucket] != null) {
+                bucket = (bucket + 1) & mask;
+            }
+            ledgerIds[bucket] = ledgerId;
+            entryIds[bucket] = entryId;
+            opTypes[bucket] = opType;
+            startTimes[bucket] = startTime;
+            values[bucket] = value;
+        }
+
+        // Backward shift deletion, which keeps the probe sequences without tombstones
+        private void removeAt(int bucket) {
+            int mask = capacity - 1;
+            int hole = bucket;
+            int next = (hole + 1) & mask;
+            while (values[next] != null) {
+                int ideal = (int) hash(ledgerIds[next], entryIds[next]) & mask;
+                // the value can fill the hole if the hole is between its ideal bucket and its bucket
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    ledgerIds[hole] = ledgerIds[next];
+                    entryIds[hole] = entryIds[next];
+                    opTypes[hole] = opTypes[next];
+                    startTimes[hole] = startTimes[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            values[hole] = null;
+            size--;
+        }
+
+        private void maybeShrink() {
+            if (capacity > initCapacity && size < capacity * IDLE_FACTOR) {
+                rehash(Math.max(capacity / 2, initCapacity));
+            }
+        }
+
+        private void rehash(int newCapacity) {
+            long[] oldLedgerIds = ledgerIds;
+            long[] oldEntryIds = entryIds;
+            int[] oldOpTypes = opTypes;
+            long[] oldStartTimes = startTimes;
+            Object[] oldValues = values;
+            allocate(newCapacity);
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    insert(hash(oldLedgerIds[i], oldEntryIds[i]), oldLedgerIds[i], oldEntryIds[i], oldOpTypes[i],
+                            oldStartTimes[i], oldValues[i]);
+                }
+            }
+        }
+    }
+
+    private static final long HASH_MIXER = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    static long hash(long key1, long key2) {
+        long hash = key1 * HASH_MIXER;
+        hash ^= hash >>> R;
+        hash *= HASH_MIXER;
+        hash += 31 + (key2 * HASH_MIXER);
+        hash ^= hash >>> R;
+        hash *= HASH_MIXER;
+        return hash;
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieProtocol.BatchedAddRequest;
+import org.apache.bookkeeper.proto.BookieProtocol.ParsedAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes add entry batch requests.
+ *
+ * <p>The entries are added to the bookie in order from the same thread, so they end up in the same journal
+ * group commit. A single response is sent for the last entry once all the entries are acknowledged.
+ * If an entry cannot be added, the following entries of the batch are dropped, so that the ledger doesn't get
+ * holes, and the response carries the error code of the first failed entry.
+ */
+class WriteBatchEntryProcessor extends PacketProcessorBase<BatchedAddRequest> implements WriteCallback {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBatchEntryProcessor.class);
+
+    private final AtomicInteger pendingEntries = new AtomicInteger();
+    private final AtomicInteger firstErrorCode = new AtomicInteger(BookieProtocol.EOK);
+    private long startTimeNanos;
+
+    public static WriteBatchEntryProcessor create(BatchedAddRequest request, BookieRequestHandler requestHandler,
+                                                  BookieRequestProcessor requestProcessor) {
+        WriteBatchEntryProcessor wbep = new WriteBatchEntryProcessor();
+        wbep.init(request, requestHandler, requestProcessor);
+        requestProcessor.onAddRequestStart(requestHandler.ctx().channel());
+        return wbep;
+    }
+
+    @Override
+    protected void processPacket() {
+        if (requestProcessor.getBookie().isReadOnly()
+            && !(request.isHighPriority() && requestProcessor.getBookie().isAvailableForHighPriorityWrites())) {
+            LOG.warn("BookieServer is running in readonly mode,"
+                    + " so rejecting the request from the client!");
+            sendWriteReqResponse(BookieProtocol.EREADONLY,
+                         ResponseBuilder.buildErrorResponse(BookieProtocol.EREADONLY, request.getLastAddRequest()),
+                         requestProcessor.getRequestStats().getAddRequestStats());
+            request.release();
+            request.recycle();
+            return;
+        }
+
+        startTimeNanos = MathUtils.nowInNano();
+        ParsedAddRequest[] addRequests = request.getAddRequests();
+        pendingEntries.set(addRequests.length);
+        for (int i = 0; i < addRequests.length; i++) {
+            int rc = addEntry(addRequests[i]);
+            if (rc != BookieProtocol.EOK) {
+                requestProcessor.getRequestStats().getAddEntryStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+                firstErrorCode.compareAndSet(BookieProtocol.EOK, rc);
+                for (int j = i + 1; j < addRequests.length; j++) {
+                    addRequests[j].release();
+                }
+                if (pendingEntries.addAndGet(i - addRequests.length) == 0) {
+                    // All the entries added before the failed one are already acknowledged
+                    int errorCode = firstErrorCode.get();
+                    sendWriteReqResponse(errorCode,
+                            ResponseBuilder.buildErrorResponse(errorCode, request.getLastAddRequest()),
+                            requestProcessor.getRequestStats().getAddRequestStats());
+                    request.recycle();
+                }
+                return;
+            }
+        }
+    }
+
+    private int addEntry(ParsedAddRequest addRequest) {
+        try {
+            if (addRequest.isRecoveryAdd()) {
+                requestProcessor.getBookie().recoveryAddEntry(addRequest.getData(), this, requestHandler,
+                        addRequest.getMasterKey());
+            } else {
+                requestProcessor.getBookie().addEntry(addRequest.getData(), false, this,
+                        requestHandler, addRequest.getMasterKey());
+            }
+            return BookieProtocol.EOK;
+        } catch (OperationRejectedException e) {
+            requestProcessor.getRequestStats().getAddEntryRejectedCounter().inc();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Operation rejected while writing {}", addRequest, e);
+            }
+            return BookieProtocol.ETOOMANYREQUESTS;
+        } catch (IOException e) {
+            LOG.error("Error writing {}", addRequest, e);
+            return BookieProtocol.EIO;
+        } catch (BookieException.LedgerFencedException lfe) {
+            LOG.warn("Write attempt on fenced ledger {} by client {}", addRequest.getLedgerId(),
+                    requestHandler.ctx().channel().remoteAddress());
+            return BookieProtocol.EFENCED;
+        } catch (BookieException e) {
+            LOG.error("Unauthorized access to ledger {}", addRequest.getLedgerId(), e);
+            return BookieProtocol.EUA;
+        } catch (Throwable t) {
+            LOG.error("Unexpected exception while writing {}@{} : {}",
+                      addRequest.getLedgerId(), addRequest.getEntryId(), t.getMessage(), t);
+            return BookieProtocol.EBADREQ;
+        }
+    }
+
+    @Override
+    public void writeComplete(int rc, long ledgerId, long entryId,
+                              BookieId addr, Object ctx) {
+        if (BookieProtocol.EOK == rc) {
+            requestProcessor.getRequestStats().getAddEntryStats()
+                .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            requestProcessor.getRequestStats().getAddEntryStats()
+                .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            firstErrorCode.compareAndSet(BookieProtocol.EOK, rc);
+        }
+
+        if (pendingEntries.decrementAndGet() == 0) {
+            requestHandler.prepareSendResponseV2(firstErrorCode.get(), request.getLastAddRequest());
+            requestProcessor.onAddRequestFinish();
+            request.recycle();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WriteEntryBatch(%d, %d, %d)",
+                             request.getLedgerId(), request.getAddRequests()[0].getEntryId(), request.getEntryId());
+    }
+}
@@ -21,11 +21,25 @@ package org.apache.bookkeeper.proto.checksum;
 import com.scurrilous.circe.checksum.Crc32cIntChecksum;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.FastThreadLocal;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.util.ByteBufVisitor;
 
 @Slf4j
 class CRC32CDigestManager extends DigestManager {
 
+    // Max number of regions passed to a single checksum call
+    private static final int MAX_GATHER_REGIONS = 64;
+
+    private static final FastThreadLocal<GatherContext> GATHER_CONTEXT = new FastThreadLocal<GatherContext>() {
+        @Override
+        protected GatherContext initialValue() {
+            return new GatherContext();
+        }
+    };
+
+    private static final GatherVisitorCallback GATHER_VISITOR_CALLBACK = new GatherVisitorCallback();
+
     public CRC32CDigestManager(long ledgerId, boolean useV2Protocol, ByteBufAllocator allocator) {
         super(ledgerId, useV2Protocol, allocator);
     }
@@ -59,4 +73,69 @@ class CRC32CDigestManager extends DigestManager {
     boolean acceptsMemoryAddressBuffer() {
         return Crc32cIntChecksum.acceptsMemoryAddressBuffer();
     }
+
+    /**
+     * Gather the memory addresses of the wrapped buffers and checksum them with a single call, instead of a call per
+     * buffer, which is a JNI transition per buffer with the native library.
+     */
+    @Override
+    int updateComponents(int digest, ByteBuf buffer, int offset, int len) {
+        if (!Crc32cIntChecksum.acceptsMemoryAddressBuffer()) {
+            return super.updateComponents(digest, buffer, offset, len);
+        }
+        GatherContext context = GATHER_CONTEXT.get();
+        context.digest = digest;
+        ByteBufVisitor.visitBuffers(buffer, offset, len, GATHER_VISITOR_CALLBACK, context);
+        context.flush();
+        return context.digest;
+    }
+
+    private static class GatherContext {
+        final long[] addresses = new long[MAX_GATHER_REGIONS];
+        final int[] lengths = new int[MAX_GATHER_REGIONS];
+        int count;
+        int digest;
+
+        void add(long address, int length) {
+            if (count == MAX_GATHER_REGIONS) {
+                flush();
+            }
+            addresses[count] = address;
+            lengths[count] = length;
+            count++;
+        }
+
+        void flush() {
+            if (count > 0) {
+                digest = Crc32cIntChecksum.resumeChecksum(digest, addresses, lengths, count);
+                count = 0;
+            }
+        }
+    }
+
+    private static class GatherVisitorCallback implements ByteBufVisitor.ByteBufVisitorCallback<GatherContext> {
+
+        @Override
+        public void visitBuffer(GatherContext context, ByteBuf visitBuffer, int visitIndex, int visitLength) {
+            if (visitBuffer.hasMemoryAddress()) {
+                context.add(visitBuffer.memoryAddress() + visitIndex, visitLength);
+            } else {
+                // The gathered regions come first to keep the order of the bytes
+                context.flush();
+                context.digest = Crc32cIntChecksum.resumeChecksum(context.digest, visitBuffer, visitIndex,
+                        visitLength);
+            }
+        }
+
+        @Override
+        public void visitArray(GatherContext context, byte[] visitArray, int visitIndex, int visitLength) {
+            context.flush();
+            context.digest = Crc32cIntChecksum.resumeChecksum(context.digest, visitArray, visitIndex, visitLength);
+        }
+
+        @Override
+        public boolean acceptsMemoryAddress(GatherContext context) {
+            return true;
+        }
+    }
 }
@@ -66,12 +66,19 @@ public abstract class DigestManager {
         } else if (buffer.hasArray()) {
             return internalUpdate(digest, buffer.array(), buffer.arrayOffset() + offset, len);
         } else {
-            UpdateContext updateContext = new UpdateContext(digest);
-            ByteBufVisitor.visitBuffers(buffer, offset, len, byteBufVisitorCallback, updateContext);
-            return updateContext.digest;
+            return updateComponents(digest, buffer, offset, len);
         }
     }
 
+    /**
+     * Update the digest with the wrapped buffers of a composite buffer, one at a time.
+     */
+    int updateComponents(int digest, ByteBuf buffer, int offset, int len) {
+        UpdateContext updateContext = new UpdateContext(digest);
+        ByteBufVisitor.visitBuffers(buffer, offset, len, byteBufVisitorCallback, updateContext);
+        return updateContext.digest;
+    }
+
     abstract void populateValueAndReset(int digest, ByteBuf buffer);
 
     abstract boolean isInt32Digest();
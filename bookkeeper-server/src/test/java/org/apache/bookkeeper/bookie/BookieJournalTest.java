@@ -0,0 +1,291 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.discover.BookieServiceInfo;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test replaying the journals on bookie startup.
+ */
+public class BookieJournalTest {
+
+    private static final int NUM_JOURNALS = 3;
+    private static final int LEDGERS_PER_JOURNAL = 3;
+    private static final int ENTRIES_PER_LEDGER = 300;
+
+    private final List<File> tmpDirs = new ArrayList<>();
+    private File[] journalDirs;
+    private File ledgerDir;
+
+    @Before
+    public void setup() throws Exception {
+        journalDirs = new File[NUM_JOURNALS];
+        for (int i = 0; i < NUM_JOURNALS; i++) {
+            journalDirs[i] = createTempDir("bookie-journal-" + i);
+        }
+        ledgerDir = createTempDir("bookie-ledgers");
+    }
+
+    @After
+    public void teardown() throws Exception {
+        for (File dir : tmpDirs) {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private File createTempDir(String prefix) throws Exception {
+        File dir = Files.createTempDirectory(prefix).toFile();
+        tmpDirs.add(dir);
+        assertTrue(BookieImpl.getCurrentDirectory(dir).mkdirs());
+        return dir;
+    }
+
+    private ServerConfiguration newConf(int numReplayThreads) {
+        ServerConfiguration conf = new ServerConfiguration();
+        String[] journalDirNames = new String[NUM_JOURNALS];
+        for (int i = 0; i < NUM_JOURNALS; i++) {
+            journalDirNames[i] = journalDirs[i].getPath();
+        }
+        conf.setJournalDirsName(journalDirNames);
+        conf.setLedgerDirNames(new String[] {ledgerDir.getPath()});
+        conf.setAllowLoopback(true);
+        conf.setNumJournalReplayThreads(numReplayThreads);
+        return conf;
+    }
+
+    private static LedgerDirsManager newLedgerDirsManager(ServerConfiguration conf) throws Exception {
+        return new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+    }
+
+    private static long ledgerId(int journalIndex, int ledgerIndex) {
+        return journalIndex * 100 + ledgerIndex + 1;
+    }
+
+    private static ByteBuf masterKeyRecord(long ledgerId) {
+        byte[] masterKey = ("key-" + ledgerId).getBytes();
+        ByteBuf record = Unpooled.buffer();
+        record.writeLong(ledgerId);
+        record.writeLong(BookieImpl.METAENTRY_ID_LEDGER_KEY);
+        record.writeInt(masterKey.length);
+        record.writeBytes(masterKey);
+        return record;
+    }
+
+    private static ByteBuf fenceRecord(long ledgerId) {
+        ByteBuf record = Unpooled.buffer();
+        record.writeLong(ledgerId);
+        record.writeLong(BookieImpl.METAENTRY_ID_FENCE_KEY);
+        return record;
+    }
+
+    private static ByteBuf explicitLacRecord(long ledgerId, long explicitLac) {
+        ByteBuf record = Unpooled.buffer();
+        record.writeLong(ledgerId);
+        record.writeLong(BookieImpl.METAENTRY_ID_LEDGER_EXPLICITLAC);
+        record.writeInt(Long.BYTES);
+        record.writeLong(explicitLac);
+        return record;
+    }
+
+    private static ByteBuf entryRecord(long ledgerId, long entryId) {
+        ByteBuf record = Unpooled.buffer();
+        record.writeLong(ledgerId);
+        record.writeLong(entryId);
+        record.writeLong(entryId - 1);
+        record.writeZero((int) (entryId % 512));
+        return record;
+    }
+
+    /**
+     * Write the records of the ledgers of a journal, interleaved, and return the events expected in the ledger
+     * storage for each ledger once the journal is replayed.
+     */
+    private Map<Long, List<String>> writeJournal(ServerConfiguration conf, int journalIndex) throws Exception {
+        Map<Long, List<String>> expected = new ConcurrentHashMap<>();
+        List<ByteBuf> records = new ArrayList<>();
+        for (int l = 0; l < LEDGERS_PER_JOURNAL; l++) {
+            long ledgerId = ledgerId(journalIndex, l);
+            records.add(masterKeyRecord(ledgerId));
+            expected.computeIfAbsent(ledgerId, k -> new ArrayList<>()).add("key");
+        }
+        for (long entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+            for (int l = 0; l < LEDGERS_PER_JOURNAL; l++) {
+                long ledgerId = ledgerId(journalIndex, l);
+                if (entryId == ENTRIES_PER_LEDGER / 2 && l == 1) {
+                    records.add(fenceRecord(ledgerId));
+                    expected.get(ledgerId).add("fence");
+                } else if (entryId == ENTRIES_PER_LEDGER / 2 && l == 2) {
+                    records.add(explicitLacRecord(ledgerId, entryId - 1));
+                    expected.get(ledgerId).add("explicit-lac-" + (entryId - 1));
+                }
+                records.add(entryRecord(ledgerId, entryId));
+                expected.get(ledgerId).add("entry-" + entryId + "-lac-" + (entryId - 1));
+            }
+        }
+
+        Journal journal = new Journal(journalIndex, BookieImpl.getCurrentDirectory(journalDirs[journalIndex]), conf,
+                newLedgerDirsManager(conf));
+        journal.start();
+        try {
+            CountDownLatch written = new CountDownLatch(records.size());
+            AtomicInteger failures = new AtomicInteger();
+            for (ByteBuf record : records) {
+                journal.logAddEntry(record, false, (rc, lid, eid, addr, ctx) -> {
+                    if (rc != 0) {
+                        failures.incrementAndGet();
+                    }
+                    written.countDown();
+                }, null);
+                record.release();
+            }
+            assertTrue(written.await(30, TimeUnit.SECONDS));
+            assertEquals(0, failures.get());
+        } finally {
+            journal.shutdown();
+        }
+        return expected;
+    }
+
+    /**
+     * Ledger storage recording the operations applied by the journal replay, per ledger.
+     */
+    private static LedgerStorage newRecordingLedgerStorage(Map<Long, List<String>> events) throws Exception {
+        LedgerStorage storage = mock(LedgerStorage.class);
+        doAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(0);
+            record(events, ledgerId, "key");
+            return null;
+        }).when(storage).setMasterKey(anyLong(), any(byte[].class));
+        doAnswer(invocation -> {
+            ByteBuf entry = invocation.getArgument(0);
+            long ledgerId = entry.getLong(entry.readerIndex());
+            long entryId = entry.getLong(entry.readerIndex() + 8);
+            long lac = entry.getLong(entry.readerIndex() + 16);
+            record(events, ledgerId, "entry-" + entryId + "-lac-" + lac);
+            return entryId;
+        }).when(storage).addEntry(any(ByteBuf.class));
+        doAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(0);
+            record(events, ledgerId, "fence");
+            return true;
+        }).when(storage).setFenced(anyLong());
+        doAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(0);
+            ByteBuf explicitLac = invocation.getArgument(1);
+            record(events, ledgerId, "explicit-lac-" + explicitLac.getLong(explicitLac.readerIndex()));
+            return null;
+        }).when(storage).setExplicitLac(anyLong(), any(ByteBuf.class));
+        return storage;
+    }
+
+    private static void record(Map<Long, List<String>> events, long ledgerId, String event) {
+        events.computeIfAbsent(ledgerId, k -> Collections.synchronizedList(new ArrayList<>())).add(event);
+    }
+
+    private BookieImpl newBookie(ServerConfiguration conf, LedgerStorage storage) throws Exception {
+        LedgerDirsManager ledgerDirsManager = newLedgerDirsManager(conf);
+        return new BookieImpl(conf, null, storage,
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()),
+                ledgerDirsManager, ledgerDirsManager, NullStatsLogger.INSTANCE, UnpooledByteBufAllocator.DEFAULT,
+                BookieServiceInfo.NO_INFO);
+    }
+
+    private List<LogMark> replay(ServerConfiguration conf, Map<Long, List<String>> events) throws Exception {
+        BookieImpl bookie = newBookie(conf, newRecordingLedgerStorage(events));
+        try {
+            bookie.readJournal();
+            List<LogMark> marks = new ArrayList<>();
+            for (Journal journal : bookie.journals) {
+                marks.add(new LogMark(journal.getLastLogMark().getCurMark()));
+            }
+            return marks;
+        } finally {
+            bookie.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelReplay() throws Exception {
+        ServerConfiguration conf = newConf(4);
+        Map<Long, List<String>> expected = new ConcurrentHashMap<>();
+        for (int i = 0; i < NUM_JOURNALS; i++) {
+            expected.putAll(writeJournal(conf, i));
+        }
+
+        // All the records are applied by the time the replay returns, in the journal order for each ledger
+        Map<Long, List<String>> events = new ConcurrentHashMap<>();
+        List<LogMark> marks = replay(conf, events);
+        assertEquals(expected, events);
+
+        // The marks point to the end of each journal, like with a sequential replay
+        Map<Long, List<String>> sequentialEvents = new ConcurrentHashMap<>();
+        List<LogMark> sequentialMarks = replay(newConf(0), sequentialEvents);
+        assertEquals(expected, sequentialEvents);
+        for (int i = 0; i < NUM_JOURNALS; i++) {
+            List<Long> journalIds = Journal.listJournalIds(BookieImpl.getCurrentDirectory(journalDirs[i]), null);
+            assertEquals(1, journalIds.size());
+            assertEquals(journalIds.get(0).longValue(), marks.get(i).getLogFileId());
+            assertTrue(marks.get(i).getLogFileOffset() > 0);
+            assertEquals(0, sequentialMarks.get(i).compare(marks.get(i)));
+        }
+    }
+
+    @Test
+    public void testParallelReplayWithSingleThread() throws Exception {
+        ServerConfiguration conf = newConf(1);
+        Map<Long, List<String>> expected = new ConcurrentHashMap<>();
+        for (int i = 0; i < NUM_JOURNALS; i++) {
+            expected.putAll(writeJournal(conf, i));
+        }
+
+        Map<Long, List<String>> events = new ConcurrentHashMap<>();
+        replay(conf, events);
+        assertEquals(expected, events);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link BufferedChannel}.
+ */
+public class BufferedChannelTest {
+
+    private static final int WRITE_CAPACITY = 1024;
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private BufferedChannel channel;
+    private final AtomicLong releasedBytes = new AtomicLong();
+    private final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+    @Before
+    public void setup() throws Exception {
+        file = File.createTempFile("buffered-channel", ".log");
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = new BufferedChannel(UnpooledByteBufAllocator.DEFAULT, randomAccessFile.getChannel(),
+                WRITE_CAPACITY);
+        channel.setGatheredBuffersReleaseListener(releasedBytes::addAndGet);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        channel.close();
+        randomAccessFile.close();
+        file.delete();
+    }
+
+    private byte[] data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (expected.size() + i);
+        }
+        expected.write(data, 0, size);
+        return data;
+    }
+
+    private void write(int size) throws Exception {
+        ByteBuf src = Unpooled.wrappedBuffer(data(size));
+        channel.write(src);
+        src.release();
+    }
+
+    private ByteBuf writeGathered(int size) throws Exception {
+        ByteBuf src = Unpooled.directBuffer(size);
+        src.writeBytes(data(size));
+        assertTrue(channel.writeGathered(src));
+        src.release();
+        return src;
+    }
+
+    private void assertFileContent() throws Exception {
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testInterleavedWrites() throws Exception {
+        write(10);
+        ByteBuf gathered1 = writeGathered(200);
+        write(20);
+        write(30);
+        ByteBuf gathered2 = writeGathered(300);
+        ByteBuf gathered3 = writeGathered(100);
+        write(40);
+
+        // The gathered buffers are retained until they are written
+        assertEquals(1, gathered1.refCnt());
+        assertEquals(1, gathered3.refCnt());
+        assertEquals(700, channel.getNumOfBytesInWriteBuffer());
+        assertEquals(700, channel.position());
+        assertEquals(0, channel.getFileChannelPosition());
+        assertEquals(0, releasedBytes.get());
+
+        channel.flush();
+        assertFileContent();
+        assertEquals(0, gathered1.refCnt());
+        assertEquals(0, gathered2.refCnt());
+        assertEquals(0, gathered3.refCnt());
+        assertEquals(600, releasedBytes.get());
+        assertEquals(0, channel.getNumOfBytesInWriteBuffer());
+        assertEquals(700, channel.getFileChannelPosition());
+
+        // The write buffer is reused for the next writes
+        write(50);
+        writeGathered(60);
+        assertEquals(110, channel.getNumOfBytesInWriteBuffer());
+        channel.flush();
+        assertFileContent();
+        assertEquals(660, releasedBytes.get());
+        assertEquals(810, channel.getFileChannelPosition());
+    }
+
+    @Test
+    public void testFlushesCrossingWriteCapacity() throws Exception {
+        // Writes larger than the write buffer flush it as it gets full
+        write(WRITE_CAPACITY - 100);
+        write(300);
+        assertEquals(WRITE_CAPACITY, channel.getFileChannelPosition());
+        assertEquals(200, channel.getNumOfBytesInWriteBuffer());
+
+        // Gathered buffers are flushed, with the content of the write buffer before them, once they hold more than
+        // the write capacity
+        ByteBuf gathered1 = writeGathered(WRITE_CAPACITY / 2);
+        assertEquals(1, gathered1.refCnt());
+        write(10);
+        ByteBuf gathered2 = writeGathered(WRITE_CAPACITY / 2);
+        assertEquals(0, gathered1.refCnt());
+        assertEquals(0, gathered2.refCnt());
+        assertEquals(WRITE_CAPACITY, releasedBytes.get());
+        assertEquals(0, channel.getNumOfBytesInWriteBuffer());
+        assertEquals(channel.position(), channel.getFileChannelPosition());
+        assertFileContent();
+
+        // A single gathered buffer larger than the write capacity is flushed right away
+        write(WRITE_CAPACITY - 1);
+        ByteBuf gathered3 = writeGathered(3 * WRITE_CAPACITY);
+        assertEquals(0, gathered3.refCnt());
+        assertEquals(4 * WRITE_CAPACITY, releasedBytes.get());
+        assertEquals(0, channel.getNumOfBytesInWriteBuffer());
+        assertFileContent();
+    }
+
+    @Test
+    public void testHeapBufferFallback() throws Exception {
+        write(10);
+        ByteBuf heap = Unpooled.wrappedBuffer(data(100));
+        // Heap buffers are copied into the write buffer instead of being retained
+        assertFalse(channel.writeGathered(heap));
+        assertEquals(1, heap.refCnt());
+        heap.release();
+
+        assertEquals(110, channel.getNumOfBytesInWriteBuffer());
+        channel.flush();
+        assertFileContent();
+        assertEquals(0, releasedBytes.get());
+    }
+
+    @Test
+    public void testReadBeforeFlush() throws Exception {
+        write(10);
+        writeGathered(100);
+        write(10);
+
+        // Reading the data written with gathering writes flushes it first
+        ByteBuf dest = Unpooled.buffer(120);
+        assertEquals(120, channel.read(dest, 0, 120));
+        assertArrayEquals(expected.toByteArray(), ByteBufUtil.getBytes(dest));
+        assertEquals(100, releasedBytes.get());
+        assertEquals(0, channel.getNumOfBytesInWriteBuffer());
+    }
+
+    @Test
+    public void testReleaseOnClose() throws Exception {
+        ByteBuf gathered = writeGathered(100);
+        channel.close();
+        assertEquals(0, gathered.refCnt());
+        assertEquals(100, releasedBytes.get());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the adaptation of the rate of {@link AbstractLogCompactor.Throttler} to the latency of the foreground reads.
+ */
+public class CompactionThrottlerTest {
+
+    private static final double RATE = 1600;
+    private static final long THRESHOLD_MILLIS = 10;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private StubReadLatencyTracker tracker;
+    private AbstractLogCompactor.Throttler throttler;
+    private long now;
+
+    private static class StubReadLatencyTracker extends ReadLatencyTracker {
+        long latencyNanos = -1;
+
+        @Override
+        public long sampleAverageLatencyNanos() {
+            return latencyNanos;
+        }
+    }
+
+    @Before
+    public void setup() {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setIsThrottleByBytes(false);
+        conf.setCompactionRateByEntries((int) RATE);
+        tracker = new StubReadLatencyTracker();
+        throttler = new AbstractLogCompactor.Throttler(conf);
+        throttler.setReadLatencyTracker(tracker, THRESHOLD_MILLIS);
+        now = 10 * SECOND;
+    }
+
+    private void sample(long latencyMillis) {
+        tracker.latencyNanos = latencyMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        now += SECOND;
+        throttler.adaptRate(now);
+    }
+
+    private void assertRate(double expectedRate) {
+        assertEquals(expectedRate, throttler.getRate(), 0.001);
+    }
+
+    @Test
+    public void testRateHalvedDownToFloor() {
+        assertRate(RATE);
+
+        sample(15);
+        assertRate(RATE / 2);
+
+        // The latency is only sampled once per second
+        tracker.latencyNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        throttler.adaptRate(now + SECOND / 2);
+        assertRate(RATE / 2);
+
+        sample(15);
+        assertRate(RATE / 4);
+        sample(15);
+        assertRate(RATE / 8);
+        sample(15);
+        assertRate(RATE / 16);
+        // Never below 1/16 of the configured rate
+        sample(15);
+        assertRate(RATE / 16);
+        assertFalse(throttler.isPaused());
+    }
+
+    @Test
+    public void testRateDoubledBack() {
+        sample(15);
+        sample(15);
+        sample(15);
+        assertRate(RATE / 8);
+
+        // Between half of the threshold and the threshold, the rate is kept
+        sample(7);
+        assertRate(RATE / 8);
+
+        // Without foreground reads, or with a latency below half of the threshold, the rate is doubled back
+        sample(-1);
+        assertRate(RATE / 4);
+        sample(2);
+        assertRate(RATE / 2);
+        sample(2);
+        assertRate(RATE);
+        // Never above the configured rate
+        sample(2);
+        assertRate(RATE);
+    }
+
+    @Test
+    public void testPause() throws Exception {
+        sample(25);
+        assertTrue(throttler.isPaused());
+        // The rate is kept while paused
+        assertRate(RATE);
+
+        sample(15);
+        assertFalse(throttler.isPaused());
+        assertRate(RATE / 2);
+
+        sample(25);
+        assertTrue(throttler.isPaused());
+        sample(2);
+        assertFalse(throttler.isPaused());
+        assertRate(RATE);
+    }
+
+    @Test
+    public void testCancelWhilePaused() {
+        sample(25);
+        assertTrue(throttler.isPaused());
+
+        throttler.cancelledAcquire();
+        try {
+            throttler.acquire(1);
+            fail("The acquire should have been cancelled");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
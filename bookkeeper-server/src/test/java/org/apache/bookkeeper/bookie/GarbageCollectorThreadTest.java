@@ -0,0 +1,120 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+/**
+ * Unit test for the selection of the entry logs to compact by {@link GarbageCollectorThread}.
+ */
+public class GarbageCollectorThreadTest {
+
+    private static final long MB = 1024 * 1024;
+
+    /**
+     * Garbage collector recording the entry logs it compacts, without compacting them.
+     */
+    private static class RecordingGarbageCollectorThread extends GarbageCollectorThread {
+        final List<Long> compacted = new ArrayList<>();
+
+        RecordingGarbageCollectorThread(ServerConfiguration conf) throws Exception {
+            super(conf, mock(LedgerManager.class), mock(LedgerDirsManager.class),
+                    mock(CompactableLedgerStorage.class), mock(EntryLogger.class), NullStatsLogger.INSTANCE,
+                    mock(ScheduledExecutorService.class));
+        }
+
+        @Override
+        protected void compactEntryLog(EntryLogMetadata entryLogMeta) {
+            compacted.add(entryLogMeta.getEntryLogId());
+        }
+    }
+
+    private static EntryLogMetadata entryLog(long entryLogId, long totalSize, long remainingSize) {
+        EntryLogMetadata meta = new EntryLogMetadata(entryLogId);
+        meta.addLedgerSize(1, remainingSize);
+        meta.addLedgerSize(2, totalSize - remainingSize);
+        meta.removeLedgerIf(ledgerId -> ledgerId == 2);
+        return meta;
+    }
+
+    private static ServerConfiguration newConf(boolean orderByReclaimCost) {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setBookieId("gc-test-bookie");
+        conf.setCompactionOrderByReclaimCost(orderByReclaimCost);
+        return conf;
+    }
+
+    @Test
+    public void testReclaimableBytesPerIoByte() {
+        // Reading and rewriting the remaining entries, plus a fixed cost per entry log, for the bytes reclaimed
+        assertEquals(0.0, GarbageCollectorThread.reclaimableBytesPerIoByte(entryLog(1, 100 * MB, 100 * MB)), 0.0);
+        assertEquals(96.0 / 100, GarbageCollectorThread.reclaimableBytesPerIoByte(entryLog(1, 96 * MB, 0)), 1e-9);
+        assertEquals(50.0 / 154, GarbageCollectorThread.reclaimableBytesPerIoByte(entryLog(1, 100 * MB, 50 * MB)),
+                1e-9);
+
+        // With the same usage, larger entry logs reclaim more per byte of I/O
+        double small = GarbageCollectorThread.reclaimableBytesPerIoByte(entryLog(1, 10 * MB, 5 * MB));
+        double large = GarbageCollectorThread.reclaimableBytesPerIoByte(entryLog(2, 1000 * MB, 500 * MB));
+        assertTrue(small < large);
+
+        // With the same size, emptier entry logs reclaim more per byte of I/O
+        double full = GarbageCollectorThread.reclaimableBytesPerIoByte(entryLog(1, 100 * MB, 70 * MB));
+        double empty = GarbageCollectorThread.reclaimableBytesPerIoByte(entryLog(2, 100 * MB, 10 * MB));
+        assertTrue(full < empty);
+    }
+
+    private static List<Long> compactionOrder(boolean orderByReclaimCost) throws Exception {
+        RecordingGarbageCollectorThread gc = new RecordingGarbageCollectorThread(newConf(orderByReclaimCost));
+        // Usage 10%, 0.9 MB reclaimed for 5.1 MB of I/O
+        gc.getEntryLogMetaMap().put(1L, entryLog(1, MB, MB / 10));
+        // Usage 50%, 512 MB reclaimed for 1540 MB of I/O
+        gc.getEntryLogMetaMap().put(2L, entryLog(2, 1024 * MB, 512 * MB));
+        // Usage 30%, 70 MB reclaimed for 134 MB of I/O
+        gc.getEntryLogMetaMap().put(3L, entryLog(3, 100 * MB, 30 * MB));
+        // Usage 90%, above the threshold
+        gc.getEntryLogMetaMap().put(4L, entryLog(4, 100 * MB, 90 * MB));
+
+        gc.doCompactEntryLogs(0.8, 0);
+        return gc.compacted;
+    }
+
+    @Test
+    public void testCompactionOrderByUsage() throws Exception {
+        assertEquals(Arrays.asList(1L, 3L, 2L), compactionOrder(false));
+    }
+
+    @Test
+    public void testCompactionOrderByReclaimCost() throws Exception {
+        assertEquals(Arrays.asList(3L, 2L, 1L), compactionOrder(true));
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test writing and replaying the journal with direct I/O.
+ */
+public class JournalDirectIOTest {
+
+    private final Random random = new Random(0);
+    private File journalDir;
+    private File ledgerDir;
+
+    @Before
+    public void setup() throws Exception {
+        journalDir = Files.createTempDirectory("journal-direct-io").toFile();
+        ledgerDir = Files.createTempDirectory("journal-direct-io-ledgers").toFile();
+        assumeDirectIOSupported();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        FileUtils.deleteDirectory(journalDir);
+        FileUtils.deleteDirectory(ledgerDir);
+    }
+
+    /**
+     * Direct I/O needs the native library, and a file system supporting O_DIRECT.
+     */
+    private void assumeDirectIOSupported() throws IOException {
+        File probe = new File(journalDir, "probe");
+        Files.write(probe.toPath(), new byte[DirectJournalBufferedChannel.ALIGNMENT]);
+        try {
+            new DirectJournalReader(UnpooledByteBufAllocator.DEFAULT, new NativeIOImpl(), probe.getPath(), 0L,
+                    DirectJournalBufferedChannel.ALIGNMENT).close();
+        } catch (IOException | LinkageError e) {
+            assumeNoException(e);
+        } finally {
+            Files.delete(probe.toPath());
+        }
+    }
+
+    private ServerConfiguration newConf(boolean directIO) {
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getPath());
+        conf.setLedgerDirNames(new String[] {ledgerDir.getPath()});
+        // Small buffer and pre-allocation sizes, to go through the buffer full flushes and the pre-allocations
+        conf.setJournalWriteBufferSizeKB(16);
+        conf.setProperty("journalPreAllocSizeMB", 1);
+        conf.setJournalDirectIOEnabled(directIO);
+        return conf;
+    }
+
+    private Journal newJournal(ServerConfiguration conf) throws IOException {
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        return new Journal(0, journalDir, conf, ledgerDirsManager);
+    }
+
+    private List<byte[]> writeEntries(Journal journal, long ledgerId, int numEntries, int maxEntrySize)
+            throws Exception {
+        List<byte[]> entries = new ArrayList<>(numEntries);
+        CountDownLatch written = new CountDownLatch(numEntries);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < numEntries; i++) {
+            byte[] entry = new byte[16 + random.nextInt(maxEntrySize)];
+            random.nextBytes(entry);
+            ByteBuffer.wrap(entry).putLong(ledgerId).putLong(i);
+            entries.add(entry);
+            ByteBuf buf = Unpooled.wrappedBuffer(entry);
+            journal.logAddEntry(buf, false, (rc, lid, eid, addr, ctx) -> {
+                if (rc != 0) {
+                    failures.incrementAndGet();
+                }
+                written.countDown();
+            }, null);
+            buf.release();
+            if (i % 50 == 0) {
+                // Wait for the entries written so far, so that the journal flushes partial pages in between
+                long deadline = System.currentTimeMillis() + 10000;
+                while (written.getCount() > numEntries - i - 1 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        assertTrue(written.await(30, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        return entries;
+    }
+
+    private static List<byte[]> scan(Journal journal, long journalId, long journalPos, List<Long> offsets)
+            throws IOException {
+        List<byte[]> entries = new ArrayList<>();
+        journal.scanJournal(journalId, journalPos, (journalVersion, offset, entry) -> {
+            byte[] bytes = new byte[entry.remaining()];
+            entry.get(bytes);
+            entries.add(bytes);
+            offsets.add(offset);
+        }, false);
+        return entries;
+    }
+
+    private static void assertEntries(List<byte[]> expected, List<byte[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals("Unexpected entry " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testWriteAndReplay() throws Exception {
+        Journal journal = newJournal(newConf(true));
+        journal.start();
+        List<byte[]> entries;
+        try {
+            entries = writeEntries(journal, 1L, 2000, 2000);
+        } finally {
+            journal.shutdown();
+        }
+
+        List<Long> journalIds = Journal.listJournalIds(journalDir, null);
+        assertEquals(1, journalIds.size());
+        long journalId = journalIds.get(0);
+
+        // The journal written with direct I/O is replayed the same way with and without direct I/O
+        List<Long> directOffsets = new ArrayList<>();
+        assertEntries(entries, scan(newJournal(newConf(true)), journalId, 0L, directOffsets));
+        List<Long> bufferedOffsets = new ArrayList<>();
+        assertEntries(entries, scan(newJournal(newConf(false)), journalId, 0L, bufferedOffsets));
+        assertEquals(bufferedOffsets, directOffsets);
+
+        // Replay from the unaligned offset of a record in the middle of the journal
+        int from = entries.size() / 2 + 1;
+        List<Long> offsets = new ArrayList<>();
+        assertEntries(entries.subList(from, entries.size()),
+                scan(newJournal(newConf(true)), journalId, directOffsets.get(from), offsets));
+        assertEquals(directOffsets.subList(from, directOffsets.size()), offsets);
+    }
+
+    @Test
+    public void testReplayJournalWrittenWithoutDirectIO() throws Exception {
+        Journal journal = newJournal(newConf(false));
+        journal.start();
+        List<byte[]> entries;
+        try {
+            entries = writeEntries(journal, 2L, 500, 10000);
+        } finally {
+            journal.shutdown();
+        }
+
+        long journalId = Journal.listJournalIds(journalDir, null).get(0);
+        assertEntries(entries, scan(newJournal(newConf(true)), journalId, 0L, new ArrayList<>()));
+    }
+
+    @Test
+    public void testEntriesLargerThanTheWriteBuffer() throws Exception {
+        Journal journal = newJournal(newConf(true));
+        journal.start();
+        List<byte[]> entries;
+        try {
+            // Entries spanning several write buffers and pre-allocations
+            entries = writeEntries(journal, 3L, 20, 1024 * 1024);
+        } finally {
+            journal.shutdown();
+        }
+
+        long journalId = Journal.listJournalIds(journalDir, null).get(0);
+        assertEntries(entries, scan(newJournal(newConf(true)), journalId, 0L, new ArrayList<>()));
+    }
+
+    @Test
+    public void testAppendAfterPartialPageFlush() throws Exception {
+        ServerConfiguration conf = newConf(true);
+        byte[] first = new byte[100];
+        byte[] second = new byte[DirectJournalBufferedChannel.ALIGNMENT + 100];
+        random.nextBytes(first);
+        random.nextBytes(second);
+
+        try (JournalChannel channel = new JournalChannel(journalDir, 1L, conf.getJournalPreAllocSizeMB() * 1024 * 1024,
+                conf.getJournalWriteBufferSizeKB() * 1024, JournalChannel.SECTOR_SIZE, false, JournalChannel.V5,
+                conf, new DefaultFileChannelProvider())) {
+            BufferedChannel bc = channel.getBufferedChannel();
+            bc.write(record(first));
+            // The partial page is padded with zeros on disk, which reads as the end of the journal
+            bc.flushAndForceWrite(false);
+            assertEntries(Arrays.asList(first), scan(newJournal(conf), 1L, 0L, new ArrayList<>()));
+
+            // The next flush rewrites the page, completed
+            bc.write(record(second));
+            bc.flushAndForceWrite(false);
+            assertEquals(0, bc.getNumOfBytesInWriteBuffer());
+        }
+        assertEntries(Arrays.asList(first, second), scan(newJournal(conf), 1L, 0L, new ArrayList<>()));
+    }
+
+    private static ByteBuf record(byte[] entry) {
+        ByteBuf buf = Unpooled.buffer(4 + entry.length);
+        buf.writeInt(entry.length);
+        buf.writeBytes(entry);
+        return buf;
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNoException;
+import static org.junit.Assume.assumeTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.common.util.nativeio.IoUring;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.apache.bookkeeper.slogger.Slogger;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the writes of {@link DirectWriter} submitted to an {@link IoUring}, and the fallback to the write executor
+ * when io_uring is not available.
+ */
+public class DirectWriterIoUringTest {
+
+    private static final ByteBufAllocator ALLOCATOR = UnpooledByteBufAllocator.DEFAULT;
+    private static final int BUFFER_SIZE = Buffer.ALIGNMENT * 4;
+    private static final long MAX_FILE_SIZE = 1024 * 1024;
+
+    private File tmpDir;
+    private ExecutorService writeExecutor;
+
+    /**
+     * NativeIO keeping a single file in memory, with an io_uring that runs the operations when they are submitted
+     * and posts their completions to the completion thread.
+     */
+    private static class InMemoryNativeIO implements NativeIO {
+        final boolean ioUringAvailable;
+        final AtomicInteger syncWrites = new AtomicInteger();
+        final List<Integer> ringOps = new ArrayList<>();
+        final BlockingQueue<long[]> completions = new LinkedBlockingQueue<>();
+        byte[] content = new byte[0];
+        // When set, the result of the writes submitted to the ring, instead of the number of bytes written
+        volatile Long ringWriteResult = null;
+
+        InMemoryNativeIO(boolean ioUringAvailable) {
+            this.ioUringAvailable = ioUringAvailable;
+        }
+
+        private synchronized int write(long pointer, int count, long offset) {
+            if (offset + count > content.length) {
+                content = Arrays.copyOf(content, (int) (offset + count));
+            }
+            Unpooled.wrappedBuffer(pointer, count, false).getBytes(0, content, (int) offset, count);
+            return count;
+        }
+
+        synchronized byte[] content() {
+            return content.clone();
+        }
+
+        @Override
+        public int open(String pathname, int flags, int mode) {
+            return 1;
+        }
+
+        @Override
+        public int fsync(int fd) {
+            return 0;
+        }
+
+        @Override
+        public int fallocate(int fd, int mode, long offset, long len) {
+            return 0;
+        }
+
+        @Override
+        public int posix_fadvise(int fd, long offset, long len, int flag) {
+            return 0;
+        }
+
+        @Override
+        public int pwrite(int fd, long pointer, int count, long offset) {
+            syncWrites.incrementAndGet();
+            return write(pointer, count, offset);
+        }
+
+        @Override
+        public long posix_memalign(int alignment, int size) throws NativeIOException {
+            throw new NativeIOException("Not supported");
+        }
+
+        @Override
+        public void free(long pointer) throws NativeIOException {
+            throw new NativeIOException("Not supported");
+        }
+
+        @Override
+        public long lseek(int fd, long offset, int whence) throws NativeIOException {
+            throw new NativeIOException("Not supported");
+        }
+
+        @Override
+        public long pread(int fd, long pointer, long size, long offset) throws NativeIOException {
+            throw new NativeIOException("Not supported");
+        }
+
+        @Override
+        public int close(int fd) {
+            return 0;
+        }
+
+        @Override
+        public long io_uring_setup(int entries) throws NativeIOException {
+            if (!ioUringAvailable) {
+                throw new NativeIOException("io_uring is not available");
+            }
+            return 1L;
+        }
+
+        @Override
+        public int io_uring_submit(long ring, int op, int fd, long pointer, int len, long offset, long userData) {
+            long result = 0;
+            if (op == IO_URING_OP_WRITE) {
+                Long forcedResult = ringWriteResult;
+                result = forcedResult != null ? forcedResult : write(pointer, len, offset);
+            }
+            synchronized (ringOps) {
+                ringOps.add(op);
+            }
+            completions.add(new long[] { userData, result });
+            return 1;
+        }
+
+        @Override
+        public int io_uring_wait(long ring, long[] userData, long[] results) throws NativeIOException {
+            long[] completion;
+            try {
+                completion = completions.take();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new NativeIOException("Interrupted");
+            }
+            int count = 0;
+            while (completion != null) {
+                userData[count] = completion[0];
+                results[count] = completion[1];
+                count++;
+                completion = count < userData.length ? completions.poll() : null;
+            }
+            return count;
+        }
+
+        @Override
+        public void io_uring_close(long ring) {
+        }
+
+        List<Integer> ringOps() {
+            synchronized (ringOps) {
+                return new ArrayList<>(ringOps);
+            }
+        }
+    }
+
+    @Before
+    public void setup() throws Exception {
+        tmpDir = Files.createTempDirectory("direct-writer").toFile();
+        writeExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        writeExecutor.shutdownNow();
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    private static ByteBuf entry(int size, int seed) {
+        ByteBuf entry = Unpooled.buffer(size);
+        for (int i = 0; i < size; i++) {
+            entry.writeByte(seed + i);
+        }
+        return entry;
+    }
+
+    /**
+     * Write entries of growing sizes and return their positions in the log.
+     */
+    private static int[] writeEntries(LogWriter writer, int count) throws IOException {
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            ByteBuf entry = entry(1000 * (i + 1), i);
+            positions[i] = writer.writeDelimited(entry);
+            entry.release();
+        }
+        writer.flush();
+        return positions;
+    }
+
+    private static void assertEntries(byte[] content, int[] positions) {
+        for (int i = 0; i < positions.length; i++) {
+            ByteBuf buf = Unpooled.wrappedBuffer(content);
+            int size = buf.getInt(positions[i] - Integer.BYTES);
+            assertEquals(1000 * (i + 1), size);
+            assertEquals(entry(size, i), buf.slice(positions[i], size));
+        }
+    }
+
+    @Test
+    public void testFallbackWhenIoUringIsNotAvailable() throws Exception {
+        InMemoryNativeIO nativeIO = new InMemoryNativeIO(false);
+        try {
+            IoUring.create(nativeIO, 16, "test-io-uring");
+            fail("io_uring should not be available");
+        } catch (NativeIOException e) {
+            // Expected, the entry logger then writes through the write executor
+        }
+
+        try (BufferPool bufferPool = new BufferPool(nativeIO, ALLOCATOR, BUFFER_SIZE, 4)) {
+            DirectWriter writer = new DirectWriter(1, "test.log", MAX_FILE_SIZE, writeExecutor, null, bufferPool,
+                    nativeIO, Slogger.NULL);
+            int[] positions = writeEntries(writer, 10);
+            writer.close();
+
+            assertTrue(nativeIO.syncWrites.get() > 0);
+            assertEquals(0, nativeIO.ringOps().size());
+            assertEntries(nativeIO.content(), positions);
+        }
+    }
+
+    @Test
+    public void testWritesSubmittedToTheRing() throws Exception {
+        InMemoryNativeIO nativeIO = new InMemoryNativeIO(true);
+        IoUring ioUring = IoUring.create(nativeIO, 2, "test-io-uring");
+        try (BufferPool bufferPool = new BufferPool(nativeIO, ALLOCATOR, BUFFER_SIZE, 4)) {
+            DirectWriter writer = new DirectWriter(1, "test.log", MAX_FILE_SIZE, writeExecutor, ioUring,
+                    bufferPool, nativeIO, Slogger.NULL);
+            // More writes than the depth of the ring, which are submitted as the previous ones complete
+            int[] positions = writeEntries(writer, 10);
+
+            ByteBuf aligned = entry(Buffer.ALIGNMENT, 100);
+            long alignedOffset = MAX_FILE_SIZE - Buffer.ALIGNMENT;
+            writer.writeAt(alignedOffset, aligned);
+            writer.flush();
+            writer.close();
+
+            assertEquals(0, nativeIO.syncWrites.get());
+            List<Integer> ops = nativeIO.ringOps();
+            assertTrue(ops.stream().filter(op -> op == NativeIO.IO_URING_OP_WRITE).count() > 2);
+            // The fsync is submitted after the writes it makes durable
+            assertEquals(NativeIO.IO_URING_OP_FSYNC, ops.get(ops.size() - 1).intValue());
+
+            byte[] content = nativeIO.content();
+            assertEntries(content, positions);
+            aligned.resetReaderIndex();
+            assertEquals(aligned, Unpooled.wrappedBuffer(content, (int) alignedOffset, Buffer.ALIGNMENT));
+            aligned.release();
+        } finally {
+            ioUring.close();
+        }
+    }
+
+    private static void assertFlushFails(DirectWriter writer, String error) throws IOException {
+        ByteBuf entry = entry(100, 0);
+        writer.writeDelimited(entry);
+        entry.release();
+        try {
+            writer.flush();
+            fail("The flush should have failed");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(error));
+        }
+    }
+
+    @Test
+    public void testRingWriteFailures() throws Exception {
+        InMemoryNativeIO nativeIO = new InMemoryNativeIO(true);
+        IoUring ioUring = IoUring.create(nativeIO, 4, "test-io-uring");
+        try (BufferPool bufferPool = new BufferPool(nativeIO, ALLOCATOR, BUFFER_SIZE, 2)) {
+            // The error of the write is reported by the next flush, with its errno
+            nativeIO.ringWriteResult = -5L;
+            DirectWriter writer = new DirectWriter(1, "test.log", MAX_FILE_SIZE, writeExecutor, ioUring,
+                    bufferPool, nativeIO, Slogger.NULL);
+            assertFlushFails(writer, "Write error");
+            assertFlushFails(writer, "errno=5");
+            writer.close();
+
+            // A short write is reported as well
+            nativeIO.ringWriteResult = (long) Buffer.ALIGNMENT / 2;
+            writer = new DirectWriter(2, "test.log", MAX_FILE_SIZE, writeExecutor, ioUring, bufferPool, nativeIO,
+                    Slogger.NULL);
+            assertFlushFails(writer, "Incomplete write");
+            writer.close();
+
+            // The buffers of the failed writes went back to the pool, so a new writer can still write
+            nativeIO.ringWriteResult = null;
+            writer = new DirectWriter(3, "test.log", MAX_FILE_SIZE, writeExecutor, ioUring, bufferPool, nativeIO,
+                    Slogger.NULL);
+            int[] positions = writeEntries(writer, 3);
+            writer.close();
+            assertEntries(nativeIO.content(), positions);
+        } finally {
+            ioUring.close();
+        }
+    }
+
+    @Test
+    public void testWriteAndReadBackWithRealRing() throws Exception {
+        assumeTrue(SystemUtils.IS_OS_LINUX);
+        NativeIO nativeIO = null;
+        IoUring ioUring = null;
+        try {
+            nativeIO = new NativeIOImpl();
+            ioUring = IoUring.create(nativeIO, 16, "test-io-uring");
+        } catch (Throwable t) {
+            // The native library is not available, or the kernel does not support io_uring
+            assumeNoException(t);
+        }
+
+        String filename = new File(tmpDir, "test.log").getPath();
+        try (BufferPool bufferPool = new BufferPool(nativeIO, ALLOCATOR, BUFFER_SIZE, 4)) {
+            DirectWriter writer;
+            try {
+                writer = new DirectWriter(1, filename, MAX_FILE_SIZE, writeExecutor, ioUring, bufferPool, nativeIO,
+                        Slogger.NULL);
+            } catch (IOException e) {
+                // The file system of the temporary directory does not support O_DIRECT
+                assumeNoException(e);
+                return;
+            }
+            int[] positions = writeEntries(writer, 10);
+            writer.close();
+
+            DirectReader reader = new DirectReader(1, filename, ALLOCATOR, nativeIO, BUFFER_SIZE,
+                    10 * 1024 * 1024, NullStatsLogger.INSTANCE.getOpStatsLogger("read-block"));
+            try {
+                for (int i = 0; i < positions.length; i++) {
+                    ByteBuf entry = reader.readEntryAt(positions[i]);
+                    try {
+                        assertEquals(entry(1000 * (i + 1), i), entry);
+                    } finally {
+                        entry.release();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            ioUring.close();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.bookie.BookieImpl;
+import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.AdditionalAnswers;
+
+/**
+ * Test the rotation and the flush of the write caches of {@link SingleDirectoryDbLedgerStorage}.
+ */
+public class DbLedgerStorageWriteCacheTest {
+
+    // 4 write caches of 256KB, each holding 25 entries
+    private static final int WRITE_CACHE_BUFFERS = 4;
+    private static final int ENTRY_SIZE = 10 * 1024;
+    private static final int ENTRIES_PER_WRITE_CACHE = 25;
+
+    private File tmpDir;
+    private MockedDbLedgerStorage storage;
+
+    private static class MockedDbLedgerStorage extends DbLedgerStorage {
+
+        // Entries written to the entry logger, in order
+        final List<String> flushedEntries = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch flushStarted = new CountDownLatch(1);
+        volatile CountDownLatch flushGate = new CountDownLatch(0);
+
+        @Override
+        protected SingleDirectoryDbLedgerStorage newSingleDirectoryDbLedgerStorage(ServerConfiguration conf,
+                LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager,
+                LedgerDirsManager indexDirsManager, EntryLogger entryLogger, StatsLogger statsLogger,
+                long writeCacheSize, long readCacheSize, int readAheadCacheBatchSize,
+                long readAheadCacheBatchBytesSize) throws IOException {
+            EntryLogger blockingEntryLogger = mock(EntryLogger.class, AdditionalAnswers.delegatesTo(entryLogger));
+            try {
+                doAnswer(invocation -> {
+                    long ledgerId = invocation.getArgument(0);
+                    ByteBuf entry = invocation.getArgument(1);
+                    flushedEntries.add(ledgerId + "@" + entry.getLong(entry.readerIndex() + 8));
+                    return entryLogger.addEntry(ledgerId, entry);
+                }).when(blockingEntryLogger).addEntry(anyLong(), any(ByteBuf.class));
+                doAnswer(invocation -> {
+                    flushStarted.countDown();
+                    flushGate.await();
+                    entryLogger.flush();
+                    return null;
+                }).when(blockingEntryLogger).flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return super.newSingleDirectoryDbLedgerStorage(conf, ledgerManager, ledgerDirsManager, indexDirsManager,
+                    blockingEntryLogger, statsLogger, writeCacheSize, readCacheSize, readAheadCacheBatchSize,
+                    readAheadCacheBatchBytesSize);
+        }
+
+        SingleDirectoryDbLedgerStorage getSingleDirectoryStorage() {
+            return getLedgerStorageList().get(0);
+        }
+    }
+
+    @Before
+    public void setup() throws Exception {
+        tmpDir = Files.createTempDirectory("bkTest").toFile();
+        File curDir = BookieImpl.getCurrentDirectory(tmpDir);
+        BookieImpl.checkDirectoryStructure(curDir);
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setGcWaitTime(1000);
+        conf.setLedgerDirNames(new String[] { tmpDir.toString() });
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_MAX_SIZE_MB, 1);
+        conf.setProperty(DbLedgerStorage.READ_AHEAD_CACHE_MAX_SIZE_MB, 1);
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_BUFFERS, WRITE_CACHE_BUFFERS);
+        conf.setProperty(DbLedgerStorage.MAX_THROTTLE_TIME_MILLIS, 100);
+        // Allow 4 write caches in 1MB
+        conf.setNettyMaxFrameSizeBytes(64 * 1024);
+
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        storage = new MockedDbLedgerStorage();
+        storage.initialize(conf, null, ledgerDirsManager, ledgerDirsManager, NullStatsLogger.INSTANCE,
+                UnpooledByteBufAllocator.DEFAULT);
+
+        storage.setMasterKey(1, "key".getBytes());
+        storage.setMasterKey(2, "key".getBytes());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        storage.flushGate.countDown();
+        storage.shutdown();
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    private static ByteBuf entry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeLong(entryId - 1);
+        while (entry.isWritable()) {
+            entry.writeByte((int) (ledgerId + entryId));
+        }
+        return entry;
+    }
+
+    private void addEntries(long ledgerId, long firstEntryId, long lastEntryId, List<String> added)
+            throws Exception {
+        for (long entryId = firstEntryId; entryId <= lastEntryId; entryId++) {
+            ByteBuf entry = entry(ledgerId, entryId);
+            storage.addEntry(entry);
+            entry.release();
+            added.add(ledgerId + "@" + entryId);
+        }
+    }
+
+    private void assertEntry(long ledgerId, long entryId, long expectedEntryId) throws Exception {
+        ByteBuf entry = storage.getEntry(ledgerId, entryId);
+        try {
+            assertEquals(entry(ledgerId, expectedEntryId), entry);
+        } finally {
+            entry.release();
+        }
+    }
+
+    private void assertEntries(long ledgerId, long firstEntryId, long lastEntryId) throws Exception {
+        for (long entryId = firstEntryId; entryId <= lastEntryId; entryId++) {
+            assertEntry(ledgerId, entryId, entryId);
+        }
+    }
+
+    @Test
+    public void testRotationAndReadsFromSealedWriteCaches() throws Exception {
+        storage.flushGate = new CountDownLatch(1);
+        List<String> added = new ArrayList<>();
+
+        // Fill all the write caches: the full ones are sealed and the adds move on to the next one, without
+        // waiting for the flush
+        addEntries(1, 0, 29, added);
+        addEntries(2, 0, WRITE_CACHE_BUFFERS * ENTRIES_PER_WRITE_CACHE - 31, added);
+        assertTrue(storage.flushStarted.await(10, TimeUnit.SECONDS));
+
+        // Once all of them are full, the adds are rejected after the max throttle time
+        try {
+            addEntries(2, WRITE_CACHE_BUFFERS * ENTRIES_PER_WRITE_CACHE - 30, WRITE_CACHE_BUFFERS
+                    * ENTRIES_PER_WRITE_CACHE - 30, added);
+            fail("The add should have been rejected");
+        } catch (OperationRejectedException e) {
+            // Expected
+        }
+
+        // The entries are read from the sealed write caches while they are waiting to be flushed, including the
+        // last entry of ledger 1, which is in the second write cache
+        assertEntries(1, 0, 29);
+        assertEntries(2, 0, 69);
+        assertEntry(1, BookieProtocol.LAST_ADD_CONFIRMED, 29);
+        assertEntry(2, BookieProtocol.LAST_ADD_CONFIRMED, 69);
+
+        storage.flushGate.countDown();
+        storage.flush();
+        assertFalse(storage.getSingleDirectoryStorage().isFlushRequired());
+
+        // The sealed write caches are flushed from the oldest to the newest one, so the entry log has the entries
+        // in the order they were added
+        assertEquals(added, storage.flushedEntries);
+
+        // The write caches are available again, and the entries are read from the entry log
+        addEntries(2, 70, 70, added);
+        assertEntries(1, 0, 29);
+        assertEntries(2, 0, 70);
+        assertEntry(1, BookieProtocol.LAST_ADD_CONFIRMED, 29);
+        assertEntry(2, BookieProtocol.LAST_ADD_CONFIRMED, 70);
+    }
+
+    @Test
+    public void testAddsDuringFlush() throws Exception {
+        storage.flushGate = new CountDownLatch(1);
+        List<String> added = new ArrayList<>();
+
+        // Filling the first write cache triggers its flush, which is then blocked
+        addEntries(1, 0, ENTRIES_PER_WRITE_CACHE, added);
+        assertTrue(storage.flushStarted.await(10, TimeUnit.SECONDS));
+
+        // The adds continue on the next write caches while the first one is flushed
+        addEntries(1, ENTRIES_PER_WRITE_CACHE + 1, 2 * ENTRIES_PER_WRITE_CACHE + 10, added);
+        addEntries(2, 0, 10, added);
+        assertEntries(1, 0, 2 * ENTRIES_PER_WRITE_CACHE + 10);
+        assertEntries(2, 0, 10);
+        assertTrue(storage.getSingleDirectoryStorage().isFlushRequired());
+
+        // The next flush waits for the ongoing one, then flushes the entries added in the meantime, each of them once
+        storage.flushGate.countDown();
+        storage.flush();
+        assertFalse(storage.getSingleDirectoryStorage().isFlushRequired());
+        assertEquals(added, storage.flushedEntries);
+
+        assertEntries(1, 0, 2 * ENTRIES_PER_WRITE_CACHE + 10);
+        assertEntries(2, 0, 10);
+        assertEntry(1, BookieProtocol.LAST_ADD_CONFIRMED, 2 * ENTRIES_PER_WRITE_CACHE + 10);
+    }
+
+    @Test
+    public void testFlushedLocationsGrowth() {
+        // The write caches can receive more entries than counted when the flush started
+        SingleDirectoryDbLedgerStorage.FlushedLocations flushedLocations =
+                new SingleDirectoryDbLedgerStorage.FlushedLocations(2);
+        for (long entryId = 0; entryId < 10; entryId++) {
+            flushedLocations.add(1, entryId, 1000 + entryId);
+        }
+
+        assertEquals(10, flushedLocations.count);
+        assertTrue(flushedLocations.locations.length >= 4 * 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, flushedLocations.locations[4 * i]);
+            assertEquals(i, flushedLocations.locations[4 * i + 1]);
+            assertEquals(1000 + i, flushedLocations.locations[4 * i + 2]);
+        }
+
+        // A flush with no entries still gets a usable array
+        SingleDirectoryDbLedgerStorage.FlushedLocations empty = new SingleDirectoryDbLedgerStorage.FlushedLocations(0);
+        empty.add(2, 0, 2000);
+        assertEquals(1, empty.count);
+        assertEquals(2000, empty.locations[2]);
+    }
+}
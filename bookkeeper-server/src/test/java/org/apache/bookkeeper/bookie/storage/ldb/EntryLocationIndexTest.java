@@ -0,0 +1,187 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Unit test for {@link EntryLocationIndex}, with each of the storages of the index.
+ */
+@RunWith(Parameterized.class)
+public class EntryLocationIndexTest {
+
+    private static final int LEDGERS = 5;
+    private static final int ENTRIES_PER_LEDGER = 200;
+
+    private final String storage;
+    private final ServerConfiguration conf = new ServerConfiguration();
+    private File tmpDir;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { EntryLocationIndex.ROCKSDB_STORAGE },
+                { EntryLocationIndex.SORTED_RUNS_STORAGE }
+        });
+    }
+
+    public EntryLocationIndexTest(String storage) {
+        this.storage = storage;
+    }
+
+    @Before
+    public void setup() throws Exception {
+        tmpDir = Files.createTempDirectory("entry-location-index").toFile();
+        // Make the sorted runs batches flush in the middle of a bulk add
+        conf.setProperty("dbStorage_sortedRuns_maxBatchSize", 64);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    private EntryLocationIndex open(String name) throws Exception {
+        File dir = new File(tmpDir, name);
+        dir.mkdirs();
+        return new EntryLocationIndex(conf, EntryLocationIndex.getStorageFactory(storage), dir.getPath(),
+                NullStatsLogger.INSTANCE);
+    }
+
+    private static long location(long ledgerId, long entryId) {
+        return (ledgerId << 32) | (entryId * 100);
+    }
+
+    /**
+     * Locations in the layout of a flush, with the entries of the ledgers interleaved and a 4th long that must be
+     * ignored.
+     */
+    private static long[] locations() {
+        long[] locations = new long[4 * LEDGERS * ENTRIES_PER_LEDGER];
+        int idx = 0;
+        for (long entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+            for (long ledgerId = 1; ledgerId <= LEDGERS; ledgerId++) {
+                locations[idx++] = ledgerId;
+                locations[idx++] = entryId;
+                locations[idx++] = location(ledgerId, entryId);
+                locations[idx++] = -1L;
+            }
+        }
+        return locations;
+    }
+
+    private static void assertSameLocations(EntryLocationIndex expected, EntryLocationIndex actual)
+            throws Exception {
+        for (long ledgerId = 0; ledgerId <= LEDGERS + 1; ledgerId++) {
+            for (long entryId = 0; entryId <= ENTRIES_PER_LEDGER; entryId++) {
+                assertEquals(expected.getLocation(ledgerId, entryId), actual.getLocation(ledgerId, entryId));
+            }
+            long lastEntryId;
+            try {
+                lastEntryId = expected.getLastEntryInLedger(ledgerId);
+            } catch (Bookie.NoEntryException e) {
+                try {
+                    actual.getLastEntryInLedger(ledgerId);
+                    fail("Ledger " + ledgerId + " should not have entries");
+                } catch (Bookie.NoEntryException e2) {
+                    // Expected
+                }
+                continue;
+            }
+            assertEquals(lastEntryId, actual.getLastEntryInLedger(ledgerId));
+        }
+    }
+
+    @Test
+    public void testAddLocationsMatchesAddLocation() throws Exception {
+        long[] locations = locations();
+        int count = locations.length / 4;
+
+        try (EntryLocationIndex single = open("single"); EntryLocationIndex bulk = open("bulk")) {
+            for (int i = 0; i < count; i++) {
+                single.addLocation(locations[4 * i], locations[4 * i + 1], locations[4 * i + 2]);
+            }
+
+            Batch batch = bulk.newBatch();
+            bulk.addLocations(batch, locations, count);
+            batch.flush();
+            batch.close();
+
+            assertEquals(location(3, 150), bulk.getLocation(3, 150));
+            assertEquals(ENTRIES_PER_LEDGER - 1, bulk.getLastEntryInLedger(LEDGERS));
+            assertEquals(0, bulk.getLocation(LEDGERS + 1, 0));
+            assertSameLocations(single, bulk);
+        }
+    }
+
+    @Test
+    public void testAddLocationsOverwrite() throws Exception {
+        try (EntryLocationIndex single = open("single"); EntryLocationIndex bulk = open("bulk")) {
+            // The same entries added twice in a batch, and again in a later batch: the last location wins
+            long[] locations = new long[] {
+                1, 0, 100, 0,
+                1, 1, 200, 0,
+                1, 0, 300, 0,
+                2, 5, 400, 0,
+                // Beyond the count, ignored
+                2, 6, 500, 0,
+            };
+            int count = 4;
+            for (int i = 0; i < count; i++) {
+                single.addLocation(locations[4 * i], locations[4 * i + 1], locations[4 * i + 2]);
+            }
+            Batch batch = bulk.newBatch();
+            bulk.addLocations(batch, locations, count);
+            batch.flush();
+            batch.close();
+
+            assertEquals(300, bulk.getLocation(1, 0));
+            assertEquals(200, bulk.getLocation(1, 1));
+            assertEquals(0, bulk.getLocation(2, 6));
+            assertSameLocations(single, bulk);
+
+            single.addLocation(1, 1, 600);
+            batch = bulk.newBatch();
+            bulk.addLocations(batch, new long[] {1, 1, 600, 0}, 1);
+            batch.flush();
+            batch.close();
+
+            assertEquals(600, bulk.getLocation(1, 1));
+            assertSameLocations(single, bulk);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link KeyValueStorageSortedRuns}.
+ */
+public class KeyValueStorageSortedRunsTest {
+
+    private static final int TOMBSTONES_HEADER_SIZE = 16;
+    private static final int TOMBSTONE_SIZE = 40;
+
+    private final ServerConfiguration conf = new ServerConfiguration();
+    private File tmpDir;
+
+    @Before
+    public void setup() throws Exception {
+        tmpDir = Files.createTempDirectory("sorted-runs").toFile();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    private KeyValueStorageSortedRuns open(boolean readOnly) throws IOException {
+        return new KeyValueStorageSortedRuns(tmpDir.getPath(), "locations", DbConfigType.EntryLocation, conf,
+                readOnly);
+    }
+
+    private static byte[] key(long ledgerId, long entryId) {
+        byte[] key = new byte[KeyValueStorageSortedRuns.KEY_SIZE];
+        ArrayUtil.setLong(key, 0, ledgerId);
+        ArrayUtil.setLong(key, 8, entryId);
+        return key;
+    }
+
+    private static byte[] value(long location) {
+        byte[] value = new byte[KeyValueStorageSortedRuns.VALUE_SIZE];
+        ArrayUtil.setLong(value, 0, location);
+        return value;
+    }
+
+    private static void putLedger(KeyValueStorage storage, long ledgerId, int entries) throws IOException {
+        try (Batch batch = storage.newBatch()) {
+            for (int i = 0; i < entries; i++) {
+                batch.put(key(ledgerId, i), value(ledgerId * 1000 + i));
+            }
+            batch.flush();
+        }
+    }
+
+    private static void deleteLedger(KeyValueStorage storage, long ledgerId) throws IOException {
+        try (Batch batch = storage.newBatch()) {
+            batch.deleteRange(key(ledgerId, 0), key(ledgerId + 1, 0));
+            batch.flush();
+        }
+    }
+
+    private File tombstonesFile() {
+        return new File(new File(tmpDir, "locations"), "tombstones");
+    }
+
+    @Test
+    public void testDeletionsAreAppendedToTheTombstonesFile() throws Exception {
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            for (long ledgerId = 1; ledgerId <= 10; ledgerId++) {
+                putLedger(storage, ledgerId, 10);
+            }
+            for (long ledgerId = 1; ledgerId <= 4; ledgerId++) {
+                long sizeBefore = tombstonesFile().length();
+                deleteLedger(storage, ledgerId);
+                long sizeAfter = tombstonesFile().length();
+                // A deletion batch only appends its tombstone, unless a merge rewrote the file in between
+                assertTrue(sizeAfter <= sizeBefore + TOMBSTONE_SIZE);
+                assertEquals(0, (sizeAfter - TOMBSTONES_HEADER_SIZE) % TOMBSTONE_SIZE);
+            }
+
+            assertNull(storage.get(key(1, 0)));
+            assertNull(storage.get(key(4, 9)));
+            assertArrayEquals(value(5000), storage.get(key(5, 0)));
+        }
+
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            for (long ledgerId = 1; ledgerId <= 4; ledgerId++) {
+                assertNull(storage.get(key(ledgerId, 0)));
+            }
+            for (long ledgerId = 5; ledgerId <= 10; ledgerId++) {
+                assertArrayEquals(value(ledgerId * 1000 + 9), storage.get(key(ledgerId, 9)));
+            }
+
+            // Merging all the runs, up to one written after the deletions, discards the tombstones and compacts
+            // the file
+            putLedger(storage, 11, 10);
+            storage.compact();
+            assertEquals(TOMBSTONES_HEADER_SIZE, tombstonesFile().length());
+            assertEquals(70, storage.count());
+            assertNull(storage.get(key(1, 0)));
+        }
+    }
+
+    @Test
+    public void testPartialTombstoneIsIgnoredOnReopen() throws Exception {
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            putLedger(storage, 1, 10);
+            putLedger(storage, 2, 10);
+            deleteLedger(storage, 1);
+        }
+
+        // An append interrupted by a crash leaves a partial record
+        long validSize = tombstonesFile().length();
+        Files.write(tombstonesFile().toPath(), new byte[TOMBSTONE_SIZE / 2], StandardOpenOption.APPEND);
+
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            assertNull(storage.get(key(1, 0)));
+            assertArrayEquals(value(2000), storage.get(key(2, 0)));
+            assertEquals(validSize, tombstonesFile().length());
+
+            deleteLedger(storage, 2);
+            assertNull(storage.get(key(2, 0)));
+        }
+
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            assertNull(storage.get(key(1, 0)));
+            assertNull(storage.get(key(2, 0)));
+        }
+    }
+
+    @Test
+    public void testReadOnlyLeavesTheDirectoryUntouched() throws Exception {
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            putLedger(storage, 1, 10);
+            putLedger(storage, 2, 10);
+            deleteLedger(storage, 1);
+        }
+
+        // A flush in progress in a running bookie
+        File tmpRun = new File(new File(tmpDir, "locations"), "ffff.run.tmp");
+        assertTrue(tmpRun.createNewFile());
+        long tombstonesSize = tombstonesFile().length();
+
+        try (KeyValueStorageSortedRuns storage = open(true)) {
+            assertNull(storage.get(key(1, 0)));
+            assertArrayEquals(value(2009), storage.get(key(2, 9)));
+
+            try {
+                storage.put(key(3, 0), value(3000));
+                fail("Should not write to a read-only storage");
+            } catch (IOException e) {
+                // expected
+            }
+            try {
+                storage.compact();
+                fail("Should not compact a read-only storage");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+
+        assertTrue(tmpRun.exists());
+        assertEquals(tombstonesSize, tombstonesFile().length());
+    }
+
+    private File[] runFiles() {
+        return new File(tmpDir, "locations").listFiles((dir, name) -> name.endsWith(".run"));
+    }
+
+    @Test
+    public void testSingleKeyWritesAreBuffered() throws Exception {
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            putLedger(storage, 1, 10);
+            storage.put(key(1, 20), value(1020));
+            storage.put(key(1, 3), value(1103));
+            storage.delete(key(1, 5));
+            // Buffered in memory, without writing a run per key
+            assertEquals(1, runFiles().length);
+
+            // Visible to the reads
+            assertArrayEquals(value(1020), storage.get(key(1, 20)));
+            assertArrayEquals(value(1103), storage.get(key(1, 3)));
+            assertNull(storage.get(key(1, 5)));
+            assertArrayEquals(key(1, 20), storage.getFloor(key(1, Long.MAX_VALUE)).getKey());
+            assertArrayEquals(key(1, 6), storage.getCeil(key(1, 5)).getKey());
+            int keys = 0;
+            try (KeyValueStorage.CloseableIterator<byte[]> iterator = storage.keys()) {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                    ++keys;
+                }
+            }
+            assertEquals(10, keys);
+
+            try (KeyValueStorageSortedRuns readOnly = open(true)) {
+                assertNull(readOnly.get(key(1, 20)));
+                assertArrayEquals(value(1005), readOnly.get(key(1, 5)));
+            }
+
+            storage.sync();
+            try (KeyValueStorageSortedRuns readOnly = open(true)) {
+                assertArrayEquals(value(1020), readOnly.get(key(1, 20)));
+                assertArrayEquals(value(1103), readOnly.get(key(1, 3)));
+                assertNull(readOnly.get(key(1, 5)));
+            }
+
+            // A batch is written after the buffered writes issued before it
+            storage.put(key(2, 0), value(2999));
+            putLedger(storage, 2, 1);
+            assertArrayEquals(value(2000), storage.get(key(2, 0)));
+        }
+
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            assertArrayEquals(value(1020), storage.get(key(1, 20)));
+            assertNull(storage.get(key(1, 5)));
+            assertArrayEquals(value(2000), storage.get(key(2, 0)));
+        }
+    }
+
+    @Test
+    public void testBufferedWritesAreWrittenOnceFull() throws Exception {
+        conf.setProperty("dbStorage_sortedRuns_maxPendingWrites", 4);
+        try (KeyValueStorageSortedRuns storage = open(false)) {
+            for (int i = 0; i < 3; i++) {
+                storage.put(key(1, i), value(1000 + i));
+            }
+            // Overwriting a buffered key doesn't count as another write
+            storage.put(key(1, 0), value(1100));
+            assertEquals(0, runFiles().length);
+
+            storage.put(key(1, 3), value(1003));
+            try (KeyValueStorageSortedRuns readOnly = open(true)) {
+                assertArrayEquals(value(1100), readOnly.get(key(1, 0)));
+                assertArrayEquals(value(1003), readOnly.get(key(1, 3)));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOnlyMissingDirectory() throws Exception {
+        open(true);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.bookkeeper.stats.prometheus.PrometheusMetricsProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link LedgerReadPattern}.
+ */
+public class LedgerReadPatternTest {
+
+    private DbLedgerStorageStats stats;
+
+    @Before
+    public void setup() {
+        stats = new DbLedgerStorageStats(new PrometheusMetricsProvider().getStatsLogger("test"),
+                () -> 0L, () -> 0L, () -> 0L, () -> 0L, () -> 0L);
+    }
+
+    private static void assertRequest(LedgerReadPattern.PrefetchRequest request, long firstEntryId,
+                                      long firstEntryLocation, int maxEntries) {
+        assertNotNull(request);
+        assertEquals(firstEntryId, request.firstEntryId);
+        assertEquals(firstEntryLocation, request.firstEntryLocation);
+        assertEquals(maxEntries, request.maxEntries);
+    }
+
+    @Test
+    public void testSequentialReadsDoubleTheWindow() {
+        LedgerReadPattern pattern = new LedgerReadPattern(2, 16, stats);
+
+        // The first read cannot tell the pattern yet
+        assertRequest(pattern.recordCacheMiss(0, 1000), 1, 1000, 2);
+        assertEquals(2, pattern.getWindow());
+
+        // No other read-ahead is issued while the first one is in progress
+        assertNull(pattern.recordCacheMiss(1, 2000));
+        assertEquals(4, pattern.getWindow());
+        assertNull(pattern.recordCacheMiss(2, 3000));
+        assertEquals(8, pattern.getWindow());
+        // Reads skipping a single entry are still sequential
+        assertNull(pattern.recordCacheMiss(4, 4000));
+        assertEquals(16, pattern.getWindow());
+        assertNull(pattern.recordCacheMiss(5, 5000));
+        assertEquals(16, pattern.getWindow());
+
+        pattern.prefetchCompleted(1, 0, 0);
+        assertRequest(pattern.recordCacheMiss(6, 6000), 7, 6000, 16);
+    }
+
+    @Test
+    public void testRandomReadsShrinkTheWindow() {
+        LedgerReadPattern pattern = new LedgerReadPattern(4, 64, stats);
+
+        assertRequest(pattern.recordCacheMiss(0, 1000), 1, 1000, 4);
+        pattern.prefetchCompleted(1, 0, 0);
+        for (long entryId = 1; entryId <= 3; entryId++) {
+            assertRequest(pattern.recordCacheMiss(entryId, 1000 * (entryId + 1)), entryId + 1,
+                    1000 * (entryId + 1), 4 << entryId);
+            pattern.prefetchCompleted(entryId + 1, 0, 0);
+        }
+        assertEquals(32, pattern.getWindow());
+
+        assertRequest(pattern.recordCacheMiss(100, 100_000), 101, 100_000, 8);
+        pattern.prefetchCompleted(101, 0, 0);
+        assertRequest(pattern.recordCacheMiss(50, 50_000), 51, 50_000, 2);
+        pattern.prefetchCompleted(51, 0, 0);
+
+        // Read-ahead is disabled for the ledger once the window gets to 0
+        assertNull(pattern.recordCacheMiss(10, 10_000));
+        assertEquals(0, pattern.getWindow());
+        assertNull(pattern.recordCacheMiss(500, 500_000));
+        assertEquals(0, pattern.getWindow());
+
+        // And enabled again by a sequential read
+        assertRequest(pattern.recordCacheMiss(501, 501_000), 502, 501_000, 4);
+    }
+
+    @Test
+    public void testPrefetchHits() {
+        LedgerReadPattern pattern = new LedgerReadPattern(4, 8, stats);
+
+        assertRequest(pattern.recordCacheMiss(0, 1000), 1, 1000, 4);
+        pattern.prefetchCompleted(1, 4, 400);
+        assertEquals(4L, stats.getReadAheadPrefetchedEntriesCounter().get().longValue());
+
+        // Reading half of the prefetched entries prefetches the next batch, from the locations index
+        assertRequest(pattern.recordCacheHit(1), 5, -1, 8);
+        assertEquals(1L, stats.getReadAheadPrefetchHitCounter().get().longValue());
+        assertNull(pattern.recordCacheHit(2));
+        assertEquals(2L, stats.getReadAheadPrefetchHitCounter().get().longValue());
+
+        // The next batch extends the range of prefetched entries
+        pattern.prefetchCompleted(5, 8, 800);
+        assertEquals(12L, stats.getReadAheadPrefetchedEntriesCounter().get().longValue());
+        assertNull(pattern.recordCacheHit(3));
+        assertNull(pattern.recordCacheHit(5));
+        assertNull(pattern.recordCacheHit(7));
+        assertRequest(pattern.recordCacheHit(9), 13, -1, 8);
+        assertEquals(6L, stats.getReadAheadPrefetchHitCounter().get().longValue());
+
+        // An entry that was in the read cache without being prefetched is not a prefetch hit
+        assertNull(pattern.recordCacheHit(100));
+        assertEquals(6L, stats.getReadAheadPrefetchHitCounter().get().longValue());
+    }
+
+    @Test
+    public void testWastedBytes() {
+        LedgerReadPattern pattern = new LedgerReadPattern(4, 16, stats);
+
+        assertRequest(pattern.recordCacheMiss(0, 1000), 1, 1000, 4);
+        pattern.prefetchCompleted(1, 4, 400);
+        assertRequest(pattern.recordCacheHit(1), 5, -1, 8);
+        pattern.prefetchCompleted(5, 4, 400);
+        assertEquals(0L, stats.getReadAheadWastedBytesCounter().get().longValue());
+
+        // Jumping away leaves the entries [2, 9) prefetched and never read, at 100 bytes per entry
+        assertRequest(pattern.recordCacheMiss(100, 100_000), 101, 100_000, 2);
+        assertEquals(700L, stats.getReadAheadWastedBytesCounter().get().longValue());
+
+        // A random read within the prefetched entries does not waste them
+        pattern.prefetchCompleted(101, 10, 1000);
+        assertNull(pattern.recordCacheHit(105));
+        assertEquals(700L, stats.getReadAheadWastedBytesCounter().get().longValue());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ReadCache}.
+ */
+public class ReadCacheTest {
+
+    private static final ByteBufAllocator ALLOCATOR = UnpooledByteBufAllocator.DEFAULT;
+    private static final int ENTRY_SIZE = 128;
+
+    private static ByteBuf entry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE, ENTRY_SIZE);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeZero(ENTRY_SIZE - 16);
+        return entry;
+    }
+
+    private static void assertEntry(ReadCache cache, long ledgerId, long entryId) {
+        ByteBuf entry = cache.get(ledgerId, entryId);
+        assertNotNull(entry);
+        try {
+            assertEquals(entry(ledgerId, entryId), entry);
+        } finally {
+            entry.release();
+        }
+    }
+
+    private static void readTwice(ReadCache cache, long ledgerId, long entryId) {
+        assertEntry(cache, ledgerId, entryId);
+        assertEntry(cache, ledgerId, entryId);
+    }
+
+    @Test
+    public void testPromotionToProtected() {
+        // 5 segments of 1KB in each of the probationary and protected rings
+        ReadCache cache = new ReadCache(ALLOCATOR, 10 * 1024, 1024, 0.5);
+
+        for (long entryId = 0; entryId < 4; entryId++) {
+            cache.put(1, entryId, entry(1, entryId));
+        }
+        assertEquals(4, cache.count());
+        assertEquals(4 * ENTRY_SIZE, cache.size());
+
+        // A single read does not promote the entry
+        assertEntry(cache, 1, 0);
+        assertEquals(4, cache.count());
+        assertEquals(4 * ENTRY_SIZE, cache.size());
+
+        // The second read moves it to the protected ring, without leaving a copy in the probationary one
+        assertEntry(cache, 1, 0);
+        assertEquals(4, cache.count());
+        assertEquals(4 * ENTRY_SIZE, cache.size());
+
+        readTwice(cache, 1, 1);
+        assertEquals(4, cache.count());
+        assertEquals(4 * ENTRY_SIZE, cache.size());
+
+        for (long entryId = 0; entryId < 4; entryId++) {
+            assertTrue(cache.hasEntry(1, entryId));
+            assertEntry(cache, 1, entryId);
+        }
+        assertFalse(cache.hasEntry(1, 4));
+        assertNull(cache.get(1, 4));
+
+        cache.close();
+    }
+
+    @Test
+    public void testEntriesInsertedAfterReadArePromotedOnTheNextRead() {
+        ReadCache cache = new ReadCache(ALLOCATOR, 10 * 1024, 1024, 0.5);
+
+        cache.put(1, 0, entry(1, 0), true);
+        assertEntry(cache, 1, 0);
+        assertEquals(1, cache.count());
+        assertEquals(ENTRY_SIZE, cache.size());
+
+        // The entry is in the protected ring, so the scan below does not evict it
+        for (long entryId = 0; entryId < 100; entryId++) {
+            cache.put(2, entryId, entry(2, entryId));
+        }
+        assertEntry(cache, 1, 0);
+
+        cache.close();
+    }
+
+    @Test
+    public void testScanResistance() {
+        ReadCache fifoCache = new ReadCache(ALLOCATOR, 10 * 1024, 1024);
+        ReadCache slruCache = new ReadCache(ALLOCATOR, 10 * 1024, 1024, 0.5);
+
+        for (ReadCache cache : new ReadCache[] {fifoCache, slruCache}) {
+            cache.put(1, 0, entry(1, 0));
+            readTwice(cache, 1, 0);
+
+            // A scan twice as large as the cache, reading each entry once
+            for (long entryId = 0; entryId < 160; entryId++) {
+                cache.put(2, entryId, entry(2, entryId));
+                assertEntry(cache, 2, entryId);
+            }
+
+            // The first entries of the scan were evicted in both cases
+            assertFalse(cache.hasEntry(2, 0));
+            assertTrue(cache.hasEntry(2, 159));
+        }
+
+        // The FIFO cache evicts the hot entry with the scan, while the segmented LRU keeps it
+        assertFalse(fifoCache.hasEntry(1, 0));
+        assertNull(fifoCache.get(1, 0));
+        assertTrue(slruCache.hasEntry(1, 0));
+        assertEntry(slruCache, 1, 0);
+
+        // The scan only churned the probationary ring, which holds at most 40 entries
+        assertTrue(slruCache.count() <= 40 + 1);
+        assertTrue(slruCache.size() <= 10 * 1024);
+
+        fifoCache.close();
+        slruCache.close();
+    }
+
+    @Test
+    public void testProtectedRingKeepsTheEntriesReadInItsOldestSegment() {
+        ReadCache cache = new ReadCache(ALLOCATOR, 10 * 1024, 1024, 0.5);
+
+        // Fill 4 of the 5 segments of the protected ring, and half of the last one
+        for (long entryId = 0; entryId < 36; entryId++) {
+            cache.put(1, entryId, entry(1, entryId));
+            readTwice(cache, 1, entryId);
+        }
+        assertEquals(36, cache.count());
+
+        // Reading an entry of the oldest segment moves it to the current one
+        assertEntry(cache, 1, 0);
+        assertEquals(36, cache.count());
+        assertEquals(36 * ENTRY_SIZE, cache.size());
+
+        // Rotating the protected ring evicts the other entries of the oldest segment, but not the one moved
+        for (long entryId = 36; entryId < 44; entryId++) {
+            cache.put(1, entryId, entry(1, entryId));
+            readTwice(cache, 1, entryId);
+        }
+        assertTrue(cache.hasEntry(1, 0));
+        assertFalse(cache.hasEntry(1, 1));
+        assertTrue(cache.hasEntry(1, 8));
+        assertTrue(cache.hasEntry(1, 43));
+
+        cache.close();
+    }
+}
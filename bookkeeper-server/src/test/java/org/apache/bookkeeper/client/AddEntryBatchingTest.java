@@ -0,0 +1,211 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.test.LocalBookiesTestCase;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the batching of the v2 adds of a ledger into add entry batch requests, against real bookies.
+ */
+public class AddEntryBatchingTest extends LocalBookiesTestCase {
+
+    private static final byte[] PASSWORD = "add-batching".getBytes();
+
+    private final Random random = new Random(0);
+    private final List<BookKeeper> clients = new ArrayList<>();
+
+    @After
+    public void closeClients() throws Exception {
+        for (BookKeeper client : clients) {
+            client.close();
+        }
+    }
+
+    private BookKeeper newClient(boolean batching, int maxEntries, int maxBytes) throws Exception {
+        ClientConfiguration conf = new ClientConfiguration()
+            .setMetadataServiceUri(metadataServiceUri)
+            .setUseV2WireProtocol(true)
+            .setAddEntryBatchingEnabled(batching)
+            .setAddEntryBatchMaxEntries(maxEntries)
+            .setAddEntryBatchMaxBytes(maxBytes);
+        BookKeeper client = new BookKeeper(conf);
+        clients.add(client);
+        return client;
+    }
+
+    private byte[] randomEntry(int size) {
+        byte[] entry = new byte[size];
+        random.nextBytes(entry);
+        return entry;
+    }
+
+    /**
+     * Add the entries asynchronously, without waiting for the previous ones, and wait for all of them.
+     *
+     * @return the result codes, in the order of the callbacks
+     */
+    private static List<long[]> addAll(LedgerHandle lh, List<byte[]> entries) throws Exception {
+        List<long[]> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(entries.size());
+        for (byte[] entry : entries) {
+            lh.asyncAddEntry(entry, (rc, handle, entryId, ctx) -> {
+                results.add(new long[] {rc, entryId});
+                done.countDown();
+            }, null);
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(entries.size(), results.size());
+        return results;
+    }
+
+    private static void assertAdded(List<long[]> results, long firstEntryId) {
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(BKException.Code.OK, results.get(i)[0]);
+            assertEquals(firstEntryId + i, results.get(i)[1]);
+        }
+    }
+
+    private static void assertEntries(LedgerHandle lh, List<byte[]> entries) throws Exception {
+        Enumeration<LedgerEntry> read = lh.readEntries(0, entries.size() - 1);
+        int i = 0;
+        while (read.hasMoreElements()) {
+            LedgerEntry entry = read.nextElement();
+            assertEquals(i, entry.getEntryId());
+            assertArrayEquals("Unexpected content of entry " + i, entries.get(i), entry.getEntry());
+            i++;
+        }
+        assertEquals(entries.size(), i);
+    }
+
+    @Test
+    public void testBatchedAddsAreAckedInOrder() throws Exception {
+        BookKeeper writer = newClient(true, 16, 64 * 1024);
+        LedgerHandle lh = writer.createLedger(3, 3, 2, DigestType.CRC32, PASSWORD);
+        List<byte[]> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            entries.add(randomEntry(1 + random.nextInt(200)));
+        }
+
+        assertAdded(addAll(lh, entries), 0L);
+        assertEquals(entries.size() - 1, lh.getLastAddConfirmed());
+        lh.close();
+
+        // Every bookie stored every entry of the batches, as read by a client not batching its adds
+        BookKeeper reader = newClient(false, 16, 64 * 1024);
+        try (LedgerHandle readLh = reader.openLedger(lh.getId(), DigestType.CRC32, PASSWORD)) {
+            assertEquals(entries.size() - 1, readLh.getLastAddConfirmed());
+            assertEntries(readLh, entries);
+        }
+    }
+
+    @Test
+    public void testLargeEntriesInterleavedWithBatchedAdds() throws Exception {
+        // The entries above the max batch size are sent as regular adds, after the pending batch of the ledger
+        BookKeeper writer = newClient(true, 64, 1024);
+        LedgerHandle lh = writer.createLedger(3, 2, 2, DigestType.CRC32C, PASSWORD);
+        List<byte[]> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            entries.add(randomEntry(i % 7 == 0 ? 4096 : 1 + random.nextInt(300)));
+        }
+
+        assertAdded(addAll(lh, entries), 0L);
+        assertEntries(lh, entries);
+        lh.close();
+    }
+
+    @Test
+    public void testBatchesOfConcurrentLedgers() throws Exception {
+        BookKeeper writer = newClient(true, 8, 64 * 1024);
+        int numLedgers = 4;
+        int numEntries = 300;
+        List<LedgerHandle> ledgers = new ArrayList<>();
+        List<List<byte[]>> entries = new ArrayList<>();
+        List<List<long[]>> results = new ArrayList<>();
+        for (int i = 0; i < numLedgers; i++) {
+            ledgers.add(writer.createLedger(3, 3, 3, DigestType.CRC32, PASSWORD));
+            entries.add(new ArrayList<>());
+            results.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        // The adds of the ledgers are interleaved on the same channels
+        CountDownLatch done = new CountDownLatch(numLedgers * numEntries);
+        for (int e = 0; e < numEntries; e++) {
+            for (int l = 0; l < numLedgers; l++) {
+                byte[] entry = randomEntry(64);
+                entries.get(l).add(entry);
+                List<long[]> ledgerResults = results.get(l);
+                ledgers.get(l).asyncAddEntry(entry, (rc, handle, entryId, ctx) -> {
+                    ledgerResults.add(new long[] {rc, entryId});
+                    done.countDown();
+                }, null);
+            }
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        for (int l = 0; l < numLedgers; l++) {
+            assertAdded(results.get(l), 0L);
+            assertEntries(ledgers.get(l), entries.get(l));
+            ledgers.get(l).close();
+        }
+    }
+
+    @Test
+    public void testBatchedAddsToFencedLedgerFail() throws Exception {
+        BookKeeper writer = newClient(true, 16, 64 * 1024);
+        LedgerHandle lh = writer.createLedger(3, 3, 2, DigestType.CRC32, PASSWORD);
+        List<byte[]> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(randomEntry(100));
+        }
+        assertAdded(addAll(lh, entries), 0L);
+
+        // Recovering the ledger fences it on the bookies, which reject the whole batches
+        BookKeeper recoverer = newClient(false, 16, 64 * 1024);
+        try (LedgerHandle recovered = recoverer.openLedger(lh.getId(), DigestType.CRC32, PASSWORD)) {
+            assertEquals(entries.size() - 1, recovered.getLastAddConfirmed());
+        }
+
+        List<byte[]> fencedEntries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            fencedEntries.add(randomEntry(100));
+        }
+        // Every callback is called once, with a failure
+        for (long[] result : addAll(lh, fencedEntries)) {
+            assertNotEquals(BKException.Code.OK, result[0]);
+        }
+    }
+}
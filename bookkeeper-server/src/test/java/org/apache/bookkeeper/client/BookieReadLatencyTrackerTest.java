@@ -0,0 +1,143 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link BookieReadLatencyTracker}.
+ */
+public class BookieReadLatencyTrackerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final BookieReadLatencyTracker tracker = new BookieReadLatencyTracker();
+    private final List<BookieId> ensemble = new ArrayList<>();
+    private final Map<BookieId, Long> failures = new HashMap<>();
+    private final Map<BookieId, Long> pendingRequests = new HashMap<>();
+
+    private final BookiesHealthInfo healthInfo = new BookiesHealthInfo() {
+        @Override
+        public long getBookieFailureHistory(BookieId bookie) {
+            return failures.getOrDefault(bookie, -1L);
+        }
+
+        @Override
+        public long getBookiePendingRequests(BookieId bookie) {
+            return pendingRequests.getOrDefault(bookie, 0L);
+        }
+    };
+
+    private BookieId bookie(int index) {
+        while (ensemble.size() <= index) {
+            ensemble.add(BookieId.parse("bookie-" + ensemble.size() + ":3181"));
+        }
+        return ensemble.get(index);
+    }
+
+    private int[] reorder(int ensembleSize) {
+        bookie(ensembleSize - 1);
+        DistributionSchedule.WriteSet writeSet = new RoundRobinDistributionSchedule(
+                ensembleSize, ensembleSize, ensembleSize).getWriteSet(0);
+        try {
+            tracker.reorderReadSequence(ensemble, healthInfo, writeSet);
+            int[] order = new int[writeSet.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = writeSet.get(i);
+            }
+            return order;
+        } finally {
+            writeSet.recycle();
+        }
+    }
+
+    @Test
+    public void testReorderReadSequence() {
+        tracker.recordReadLatency(bookie(0), 10 * MS);
+        // Failed recently, even though it was fast
+        tracker.recordReadLatency(bookie(1), MS);
+        failures.put(bookie(1), 1L);
+        // bookie 2 has no recorded reads
+        // Faster than bookie 0, but with requests pending
+        tracker.recordReadLatency(bookie(3), 5 * MS);
+        pendingRequests.put(bookie(3), 3L);
+        // Same score as bookie 0
+        tracker.recordReadLatency(bookie(4), 10 * MS);
+        failures.put(bookie(5), 2L);
+
+        assertArrayEquals(new int[] {2, 0, 4, 3, 1, 5}, reorder(6));
+    }
+
+    @Test
+    public void testReorderKeepsOrderOfEqualScores() {
+        // Without recorded reads the write set is unchanged
+        assertArrayEquals(new int[] {0, 1, 2, 3}, reorder(4));
+
+        // Unknown bookies first and failed bookies last, each in their order in the write set
+        failures.put(bookie(0), 1L);
+        failures.put(bookie(2), 1L);
+        tracker.recordReadLatency(bookie(3), MS);
+        assertArrayEquals(new int[] {1, 3, 0, 2}, reorder(4));
+    }
+
+    @Test
+    public void testAverageLatency() {
+        assertEquals(-1L, tracker.getAverageLatencyNanos(bookie(0)));
+        tracker.recordReadLatency(bookie(0), 10 * MS);
+        assertEquals(10 * MS, tracker.getAverageLatencyNanos(bookie(0)));
+        tracker.recordReadLatency(bookie(0), 20 * MS);
+        assertEquals(12 * MS, tracker.getAverageLatencyNanos(bookie(0)), 1);
+    }
+
+    @Test
+    public void testP95Refresh() {
+        BookieId bookie = bookie(0);
+        for (int i = 1; i < BookieReadLatencyTracker.MIN_SAMPLES; i++) {
+            tracker.recordReadLatency(bookie, i * MS);
+        }
+        assertEquals(-1L, tracker.getP95LatencyNanos(bookie));
+        tracker.recordReadLatency(bookie, 16 * MS);
+        assertEquals(16 * MS, tracker.getP95LatencyNanos(bookie));
+
+        // The percentile is only computed again once enough new samples are recorded
+        for (int i = 1; i < BookieReadLatencyTracker.PERCENTILE_REFRESH_SAMPLES; i++) {
+            tracker.recordReadLatency(bookie, 100 * MS);
+        }
+        assertEquals(16 * MS, tracker.getP95LatencyNanos(bookie));
+        tracker.recordReadLatency(bookie, 100 * MS);
+        assertEquals(100 * MS, tracker.getP95LatencyNanos(bookie));
+
+        // Only the last samples are kept
+        for (int i = 0; i < BookieReadLatencyTracker.SAMPLES; i++) {
+            tracker.recordReadLatency(bookie, MS);
+        }
+        assertEquals(MS, tracker.getP95LatencyNanos(bookie));
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.test.LocalBookiesTestCase;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the pipelined reads and write-backs of {@link LedgerRecoveryOp}, against real bookies, through a bookie
+ * client which can hold, fail or truncate the recovery reads.
+ */
+public class LedgerRecoveryOpTest extends LocalBookiesTestCase {
+
+    private static final byte[] PASSWORD = "ledger-recovery".getBytes();
+    private static final int BATCH_SIZE = 4;
+    private static final int WINDOW_SIZE = 16;
+
+    private final List<BookKeeper> clients = new ArrayList<>();
+    private BookKeeper writerClient;
+
+    // Recovery reads, held until released
+    private volatile boolean holdReads = false;
+    private final Set<Long> heldEntries = ConcurrentHashMap.newKeySet();
+    // Ledger and entry ids of the held reads, which also hold the speculative reads of the same entries
+    private final Set<List<Long>> heldReadIds = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> heldReads = Collections.synchronizedList(new ArrayList<>());
+    // Entries reported missing or failing by all the bookies
+    private final Set<Long> missingEntries = ConcurrentHashMap.newKeySet();
+    private final Set<Long> failedEntries = ConcurrentHashMap.newKeySet();
+    // Max number of entries returned by a batch read, or -1 to fail the batch reads
+    private volatile int batchReadMaxCount = Integer.MAX_VALUE;
+
+    private final Set<Long> readEntryIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> completedReadEntryIds = ConcurrentHashMap.newKeySet();
+    private final List<Long> batchReadEntryIds = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Long, BookieId> firstBookies = new ConcurrentHashMap<>();
+    private final Map<Long, List<Long>> writtenBackEntryIds = new ConcurrentHashMap<>();
+
+    @Before
+    public void setup() throws Exception {
+        writerClient = newClient(new ClientConfiguration());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        releaseHeldReads();
+        for (BookKeeper client : clients) {
+            client.close();
+        }
+    }
+
+    private BookKeeper newClient(ClientConfiguration conf) throws Exception {
+        BookKeeper client = new BookKeeper(conf.setMetadataServiceUri(metadataServiceUri));
+        clients.add(client);
+        return client;
+    }
+
+    private static ClientConfiguration newRecoveryConf() {
+        return new ClientConfiguration()
+            .setRecoveryReadBatchSize(BATCH_SIZE)
+            .setRecoveryReadWindowSize(WINDOW_SIZE);
+    }
+
+    private static byte[] entryData(long entryId) {
+        return ("entry-" + entryId).getBytes();
+    }
+
+    /**
+     * Write entries that don't confirm any previous entry, so that the recovery reads and writes back all of them.
+     */
+    private long writeUnconfirmedEntries(int numEntries) throws Exception {
+        LedgerHandle writer = writerClient.createLedger(3, 3, 3, DigestType.CRC32, PASSWORD);
+        List<BookieId> ensemble = writer.getLedgerMetadata().getEnsembleAt(0);
+        BookieClient bookieClient = writerClient.getClientCtx().getBookieClient();
+        CountDownLatch written = new CountDownLatch(numEntries * ensemble.size());
+        AtomicInteger failures = new AtomicInteger();
+        WriteCallback cb = (rc, ledgerId, entryId, addr, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                failures.incrementAndGet();
+            }
+            written.countDown();
+        };
+        long length = 0;
+        for (long entryId = 0; entryId < numEntries; entryId++) {
+            byte[] data = entryData(entryId);
+            length += data.length;
+            ReferenceCounted toSend = writer.getDigestManager().computeDigestAndPackageForSending(entryId,
+                    LedgerHandle.INVALID_ENTRY_ID, length, Unpooled.wrappedBuffer(data), writer.ledgerKey,
+                    BookieProtocol.FLAG_NONE);
+            for (BookieId bookie : ensemble) {
+                bookieClient.addEntry(bookie, writer.getId(), writer.ledgerKey, entryId, toSend, cb, null,
+                        BookieProtocol.FLAG_NONE, false, WriteFlag.NONE);
+            }
+            toSend.release();
+        }
+        assertTrue(written.await(30, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        return writer.getId();
+    }
+
+    private void releaseHeldReads() {
+        holdReads = false;
+        heldEntries.clear();
+        List<Runnable> reads;
+        synchronized (heldReads) {
+            reads = new ArrayList<>(heldReads);
+            heldReads.clear();
+            heldReadIds.clear();
+        }
+        reads.forEach(Runnable::run);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private void answerRead(BookieClient realBookieClient, BookieId to, long ledgerId, long entryId,
+                            ReadEntryCallback cb, Object ctx, int flags, byte[] masterKey) {
+        ReadEntryCallback recordingCb = (rc, lid, eid, buffer, c) -> {
+            cb.readEntryComplete(rc, lid, eid, buffer, c);
+            completedReadEntryIds.add(eid);
+        };
+        if (missingEntries.contains(entryId)) {
+            recordingCb.readEntryComplete(BKException.Code.NoSuchEntryException, ledgerId, entryId, null, ctx);
+        } else if (failedEntries.contains(entryId)) {
+            recordingCb.readEntryComplete(BKException.Code.ReadException, ledgerId, entryId, null, ctx);
+        } else {
+            realBookieClient.readEntry(to, ledgerId, entryId, recordingCb, ctx, flags, masterKey);
+        }
+    }
+
+    /**
+     * Context of the recovery client, with a bookie client that intercepts the recovery reads and records the
+     * entries written back to the first bookie of the ensemble.
+     */
+    private ClientContext newClientContext(BookKeeper client, ClientConfiguration conf, LedgerRecoveryBudget budget) {
+        ClientContext delegate = client.getClientCtx();
+        BookieClient realBookieClient = delegate.getBookieClient();
+        BookieClient bookieClient = mock(BookieClient.class, delegatesTo(realBookieClient));
+
+        doAnswer(invocation -> {
+            BookieId to = invocation.getArgument(0);
+            long ledgerId = invocation.getArgument(1);
+            long entryId = invocation.getArgument(2);
+            ReadEntryCallback cb = invocation.getArgument(3);
+            Object ctx = invocation.getArgument(4);
+            int flags = invocation.getArgument(5);
+            byte[] masterKey = invocation.getArgument(6);
+            if (entryId < 0) {
+                // The fencing reads of the last add confirmed
+                realBookieClient.readEntry(to, ledgerId, entryId, cb, ctx, flags, masterKey);
+                return null;
+            }
+            readEntryIds.add(entryId);
+            Runnable read = () -> answerRead(realBookieClient, to, ledgerId, entryId, cb, ctx, flags, masterKey);
+            synchronized (heldReads) {
+                if (holdReads || heldEntries.contains(entryId)) {
+                    heldReadIds.add(Arrays.asList(ledgerId, entryId));
+                    heldReads.add(read);
+                    return null;
+                }
+            }
+            read.run();
+            return null;
+        }).when(bookieClient).readEntry(any(BookieId.class), anyLong(), anyLong(), any(ReadEntryCallback.class),
+                any(), anyInt(), any());
+
+        doAnswer(invocation -> {
+            BookieId to = invocation.getArgument(0);
+            long ledgerId = invocation.getArgument(1);
+            long startEntryId = invocation.getArgument(2);
+            int maxCount = invocation.getArgument(3);
+            long maxSize = invocation.getArgument(4);
+            BatchedReadEntryCallback cb = invocation.getArgument(5);
+            Object ctx = invocation.getArgument(6);
+            int flags = invocation.getArgument(7);
+            byte[] masterKey = invocation.getArgument(8);
+            batchReadEntryIds.add(startEntryId);
+            if (batchReadMaxCount < 0) {
+                cb.readEntriesComplete(BKException.Code.ReadException, ledgerId, startEntryId, null, ctx);
+            } else {
+                realBookieClient.batchReadEntries(to, ledgerId, startEntryId, Math.min(maxCount, batchReadMaxCount),
+                        maxSize, cb, ctx, flags, masterKey);
+            }
+            return null;
+        }).when(bookieClient).batchReadEntries(any(BookieId.class), anyLong(), anyLong(), anyInt(), anyLong(),
+                any(BatchedReadEntryCallback.class), any(), anyInt(), any());
+
+        doAnswer(invocation -> {
+            BookieId to = invocation.getArgument(0);
+            long ledgerId = invocation.getArgument(1);
+            byte[] masterKey = invocation.getArgument(2);
+            long entryId = invocation.getArgument(3);
+            ReferenceCounted toSend = invocation.getArgument(4);
+            WriteCallback cb = invocation.getArgument(5);
+            Object ctx = invocation.getArgument(6);
+            int options = invocation.getArgument(7);
+            boolean allowFastFail = invocation.getArgument(8);
+            EnumSet<WriteFlag> writeFlags = invocation.getArgument(9);
+            if (to.equals(firstBookies.get(ledgerId))) {
+                writtenBackEntryIds.computeIfAbsent(ledgerId, k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(entryId);
+            }
+            realBookieClient.addEntry(to, ledgerId, masterKey, entryId, toSend, cb, ctx, options, allowFastFail,
+                    writeFlags);
+            return null;
+        }).when(bookieClient).addEntry(any(BookieId.class), anyLong(), any(), anyLong(), any(ReferenceCounted.class),
+                any(WriteCallback.class), any(), anyInt(), anyBoolean(), any());
+
+        ClientInternalConf internalConf = ClientInternalConf.fromConfig(conf);
+        return new ClientContext() {
+            @Override
+            public ClientInternalConf getConf() {
+                return internalConf;
+            }
+
+            @Override
+            public LedgerManager getLedgerManager() {
+                return delegate.getLedgerManager();
+            }
+
+            @Override
+            public BookieWatcher getBookieWatcher() {
+                return delegate.getBookieWatcher();
+            }
+
+            @Override
+            public EnsemblePlacementPolicy getPlacementPolicy() {
+                return delegate.getPlacementPolicy();
+            }
+
+            @Override
+            public BookieClient getBookieClient() {
+                return bookieClient;
+            }
+
+            @Override
+            public ByteBufAllocator getByteBufAllocator() {
+                return delegate.getByteBufAllocator();
+            }
+
+            @Override
+            public OrderedExecutor getMainWorkerPool() {
+                return delegate.getMainWorkerPool();
+            }
+
+            @Override
+            public OrderedScheduler getScheduler() {
+                return delegate.getScheduler();
+            }
+
+            @Override
+            public BookKeeperClientStats getClientStats() {
+                return delegate.getClientStats();
+            }
+
+            @Override
+            public BookieReadLatencyTracker getReadLatencyTracker() {
+                return delegate.getReadLatencyTracker();
+            }
+
+            @Override
+            public LedgerRecoveryBudget getRecoveryBudget() {
+                return budget;
+            }
+
+            @Override
+            public boolean isClientClosed() {
+                return delegate.isClientClosed();
+            }
+        };
+    }
+
+    private ClientContext newClientContext(ClientConfiguration conf, LedgerRecoveryBudget budget) throws Exception {
+        return newClientContext(newClient(conf), conf, budget);
+    }
+
+    /**
+     * Recover a ledger with the given context.
+     *
+     * @return the result code of the recovery
+     */
+    private CompletableFuture<Integer> recover(ClientContext ctx, long ledgerId, List<Long> readEntries)
+            throws Exception {
+        Versioned<LedgerMetadata> metadata = ctx.getLedgerManager().readLedgerMetadata(ledgerId).get();
+        firstBookies.put(ledgerId, metadata.getValue().getEnsembleAt(0).get(0));
+        ReadOnlyLedgerHandle lh = new ReadOnlyLedgerHandle(ctx, ledgerId, metadata, DigestType.CRC32, PASSWORD,
+                false);
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        lh.recover((rc, ignore) -> result.complete(rc), (rc, handle, entry, c) -> {
+            if (rc == BKException.Code.OK) {
+                readEntries.add(entry.getEntryId());
+            }
+        }, false);
+        return result;
+    }
+
+    private static List<Long> range(long first, long last) {
+        List<Long> range = new ArrayList<>();
+        for (long entryId = first; entryId <= last; entryId++) {
+            range.add(entryId);
+        }
+        return range;
+    }
+
+    /**
+     * Check the ledger is closed at the last entry recovered, with the content of the entries.
+     */
+    private void assertRecovered(long ledgerId, long lastEntryId) throws Exception {
+        BookKeeper reader = newClient(new ClientConfiguration());
+        LedgerHandle lh = reader.openLedgerNoRecovery(ledgerId, DigestType.CRC32, PASSWORD);
+        assertTrue(lh.isClosed());
+        assertEquals(lastEntryId, lh.getLastAddConfirmed());
+        if (lastEntryId >= 0) {
+            Enumeration<LedgerEntry> entries = lh.readEntries(0, lastEntryId);
+            long entryId = 0;
+            while (entries.hasMoreElements()) {
+                assertArrayEquals(entryData(entryId++), entries.nextElement().getEntry());
+            }
+            assertEquals(lastEntryId + 1, entryId);
+        }
+        lh.close();
+    }
+
+    @Test
+    public void testWindowLargerThanBatchSize() throws Exception {
+        long ledgerId = writeUnconfirmedEntries(40);
+        ClientConfiguration conf = newRecoveryConf();
+        ClientContext ctx = newClientContext(conf, new LedgerRecoveryBudget(0));
+
+        holdReads = true;
+        List<Long> readEntries = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Integer> result = recover(ctx, ledgerId, readEntries);
+
+        // Several batches are read at the same time, up to the window
+        waitFor(() -> heldReadIds.size() == WINDOW_SIZE);
+        Thread.sleep(100);
+        assertEquals(WINDOW_SIZE, heldReadIds.size());
+        assertFalse(result.isDone());
+
+        releaseHeldReads();
+        assertEquals(BKException.Code.OK, result.get(30, TimeUnit.SECONDS).intValue());
+
+        // The entries are delivered and written back in order
+        assertEquals(range(0, 39), readEntries);
+        assertEquals(range(0, 39), writtenBackEntryIds.get(ledgerId));
+        assertRecovered(ledgerId, 39);
+    }
+
+    @Test
+    public void testMissingEntryInMiddleChunk() throws Exception {
+        long ledgerId = writeUnconfirmedEntries(10);
+        ClientContext ctx = newClientContext(newRecoveryConf(), new LedgerRecoveryBudget(0));
+
+        // Entry 5 is missing, but only once the entries of the next batch are read
+        missingEntries.add(5L);
+        heldEntries.add(5L);
+        List<Long> readEntries = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Integer> result = recover(ctx, ledgerId, readEntries);
+        waitFor(() -> completedReadEntryIds.contains(8L) && completedReadEntryIds.contains(9L));
+        assertFalse(result.isDone());
+        assertEquals(range(0, 4), readEntries);
+
+        releaseHeldReads();
+        assertEquals(BKException.Code.OK, result.get(30, TimeUnit.SECONDS).intValue());
+
+        // The recovery stops at the missing entry, the entries read after it are not written back
+        assertEquals(range(0, 4), writtenBackEntryIds.get(ledgerId));
+        assertRecovered(ledgerId, 4);
+    }
+
+    @Test
+    public void testBatchReadGapsFallBackToQuorumRead() throws Exception {
+        long ledgerId = writeUnconfirmedEntries(10);
+        ClientConfiguration conf = newRecoveryConf()
+            .setUseV2WireProtocol(true)
+            .setBatchReadEnabled(true)
+            .setRecoveryBatchReadEnabled(true);
+        ClientContext ctx = newClientContext(conf, new LedgerRecoveryBudget(0));
+
+        // The batch reads return the first 2 entries of each batch, the others are read from all the replicas
+        batchReadMaxCount = 2;
+        List<Long> readEntries = Collections.synchronizedList(new ArrayList<>());
+        assertEquals(BKException.Code.OK, recover(ctx, ledgerId, readEntries).get(30, TimeUnit.SECONDS).intValue());
+
+        assertTrue(batchReadEntryIds.containsAll(Arrays.asList(0L, 4L, 8L)));
+        assertTrue(readEntryIds.containsAll(Arrays.asList(2L, 3L, 6L, 7L, 10L)));
+        for (long entryId : Arrays.asList(0L, 1L, 4L, 5L, 8L, 9L)) {
+            assertFalse("Entry " + entryId + " should come from a batch read", readEntryIds.contains(entryId));
+        }
+        assertEquals(range(0, 9), readEntries);
+        assertEquals(range(0, 9), writtenBackEntryIds.get(ledgerId));
+        assertRecovered(ledgerId, 9);
+    }
+
+    @Test
+    public void testFailedBatchReadFallsBackToQuorumRead() throws Exception {
+        long ledgerId = writeUnconfirmedEntries(10);
+        ClientConfiguration conf = newRecoveryConf()
+            .setUseV2WireProtocol(true)
+            .setBatchReadEnabled(true)
+            .setRecoveryBatchReadEnabled(true);
+        ClientContext ctx = newClientContext(conf, new LedgerRecoveryBudget(0));
+
+        batchReadMaxCount = -1;
+        List<Long> readEntries = Collections.synchronizedList(new ArrayList<>());
+        assertEquals(BKException.Code.OK, recover(ctx, ledgerId, readEntries).get(30, TimeUnit.SECONDS).intValue());
+
+        assertTrue(batchReadEntryIds.containsAll(Arrays.asList(0L, 4L, 8L)));
+        assertTrue(readEntryIds.containsAll(range(0, 10)));
+        assertEquals(range(0, 9), writtenBackEntryIds.get(ledgerId));
+        assertRecovered(ledgerId, 9);
+    }
+
+    @Test
+    public void testBudgetSharedByRecoveries() throws Exception {
+        long ledgerId1 = writeUnconfirmedEntries(12);
+        long ledgerId2 = writeUnconfirmedEntries(12);
+        ClientConfiguration conf = newRecoveryConf();
+        BookKeeper client = newClient(conf);
+        LedgerRecoveryBudget budget = new LedgerRecoveryBudget(BATCH_SIZE);
+        ClientContext ctx = newClientContext(client, conf, budget);
+
+        holdReads = true;
+        List<Long> readEntries1 = Collections.synchronizedList(new ArrayList<>());
+        List<Long> readEntries2 = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Integer> result1 = recover(ctx, ledgerId1, readEntries1);
+        CompletableFuture<Integer> result2 = recover(ctx, ledgerId2, readEntries2);
+
+        // A single batch of a single recovery fits in the budget
+        waitFor(() -> heldReadIds.size() == BATCH_SIZE);
+        Thread.sleep(100);
+        assertEquals(BATCH_SIZE, heldReadIds.size());
+        assertEquals(1, heldReadIds.stream().map(read -> read.get(0)).distinct().count());
+
+        // The other recovery resumes as the entries are written back
+        releaseHeldReads();
+        assertEquals(BKException.Code.OK, result1.get(30, TimeUnit.SECONDS).intValue());
+        assertEquals(BKException.Code.OK, result2.get(30, TimeUnit.SECONDS).intValue());
+        assertEquals(range(0, 11), readEntries1);
+        assertEquals(range(0, 11), readEntries2);
+        assertEquals(range(0, 11), writtenBackEntryIds.get(ledgerId1));
+        assertEquals(range(0, 11), writtenBackEntryIds.get(ledgerId2));
+        assertRecovered(ledgerId1, 11);
+        assertRecovered(ledgerId2, 11);
+
+        // All the permits are back
+        assertEquals(BATCH_SIZE, budget.acquireOrWait(BATCH_SIZE, () -> { }));
+    }
+
+    @Test
+    public void testPermitsReleasedOnFailure() throws Exception {
+        long ledgerId = writeUnconfirmedEntries(10);
+        LedgerRecoveryBudget budget = new LedgerRecoveryBudget(2 * BATCH_SIZE);
+        ClientContext ctx = newClientContext(newRecoveryConf(), budget);
+
+        // Entry 2 can't be read from any replica
+        failedEntries.add(2L);
+        List<Long> readEntries = Collections.synchronizedList(new ArrayList<>());
+        assertEquals(BKException.Code.ReadException,
+                recover(ctx, ledgerId, readEntries).get(30, TimeUnit.SECONDS).intValue());
+        assertFalse(readEntries.contains(2L));
+
+        // The permits of the entries not written back are released with the failure
+        assertEquals(2 * BATCH_SIZE, budget.acquireOrWait(2 * BATCH_SIZE, () -> { }));
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.test.LocalBookiesTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test reading the new entries of many ledgers with {@link MultiLedgerTailReader}, against real bookies.
+ */
+public class MultiLedgerTailReaderTest extends LocalBookiesTestCase {
+
+    private static final byte[] PASSWORD = "tail-reader".getBytes();
+
+    private final Random random = new Random(0);
+    private final Map<Long, List<byte[]>> written = new HashMap<>();
+    private BookKeeper client;
+
+    @Before
+    public void setup() throws Exception {
+        client = new BookKeeper(new ClientConfiguration()
+            .setMetadataServiceUri(metadataServiceUri)
+            .setUseV2WireProtocol(true));
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    private LedgerHandle createLedger(int ensembleSize, int writeQuorumSize, int numEntries) throws Exception {
+        LedgerHandle lh = client.createLedger(ensembleSize, writeQuorumSize, writeQuorumSize, DigestType.CRC32C,
+                PASSWORD);
+        written.put(lh.getId(), new ArrayList<>());
+        addEntries(lh, numEntries);
+        return lh;
+    }
+
+    private void addEntries(LedgerHandle lh, int numEntries) throws Exception {
+        addEntries(lh, numEntries, 1 + random.nextInt(100));
+    }
+
+    private void addEntries(LedgerHandle lh, int numEntries, int entrySize) throws Exception {
+        for (int i = 0; i < numEntries; i++) {
+            byte[] entry = new byte[entrySize];
+            random.nextBytes(entry);
+            lh.addEntry(entry);
+            written.get(lh.getId()).add(entry);
+        }
+    }
+
+    private static Map<Long, LedgerEntries> read(MultiLedgerTailReader reader, Map<LedgerHandle, Long> nextEntryIds)
+            throws Exception {
+        return reader.readUnconfirmed(nextEntryIds).get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Check the entries read of a ledger are the written ones, starting at the given entry.
+     *
+     * @return the number of entries read
+     */
+    private int assertEntries(LedgerEntries entries, long ledgerId, long startEntryId) {
+        List<byte[]> expected = written.get(ledgerId);
+        int count = 0;
+        for (LedgerEntry entry : entries) {
+            long entryId = startEntryId + count;
+            assertEquals(ledgerId, entry.getLedgerId());
+            assertEquals(entryId, entry.getEntryId());
+            assertArrayEquals("Unexpected content of " + ledgerId + "@" + entryId,
+                    expected.get((int) entryId), entry.getEntryBytes());
+            count++;
+        }
+        return count;
+    }
+
+    private static void closeAll(Map<Long, LedgerEntries> entries) {
+        entries.values().forEach(LedgerEntries::close);
+    }
+
+    @Test
+    public void testTailManyLedgers() throws Exception {
+        int numLedgers = 10;
+        Map<LedgerHandle, Long> nextEntryIds = new LinkedHashMap<>();
+        for (int i = 0; i < numLedgers; i++) {
+            // Every bookie stores every entry, and the ledgers start on different bookies
+            LedgerHandle lh = createLedger(3, 3, i);
+            nextEntryIds.put(lh, 0L);
+        }
+
+        MultiLedgerTailReader reader = new MultiLedgerTailReader(100, 1024 * 1024);
+        Map<Long, LedgerEntries> entries = read(reader, nextEntryIds);
+        try {
+            for (LedgerHandle lh : nextEntryIds.keySet()) {
+                int numWritten = written.get(lh.getId()).size();
+                if (numWritten == 0) {
+                    // The ledgers without new entries are left out
+                    assertFalse(entries.containsKey(lh.getId()));
+                } else {
+                    assertEquals(numWritten, assertEntries(entries.get(lh.getId()), lh.getId(), 0L));
+                }
+            }
+        } finally {
+            closeAll(entries);
+        }
+
+        // Keep tailing from the next entry of each ledger
+        for (Map.Entry<LedgerHandle, Long> e : nextEntryIds.entrySet()) {
+            e.setValue((long) written.get(e.getKey().getId()).size());
+            addEntries(e.getKey(), 3);
+        }
+        entries = read(reader, nextEntryIds);
+        try {
+            assertEquals(numLedgers, entries.size());
+            for (Map.Entry<LedgerHandle, Long> e : nextEntryIds.entrySet()) {
+                long ledgerId = e.getKey().getId();
+                assertEquals(3, assertEntries(entries.get(ledgerId), ledgerId, e.getValue()));
+            }
+        } finally {
+            closeAll(entries);
+        }
+    }
+
+    @Test
+    public void testMaxEntriesPerLedger() throws Exception {
+        LedgerHandle lh1 = createLedger(3, 3, 20);
+        LedgerHandle lh2 = createLedger(3, 3, 20);
+        Map<LedgerHandle, Long> nextEntryIds = new LinkedHashMap<>();
+        nextEntryIds.put(lh1, 5L);
+        nextEntryIds.put(lh2, 17L);
+
+        Map<Long, LedgerEntries> entries = read(new MultiLedgerTailReader(4, 1024 * 1024), nextEntryIds);
+        try {
+            assertEquals(4, assertEntries(entries.get(lh1.getId()), lh1.getId(), 5L));
+            assertEquals(3, assertEntries(entries.get(lh2.getId()), lh2.getId(), 17L));
+        } finally {
+            closeAll(entries);
+        }
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        Map<LedgerHandle, Long> nextEntryIds = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            LedgerHandle lh = createLedger(1, 1, 0);
+            addEntries(lh, 10, 1024);
+            nextEntryIds.put(lh, 0L);
+        }
+
+        // Room for a few entries per bookie: the ledgers which don't fit are left out, or cut short
+        Map<Long, LedgerEntries> entries = read(new MultiLedgerTailReader(100, 4 * 1024), nextEntryIds);
+        int numRead = 0;
+        try {
+            assertFalse(entries.isEmpty());
+            for (Map.Entry<Long, LedgerEntries> e : entries.entrySet()) {
+                int count = assertEntries(e.getValue(), e.getKey(), 0L);
+                assertTrue(count > 0);
+                numRead += count;
+            }
+        } finally {
+            closeAll(entries);
+        }
+        assertTrue("Read " + numRead + " entries", numRead <= 3 * 4);
+    }
+
+    @Test
+    public void testEntryLargerThanMaxSize() throws Exception {
+        LedgerHandle lh = createLedger(3, 3, 0);
+        addEntries(lh, 2, 16 * 1024);
+        Map<LedgerHandle, Long> nextEntryIds = new LinkedHashMap<>();
+        nextEntryIds.put(lh, 0L);
+
+        // The first entry of a response is always sent, so that the reader isn't stalled on it
+        Map<Long, LedgerEntries> entries = read(new MultiLedgerTailReader(100, 4 * 1024), nextEntryIds);
+        try {
+            assertEquals(1, assertEntries(entries.get(lh.getId()), lh.getId(), 0L));
+        } finally {
+            closeAll(entries);
+        }
+    }
+
+    @Test
+    public void testStripedLedgerStopsAtEntryStoredElsewhere() throws Exception {
+        // Each entry is stored on 2 of the 3 bookies, so the bookie of an entry doesn't store the next one
+        LedgerHandle lh = createLedger(3, 2, 12);
+        Map<LedgerHandle, Long> nextEntryIds = new LinkedHashMap<>();
+        nextEntryIds.put(lh, 4L);
+
+        Map<Long, LedgerEntries> entries = read(new MultiLedgerTailReader(100, 1024 * 1024), nextEntryIds);
+        try {
+            assertEquals(1, assertEntries(entries.get(lh.getId()), lh.getId(), 4L));
+        } finally {
+            closeAll(entries);
+        }
+    }
+
+    @Test
+    public void testNoLedgers() throws Exception {
+        assertTrue(read(new MultiLedgerTailReader(100, 1024 * 1024), new HashMap<>()).isEmpty());
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.netty.buffer.ByteBufAllocator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.test.LocalBookiesTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the speculative reads of {@link PendingReadOp} with an adaptive timeout, against real bookies.
+ */
+public class SpeculativeReadTest extends LocalBookiesTestCase {
+
+    private static final byte[] PASSWORD = "speculative-read".getBytes();
+    private static final byte[] ENTRY = "entry-0".getBytes();
+    private static final int FIRST_SPECULATIVE_READ_TIMEOUT = 50;
+    private static final int MAX_SPECULATIVE_READ_TIMEOUT = 200;
+
+    private BookKeeper client;
+    private LedgerHandle lh;
+    private BookieId firstReplica;
+    private final List<Runnable> heldReads = Collections.synchronizedList(new ArrayList<>());
+    private final BookieReadLatencyTracker tracker = new BookieReadLatencyTracker();
+    private final Counter speculativeReadWins = mock(Counter.class);
+
+    @Before
+    public void setup() throws Exception {
+        client = new BookKeeper(newConf());
+        lh = client.createLedger(3, 3, 3, DigestType.CRC32, PASSWORD);
+        lh.addEntry(ENTRY);
+        DistributionSchedule.WriteSet writeSet = lh.getWriteSetForReadOperation(0);
+        firstReplica = lh.getLedgerMetadata().getEnsembleAt(0).get(writeSet.get(0));
+        writeSet.recycle();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        // Let the held reads complete before closing the client
+        synchronized (heldReads) {
+            heldReads.forEach(Runnable::run);
+        }
+        if (lh != null) {
+            lh.close();
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    private static ClientConfiguration newConf() {
+        return new ClientConfiguration()
+            .setMetadataServiceUri(metadataServiceUri)
+            .setFirstSpeculativeReadTimeout(FIRST_SPECULATIVE_READ_TIMEOUT)
+            .setMaxSpeculativeReadTimeout(MAX_SPECULATIVE_READ_TIMEOUT)
+            .setAdaptiveSpeculativeReadTimeoutEnabled(true);
+    }
+
+    /**
+     * Context of the client, with a bookie client that holds the reads sent to the first replica, or fails them.
+     */
+    private ClientContext newClientContext(boolean failFirstReplica) {
+        ClientContext delegate = client.getClientCtx();
+        BookieClient realBookieClient = delegate.getBookieClient();
+        BookieClient bookieClient = mock(BookieClient.class, delegatesTo(realBookieClient));
+        doAnswer(invocation -> {
+            BookieId to = invocation.getArgument(0);
+            long ledgerId = invocation.getArgument(1);
+            long entryId = invocation.getArgument(2);
+            ReadEntryCallback cb = invocation.getArgument(3);
+            Object ctx = invocation.getArgument(4);
+            int flags = invocation.getArgument(5);
+            if (!to.equals(firstReplica)) {
+                realBookieClient.readEntry(to, ledgerId, entryId, cb, ctx, flags);
+            } else if (failFirstReplica) {
+                cb.readEntryComplete(BKException.Code.ReadException, ledgerId, entryId, null, ctx);
+            } else {
+                heldReads.add(() -> realBookieClient.readEntry(to, ledgerId, entryId, cb, ctx, flags));
+            }
+            return null;
+        }).when(bookieClient).readEntry(any(BookieId.class), anyLong(), anyLong(), any(ReadEntryCallback.class),
+                any(), anyInt());
+
+        BookKeeperClientStats clientStats = mock(BookKeeperClientStats.class, delegatesTo(delegate.getClientStats()));
+        doReturn(speculativeReadWins).when(clientStats).getSpeculativeReadWinsCounter();
+
+        ClientInternalConf conf = ClientInternalConf.fromConfig(newConf());
+        return new ClientContext() {
+            @Override
+            public ClientInternalConf getConf() {
+                return conf;
+            }
+
+            @Override
+            public LedgerManager getLedgerManager() {
+                return delegate.getLedgerManager();
+            }
+
+            @Override
+            public BookieWatcher getBookieWatcher() {
+                return delegate.getBookieWatcher();
+            }
+
+            @Override
+            public EnsemblePlacementPolicy getPlacementPolicy() {
+                return delegate.getPlacementPolicy();
+            }
+
+            @Override
+            public BookieClient getBookieClient() {
+                return bookieClient;
+            }
+
+            @Override
+            public ByteBufAllocator getByteBufAllocator() {
+                return delegate.getByteBufAllocator();
+            }
+
+            @Override
+            public OrderedExecutor getMainWorkerPool() {
+                return delegate.getMainWorkerPool();
+            }
+
+            @Override
+            public OrderedScheduler getScheduler() {
+                return delegate.getScheduler();
+            }
+
+            @Override
+            public BookKeeperClientStats getClientStats() {
+                return clientStats;
+            }
+
+            @Override
+            public BookieReadLatencyTracker getReadLatencyTracker() {
+                return tracker;
+            }
+
+            @Override
+            public LedgerRecoveryBudget getRecoveryBudget() {
+                return delegate.getRecoveryBudget();
+            }
+
+            @Override
+            public boolean isClientClosed() {
+                return delegate.isClientClosed();
+            }
+        };
+    }
+
+    private void recordFirstReplicaLatencies(int count, long latencyMs) {
+        for (int i = 0; i < count; i++) {
+            tracker.recordReadLatency(firstReplica, TimeUnit.MILLISECONDS.toNanos(latencyMs));
+        }
+    }
+
+    private void assertReadEntry(PendingReadOp op) throws Exception {
+        op.run();
+        try (LedgerEntries entries = op.future().get(30, TimeUnit.SECONDS)) {
+            assertArrayEquals(ENTRY, entries.getEntry(0).getEntryBytes());
+        }
+    }
+
+    @Test
+    public void testAdaptiveTimeoutIsClampedByMaxTimeout() throws Exception {
+        PendingReadOp op = new PendingReadOp(lh, newClientContext(false), 0, 0, false);
+        SpeculativeRequestExecutionPolicy policy = new DefaultSpeculativeRequestExecutionPolicy(
+                FIRST_SPECULATIVE_READ_TIMEOUT, MAX_SPECULATIVE_READ_TIMEOUT, 2);
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+
+        PendingReadOp.SequenceReadRequest request = op.new SequenceReadRequest(
+                lh.getLedgerMetadata().getEnsembleAt(0), lh.getId(), 0);
+        try {
+            // Without enough reads of the first replica, the first timeout of the policy is used
+            recordFirstReplicaLatencies(BookieReadLatencyTracker.MIN_SAMPLES - 1, 20);
+            assertEquals(FIRST_SPECULATIVE_READ_TIMEOUT,
+                    request.getFirstSpeculativeRequestTimeout(FIRST_SPECULATIVE_READ_TIMEOUT));
+            policy.initiateSpeculativeRequest(scheduler, request);
+            verify(scheduler).schedule(any(Runnable.class), eq((long) FIRST_SPECULATIVE_READ_TIMEOUT),
+                    eq(TimeUnit.MILLISECONDS));
+
+            // The p95 of the first replica, rounded up
+            recordFirstReplicaLatencies(1, 20);
+            assertEquals(21, request.getFirstSpeculativeRequestTimeout(FIRST_SPECULATIVE_READ_TIMEOUT));
+            policy.initiateSpeculativeRequest(scheduler, request);
+            verify(scheduler).schedule(any(Runnable.class), eq(21L), eq(TimeUnit.MILLISECONDS));
+
+            // A slow first replica doesn't delay the speculative read beyond the max timeout
+            recordFirstReplicaLatencies(BookieReadLatencyTracker.SAMPLES, 5000);
+            assertEquals(5001, request.getFirstSpeculativeRequestTimeout(FIRST_SPECULATIVE_READ_TIMEOUT));
+            policy.initiateSpeculativeRequest(scheduler, request);
+            verify(scheduler).schedule(any(Runnable.class), eq((long) MAX_SPECULATIVE_READ_TIMEOUT),
+                    eq(TimeUnit.MILLISECONDS));
+        } finally {
+            request.close();
+        }
+    }
+
+    @Test
+    public void testSpeculativeReadWins() throws Exception {
+        // The first replica is slow enough for the adaptive timeout to be clamped, and doesn't respond
+        recordFirstReplicaLatencies(BookieReadLatencyTracker.SAMPLES, 5000);
+        long startNanos = System.nanoTime();
+        assertReadEntry(new PendingReadOp(lh, newClientContext(false), 0, 0, false));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(5000));
+
+        assertEquals(1, heldReads.size());
+        verify(speculativeReadWins, times(1)).inc();
+    }
+
+    @Test
+    public void testReadAfterFailureIsNotASpeculativeWin() throws Exception {
+        // The first replica fails right away, the next replica is read without waiting for the speculative timeout
+        assertReadEntry(new PendingReadOp(lh, newClientContext(true), 0, 0, false));
+
+        verify(speculativeReadWins, never()).inc();
+        // The failure counts as a read of the first replica
+        assertTrue(tracker.getAverageLatencyNanos(firstReplica) >= 0);
+    }
+}
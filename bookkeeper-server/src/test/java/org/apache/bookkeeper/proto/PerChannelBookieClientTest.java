@@ -0,0 +1,173 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the release of the buffers sent by {@link PerChannelBookieClient}, once the write to the channel is done.
+ */
+public class PerChannelBookieClientTest {
+
+    private static final byte[] MASTER_KEY = new byte[BookieProtocol.MASTER_KEY_LENGTH];
+    private static final long LEDGER_ID = 1L;
+
+    private OrderedExecutor executor;
+    private long entryId = 0L;
+
+    @Before
+    public void setup() {
+        executor = OrderedExecutor.newBuilder().numThreads(1).name("test-client").build();
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    private PerChannelBookieClient newClient(boolean useV2WireProtocol) throws Exception {
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setUseV2WireProtocol(useV2WireProtocol);
+        return new PerChannelBookieClient(conf, executor, null, UnpooledByteBufAllocator.DEFAULT,
+                BookieId.parse("127.0.0.1:3181"), NullStatsLogger.INSTANCE, null, null, null, null,
+                BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER);
+    }
+
+    /**
+     * A channel which fails all the writes, releasing the messages like the outbound buffer of netty.
+     */
+    private static EmbeddedChannel newFailingChannel() {
+        return new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new IOException("write failed"));
+            }
+        });
+    }
+
+    private static ReferenceCounted newEntry(boolean useV2WireProtocol) {
+        ByteBuf data = UnpooledByteBufAllocator.DEFAULT.buffer(100, 100);
+        data.writerIndex(100);
+        return useV2WireProtocol ? data : ByteBufList.get(data);
+    }
+
+    /**
+     * Add an entry written to the channel, and check the client doesn't hold on to it once the write is done.
+     */
+    private void addEntry(PerChannelBookieClient client, boolean useV2WireProtocol) throws Exception {
+        ReferenceCounted toSend = newEntry(useV2WireProtocol);
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        client.addEntry(LEDGER_ID, MASTER_KEY, entryId++, toSend, (rc, ledgerId, entryId, addr, ctx) ->
+                result.complete(rc), null, BookieProtocol.FLAG_NONE, false, WriteFlag.NONE);
+        // The v2 request written is a duplicate of the entry, read it like the bookie
+        ReferenceCountUtil.release(((EmbeddedChannel) client.channel).readOutbound());
+        assertEquals(1, toSend.refCnt());
+        toSend.release();
+        // Waiting for the response of the bookie
+        assertFalse(result.isDone());
+    }
+
+    /**
+     * Add an entry which fails to be written, and check the client doesn't hold on to it.
+     *
+     * @return the result code of the add
+     */
+    private int addFailedEntry(PerChannelBookieClient client, boolean useV2WireProtocol) throws Exception {
+        ReferenceCounted toSend = newEntry(useV2WireProtocol);
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        client.addEntry(LEDGER_ID, MASTER_KEY, entryId++, toSend, (rc, ledgerId, entryId, addr, ctx) ->
+                result.complete(rc), null, BookieProtocol.FLAG_NONE, false, WriteFlag.NONE);
+        assertEquals(1, toSend.refCnt());
+        toSend.release();
+        return result.get(30, TimeUnit.SECONDS);
+    }
+
+    private void testReleaseAfterWrite(boolean useV2WireProtocol) throws Exception {
+        PerChannelBookieClient client = newClient(useV2WireProtocol);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EmbeddedChannel failingChannel = newFailingChannel();
+        try {
+            // The write listeners are recycled, each of them releases the buffers of its own write
+            for (int i = 0; i < 3; i++) {
+                client.channel = channel;
+                addEntry(client, useV2WireProtocol);
+
+                client.channel = failingChannel;
+                assertNotEquals(BKException.Code.OK, addFailedEntry(client, useV2WireProtocol));
+
+                client.channel = null;
+                assertNotEquals(BKException.Code.OK, addFailedEntry(client, useV2WireProtocol));
+            }
+        } finally {
+            channel.finishAndReleaseAll();
+            failingChannel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testReleaseAfterWriteV2() throws Exception {
+        testReleaseAfterWrite(true);
+    }
+
+    @Test
+    public void testReleaseAfterWriteV3() throws Exception {
+        testReleaseAfterWrite(false);
+    }
+
+    @Test
+    public void testReleaseAfterClosedChannel() throws Exception {
+        for (boolean useV2WireProtocol : new boolean[] {true, false}) {
+            PerChannelBookieClient client = newClient(useV2WireProtocol);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            channel.close();
+            client.channel = channel;
+            // netty fails the write and releases the v2 buffer, the listener releases the v3 one
+            assertNotEquals(BKException.Code.OK, addFailedEntry(client, useV2WireProtocol));
+            assertNotEquals(BKException.Code.OK, addFailedEntry(client, useV2WireProtocol));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ExtensionRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslContextBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the v2 read responses sent from a file region.
+ */
+public class ReadFileRegionResponseTest {
+
+    private static final int ENTRY_OFFSET = 100;
+    private static final int ENTRY_SIZE = 500;
+
+    private File file;
+    private byte[] entry;
+
+    @Before
+    public void setup() throws Exception {
+        file = File.createTempFile("read-file-region", ".log");
+        byte[] content = new byte[ENTRY_OFFSET + ENTRY_SIZE + 50];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(file.toPath(), content);
+        entry = new byte[ENTRY_SIZE];
+        System.arraycopy(content, ENTRY_OFFSET, entry, 0, ENTRY_SIZE);
+    }
+
+    @After
+    public void teardown() {
+        file.delete();
+    }
+
+    private static byte[] transfer(FileRegion region) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (WritableByteChannel target = Channels.newChannel(out)) {
+            while (region.transferred() < region.count()) {
+                region.transferTo(target, region.transferred());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testEncodeFileRegionResponse() throws Exception {
+        FileRegion region = new DefaultFileRegion(file, ENTRY_OFFSET, ENTRY_SIZE);
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new BookieProtoEncoding.ResponseEncoder(ExtensionRegistry.newInstance()));
+        assertTrue(channel.writeOutbound(new BookieProtocol.ReadFileRegionResponse(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, 1L, 2L, region)));
+
+        // The headers, with the frame size covering the entry, then the region itself
+        ByteBuf headers = channel.readOutbound();
+        FileRegion sent = channel.readOutbound();
+        assertNull(channel.readOutbound());
+        assertSame(region, sent);
+        int frameSize = headers.readInt();
+        assertEquals(headers.readableBytes() + ENTRY_SIZE, frameSize);
+
+        byte[] payload = transfer(sent);
+        assertArrayEquals(entry, payload);
+        sent.release();
+
+        // The frame decodes like a response with the entry copied in it
+        ByteBuf frame = Unpooled.wrappedBuffer(headers, Unpooled.wrappedBuffer(payload));
+        BookieProtocol.ReadResponse response = (BookieProtocol.ReadResponse)
+                new BookieProtoEncoding.ResponseEnDeCoderPreV3(ExtensionRegistry.newInstance()).decode(frame);
+        try {
+            assertEquals(BookieProtocol.READENTRY, response.getOpCode());
+            assertEquals(BookieProtocol.EOK, response.getErrorCode());
+            assertEquals(1L, response.getLedgerId());
+            assertEquals(2L, response.getEntryId());
+            assertArrayEquals(entry, ByteBufUtil.getBytes(response.getData()));
+        } finally {
+            response.release();
+            frame.release();
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testReleaseFileRegionResponse() {
+        FileRegion region = new DefaultFileRegion(file, ENTRY_OFFSET, ENTRY_SIZE);
+        BookieProtocol.ReadFileRegionResponse response = new BookieProtocol.ReadFileRegionResponse(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, 1L, 2L, region);
+        // An error sending the response releases the region
+        assertTrue(response.release());
+        assertEquals(0, region.refCnt());
+    }
+
+    @Test
+    public void testCanSendFileRegion() throws Exception {
+        NioSocketChannel socketChannel = new NioSocketChannel();
+        try {
+            assertTrue(ReadEntryProcessor.canSendFileRegion(socketChannel));
+
+            // sendfile would bypass the TLS handler
+            socketChannel.pipeline().addLast(SslContextBuilder.forClient().build()
+                    .newHandler(ByteBufAllocator.DEFAULT));
+            assertFalse(ReadEntryProcessor.canSendFileRegion(socketChannel));
+        } finally {
+            // The channel is not registered to an event loop
+            socketChannel.unsafe().closeForcibly();
+        }
+
+        // Channels that are not sockets copy the entry
+        EmbeddedChannel embeddedChannel = new EmbeddedChannel();
+        assertFalse(ReadEntryProcessor.canSendFileRegion(embeddedChannel));
+        embeddedChannel.finishAndReleaseAll();
+        assertFalse(ReadEntryProcessor.canSendFileRegion(new LocalChannel()));
+    }
+}
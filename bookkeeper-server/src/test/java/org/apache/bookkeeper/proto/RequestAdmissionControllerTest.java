@@ -0,0 +1,232 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.auth.BookKeeperPrincipal;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit test of {@link RequestAdmissionController}.
+ */
+public class RequestAdmissionControllerTest {
+
+    private final OrderedExecutor threadPool = mock(OrderedExecutor.class);
+    private final Timer timer = mock(Timer.class);
+    // The ledger ids and the requests handed to the thread pool, not executed yet
+    private final ArrayDeque<Long> dispatchedLedgerIds = new ArrayDeque<>();
+    private final ArrayDeque<Runnable> dispatchedRequests = new ArrayDeque<>();
+    private final List<Long> executedLedgerIds = new ArrayList<>();
+    private final AtomicInteger rejectedRequests = new AtomicInteger();
+
+    @Before
+    public void setup() {
+        doAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(0);
+            dispatchedLedgerIds.add(ledgerId);
+            dispatchedRequests.add(invocation.getArgument(1));
+            return null;
+        }).when(threadPool).executeOrdered(anyLong(), any(Runnable.class));
+    }
+
+    private RequestAdmissionController newController(int maxInFlightRequests, int maxQueuedRequestsPerClass,
+                                                     String[] classes, String[] mapping) {
+        ServerConfiguration conf = new ServerConfiguration()
+            .setAdmissionControlMaxInFlightRequests(maxInFlightRequests)
+            .setAdmissionControlMaxQueuedRequestsPerClass(maxQueuedRequestsPerClass)
+            .setAdmissionControlClasses(classes)
+            .setAdmissionControlClassMapping(mapping);
+        return new RequestAdmissionController(conf, threadPool, timer, NullStatsLogger.INSTANCE);
+    }
+
+    private static BookieRequestHandler newRequestHandler(String principal) {
+        ChannelPipeline pipeline = mock(ChannelPipeline.class);
+        if (principal != null) {
+            BookieConnectionPeer connectionPeer = mock(BookieConnectionPeer.class);
+            when(connectionPeer.getAuthorizedId()).thenReturn(new BookKeeperPrincipal(principal));
+            when(pipeline.get(AuthHandler.ServerSideHandler.class))
+                    .thenReturn(new AuthHandler.ServerSideHandler(connectionPeer, null));
+        }
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.pipeline()).thenReturn(pipeline);
+        BookieRequestHandler requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+        return requestHandler;
+    }
+
+    private void execute(RequestAdmissionController controller, long ledgerId, int bytes) {
+        controller.execute(newRequestHandler(null), ledgerId, bytes, () -> executedLedgerIds.add(ledgerId),
+                rejectedRequests::incrementAndGet);
+    }
+
+    /**
+     * Execute the requests handed to the thread pool, one at a time, including the ones dispatched once a request
+     * is executed.
+     */
+    private List<Long> runDispatchedRequests() {
+        List<Long> ledgerIds = new ArrayList<>();
+        while (!dispatchedRequests.isEmpty()) {
+            ledgerIds.add(dispatchedLedgerIds.poll());
+            dispatchedRequests.poll().run();
+        }
+        return ledgerIds;
+    }
+
+    private void runNextDispatchedRequest() {
+        dispatchedLedgerIds.poll();
+        dispatchedRequests.poll().run();
+    }
+
+    @Test
+    public void testClassifyByPrincipalAndLedgerRange() {
+        RequestAdmissionController controller = newController(10, 10,
+                new String[] {"tenant:2", "ranged:1"},
+                new String[] {"principal:alice=tenant", "ledgers:300-399=tenant", "ledgers:100-199=ranged"});
+        BookieRequestHandler anonymous = newRequestHandler(null);
+
+        assertEquals(RequestAdmissionController.DEFAULT_CLASS, controller.classify(anonymous, 99).name);
+        assertEquals("ranged", controller.classify(anonymous, 100).name);
+        assertEquals("ranged", controller.classify(anonymous, 199).name);
+        assertEquals(RequestAdmissionController.DEFAULT_CLASS, controller.classify(anonymous, 200).name);
+        assertEquals("tenant", controller.classify(anonymous, 300).name);
+        assertEquals(RequestAdmissionController.DEFAULT_CLASS, controller.classify(anonymous, 1000).name);
+
+        // The principal takes precedence over the ledger range
+        assertEquals("tenant", controller.classify(newRequestHandler("alice"), 150).name);
+        assertEquals("ranged", controller.classify(newRequestHandler("bob"), 150).name);
+        assertEquals(RequestAdmissionController.DEFAULT_CLASS, controller.classify(newRequestHandler("bob"), 0).name);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverlappingLedgerRanges() {
+        newController(10, 10, new String[] {"a:1", "b:1"},
+                new String[] {"ledgers:100-199=a", "ledgers:150-249=b"});
+    }
+
+    @Test
+    public void testWeightedFairQueuing() {
+        RequestAdmissionController controller = newController(1, 10,
+                new String[] {"heavy:3", "light:1"},
+                new String[] {"ledgers:0-99=heavy", "ledgers:100-199=light"});
+
+        // A request in flight, the next ones are queued
+        execute(controller, 1000, 0);
+        assertEquals(1, dispatchedRequests.size());
+        execute(controller, 101, 0);
+        execute(controller, 102, 0);
+        for (long ledgerId = 1; ledgerId <= 6; ledgerId++) {
+            execute(controller, ledgerId, 0);
+        }
+        assertEquals(1, dispatchedRequests.size());
+
+        // Three requests of the heavy class for each request of the light class, whatever the order they were queued
+        assertEquals(Arrays.asList(1000L, 1L, 2L, 3L, 101L, 4L, 5L, 6L, 102L), runDispatchedRequests());
+        assertEquals(Arrays.asList(1000L, 1L, 2L, 3L, 101L, 4L, 5L, 6L, 102L), executedLedgerIds);
+        assertEquals(0, rejectedRequests.get());
+    }
+
+    @Test
+    public void testRateLimitedClassIsRetriedByTimer() throws Exception {
+        int maxBytesPerSecond = 1_000_000;
+        RequestAdmissionController controller = newController(10, 10,
+                new String[] {"limited:1:" + maxBytesPerSecond},
+                new String[] {"ledgers:100-199=limited"});
+
+        // The bytes of the add are charged when it is queued, exceeding the budget of a second by 50ms worth of bytes
+        execute(controller, 100, maxBytesPerSecond + maxBytesPerSecond / 20);
+        execute(controller, 101, 0);
+        assertTrue(dispatchedRequests.isEmpty());
+
+        // Deferred until the budget is refilled, with a single retry scheduled
+        ArgumentCaptor<TimerTask> task = ArgumentCaptor.forClass(TimerTask.class);
+        ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        verify(timer, times(1)).newTimeout(task.capture(), delay.capture(), eq(TimeUnit.NANOSECONDS));
+        assertTrue(delay.getValue() > 0);
+        assertTrue(delay.getValue() <= TimeUnit.MILLISECONDS.toNanos(50));
+
+        // The other classes are not held back
+        execute(controller, 1, 0);
+        assertEquals(Arrays.asList(1L), runDispatchedRequests());
+        verify(threadPool, never()).executeOrdered(eq(100L), any(Runnable.class));
+
+        TimeUnit.NANOSECONDS.sleep(delay.getValue() + TimeUnit.MILLISECONDS.toNanos(10));
+        task.getValue().run(mock(Timeout.class));
+        assertEquals(Arrays.asList(100L, 101L), runDispatchedRequests());
+        assertEquals(Arrays.asList(1L, 100L, 101L), executedLedgerIds);
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull() {
+        RequestAdmissionController controller = newController(1, 2,
+                new String[] {"other:2"},
+                new String[] {"ledgers:100-199=other"});
+
+        execute(controller, 1, 0);
+        execute(controller, 2, 0);
+        execute(controller, 3, 0);
+        assertEquals(0, rejectedRequests.get());
+        execute(controller, 4, 0);
+        assertEquals(1, rejectedRequests.get());
+
+        // The queues are bounded per class
+        execute(controller, 100, 0);
+        assertEquals(1, rejectedRequests.get());
+
+        // The request of the other class is dispatched first, thanks to its weight
+        runNextDispatchedRequest();
+        execute(controller, 5, 0);
+        assertEquals(2, rejectedRequests.get());
+
+        // Room is made as the requests of the class are dispatched
+        runNextDispatchedRequest();
+        execute(controller, 5, 0);
+        assertEquals(2, rejectedRequests.get());
+        assertEquals(Arrays.asList(2L, 3L, 5L), runDispatchedRequests());
+        assertEquals(Arrays.asList(1L, 100L, 2L, 3L, 5L), executedLedgerIds);
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link V2CompletionTable}.
+ */
+public class V2CompletionTableTest {
+
+    private static final int ADD = BookkeeperProtocol.OperationType.ADD_ENTRY_VALUE;
+    private static final int READ = BookkeeperProtocol.OperationType.READ_ENTRY_VALUE;
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * A pending request, with its key.
+     */
+    private static final class Request {
+        final long ledgerId;
+        final long entryId;
+        final int opType;
+        final long startTime;
+
+        Request(long ledgerId, long entryId, int opType, long startTime) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+            this.opType = opType;
+            this.startTime = startTime;
+        }
+
+        List<Long> key() {
+            return Arrays.asList(ledgerId, entryId, (long) opType);
+        }
+    }
+
+    private static Request put(V2CompletionTable<Request> table, long ledgerId, long entryId, int opType,
+                               long startTime) {
+        Request request = new Request(ledgerId, entryId, opType, startTime);
+        table.put(ledgerId, entryId, opType, startTime, request);
+        return request;
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        V2CompletionTable<Request> table = new V2CompletionTable<>();
+        Request add = put(table, 1L, 2L, ADD, 0L);
+        // Same entry, other operation
+        Request read = put(table, 1L, 2L, READ, 0L);
+        Request other = put(table, 2L, 1L, ADD, 0L);
+        assertEquals(3, table.size());
+
+        assertSame(add, table.get(1L, 2L, ADD));
+        assertSame(read, table.get(1L, 2L, READ));
+        assertSame(other, table.get(2L, 1L, ADD));
+        assertNull(table.get(1L, 3L, ADD));
+        assertNull(table.get(2L, 1L, READ));
+        assertEquals(3, table.size());
+
+        assertSame(read, table.remove(1L, 2L, READ));
+        assertNull(table.remove(1L, 2L, READ));
+        assertSame(add, table.get(1L, 2L, ADD));
+        assertSame(add, table.remove(1L, 2L, ADD));
+        assertSame(other, table.remove(2L, 1L, ADD));
+        assertEquals(0, table.size());
+        assertNull(table.get(2L, 1L, ADD));
+    }
+
+    @Test
+    public void testSameKeyAddedTwice() {
+        V2CompletionTable<Request> table = new V2CompletionTable<>();
+        Request first = put(table, 1L, 1L, READ, 0L);
+        Request second = put(table, 1L, 1L, READ, 0L);
+        assertEquals(2, table.size());
+
+        // Each response completes one of them
+        Set<Request> removed = new HashSet<>();
+        removed.add(table.remove(1L, 1L, READ));
+        removed.add(table.remove(1L, 1L, READ));
+        assertEquals(new HashSet<>(Arrays.asList(first, second)), removed);
+        assertNull(table.remove(1L, 1L, READ));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testBackwardShiftDeletion() {
+        // A single small section, so that the probe sequences collide, wrap around and resize
+        V2CompletionTable<Request> table = new V2CompletionTable<>(2, 1);
+        Map<List<Long>, Request> expected = new HashMap<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            // Few keys, with the add and the read of an entry having the same hash
+            long ledgerId = random.nextInt(4);
+            long entryId = random.nextInt(16);
+            int opType = random.nextBoolean() ? ADD : READ;
+            Request request = new Request(ledgerId, entryId, opType, 0L);
+            if (expected.containsKey(request.key())) {
+                assertSame(expected.remove(request.key()), table.remove(ledgerId, entryId, opType));
+            } else {
+                table.put(ledgerId, entryId, opType, 0L, request);
+                expected.put(request.key(), request);
+            }
+            assertEquals(expected.size(), table.size());
+
+            // Every remaining request is still reachable from its hash bucket, after the shifts
+            if (i % 10 == 0) {
+                for (Request r : expected.values()) {
+                    assertSame(r, table.get(r.ledgerId, r.entryId, r.opType));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+        V2CompletionTable<Request> table = new V2CompletionTable<>(16, 2);
+        List<Request> requests = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (long entryId = 0; entryId < 10000; entryId++) {
+                requests.add(put(table, 7L, entryId, ADD, 0L));
+            }
+            assertEquals(requests.size(), table.size());
+            for (Request r : requests) {
+                assertSame(r, table.get(r.ledgerId, r.entryId, r.opType));
+            }
+
+            // Remove in a random order, shrinking the sections back
+            Collections.shuffle(requests, new Random(round));
+            while (!requests.isEmpty()) {
+                Request r = requests.remove(requests.size() - 1);
+                assertSame(r, table.remove(r.ledgerId, r.entryId, r.opType));
+                if (requests.size() % 1000 == 0) {
+                    for (Request remaining : requests) {
+                        assertSame(remaining, table.get(remaining.ledgerId, remaining.entryId, remaining.opType));
+                    }
+                }
+            }
+            assertEquals(0, table.size());
+        }
+    }
+
+    @Test
+    public void testRemoveIfTimedOut() {
+        V2CompletionTable<Request> table = new V2CompletionTable<>(16, 1);
+        List<Request> old = new ArrayList<>();
+        List<Request> recent = new ArrayList<>();
+        for (long entryId = 0; entryId < 100; entryId++) {
+            old.add(put(table, 1L, entryId, ADD, 0L));
+            recent.add(put(table, 2L, entryId, READ, 10 * SECOND));
+        }
+
+        AtomicInteger tested = new AtomicInteger();
+        // Nothing is old enough, the section isn't scanned
+        assertEquals(0, table.removeIf(5 * SECOND, 6 * SECOND, r -> {
+            tested.incrementAndGet();
+            return true;
+        }));
+        assertEquals(0, tested.get());
+        assertEquals(200, table.size());
+
+        // The requests started more than 5s ago time out, while removing shifts the others around
+        assertEquals(100, table.removeIf(12 * SECOND, 5 * SECOND, r -> {
+            tested.incrementAndGet();
+            return 12 * SECOND - r.startTime > 5 * SECOND;
+        }));
+        assertTrue(tested.get() >= 200);
+        assertEquals(100, table.size());
+        for (Request r : old) {
+            assertNull(table.get(r.ledgerId, r.entryId, r.opType));
+        }
+        for (Request r : recent) {
+            assertSame(r, table.get(r.ledgerId, r.entryId, r.opType));
+        }
+
+        // The oldest request is now a recent one, the section isn't scanned again until it may time out
+        tested.set(0);
+        assertEquals(0, table.removeIf(12 * SECOND, 5 * SECOND, r -> {
+            tested.incrementAndGet();
+            return true;
+        }));
+        assertEquals(0, tested.get());
+        assertEquals(100, table.removeIf(16 * SECOND, 5 * SECOND, r -> true));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testRemoveIfOnlyScansSectionsWithOldRequests() {
+        V2CompletionTable<Request> table = new V2CompletionTable<>(256, 16);
+        for (long entryId = 0; entryId < 1000; entryId++) {
+            put(table, 1L, entryId, ADD, 10 * SECOND);
+        }
+        Request oldest = put(table, 3L, 3L, ADD, 0L);
+
+        List<Request> tested = new ArrayList<>();
+        assertEquals(1, table.removeIf(12 * SECOND, 5 * SECOND, r -> {
+            tested.add(r);
+            return r == oldest;
+        }));
+        assertTrue(tested.contains(oldest));
+        // Only the section of the oldest request is scanned
+        assertTrue("Tested " + tested.size() + " requests", tested.size() < 1000);
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    public void testRemoveAll() {
+        V2CompletionTable<Request> table = new V2CompletionTable<>(16, 4);
+        Set<Request> requests = new HashSet<>();
+        for (long entryId = 0; entryId < 500; entryId++) {
+            requests.add(put(table, entryId % 5, entryId, entryId % 2 == 0 ? ADD : READ, entryId));
+        }
+
+        Set<Request> removed = new HashSet<>();
+        table.removeAll(removed::add);
+        assertEquals(requests, removed);
+        assertEquals(0, table.size());
+        assertNull(table.get(0L, 0L, ADD));
+
+        // The table is still usable
+        Request request = put(table, 0L, 0L, ADD, 0L);
+        assertSame(request, table.remove(0L, 0L, ADD));
+    }
+
+    @Test
+    public void testConcurrentPutAndRemove() throws Exception {
+        V2CompletionTable<Request> table = new V2CompletionTable<>();
+        int numThreads = 8;
+        int numRequests = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(numThreads);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                long ledgerId = t;
+                results.add(executor.submit(() -> {
+                    barrier.await();
+                    int errors = 0;
+                    List<Request> pending = new ArrayList<>();
+                    for (long entryId = 0; entryId < numRequests; entryId++) {
+                        pending.add(put(table, ledgerId, entryId, ADD, entryId));
+                        // Complete the requests out of order, keeping a few of them pending
+                        if (pending.size() > 64) {
+                            Request r = pending.remove((int) (entryId % pending.size()));
+                            if (table.remove(r.ledgerId, r.entryId, r.opType) != r) {
+                                errors++;
+                            }
+                        }
+                    }
+                    for (Request r : pending) {
+                        if (table.remove(r.ledgerId, r.entryId, r.opType) != r) {
+                            errors++;
+                        }
+                    }
+                    return errors;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, (int) result.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, table.size());
+    }
+}
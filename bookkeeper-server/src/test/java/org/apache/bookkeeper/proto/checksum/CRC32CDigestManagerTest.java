@@ -0,0 +1,188 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto.checksum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import com.scurrilous.circe.checksum.Crc32cIntChecksum;
+import com.scurrilous.circe.checksum.IntHash;
+import com.scurrilous.circe.checksum.Java8IntHash;
+import com.scurrilous.circe.checksum.JniIntHash;
+import com.scurrilous.circe.crc.Sse42Crc32C;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that the CRC32C digest of a composite buffer, computed over the gathered memory regions of its components,
+ * matches the digest of the same bytes in a single heap buffer.
+ */
+public class CRC32CDigestManagerTest {
+
+    private final Random random = new Random(0);
+    private final List<ByteBuf> buffers = new ArrayList<>();
+    private CRC32CDigestManager digestManager;
+
+    @Before
+    public void setup() {
+        digestManager = new CRC32CDigestManager(1L, false, ByteBufAllocator.DEFAULT);
+    }
+
+    @After
+    public void teardown() {
+        buffers.forEach(ByteBuf::release);
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private ByteBuf directBuffer(byte[] bytes) {
+        ByteBuf buffer = Unpooled.directBuffer(bytes.length);
+        buffer.writeBytes(bytes);
+        return buffer;
+    }
+
+    /**
+     * Build a composite buffer of the given component sizes, direct or heap according to the pattern.
+     */
+    private CompositeByteBuf composite(int[] sizes, boolean[] direct) {
+        CompositeByteBuf composite = Unpooled.compositeBuffer(sizes.length);
+        buffers.add(composite);
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] bytes = randomBytes(sizes[i]);
+            ByteBuf component = direct[i % direct.length] ? directBuffer(bytes) : Unpooled.wrappedBuffer(bytes);
+            composite.addComponent(true, component);
+        }
+        return composite;
+    }
+
+    private static int heapDigest(ByteBuf buffer, int offset, int len) {
+        byte[] bytes = new byte[len];
+        buffer.getBytes(offset, bytes);
+        return Crc32cIntChecksum.resumeChecksum(0, bytes, 0, len);
+    }
+
+    private void assertSameDigest(ByteBuf buffer, int offset, int len) {
+        assertEquals(heapDigest(buffer, offset, len), digestManager.update(0, buffer, offset, len));
+        assertEquals(heapDigest(buffer, offset, len), digestManager.updateComponents(0, buffer, offset, len));
+    }
+
+    @Test
+    public void testMoreComponentsThanGatheredRegions() {
+        int[] sizes = new int[150];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = 1 + random.nextInt(512);
+        }
+        CompositeByteBuf composite = composite(sizes, new boolean[] {true});
+
+        assertSameDigest(composite, 0, composite.readableBytes());
+        // Ranges starting and ending in the middle of components
+        assertSameDigest(composite, 7, composite.readableBytes() - 20);
+        assertSameDigest(composite, sizes[0] + 1, sizes[1] + sizes[2]);
+    }
+
+    @Test
+    public void testMixedHeapAndDirectComponents() {
+        int[] sizes = new int[100];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = 1 + random.nextInt(256);
+        }
+        CompositeByteBuf composite = composite(sizes, new boolean[] {true, true, false, true, false, false});
+
+        assertSameDigest(composite, 0, composite.readableBytes());
+        assertSameDigest(composite, 3, composite.readableBytes() - 3);
+    }
+
+    @Test
+    public void testZeroLengthRegions() {
+        CompositeByteBuf composite = composite(new int[] {0, 32, 0, 0, 17, 0}, new boolean[] {true, false});
+
+        assertSameDigest(composite, 0, composite.readableBytes());
+        assertSameDigest(composite, 0, 0);
+        assertSameDigest(composite, composite.readableBytes(), 0);
+    }
+
+    @Test
+    public void testDigestResumesFromPreviousValue() {
+        CompositeByteBuf composite = composite(new int[] {100, 200, 300}, new boolean[] {true});
+        int len = composite.readableBytes();
+
+        int digest = digestManager.update(0, composite, 0, 150);
+        digest = digestManager.update(digest, composite, 150, len - 150);
+        assertEquals(heapDigest(composite, 0, len), digest);
+    }
+
+    /**
+     * Checksum of 130 regions of random sizes, every fifth one empty, with the given multi regions function.
+     */
+    private void assertMultiRegionsDigest(MultiRegionsChecksum checksum) {
+        int[] lengths = new int[130];
+        long[] addresses = new long[lengths.length];
+        int[] expected = new int[lengths.length + 1];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = i % 5 == 0 ? 0 : random.nextInt(1024);
+            byte[] bytes = randomBytes(lengths[i]);
+            ByteBuf buffer = directBuffer(bytes);
+            buffers.add(buffer);
+            addresses[i] = buffer.memoryAddress();
+            expected[i + 1] = Crc32cIntChecksum.resumeChecksum(expected[i], bytes, 0, bytes.length);
+        }
+
+        assertEquals(expected[lengths.length], checksum.resume(0, addresses, lengths, lengths.length));
+        assertEquals(expected[64], checksum.resume(0, addresses, lengths, 64));
+        assertEquals(expected[1], checksum.resume(0, addresses, lengths, 1));
+        assertEquals(0, checksum.resume(0, addresses, lengths, 0));
+    }
+
+    private interface MultiRegionsChecksum {
+        int resume(int current, long[] addresses, int[] lengths, int count);
+    }
+
+    @Test
+    public void testNativeMultiRegions() {
+        assumeTrue(Sse42Crc32C.isSupported());
+        IntHash hash = new JniIntHash();
+        assertMultiRegionsDigest(hash::resume);
+    }
+
+    @Test
+    public void testJava8MultiRegions() {
+        IntHash hash = new Java8IntHash();
+        assertMultiRegionsDigest(hash::resume);
+    }
+
+    @Test
+    public void testMultiRegions() {
+        assumeTrue(Crc32cIntChecksum.acceptsMemoryAddressBuffer());
+        assertMultiRegionsDigest(Crc32cIntChecksum::resumeChecksum);
+    }
+}
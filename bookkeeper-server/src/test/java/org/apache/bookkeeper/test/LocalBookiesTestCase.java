@@ -0,0 +1,56 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.test;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/**
+ * Base class of the tests run against real bookies: a metadata store and three bookies are started once for all the
+ * test cases of the class.
+ */
+public abstract class LocalBookiesTestCase {
+
+    protected static final int NUM_BOOKIES = 3;
+
+    private static LocalBookKeeper cluster;
+    protected static String metadataServiceUri;
+
+    @BeforeClass
+    public static void startCluster() throws Exception {
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), NUM_BOOKIES, true, conf);
+        cluster.start();
+        metadataServiceUri = conf.getMetadataServiceUri();
+    }
+
+    @AfterClass
+    public static void stopCluster() throws Exception {
+        if (cluster != null) {
+            cluster.close();
+            cluster = null;
+        }
+    }
+}
@@ -27,6 +27,8 @@ extern "C"
 JNIEXPORT jint JNICALL Java_com_scurrilous_circe_crc_Sse42Crc32C_nativeArray
 (JNIEnv *env, jclass, jint current, jbyteArray input, jint index, jint length, jlong config) {
     const char *buf = (const char *) env->GetPrimitiveArrayCritical(input, 0);
+    if (!buf)
+        return 0;
     jint crc = (jint) crc32c((uint32_t) current, buf + index, (size_t) length, (const chunk_config*) config);
     env->ReleasePrimitiveArrayCritical(input, (void*) buf, 0);
     return crc;
@@ -47,12 +49,34 @@ JNIEXPORT jint JNICALL Java_com_scurrilous_circe_crc_Sse42Crc32C_nativeUnsafe
     return (jint) crc32c((uint32_t) current, (const void *) address, (size_t) length, (const chunk_config*) config);
 }
 
+extern "C"
+JNIEXPORT jint JNICALL Java_com_scurrilous_circe_crc_Sse42Crc32C_nativeUnsafeMulti
+(JNIEnv *env, jclass, jint current, jlongArray addresses, jintArray lengths, jint count, jlong config) {
+    const jlong *addrs = (const jlong *) env->GetPrimitiveArrayCritical(addresses, 0);
+    if (!addrs)
+        return 0;
+    const jint *lens = (const jint *) env->GetPrimitiveArrayCritical(lengths, 0);
+    if (!lens) {
+        env->ReleasePrimitiveArrayCritical(addresses, (void*) addrs, JNI_ABORT);
+        return 0;
+    }
+    uint32_t crc = (uint32_t) current;
+    for (jint i = 0; i < count; ++i) {
+        crc = crc32c(crc, (const void *) addrs[i], (size_t) lens[i], (const chunk_config*) config);
+    }
+    env->ReleasePrimitiveArrayCritical(lengths, (void*) lens, JNI_ABORT);
+    env->ReleasePrimitiveArrayCritical(addresses, (void*) addrs, JNI_ABORT);
+    return (jint) crc;
+}
+
 extern "C"
 JNIEXPORT jlong JNICALL Java_com_scurrilous_circe_crc_Sse42Crc32C_allocConfig
   (JNIEnv *env, jclass, jintArray chunkWords) {
     chunk_config* configs = 0;
     jsize len = env->GetArrayLength(chunkWords);
     const jint *arr = (const jint *) env->GetPrimitiveArrayCritical(chunkWords, 0);
+    if (!arr)
+        return 0;
     if (len < 1 || arr[0] < chunk_config::min_words)
         goto fail;
     for (jsize i = 1; i < len; ++i) {
@@ -94,6 +94,21 @@ public class Crc32cIntChecksum {
         return CRC32C_HASH.resume(previousChecksum, payload, offset, len);
     }
 
+    /**
+     * Computes incremental checksum over multiple memory regions, e.g. the components of a composite buffer, in
+     * order. With the native library, all the regions are processed with a single JNI call. Only supported when
+     * {@link #acceptsMemoryAddressBuffer()} is true.
+     *
+     * @param previousChecksum the previously computed checksum
+     * @param addresses the memory addresses of the regions
+     * @param lengths the lengths of the regions
+     * @param count the number of regions
+     * @return the updated checksum
+     */
+    public static int resumeChecksum(int previousChecksum, long[] addresses, int[] lengths, int count) {
+        return CRC32C_HASH.resume(previousChecksum, addresses, lengths, count);
+    }
+
     public static boolean acceptsMemoryAddressBuffer() {
         return CRC32C_HASH.acceptsMemoryAddressBuffer();
     }
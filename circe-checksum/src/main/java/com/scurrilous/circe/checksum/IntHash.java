@@ -31,5 +31,11 @@ public interface IntHash {
 
     int resume(int current, byte[] buffer, int offset, int len);
 
+    /**
+     * Resumes the checksum over multiple memory regions in order, only supported when
+     * {@link #acceptsMemoryAddressBuffer()} is true.
+     */
+    int resume(int current, long[] addresses, int[] lengths, int count);
+
     boolean acceptsMemoryAddressBuffer();
 }
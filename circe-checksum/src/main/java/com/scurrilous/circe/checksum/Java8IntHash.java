@@ -22,6 +22,7 @@ import static com.scurrilous.circe.params.CrcParameters.CRC32C;
 import com.scurrilous.circe.IncrementalIntHash;
 import com.scurrilous.circe.crc.StandardCrcProvider;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 public class Java8IntHash implements IntHash {
 
@@ -57,6 +58,15 @@ public class Java8IntHash implements IntHash {
         return hash.resume(current, buffer, offset, len);
     }
 
+    @Override
+    public int resume(int current, long[] addresses, int[] lengths, int count) {
+        // The regions are hashed one by one through their NIO buffers, see acceptsMemoryAddressBuffer()
+        for (int i = 0; i < count; i++) {
+            current = resume(current, Unpooled.wrappedBuffer(addresses[i], lengths[i], false));
+        }
+        return current;
+    }
+
     @Override
     public boolean acceptsMemoryAddressBuffer() {
         return false;
@@ -92,6 +92,17 @@ public class Java9IntHash implements IntHash {
         return ~current;
     }
 
+    @Override
+    public int resume(int current, long[] addresses, int[] lengths, int count) {
+        // java.util.zip.CRC32C is an intrinsic, so the regions are chained without any JNI call. Resuming from the
+        // checksum of the previous region gives the same result as combining the checksums of the regions.
+        current = ~current;
+        for (int i = 0; i < count; i++) {
+            current = updateDirectByteBuffer(current, addresses[i], 0, lengths[i]);
+        }
+        return ~current;
+    }
+
     @Override
     public boolean acceptsMemoryAddressBuffer() {
         return true;
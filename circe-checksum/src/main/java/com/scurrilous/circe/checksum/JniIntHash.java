@@ -19,12 +19,12 @@
 package com.scurrilous.circe.checksum;
 
 import static com.scurrilous.circe.params.CrcParameters.CRC32C;
-import com.scurrilous.circe.IncrementalIntHash;
+import com.scurrilous.circe.crc.Sse42Crc32C;
 import io.netty.buffer.ByteBuf;
 
 public class JniIntHash implements IntHash {
 
-    private final IncrementalIntHash hash = new Crc32cSse42Provider().getIncrementalInt(CRC32C);
+    private final Sse42Crc32C hash = (Sse42Crc32C) new Crc32cSse42Provider().getIncrementalInt(CRC32C);
 
     @Override
     public int calculate(ByteBuf buffer) {
@@ -57,6 +57,12 @@ public class JniIntHash implements IntHash {
         return hash.resume(current, buffer, offset, len);
     }
 
+    @Override
+    public int resume(int current, long[] addresses, int[] lengths, int count) {
+        // A single JNI call for all the regions
+        return hash.resume(current, addresses, lengths, count);
+    }
+
     @Override
     public boolean acceptsMemoryAddressBuffer() {
         return true;
@@ -106,6 +106,19 @@ public final class Sse42Crc32C extends AbstractIncrementalIntHash implements Inc
         return nativeUnsafe(current, address, length, config);
     }
 
+    /**
+     * Resumes the checksum over multiple memory regions in order, with a single native call.
+     *
+     * @param current the checksum to resume
+     * @param addresses the addresses of the regions
+     * @param lengths the lengths of the regions
+     * @param count the number of regions
+     * @return the updated checksum
+     */
+    public int resume(int current, long[] addresses, int[] lengths, int count) {
+        return nativeUnsafeMulti(current, addresses, lengths, count, config);
+    }
+
     @Override
     protected int initial() {
         return 0;
@@ -124,6 +137,9 @@ public final class Sse42Crc32C extends AbstractIncrementalIntHash implements Inc
 
     private static native int nativeUnsafe(int current, long address, long length, long config);
 
+    private static native int nativeUnsafeMulti(int current, long[] addresses, int[] lengths, int count,
+                                                long config);
+
     private static native long allocConfig(int[] chunkWords);
 
     private static native void freeConfig(long config);
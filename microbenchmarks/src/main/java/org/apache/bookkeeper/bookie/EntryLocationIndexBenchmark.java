@@ -0,0 +1,136 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.EntryLocationIndex;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks comparing the entry location index storages.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class EntryLocationIndexBenchmark {
+
+    private static final int FLUSH_BATCH_SIZE = 10_000;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({EntryLocationIndex.ROCKSDB_STORAGE, EntryLocationIndex.SORTED_RUNS_STORAGE})
+        private String storage;
+
+        @Param({"1000"})
+        private int ledgers;
+
+        @Param({"1000"})
+        private int entriesPerLedger;
+
+        private File baseDir;
+        private EntryLocationIndex index;
+        private long nextLedgerId;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            baseDir = Files.createTempDirectory("entry-location-index").toFile();
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setEntryLocationIndexStorage(storage);
+            index = new EntryLocationIndex(conf, EntryLocationIndex.getStorageFactory(conf),
+                    baseDir.getAbsolutePath(), NullStatsLogger.INSTANCE);
+
+            // Ledgers are written interleaved, as the flush of a write cache would do
+            int entriesPerBatch = Math.max(1, FLUSH_BATCH_SIZE / ledgers);
+            for (int entryId = 0; entryId < entriesPerLedger; entryId += entriesPerBatch) {
+                try (Batch batch = index.newBatch()) {
+                    for (int e = entryId; e < Math.min(entriesPerLedger, entryId + entriesPerBatch); e++) {
+                        for (long ledgerId = 0; ledgerId < ledgers; ledgerId++) {
+                            index.addLocation(batch, ledgerId, e, location(ledgerId, e));
+                        }
+                    }
+                    batch.flush();
+                }
+            }
+            nextLedgerId = ledgers;
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            index.close();
+            FileUtils.deleteDirectory(baseDir);
+        }
+
+        private synchronized long nextLedgerId() {
+            return nextLedgerId++;
+        }
+    }
+
+    private static long location(long ledgerId, long entryId) {
+        return ((ledgerId + 1) << 32) | (entryId * 100 + 1024);
+    }
+
+    @Benchmark
+    public long getLocation(TestState s) throws Exception {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        return s.index.getLocation(r.nextInt(s.ledgers), r.nextInt(s.entriesPerLedger));
+    }
+
+    @Benchmark
+    public long getLastEntryInLedger(TestState s) throws Exception {
+        return s.index.getLastEntryInLedger(ThreadLocalRandom.current().nextInt(s.ledgers));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addLocationBatch(TestState s) throws Exception {
+        long ledgerId = s.nextLedgerId();
+        try (Batch batch = s.index.newBatch()) {
+            for (int entryId = 0; entryId < FLUSH_BATCH_SIZE; entryId++) {
+                s.index.addLocation(batch, ledgerId, entryId, location(ledgerId, entryId));
+            }
+            batch.flush();
+        }
+    }
+}
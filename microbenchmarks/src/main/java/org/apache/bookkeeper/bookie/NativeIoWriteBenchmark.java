@@ -0,0 +1,168 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.nativeio.IoUring;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare sequential O_DIRECT writes done with synchronous pwrite calls to writes submitted to an io_uring instance
+ * with multiple writes in flight, optionally followed by an fsync every syncInterval writes.
+ *
+ * <p>The file is created in the dir parameter, so the same run can target a local disk, e.g.
+ * {@code -p dir=/mnt/ext4}, or tmpfs on kernels where it supports O_DIRECT. The number of bytes written per second
+ * is the throughput multiplied by writeSize.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class NativeIoWriteBenchmark {
+
+    private static final int ALIGNMENT = 4096;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"pwrite", "io_uring"})
+        private String mode;
+
+        @Param({"/tmp"})
+        private String dir;
+
+        @Param({"4096", "65536", "1048576"})
+        private int writeSize;
+
+        // Max number of writes in flight with io_uring
+        @Param({"1", "8", "32"})
+        private int queueDepth;
+
+        // 0 to never fsync
+        @Param({"0", "64"})
+        private int syncInterval;
+
+        @Param({"1024"})
+        private int fileSizeMb;
+
+        private final NativeIO nativeIO = new NativeIOImpl();
+        private File file;
+        private int fd;
+        private IoUring ioUring;
+        private long[] buffers;
+        private CompletableFuture<?>[] inFlight;
+        private long offset = 0;
+        private long writes = 0;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            file = File.createTempFile("native-io-write", ".log", new File(dir));
+            fd = nativeIO.open(file.getAbsolutePath(),
+                    NativeIO.O_CREAT | NativeIO.O_WRONLY | NativeIO.O_DIRECT, 00644);
+
+            int slots = "io_uring".equals(mode) ? queueDepth : 1;
+            buffers = new long[slots];
+            for (int i = 0; i < slots; i++) {
+                buffers[i] = nativeIO.posix_memalign(ALIGNMENT, writeSize);
+            }
+            if ("io_uring".equals(mode)) {
+                ioUring = IoUring.create(nativeIO, queueDepth, "benchmark-io-uring");
+                inFlight = new CompletableFuture<?>[queueDepth];
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            if (ioUring != null) {
+                waitForAll(this);
+                ioUring.close();
+            }
+            nativeIO.close(fd);
+            for (long buffer : buffers) {
+                nativeIO.free(buffer);
+            }
+            file.delete();
+        }
+
+        long nextOffset() {
+            long fileSize = fileSizeMb * 1024L * 1024L;
+            long current = offset;
+            offset = (offset + writeSize) % (fileSize - fileSize % writeSize);
+            return current;
+        }
+    }
+
+    @Benchmark
+    public void write(TestState s) throws Exception {
+        long writeOffset = s.nextOffset();
+        if (s.ioUring == null) {
+            if (s.nativeIO.pwrite(s.fd, s.buffers[0], s.writeSize, writeOffset) != s.writeSize) {
+                throw new IOException("Incomplete write");
+            }
+        } else {
+            int slot = (int) (s.writes % s.queueDepth);
+            if (s.inFlight[slot] != null) {
+                s.inFlight[slot].get();
+            }
+            s.inFlight[slot] = s.ioUring.pwrite(s.fd, s.buffers[slot], s.writeSize, writeOffset);
+        }
+
+        s.writes++;
+
+        if (s.syncInterval > 0 && s.writes % s.syncInterval == 0) {
+            if (s.ioUring == null) {
+                s.nativeIO.fsync(s.fd);
+            } else {
+                waitForAll(s);
+                s.ioUring.fsync(s.fd).get();
+            }
+        }
+    }
+
+    private static void waitForAll(TestState s) throws Exception {
+        for (int i = 0; i < s.inFlight.length; i++) {
+            if (s.inFlight[i] != null) {
+                s.inFlight[i].get();
+                s.inFlight[i] = null;
+            }
+        }
+    }
+}
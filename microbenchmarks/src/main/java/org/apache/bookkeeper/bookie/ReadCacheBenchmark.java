@@ -0,0 +1,171 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.ReadCache;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the hit ratio of the read cache eviction policies, replaying a trace of tailing readers mixed with
+ * catch-up readers.
+ *
+ * <p>Tailing readers read the last entries of a set of ledgers, that get appended over time, while each catch-up
+ * reader scans an old ledger sequentially, with read-ahead on cache misses. The hit ratio is hits / (hits + misses)
+ * of the tailing reads, reported as secondary results.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ReadCacheBenchmark {
+
+    private static final int READ_AHEAD_BATCH_SIZE = 100;
+    private static final long CATCH_UP_LEDGER_ID_OFFSET = 1_000_000;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        // 0 is the FIFO eviction
+        @Param({"0", "0.8"})
+        private double protectedRatio;
+
+        @Param({"64"})
+        private int cacheSizeMb;
+
+        @Param({"1024"})
+        private int entrySize;
+
+        @Param({"100"})
+        private int tailingLedgers;
+
+        // Number of entries at the tail of each ledger that are being read
+        @Param({"200"})
+        private int tailWindow;
+
+        @Param({"4"})
+        private int catchUpReaders;
+
+        // Fraction of the reads done by the catch-up readers
+        @Param({"0.5"})
+        private double catchUpRatio;
+
+        private ReadCache cache;
+        private ByteBuf entry;
+        private final Random random = new Random(1);
+        private long[] tails;
+        private long[] catchUpPositions;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            long cacheSize = cacheSizeMb * 1024L * 1024L;
+            cache = new ReadCache(ByteBufAllocator.DEFAULT, cacheSize, (int) (cacheSize / 16), protectedRatio);
+            entry = Unpooled.directBuffer(entrySize);
+            entry.writerIndex(entrySize);
+            tails = new long[tailingLedgers];
+            for (int i = 0; i < tailingLedgers; i++) {
+                tails[i] = tailWindow;
+            }
+            catchUpPositions = new long[catchUpReaders];
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            cache.close();
+            entry.release();
+        }
+    }
+
+    /**
+     * Hits and misses of the tailing reads.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class TailReadCounters {
+        public long tailHits;
+        public long tailMisses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tailHits = 0;
+            tailMisses = 0;
+        }
+    }
+
+    @Benchmark
+    public void tailingAndCatchUpReads(TestState s, TailReadCounters counters) {
+        Random r = s.random;
+        if (r.nextDouble() < s.catchUpRatio) {
+            int reader = r.nextInt(s.catchUpReaders);
+            long ledgerId = CATCH_UP_LEDGER_ID_OFFSET + reader;
+            long entryId = s.catchUpPositions[reader]++;
+            if (!read(s, ledgerId, entryId)) {
+                for (int i = 1; i <= READ_AHEAD_BATCH_SIZE; i++) {
+                    s.cache.put(ledgerId, entryId + i, s.entry.duplicate());
+                }
+            }
+        } else {
+            int ledger = r.nextInt(s.tailingLedgers);
+            if (r.nextInt(s.tailWindow) == 0) {
+                // New entry appended to the ledger
+                s.tails[ledger]++;
+            }
+            long entryId = s.tails[ledger] - 1 - r.nextInt(s.tailWindow);
+            if (read(s, ledger, entryId)) {
+                counters.tailHits++;
+            } else {
+                counters.tailMisses++;
+            }
+        }
+    }
+
+    private static boolean read(TestState s, long ledgerId, long entryId) {
+        ByteBuf cached = s.cache.get(ledgerId, entryId);
+        if (cached != null) {
+            cached.release();
+            return true;
+        }
+
+        // Read from the entry log and cache it
+        s.cache.put(ledgerId, entryId, s.entry.duplicate(), true);
+        return false;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.EntryLocationIndex;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.WriteCache;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the flush of a write cache into the entry logger and the entry location index, adding the locations
+ * one by one or in bulk, by entry size.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class WriteCacheFlushBenchmark {
+
+    private static final int LEDGERS = 100;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"100", "1024", "16384"})
+        private int entrySize;
+
+        @Param({"64"})
+        private int flushSizeMb;
+
+        @Param({"true", "false"})
+        private boolean bulk;
+
+        @Param({EntryLocationIndex.ROCKSDB_STORAGE, EntryLocationIndex.SORTED_RUNS_STORAGE})
+        private String storage;
+
+        private File baseDir;
+        private DefaultEntryLogger entryLogger;
+        private EntryLocationIndex index;
+        private WriteCache writeCache;
+        private ByteBuf entry;
+        private long nextEntryId = 0;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            baseDir = Files.createTempDirectory("write-cache-flush").toFile();
+            File ledgerDir = new File(baseDir, "ledgers");
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+            conf.setEntryLocationIndexStorage(storage);
+            BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ledgerDir));
+
+            entryLogger = new DefaultEntryLogger(conf);
+            index = new EntryLocationIndex(conf, EntryLocationIndex.getStorageFactory(conf),
+                    baseDir.getAbsolutePath(), NullStatsLogger.INSTANCE);
+            long flushSize = flushSizeMb * 1024L * 1024L;
+            writeCache = new WriteCache(ByteBufAllocator.DEFAULT, flushSize + flushSize / 2);
+            entry = Unpooled.directBuffer(entrySize);
+            entry.writerIndex(entrySize);
+        }
+
+        @Setup(Level.Invocation)
+        public void fillWriteCache() {
+            writeCache.clear();
+            long flushSize = flushSizeMb * 1024L * 1024L;
+            for (long size = 0; size < flushSize; size += entrySize) {
+                long ledgerId = nextEntryId % LEDGERS;
+                long entryId = nextEntryId / LEDGERS;
+                entry.setLong(0, ledgerId);
+                entry.setLong(8, entryId);
+                writeCache.put(ledgerId, entryId, entry);
+                nextEntryId++;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            writeCache.close();
+            entry.release();
+            index.close();
+            entryLogger.close();
+            FileUtils.deleteDirectory(baseDir);
+        }
+    }
+
+    @Benchmark
+    public void flush(TestState s) throws Exception {
+        Batch batch = s.index.newBatch();
+        if (s.bulk) {
+            long[] locations = new long[4 * (int) s.writeCache.count()];
+            int[] count = new int[1];
+            s.writeCache.forEach((ledgerId, entryId, entry) -> {
+                int idx = count[0]++ * 4;
+                locations[idx] = ledgerId;
+                locations[idx + 1] = entryId;
+                locations[idx + 2] = s.entryLogger.addEntry(ledgerId, entry);
+            });
+            s.entryLogger.flush();
+            s.index.addLocations(batch, locations, count[0]);
+        } else {
+            s.writeCache.forEach((ledgerId, entryId, entry) -> {
+                long location = s.entryLogger.addEntry(ledgerId, entry);
+                s.index.addLocation(batch, ledgerId, entryId, location);
+            });
+            s.entryLogger.flush();
+        }
+        batch.flush();
+        batch.close();
+    }
+}
@@ -19,17 +19,23 @@
 package org.apache.bookkeeper.common;
 
 import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.common.util.WorkStealingOrderedExecutor;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
@@ -38,9 +44,14 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
 
 /**
  * Microbenchmarks for different executors providers.
+ *
+ * <p>The ordered benchmark submits batches of keyed tasks, with keys drawn from a Zipfian distribution, to the
+ * ordered executors, and waits for the whole batch to complete. With a high skew a few hot keys get most of the
+ * tasks, which leaves the threads of the other keys idle unless the executor balances the keys.
  */
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 @Threads(16)
@@ -75,9 +86,79 @@ public class OrderedExecutorBenchmark {
         }
     }
 
+    private static final int BATCH_SIZE = 100;
+
+    private static Map<String, Function<Integer, OrderedExecutor>> orderedProviders = ImmutableMap.of(
+            "OrderedExecutor", numThreads -> OrderedExecutor.newBuilder().numThreads(numThreads).build(),
+            "WorkStealingOrderedExecutor",
+            numThreads -> WorkStealingOrderedExecutor.newWorkStealingBuilder().numThreads(numThreads).build());
+
+    /**
+     * State holder of the ordered test.
+     */
+    @State(Scope.Benchmark)
+    public static class OrderedTestState {
+        @Param({"OrderedExecutor", "WorkStealingOrderedExecutor"})
+        private String executorName;
+
+        @Param({"8"})
+        private int numThreads;
+
+        @Param({"1000"})
+        private int numKeys;
+
+        // Exponent of the Zipfian distribution, 0 being uniform
+        @Param({"0", "0.99", "1.5"})
+        private double skew;
+
+        @Param({"1000"})
+        private int taskCpuTokens;
+
+        private OrderedExecutor executor;
+        private long[] keys;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            executor = orderedProviders.get(executorName).apply(numThreads);
+
+            double[] cumulative = new double[numKeys];
+            double sum = 0;
+            for (int i = 0; i < numKeys; i++) {
+                sum += 1.0 / Math.pow(i + 1, skew);
+                cumulative[i] = sum;
+            }
+            // The keys are sampled upfront, to not measure the sampling
+            keys = new long[1 << 16];
+            for (int i = 0; i < keys.length; i++) {
+                int idx = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble(sum));
+                keys[i] = idx >= 0 ? idx : -idx - 1;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            executor.shutdown();
+        }
+    }
+
     @Benchmark
     public void submitAndWait(TestState s) throws Exception {
         s.executor.submit(() -> {
         }).get();
     }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void executeOrderedZipfian(OrderedTestState s) throws Exception {
+        CountDownLatch latch = new CountDownLatch(BATCH_SIZE);
+        int start = ThreadLocalRandom.current().nextInt(s.keys.length);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            s.executor.executeOrdered(s.keys[(start + i) & (s.keys.length - 1)], () -> {
+                Blackhole.consumeCPU(s.taskCpuTokens);
+                latch.countDown();
+            });
+        }
+        latch.await();
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.collections.BusyWait;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the add path of the client in {@link PerChannelBookieClient}, from sending a v2 add request on the
+ * channel to running the callback of its response.
+ *
+ * <p>The requests are written to an embedded channel, and the responses are handed to the client as if they were
+ * read from the bookie. Run it with the GC profiler, {@code -prof gc}, to check the add path doesn't allocate in
+ * steady state: gc.alloc.rate.norm is the number of bytes allocated per add.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ClientAddBenchmark {
+
+    private static final byte[] MASTER_KEY = new byte[BookieProtocol.MASTER_KEY_LENGTH];
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"100", "1024"})
+        private int entrySize;
+
+        private OrderedExecutor executor;
+        private PerChannelBookieClient client;
+        private EmbeddedChannel channel;
+        private WriteCallback callback;
+        private final AtomicLong completedAdds = new AtomicLong();
+        private final long ledgerId = 1L;
+        private long entryId = 0L;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            ClientConfiguration conf = new ClientConfiguration();
+            conf.setUseV2WireProtocol(true);
+            executor = OrderedExecutor.newBuilder().numThreads(1).name("benchmark-client").build();
+            client = new PerChannelBookieClient(conf, executor, null, PooledByteBufAllocator.DEFAULT,
+                    BookieId.parse("127.0.0.1:3181"), NullStatsLogger.INSTANCE, null, null, null, null,
+                    BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER);
+            channel = new EmbeddedChannel();
+            client.channel = channel;
+            callback = (rc, ledgerId, entryId, addr, ctx) -> completedAdds.incrementAndGet();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            channel.finishAndReleaseAll();
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void addEntry(TestState s) throws Exception {
+        long entryId = s.entryId++;
+        ByteBuf entry = PooledByteBufAllocator.DEFAULT.buffer(s.entrySize, s.entrySize);
+        entry.writerIndex(s.entrySize);
+        s.client.addEntry(s.ledgerId, MASTER_KEY, entryId, entry, s.callback, null, BookieProtocol.FLAG_NONE,
+                false, WriteFlag.NONE);
+        entry.release();
+
+        // The bookie reads the request and acknowledges it
+        ReferenceCountUtil.release(s.channel.readOutbound());
+        s.client.channelRead(null, BookieProtocol.AddResponse.create(BookieProtocol.CURRENT_PROTOCOL_VERSION,
+                BookieProtocol.EOK, s.ledgerId, entryId));
+
+        while (s.completedAdds.get() <= entryId) {
+            BusyWait.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the tracking of the pending v2 requests of {@link PerChannelBookieClient} in a
+ * {@link ConcurrentOpenHashMap} keyed by completion key objects, as done before, to the {@link V2CompletionTable}.
+ *
+ * <p>The add/complete benchmark keeps {@code pending} requests outstanding: each operation registers a new request
+ * and completes the oldest one. The timeout check benchmark scans the pending requests, none of which is expired,
+ * like the client does every timeout tick.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class CompletionTableBenchmark {
+
+    private static final int ADD_ENTRY = 1;
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"map", "table"})
+        private String impl;
+
+        @Param({"100", "10000"})
+        private int pending;
+
+        private ConcurrentOpenHashMap<Key, Object> map;
+        private V2CompletionTable<Object> table;
+        private Key[] keys;
+        private final Key lookupKey = new Key();
+        private final Object value = new Object();
+        private final long ledgerId = 1L;
+        private long nextEntryId = 0L;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            map = ConcurrentOpenHashMap.<Key, Object>newBuilder().autoShrink(true).build();
+            table = new V2CompletionTable<>();
+            // The keys are created upfront, the client recycles them
+            keys = new Key[pending + 1];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = new Key();
+            }
+            for (int i = 0; i < pending; i++) {
+                add();
+            }
+        }
+
+        void add() {
+            long entryId = nextEntryId++;
+            if ("map".equals(impl)) {
+                Key key = keys[(int) (entryId % keys.length)];
+                key.reset(ledgerId, entryId, ADD_ENTRY);
+                map.putIfAbsent(key, value);
+            } else {
+                table.put(ledgerId, entryId, ADD_ENTRY, MathUtils.nowInNano(), value);
+            }
+        }
+
+        Object complete(long entryId) {
+            if ("map".equals(impl)) {
+                lookupKey.reset(ledgerId, entryId, ADD_ENTRY);
+                return map.remove(lookupKey);
+            } else {
+                return table.remove(ledgerId, entryId, ADD_ENTRY);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object addAndComplete(TestState s) {
+        long oldestEntryId = s.nextEntryId - s.pending;
+        s.add();
+        return s.complete(oldestEntryId);
+    }
+
+    @Benchmark
+    public int checkTimeouts(TestState s) {
+        if ("map".equals(s.impl)) {
+            return s.map.removeIf((key, value) -> false);
+        } else {
+            return s.table.removeIf(MathUtils.nowInNano(), TIMEOUT_NANOS, value -> false);
+        }
+    }
+
+    /**
+     * Same equality as the v2 completion keys of the client.
+     */
+    private static final class Key {
+        long ledgerId;
+        long entryId;
+        int opType;
+
+        void reset(long ledgerId, long entryId, int opType) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+            this.opType = opType;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) object;
+            return entryId == that.entryId && ledgerId == that.ledgerId && opType == that.opType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ledgerId) * 31 + Long.hashCode(entryId);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.proto.checksum;
+
+import com.scurrilous.circe.checksum.Crc32cIntChecksum;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat.DigestType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the CRC32C digest of an entry made of a composite buffer of direct buffers, computed with a call per
+ * component, to the digest computed with a single call over the gathered components.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+public class CompositeDigestBenchmark {
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+
+        @Param({"1", "4", "32"})
+        public int components;
+
+        @Param({"1024", "65536"})
+        public int entrySize;
+
+        private DigestManager dm;
+        private CompositeByteBuf data;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            final byte[] password = "password".getBytes(StandardCharsets.UTF_8);
+            dm = DigestManager.instantiate(ThreadLocalRandom.current().nextLong(0, Long.MAX_VALUE),
+                    password, DigestType.CRC32C, PooledByteBufAllocator.DEFAULT, true);
+
+            data = ByteBufAllocator.DEFAULT.compositeDirectBuffer(components);
+            int componentSize = entrySize / components;
+            for (int i = 0; i < components; i++) {
+                ByteBuf component = ByteBufAllocator.DEFAULT.directBuffer(componentSize, componentSize);
+                component.writeBytes(DigestManagerBenchmark.randomBytes(componentSize));
+                data.addComponent(true, component);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            data.release();
+        }
+    }
+
+    @Benchmark
+    public int perComponent(TestState s) {
+        int digest = 0;
+        for (int i = 0; i < s.data.numComponents(); i++) {
+            digest = Crc32cIntChecksum.resumeChecksum(digest, s.data.component(i));
+        }
+        return digest;
+    }
+
+    @Benchmark
+    public int gathered(TestState s) {
+        return s.dm.update(0, s.data, s.data.readerIndex(), s.data.readableBytes());
+    }
+}
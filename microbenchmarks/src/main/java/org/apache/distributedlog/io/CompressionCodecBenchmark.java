@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog.io;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the compression codecs of the DistributedLog entries on small JSON-like records.
+ *
+ * <p>The uncompressed and compressed bytes processed per second are reported as secondary results: the first is the
+ * throughput in bytes/s, and the compression ratio of the codec is the first divided by the second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+public class CompressionCodecBenchmark {
+
+    private static final int DICTIONARY_ID = 1;
+    private static final int DICTIONARY_SIZE = 16 * 1024;
+    private static final int NUM_SAMPLES = 2000;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+
+        @Param({"lz4", "zstd-1", "zstd-3", "zstd-dict-3"})
+        public String codecName;
+
+        @Param({"256", "1024", "16384"})
+        public int entrySize;
+
+        private CompressionCodec codec;
+        private ByteBuf uncompressed;
+        private ByteBuf compressed;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random random = new Random(42);
+            if (null == CompressionDictionaries.get(DICTIONARY_ID)) {
+                List<byte[]> samples = new ArrayList<>(NUM_SAMPLES);
+                for (int i = 0; i < NUM_SAMPLES; i++) {
+                    samples.add(entry(random, 1024));
+                }
+                CompressionDictionaries.register(DICTIONARY_ID, CompressionDictionaries.train(samples,
+                        DICTIONARY_SIZE));
+            }
+
+            if ("lz4".equals(codecName)) {
+                codec = CompressionUtils.getCompressionCodec(CompressionCodec.Type.LZ4);
+            } else if (codecName.startsWith("zstd-dict-")) {
+                int level = Integer.parseInt(codecName.substring("zstd-dict-".length()));
+                codec = CompressionUtils.getCompressionCodec(CompressionCodec.Type.ZSTD, level, DICTIONARY_ID);
+            } else {
+                int level = Integer.parseInt(codecName.substring("zstd-".length()));
+                codec = CompressionUtils.getCompressionCodec(CompressionCodec.Type.ZSTD, level,
+                        CompressionDictionaries.NO_DICTIONARY);
+            }
+
+            uncompressed = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+            uncompressed.writeBytes(entry(random, entrySize));
+            compressed = codec.compress(uncompressed, 0);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            uncompressed.release();
+            compressed.release();
+        }
+    }
+
+    /**
+     * Bytes processed by the codec, before and after compression.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ByteCounters {
+        public long uncompressedBytes;
+        public long compressedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            uncompressedBytes = 0;
+            compressedBytes = 0;
+        }
+    }
+
+    @Benchmark
+    public int compress(TestState s, ByteCounters counters) {
+        ByteBuf compressed = s.codec.compress(s.uncompressed, 0);
+        int size = compressed.readableBytes();
+        compressed.release();
+        counters.uncompressedBytes += s.entrySize;
+        counters.compressedBytes += size;
+        return size;
+    }
+
+    @Benchmark
+    public int decompress(TestState s, ByteCounters counters) {
+        ByteBuf uncompressed = s.codec.decompress(s.compressed, s.entrySize);
+        int size = uncompressed.readableBytes();
+        uncompressed.release();
+        counters.uncompressedBytes += size;
+        counters.compressedBytes += s.compressed.readableBytes();
+        return size;
+    }
+
+    /**
+     * An entry made of JSON-like records with the same fields and a few distinct values, as written by applications.
+     */
+    private static byte[] entry(Random random, int size) {
+        String[] events = {"click", "view", "purchase", "signup", "logout"};
+        String[] regions = {"us-east", "us-west", "eu-central", "ap-south"};
+        StringBuilder sb = new StringBuilder(size + 256);
+        while (sb.length() < size) {
+            sb.append("{\"timestamp\":").append(1700000000000L + random.nextInt(1000000))
+                    .append(",\"user\":\"user-").append(random.nextInt(10000))
+                    .append("\",\"event\":\"").append(events[random.nextInt(events.length)])
+                    .append("\",\"region\":\"").append(regions[random.nextInt(regions.length)])
+                    .append("\",\"latencyMs\":").append(random.nextInt(500))
+                    .append(",\"success\":").append(random.nextBoolean())
+                    .append("}\n");
+        }
+        byte[] bytes = new byte[size];
+        System.arraycopy(sb.toString().getBytes(StandardCharsets.UTF_8), 0, bytes, 0, size);
+        return bytes;
+    }
+}
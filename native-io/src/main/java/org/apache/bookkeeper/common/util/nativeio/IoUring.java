@@ -0,0 +1,242 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.common.util.nativeio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous pread, pwrite and fsync on top of an io_uring instance.
+ *
+ * <p>Operations are submitted by the calling thread and completed by a dedicated thread, so that multiple I/Os
+ * can be in flight on the same disk. The number of operations in flight is bounded by the size of the ring:
+ * submitting blocks while the ring is full.
+ *
+ * <p>The memory passed to an operation must stay valid until its future is completed.
+ */
+public class IoUring implements Closeable {
+
+    private static final long WAKEUP = -1L;
+    private static final int MAX_COMPLETIONS_PER_WAIT = 64;
+    private static final long WAKEUP_PERMIT_TIMEOUT_MS = 100L;
+
+    private final NativeIO nativeIO;
+    private final long ring;
+    private final int entries;
+    private final Semaphore permits;
+    private final CompletableFuture<Long>[] slots;
+    private final int[] freeSlots;
+    private final Thread completionThread;
+
+    // Guarded by this
+    private int freeSlotsCount;
+    private boolean closed = false;
+    private boolean released = false;
+
+    /**
+     * Create a ring with the given queue depth.
+     *
+     * @throws NativeIOException if io_uring is not supported by the platform or the kernel
+     */
+    public static IoUring create(NativeIO nativeIO, int entries, String name) throws NativeIOException {
+        long ring = nativeIO.io_uring_setup(entries);
+        return new IoUring(nativeIO, ring, entries, name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private IoUring(NativeIO nativeIO, long ring, int entries, String name) {
+        this.nativeIO = nativeIO;
+        this.ring = ring;
+        this.entries = entries;
+        this.permits = new Semaphore(entries);
+        this.slots = new CompletableFuture[entries];
+        this.freeSlots = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            freeSlots[i] = entries - 1 - i;
+        }
+        this.freeSlotsCount = entries;
+
+        this.completionThread = new Thread(this::processCompletions, name);
+        this.completionThread.setDaemon(true);
+        this.completionThread.start();
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Write len bytes at pointer to the file at offset.
+     *
+     * @return a future completed with the number of bytes written
+     */
+    public CompletableFuture<Long> pwrite(int fd, long pointer, int len, long offset) {
+        return submit(NativeIO.IO_URING_OP_WRITE, fd, pointer, len, offset);
+    }
+
+    /**
+     * Read up to len bytes at offset of the file to pointer.
+     *
+     * @return a future completed with the number of bytes read
+     */
+    public CompletableFuture<Long> pread(int fd, long pointer, int len, long offset) {
+        return submit(NativeIO.IO_URING_OP_READ, fd, pointer, len, offset);
+    }
+
+    /**
+     * Sync the file. It is not ordered with the writes in flight: the writes to be made durable must be completed
+     * before the fsync is submitted.
+     */
+    public CompletableFuture<Long> fsync(int fd) {
+        return submit(NativeIO.IO_URING_OP_FSYNC, fd, 0L, 0, 0L);
+    }
+
+    private CompletableFuture<Long> submit(int op, int fd, long pointer, int len, long offset) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        try {
+            permits.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new IOException("Interrupted while waiting for the io_uring queue", ie));
+            return future;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                permits.release();
+                future.completeExceptionally(new IOException("io_uring is closed"));
+                return future;
+            }
+
+            int slot = freeSlots[--freeSlotsCount];
+            slots[slot] = future;
+            try {
+                nativeIO.io_uring_submit(ring, op, fd, pointer, len, offset, slot);
+            } catch (NativeIOException ne) {
+                slots[slot] = null;
+                freeSlots[freeSlotsCount++] = slot;
+                permits.release();
+                future.completeExceptionally(ne);
+            }
+        }
+        return future;
+    }
+
+    private void processCompletions() {
+        long[] userData = new long[MAX_COMPLETIONS_PER_WAIT];
+        long[] results = new long[MAX_COMPLETIONS_PER_WAIT];
+
+        while (true) {
+            int count;
+            try {
+                count = nativeIO.io_uring_wait(ring, userData, results);
+            } catch (NativeIOException ne) {
+                failInFlight(ne);
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (userData[i] == WAKEUP) {
+                    permits.release();
+                    continue;
+                }
+
+                int slot = (int) userData[i];
+                CompletableFuture<Long> future;
+                synchronized (this) {
+                    future = slots[slot];
+                    slots[slot] = null;
+                    freeSlots[freeSlotsCount++] = slot;
+                }
+                permits.release();
+
+                long res = results[i];
+                if (res < 0) {
+                    future.completeExceptionally(new NativeIOException("io_uring operation failed", (int) -res));
+                } else {
+                    future.complete(res);
+                }
+            }
+
+            synchronized (this) {
+                if (closed && freeSlotsCount == entries) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void failInFlight(NativeIOException ne) {
+        synchronized (this) {
+            closed = true;
+            for (int slot = 0; slot < slots.length; slot++) {
+                if (slots[slot] != null) {
+                    slots[slot].completeExceptionally(ne);
+                    slots[slot] = null;
+                    freeSlots[freeSlotsCount++] = slot;
+                    permits.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for the operations in flight to complete and release the ring.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+            closed = true;
+        }
+
+        try {
+            // Wake up the completion thread, which exits once there is nothing left in flight. The NOP takes a
+            // place in the ring like any other operation, so wait for one unless the thread exits on its own.
+            while (completionThread.isAlive()) {
+                if (permits.tryAcquire(WAKEUP_PERMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    submitWakeup();
+                    break;
+                }
+            }
+            completionThread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing io_uring", ie);
+        }
+        nativeIO.io_uring_close(ring);
+    }
+
+    private synchronized void submitWakeup() throws NativeIOException {
+        try {
+            nativeIO.io_uring_submit(ring, NativeIO.IO_URING_OP_NOP, -1, 0L, 0, 0L, WAKEUP);
+        } catch (NativeIOException ne) {
+            permits.release();
+            throw ne;
+        }
+    }
+}
@@ -37,6 +37,12 @@ public interface NativeIO {
 
     int FALLOC_FL_ZERO_RANGE = 0x10;
 
+    // io_uring operations, mapped to the kernel opcodes in JNI code
+    int IO_URING_OP_NOP = 0;
+    int IO_URING_OP_READ = 1;
+    int IO_URING_OP_WRITE = 2;
+    int IO_URING_OP_FSYNC = 3;
+
     int open(String pathname, int flags, int mode) throws NativeIOException;
 
     int fsync(int fd) throws NativeIOException;
@@ -64,4 +70,40 @@ public interface NativeIO {
     long pread(int fd, long pointer, long size, long offset) throws NativeIOException;
 
     int close(int fd) throws NativeIOException;
+
+    /**
+     * Create an io_uring instance. io_uring is linux-only and needs a recent kernel, so callers must handle the
+     * possibility that it does not exist. Kernels without the read and write operations (before 5.6) are rejected.
+     *
+     * @return a handle to the ring, to pass to the other io_uring methods
+     */
+    default long io_uring_setup(int entries) throws NativeIOException {
+        throw new NativeIOException("io_uring is not available");
+    }
+
+    /**
+     * Queue an operation in the ring and submit it to the kernel. A ring must not be submitted to by multiple
+     * threads at the same time. If it throws, the operation was not queued and no completion will be posted for it.
+     *
+     * @param op one of the IO_URING_OP_* constants
+     * @return the number of operations submitted, always 1
+     */
+    default int io_uring_submit(long ring, int op, int fd, long pointer, int len, long offset, long userData)
+            throws NativeIOException {
+        throw new NativeIOException("io_uring is not available");
+    }
+
+    /**
+     * Wait for at least one completion, unless interrupted, and reap up to userData.length completions. The result
+     * of an operation is the return value of the equivalent syscall, or -errno on failure.
+     *
+     * @return the number of completions reaped
+     */
+    default int io_uring_wait(long ring, long[] userData, long[] results) throws NativeIOException {
+        throw new NativeIOException("io_uring is not available");
+    }
+
+    default void io_uring_close(long ring) throws NativeIOException {
+        throw new NativeIOException("io_uring is not available");
+    }
 }
@@ -74,4 +74,25 @@ public class NativeIOImpl implements NativeIO {
     public long pread(int fd, long pointer, long size, long offset) throws NativeIOException {
         return NativeIOJni.pread(fd, pointer, size, offset);
     }
+
+    @Override
+    public long io_uring_setup(int entries) throws NativeIOException {
+        return NativeIOJni.io_uring_setup(entries);
+    }
+
+    @Override
+    public int io_uring_submit(long ring, int op, int fd, long pointer, int len, long offset, long userData)
+            throws NativeIOException {
+        return NativeIOJni.io_uring_submit(ring, op, fd, pointer, len, offset, userData);
+    }
+
+    @Override
+    public int io_uring_wait(long ring, long[] userData, long[] results) throws NativeIOException {
+        return NativeIOJni.io_uring_wait(ring, userData, results);
+    }
+
+    @Override
+    public void io_uring_close(long ring) throws NativeIOException {
+        NativeIOJni.io_uring_close(ring);
+    }
 }
@@ -48,6 +48,15 @@ class NativeIOJni {
 
     static native int close(int fd) throws NativeIOException;
 
+    static native long io_uring_setup(int entries) throws NativeIOException;
+
+    static native int io_uring_submit(long ring, int op, int fd, long pointer, int len, long offset, long userData)
+            throws NativeIOException;
+
+    static native int io_uring_wait(long ring, long[] userData, long[] results) throws NativeIOException;
+
+    static native void io_uring_close(long ring) throws NativeIOException;
+
     static {
         try {
             if (SystemUtils.IS_OS_MAC_OSX) {
@@ -28,6 +28,19 @@
 
 #include <org_apache_bookkeeper_common_util_nativeio_NativeIOJni.h>
 
+#if defined(__linux__) && defined(__has_include)
+#if __has_include(<linux/io_uring.h>)
+#include <sys/mman.h>
+#include <sys/syscall.h>
+#include <linux/io_uring.h>
+// IO_URING_OP_SUPPORTED comes with the opcode probe and the READ/WRITE opcodes, in the 5.6 headers
+#if defined(__NR_io_uring_setup) && defined(__NR_io_uring_enter) && defined(__NR_io_uring_register) \
+    && defined(IO_URING_OP_SUPPORTED)
+#define HAVE_IO_URING 1
+#endif
+#endif
+#endif
+
 #ifdef _WIN32
 
 #define fsync(fd) fflush(fd)
@@ -311,3 +324,280 @@ JNIEXPORT void JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJ
      free((const void*) pointer);
 }
 
+#ifdef HAVE_IO_URING
+
+/*
+ * An io_uring instance, used without liburing through the raw syscalls.
+ * The submission queue must be accessed by a single thread at a time, and the
+ * completion queue by a single thread at a time.
+ */
+struct native_uring {
+    int ring_fd;
+    unsigned sq_entries;
+
+    void* sq_ptr;
+    size_t sq_size;
+    unsigned* sq_head;
+    unsigned* sq_tail;
+    unsigned* sq_ring_mask;
+    unsigned* sq_array;
+    struct io_uring_sqe* sqes;
+    size_t sqes_size;
+
+    void* cq_ptr;
+    size_t cq_size;
+    unsigned* cq_head;
+    unsigned* cq_tail;
+    unsigned* cq_ring_mask;
+    struct io_uring_cqe* cqes;
+};
+
+static void uring_release(struct native_uring* ring) {
+    if (ring->sqes != NULL && ring->sqes != MAP_FAILED) {
+        munmap(ring->sqes, ring->sqes_size);
+    }
+    if (ring->cq_ptr != NULL && ring->cq_ptr != MAP_FAILED) {
+        munmap(ring->cq_ptr, ring->cq_size);
+    }
+    if (ring->sq_ptr != NULL && ring->sq_ptr != MAP_FAILED) {
+        munmap(ring->sq_ptr, ring->sq_size);
+    }
+    close(ring->ring_fd);
+    free(ring);
+}
+
+static int uring_enter(int ring_fd, unsigned to_submit, unsigned min_complete, unsigned flags) {
+    return (int) syscall(__NR_io_uring_enter, ring_fd, to_submit, min_complete, flags, NULL, 0);
+}
+
+/*
+ * Check that the kernel supports the opcodes used by IoUring. io_uring_setup succeeds on kernels
+ * older than 5.6, which lack IORING_OP_READ and IORING_OP_WRITE and the probe itself.
+ * Returns 0 if all the opcodes are supported, or sets errno and returns -1.
+ */
+static int uring_probe_opcodes(int ring_fd) {
+    static const int opcodes[] = { IORING_OP_NOP, IORING_OP_READ, IORING_OP_WRITE, IORING_OP_FSYNC };
+    const unsigned max_ops = 256;
+    struct io_uring_probe* probe = calloc(1, sizeof(struct io_uring_probe)
+                                             + max_ops * sizeof(struct io_uring_probe_op));
+    if (probe == NULL) {
+        errno = ENOMEM;
+        return -1;
+    }
+    int res = (int) syscall(__NR_io_uring_register, ring_fd, IORING_REGISTER_PROBE, probe, max_ops);
+    if (res == 0) {
+        for (size_t i = 0; i < sizeof(opcodes) / sizeof(opcodes[0]); i++) {
+            int op = opcodes[i];
+            if (op > probe->last_op || !(probe->ops[op].flags & IO_URING_OP_SUPPORTED)) {
+                errno = EOPNOTSUPP;
+                res = -1;
+                break;
+            }
+        }
+    }
+    int saved_errno = errno;
+    free(probe);
+    errno = saved_errno;
+    return res;
+}
+
+#endif
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_setup
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1setup
+  (JNIEnv * env, jclass clazz, jint entries) {
+#ifdef HAVE_IO_URING
+    struct io_uring_params params;
+    memset(&params, 0, sizeof(params));
+
+    int ring_fd = (int) syscall(__NR_io_uring_setup, entries, &params);
+    if (ring_fd < 0) {
+        throwExceptionWithErrno(env, "Failed to setup io_uring");
+        return 0;
+    }
+
+    if (uring_probe_opcodes(ring_fd) < 0) {
+        int saved_errno = errno;
+        close(ring_fd);
+        errno = saved_errno;
+        throwExceptionWithErrno(env, "io_uring does not support the read, write and fsync operations");
+        return 0;
+    }
+
+    struct native_uring* ring = calloc(1, sizeof(struct native_uring));
+    if (ring == NULL) {
+        close(ring_fd);
+        errno = ENOMEM;
+        throwExceptionWithErrno(env, "Failed to setup io_uring");
+        return 0;
+    }
+    ring->ring_fd = ring_fd;
+    ring->sq_entries = params.sq_entries;
+
+    ring->sq_size = params.sq_off.array + params.sq_entries * sizeof(unsigned);
+    ring->sq_ptr = mmap(NULL, ring->sq_size, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE,
+                        ring_fd, IORING_OFF_SQ_RING);
+    ring->cq_size = params.cq_off.cqes + params.cq_entries * sizeof(struct io_uring_cqe);
+    ring->cq_ptr = mmap(NULL, ring->cq_size, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE,
+                        ring_fd, IORING_OFF_CQ_RING);
+    ring->sqes_size = params.sq_entries * sizeof(struct io_uring_sqe);
+    ring->sqes = mmap(NULL, ring->sqes_size, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE,
+                      ring_fd, IORING_OFF_SQES);
+    if (ring->sq_ptr == MAP_FAILED || ring->cq_ptr == MAP_FAILED || ring->sqes == MAP_FAILED) {
+        int saved_errno = errno;
+        uring_release(ring);
+        errno = saved_errno;
+        throwExceptionWithErrno(env, "Failed to map io_uring queues");
+        return 0;
+    }
+
+    ring->sq_head = (unsigned*) ((char*) ring->sq_ptr + params.sq_off.head);
+    ring->sq_tail = (unsigned*) ((char*) ring->sq_ptr + params.sq_off.tail);
+    ring->sq_ring_mask = (unsigned*) ((char*) ring->sq_ptr + params.sq_off.ring_mask);
+    ring->sq_array = (unsigned*) ((char*) ring->sq_ptr + params.sq_off.array);
+    ring->cq_head = (unsigned*) ((char*) ring->cq_ptr + params.cq_off.head);
+    ring->cq_tail = (unsigned*) ((char*) ring->cq_ptr + params.cq_off.tail);
+    ring->cq_ring_mask = (unsigned*) ((char*) ring->cq_ptr + params.cq_off.ring_mask);
+    ring->cqes = (struct io_uring_cqe*) ((char*) ring->cq_ptr + params.cq_off.cqes);
+
+    return (jlong) ring;
+#else
+    throwException(env, "io_uring is not available");
+    return 0;
+#endif
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_submit
+ * Signature: (JIIJIJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1submit
+  (JNIEnv * env, jclass clazz, jlong handle, jint javaOpcode, jint fd, jlong pointer, jint len, jlong offset,
+   jlong userData) {
+#ifdef HAVE_IO_URING
+    struct native_uring* ring = (struct native_uring*) handle;
+
+    int opcode;
+    switch (javaOpcode) {
+    case 0:
+        opcode = IORING_OP_NOP;
+        break;
+    case 1:
+        opcode = IORING_OP_READ;
+        break;
+    case 2:
+        opcode = IORING_OP_WRITE;
+        break;
+    case 3:
+        opcode = IORING_OP_FSYNC;
+        break;
+    default:
+        throwException(env, "Unknown io_uring operation");
+        return -1;
+    }
+
+    unsigned tail = *ring->sq_tail;
+    unsigned head = __atomic_load_n(ring->sq_head, __ATOMIC_ACQUIRE);
+    if (tail - head >= ring->sq_entries) {
+        errno = EBUSY;
+        throwExceptionWithErrno(env, "io_uring submission queue is full");
+        return -1;
+    }
+
+    unsigned index = tail & *ring->sq_ring_mask;
+    struct io_uring_sqe* sqe = &ring->sqes[index];
+    memset(sqe, 0, sizeof(*sqe));
+    sqe->opcode = opcode;
+    sqe->fd = fd;
+    sqe->addr = (unsigned long) pointer;
+    sqe->len = len;
+    sqe->off = offset;
+    sqe->user_data = userData;
+    ring->sq_array[index] = index;
+    __atomic_store_n(ring->sq_tail, tail + 1, __ATOMIC_RELEASE);
+
+    int res;
+    do {
+        res = uring_enter(ring->ring_fd, 1, 0, 0);
+    } while (res < 0 && errno == EINTR);
+
+    // Without SQPOLL the kernel only consumes the queue in io_uring_enter, so the head is stable here. Whatever
+    // the result, the entry was submitted if and only if the kernel moved the head past it: its completion will
+    // then be posted. Otherwise, on a failure or a short submit, take the entry back out of the queue so that
+    // the kernel never reads it after the caller released its buffer.
+    head = __atomic_load_n(ring->sq_head, __ATOMIC_ACQUIRE);
+    if (head != tail + 1) {
+        int saved_errno = res < 0 ? errno : EAGAIN;
+        __atomic_store_n(ring->sq_tail, tail, __ATOMIC_RELEASE);
+        errno = saved_errno;
+        throwExceptionWithErrno(env, "Failed to submit to io_uring");
+        return -1;
+    }
+    return 1;
+#else
+    throwException(env, "io_uring is not available");
+    return -1;
+#endif
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_wait
+ * Signature: (J[J[J)I
+ */
+JNIEXPORT jint JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1wait
+  (JNIEnv * env, jclass clazz, jlong handle, jlongArray userDataArray, jlongArray resultArray) {
+#ifdef HAVE_IO_URING
+    struct native_uring* ring = (struct native_uring*) handle;
+
+    unsigned head = *ring->cq_head;
+    if (head == __atomic_load_n(ring->cq_tail, __ATOMIC_ACQUIRE)) {
+        int res = uring_enter(ring->ring_fd, 0, 1, IORING_ENTER_GETEVENTS);
+        if (res < 0 && errno != EINTR) {
+            throwExceptionWithErrno(env, "Failed to wait for io_uring completions");
+            return -1;
+        }
+    }
+
+    jsize max = (*env)->GetArrayLength(env, userDataArray);
+    jlong* userData = (*env)->GetLongArrayElements(env, userDataArray, NULL);
+    jlong* results = (*env)->GetLongArrayElements(env, resultArray, NULL);
+
+    int count = 0;
+    unsigned tail = __atomic_load_n(ring->cq_tail, __ATOMIC_ACQUIRE);
+    while (head != tail && count < max) {
+        struct io_uring_cqe* cqe = &ring->cqes[head & *ring->cq_ring_mask];
+        userData[count] = (jlong) cqe->user_data;
+        results[count] = cqe->res;
+        count++;
+        head++;
+    }
+    __atomic_store_n(ring->cq_head, head, __ATOMIC_RELEASE);
+
+    (*env)->ReleaseLongArrayElements(env, resultArray, results, 0);
+    (*env)->ReleaseLongArrayElements(env, userDataArray, userData, 0);
+    return count;
+#else
+    throwException(env, "io_uring is not available");
+    return -1;
+#endif
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_close
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1close
+  (JNIEnv * env, jclass clazz, jlong handle) {
+#ifdef HAVE_IO_URING
+    uring_release((struct native_uring*) handle);
+#else
+    throwException(env, "io_uring is not available");
+#endif
+}
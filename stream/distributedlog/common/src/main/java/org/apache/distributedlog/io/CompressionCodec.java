@@ -30,7 +30,8 @@ public interface CompressionCodec {
 
         UNKNOWN(-0x1),
         NONE(0x0),
-        LZ4(0x1);
+        LZ4(0x1),
+        ZSTD(0x2);
 
         private int code;
 
@@ -48,6 +49,8 @@ public interface CompressionCodec {
                     return NONE;
                 case 0x1:
                     return LZ4;
+                case 0x2:
+                    return ZSTD;
                 default:
                     return UNKNOWN;
             }
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.github.luben.zstd.Zstd;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the compression dictionaries, by id.
+ *
+ * <p>The id of the dictionary used to compress an entry is recorded in its envelope header, so the readers must
+ * register the same dictionaries as the writers. A dictionary is never replaced: a new version of the dictionary of
+ * a log stream is registered under a new id, and the writers of the stream are configured with the new id, while
+ * the entries written with the previous versions remain readable.
+ *
+ * <p>The registry is global to the process and held in memory only: the dictionaries are neither persisted nor
+ * distributed. Each process, writer or reader, must register the dictionaries out of band, e.g. at startup from its
+ * own configuration, before using them. A reader missing the dictionary of an entry fails to read it with an
+ * {@link java.io.IOException}.
+ */
+public final class CompressionDictionaries {
+
+    public static final int NO_DICTIONARY = 0;
+    public static final int MAX_DICTIONARY_ID = 0xffff;
+
+    private static final ConcurrentMap<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+    private CompressionDictionaries() {}
+
+    /**
+     * Register a dictionary.
+     *
+     * @param dictionaryId id of the dictionary, between 1 and {@link #MAX_DICTIONARY_ID}
+     * @param dictionary the dictionary
+     * @throws IllegalArgumentException if another dictionary is already registered with the same id
+     */
+    public static void register(int dictionaryId, byte[] dictionary) {
+        checkArgument(dictionaryId > NO_DICTIONARY && dictionaryId <= MAX_DICTIONARY_ID,
+                "Invalid dictionary id : %s", dictionaryId);
+        checkNotNull(dictionary);
+        byte[] existing = dictionaries.putIfAbsent(dictionaryId, dictionary.clone());
+        checkArgument(null == existing || Arrays.equals(existing, dictionary),
+                "Another dictionary is already registered with id %s", dictionaryId);
+    }
+
+    /**
+     * Get the dictionary registered with the given id.
+     *
+     * @param dictionaryId id of the dictionary
+     * @return the dictionary, or null if none is registered with this id
+     */
+    public static byte[] get(int dictionaryId) {
+        return dictionaries.get(dictionaryId);
+    }
+
+    /**
+     * Train a zstd dictionary from sample records.
+     *
+     * @param samples representative records of the log stream
+     * @param maxDictionarySize max size of the dictionary, usually around 100 times smaller than the samples
+     * @return the dictionary
+     */
+    public static byte[] train(List<byte[]> samples, int maxDictionarySize) {
+        checkArgument(!samples.isEmpty(), "No samples to train the dictionary");
+        byte[] buffer = new byte[maxDictionarySize];
+        long size = Zstd.trainFromBuffer(samples.toArray(new byte[0][]), buffer);
+        if (Zstd.isError(size)) {
+            throw new IllegalStateException("Failed to train the dictionary : " + Zstd.getErrorName(size));
+        }
+        return Arrays.copyOf(buffer, (int) size);
+    }
+}
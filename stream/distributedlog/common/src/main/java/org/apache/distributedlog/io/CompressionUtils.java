@@ -17,6 +17,10 @@
  */
 package org.apache.distributedlog.io;
 
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Utils for compression related operations.
  */
@@ -24,6 +28,10 @@ public class CompressionUtils {
 
     public static final String LZ4 = "lz4";
     public static final String NONE = "none";
+    public static final String ZSTD = "zstd";
+
+    // zstd codecs by level and dictionary id
+    private static final ConcurrentMap<Long, ZstdCompressionCodec> zstdCodecs = new ConcurrentHashMap<>();
 
     /**
      * Get a cached compression codec instance for the specified type.
@@ -33,11 +41,69 @@ public class CompressionUtils {
     public static CompressionCodec getCompressionCodec(CompressionCodec.Type type) {
         if (type == CompressionCodec.Type.LZ4) {
             return LZ4CompressionCodec.of();
+        } else if (type == CompressionCodec.Type.ZSTD) {
+            return ZstdCompressionCodec.of();
         }
         // No Compression
         return IdentityCompressionCodec.of();
     }
 
+    /**
+     * Get a cached compression codec instance for the specified type, level and dictionary.
+     *
+     * <p>The level and the dictionary are only used by the zstd codec. The level doesn't matter for decompression.
+     *
+     * @param type compression codec type
+     * @param level compression level
+     * @param dictionaryId id of the dictionary in {@link CompressionDictionaries},
+     *                     or {@link CompressionDictionaries#NO_DICTIONARY}
+     * @return compression codec instance
+     * @throws IllegalArgumentException if no dictionary is registered with the dictionary id
+     */
+    public static CompressionCodec getCompressionCodec(CompressionCodec.Type type, int level, int dictionaryId) {
+        if (type != CompressionCodec.Type.ZSTD) {
+            return getCompressionCodec(type);
+        }
+        if (dictionaryId == CompressionDictionaries.NO_DICTIONARY && level == ZstdCompressionCodec.DEFAULT_LEVEL) {
+            return ZstdCompressionCodec.of();
+        }
+        long key = ((long) dictionaryId << 32) | (level & 0xffffffffL);
+        ZstdCompressionCodec codec = zstdCodecs.get(key);
+        if (null == codec) {
+            byte[] dictionary = null;
+            if (dictionaryId != CompressionDictionaries.NO_DICTIONARY) {
+                dictionary = CompressionDictionaries.get(dictionaryId);
+                if (null == dictionary) {
+                    throw new IllegalArgumentException("Unknown compression dictionary : " + dictionaryId);
+                }
+            }
+            codec = ZstdCompressionCodec.of(level, dictionaryId, dictionary);
+            ZstdCompressionCodec existing = zstdCodecs.putIfAbsent(key, codec);
+            if (null != existing) {
+                codec = existing;
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Get a cached codec instance to decompress the data compressed with the specified type and dictionary.
+     *
+     * @param type compression codec type
+     * @param dictionaryId id of the dictionary in {@link CompressionDictionaries},
+     *                     or {@link CompressionDictionaries#NO_DICTIONARY}
+     * @return compression codec instance
+     * @throws IOException if no dictionary is registered with the dictionary id
+     */
+    public static CompressionCodec getDecompressionCodec(CompressionCodec.Type type, int dictionaryId)
+            throws IOException {
+        try {
+            return getCompressionCodec(type, ZstdCompressionCodec.DEFAULT_LEVEL, dictionaryId);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Compression type value from string.
      * @param compressionString compression codec presentation in string
@@ -48,6 +114,8 @@ public class CompressionUtils {
             return CompressionCodec.Type.LZ4;
         } else if (compressionString.equals(NONE)) {
             return CompressionCodec.Type.NONE;
+        } else if (compressionString.equals(ZSTD)) {
+            return CompressionCodec.Type.ZSTD;
         } else {
             return CompressionCodec.Type.UNKNOWN;
         }
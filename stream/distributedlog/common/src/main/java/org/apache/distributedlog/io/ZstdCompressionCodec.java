@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.ByteBuffer;
+
+/**
+ * A zstd compression codec implementation for {@link CompressionCodec}, optionally using a trained dictionary.
+ *
+ * <p>The data is compressed from and decompressed into pooled direct buffers. Heap or composite buffers are copied
+ * to a direct buffer first.
+ */
+public class ZstdCompressionCodec implements CompressionCodec {
+
+    public static final int DEFAULT_LEVEL = 3;
+
+    private static final ZstdCompressionCodec DEFAULT = new ZstdCompressionCodec(DEFAULT_LEVEL, 0, null, null);
+
+    /**
+     * Return a codec compressing at the default level, without dictionary.
+     */
+    public static ZstdCompressionCodec of() {
+        return DEFAULT;
+    }
+
+    /**
+     * Return a codec compressing at the given level, with the given dictionary.
+     *
+     * @param level compression level
+     * @param dictionaryId id of the dictionary in {@link CompressionDictionaries}, 0 for no dictionary
+     * @param dictionary the dictionary, null for no dictionary
+     */
+    static ZstdCompressionCodec of(int level, int dictionaryId, byte[] dictionary) {
+        if (null == dictionary) {
+            return level == DEFAULT_LEVEL ? DEFAULT : new ZstdCompressionCodec(level, 0, null, null);
+        }
+        return new ZstdCompressionCodec(level, dictionaryId,
+                new ZstdDictCompress(dictionary, level), new ZstdDictDecompress(dictionary));
+    }
+
+    private final int level;
+    private final int dictionaryId;
+    private final ZstdDictCompress compressDictionary;
+    private final ZstdDictDecompress decompressDictionary;
+
+    private ZstdCompressionCodec(int level, int dictionaryId,
+                                 ZstdDictCompress compressDictionary, ZstdDictDecompress decompressDictionary) {
+        this.level = level;
+        this.dictionaryId = dictionaryId;
+        this.compressDictionary = compressDictionary;
+        this.decompressDictionary = decompressDictionary;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    @Override
+    public ByteBuf compress(ByteBuf uncompressed, int headerLen) {
+        checkNotNull(uncompressed);
+        checkArgument(uncompressed.readableBytes() > 0);
+
+        int uncompressedLen = uncompressed.readableBytes();
+        int maxLen = (int) Zstd.compressBound(uncompressedLen);
+
+        ByteBuf source = toDirect(uncompressed);
+        ByteBuf compressed = PooledByteBufAllocator.DEFAULT.directBuffer(maxLen + headerLen, maxLen + headerLen);
+        try {
+            ByteBuffer sourceNio = source.nioBuffer(source.readerIndex(), uncompressedLen);
+            ByteBuffer compressedNio = compressed.nioBuffer(0, maxLen + headerLen);
+            long compressedLen;
+            if (null == compressDictionary) {
+                compressedLen = Zstd.compressDirectByteBuffer(
+                        compressedNio, compressedNio.position() + headerLen, maxLen,
+                        sourceNio, sourceNio.position(), uncompressedLen, level);
+            } else {
+                compressedLen = Zstd.compressDirectByteBufferFastDict(
+                        compressedNio, compressedNio.position() + headerLen, maxLen,
+                        sourceNio, sourceNio.position(), uncompressedLen, compressDictionary);
+            }
+            checkResult(compressedLen, "compress");
+            compressed.writerIndex((int) compressedLen + headerLen);
+        } catch (RuntimeException e) {
+            compressed.release();
+            throw e;
+        } finally {
+            if (source != uncompressed) {
+                source.release();
+            }
+        }
+        return compressed;
+    }
+
+    @Override
+    public ByteBuf decompress(ByteBuf compressed, int decompressedSize) {
+        checkNotNull(compressed);
+        checkArgument(compressed.readableBytes() >= 0);
+        checkArgument(decompressedSize >= 0);
+
+        int compressedLen = compressed.readableBytes();
+        ByteBuf source = toDirect(compressed);
+        ByteBuf uncompressed = PooledByteBufAllocator.DEFAULT.directBuffer(decompressedSize, decompressedSize);
+        try {
+            ByteBuffer sourceNio = source.nioBuffer(source.readerIndex(), compressedLen);
+            ByteBuffer uncompressedNio = uncompressed.nioBuffer(0, decompressedSize);
+            long decompressedLen;
+            if (null == decompressDictionary) {
+                decompressedLen = Zstd.decompressDirectByteBuffer(
+                        uncompressedNio, uncompressedNio.position(), decompressedSize,
+                        sourceNio, sourceNio.position(), compressedLen);
+            } else {
+                decompressedLen = Zstd.decompressDirectByteBufferFastDict(
+                        uncompressedNio, uncompressedNio.position(), decompressedSize,
+                        sourceNio, sourceNio.position(), compressedLen, decompressDictionary);
+            }
+            checkResult(decompressedLen, "decompress");
+            checkArgument(decompressedLen == decompressedSize,
+                    "Decompressed %s bytes, expected %s", decompressedLen, decompressedSize);
+            uncompressed.writerIndex(decompressedSize);
+        } catch (RuntimeException e) {
+            uncompressed.release();
+            throw e;
+        } finally {
+            if (source != compressed) {
+                source.release();
+            }
+        }
+        return uncompressed;
+    }
+
+    private static ByteBuf toDirect(ByteBuf buf) {
+        if (buf.isDirect() && buf.nioBufferCount() == 1) {
+            return buf;
+        }
+        ByteBuf direct = PooledByteBufAllocator.DEFAULT.directBuffer(buf.readableBytes(), buf.readableBytes());
+        direct.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+        return direct;
+    }
+
+    private static void checkResult(long result, String operation) {
+        if (Zstd.isError(result)) {
+            throw new IllegalStateException("Failed to " + operation + " data with zstd : "
+                    + Zstd.getErrorName(result));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog.io;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utils for the tests of the compression codecs.
+ */
+public final class CompressionTestUtil {
+
+    // The registry of the dictionaries is shared by all the tests run in the JVM
+    private static final AtomicInteger nextDictionaryId = new AtomicInteger(CompressionDictionaries.MAX_DICTIONARY_ID);
+
+    private CompressionTestUtil() {}
+
+    /**
+     * Return a dictionary id which was never returned before, and with which no dictionary is registered yet.
+     */
+    public static int newDictionaryId() {
+        while (true) {
+            int dictionaryId = nextDictionaryId.getAndDecrement();
+            if (dictionaryId <= CompressionDictionaries.NO_DICTIONARY) {
+                throw new IllegalStateException("No dictionary id left");
+            }
+            if (null == CompressionDictionaries.get(dictionaryId)) {
+                return dictionaryId;
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog.io;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test Case for {@link ZstdCompressionCodec}.
+ */
+public class TestZstdCompressionCodec {
+
+    private static final int DICTIONARY_ID = CompressionTestUtil.newDictionaryId();
+    private static final int HEADER_LEN = 16;
+
+    @BeforeClass
+    public static void registerDictionary() {
+        Random random = new Random(42);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            samples.add(record(random));
+        }
+        CompressionDictionaries.register(DICTIONARY_ID, CompressionDictionaries.train(samples, 1024));
+    }
+
+    private static byte[] record(Random random) {
+        return ("{\"timestamp\":" + (1700000000000L + random.nextInt(1000000))
+                + ",\"user\":\"user-" + random.nextInt(1000)
+                + "\",\"event\":\"" + (random.nextBoolean() ? "click" : "view") + "\"}").getBytes(UTF_8);
+    }
+
+    private static byte[] data() {
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            sb.append(new String(record(random), UTF_8));
+        }
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static void testRoundTrip(CompressionCodec compressor, CompressionCodec decompressor, ByteBuf source,
+                                      byte[] data) {
+        ByteBuf compressed = compressor.compress(source, HEADER_LEN);
+        try {
+            // The header is left to the caller
+            assertTrue(compressed.readableBytes() > HEADER_LEN);
+            assertTrue(compressed.readableBytes() < data.length + HEADER_LEN);
+            ByteBuf decompressed = decompressor.decompress(
+                    compressed.slice(HEADER_LEN, compressed.readableBytes() - HEADER_LEN), data.length);
+            try {
+                assertArrayEquals(data, ByteBufUtil.getBytes(decompressed));
+            } finally {
+                decompressed.release();
+            }
+        } finally {
+            compressed.release();
+            source.release();
+        }
+    }
+
+    private static void testRoundTrip(CompressionCodec compressor, CompressionCodec decompressor) {
+        byte[] data = data();
+        testRoundTrip(compressor, decompressor, Unpooled.wrappedBuffer(data), data);
+
+        ByteBuf direct = Unpooled.directBuffer(data.length);
+        direct.writeBytes(data);
+        testRoundTrip(compressor, decompressor, direct, data);
+
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, Unpooled.wrappedBuffer(data, 0, 100));
+        composite.addComponent(true, Unpooled.wrappedBuffer(data, 100, data.length - 100));
+        testRoundTrip(compressor, decompressor, composite, data);
+    }
+
+    @Test
+    public void testRoundTripWithoutDictionary() {
+        CompressionCodec codec = CompressionUtils.getCompressionCodec(CompressionCodec.Type.ZSTD);
+        assertSame(ZstdCompressionCodec.of(), codec);
+        testRoundTrip(codec, codec);
+
+        // The level doesn't matter to the reader
+        CompressionCodec compressor = CompressionUtils.getCompressionCodec(CompressionCodec.Type.ZSTD, 19,
+                CompressionDictionaries.NO_DICTIONARY);
+        assertEquals(19, ((ZstdCompressionCodec) compressor).getLevel());
+        testRoundTrip(compressor, codec);
+    }
+
+    @Test
+    public void testRoundTripWithDictionary() throws Exception {
+        CompressionCodec compressor = CompressionUtils.getCompressionCodec(CompressionCodec.Type.ZSTD, 1,
+                DICTIONARY_ID);
+        assertEquals(DICTIONARY_ID, ((ZstdCompressionCodec) compressor).getDictionaryId());
+        CompressionCodec decompressor = CompressionUtils.getDecompressionCodec(CompressionCodec.Type.ZSTD,
+                DICTIONARY_ID);
+        testRoundTrip(compressor, decompressor);
+
+        // The codecs are cached by level and dictionary
+        assertSame(compressor, CompressionUtils.getCompressionCodec(CompressionCodec.Type.ZSTD, 1, DICTIONARY_ID));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownDictionary() throws Exception {
+        CompressionUtils.getDecompressionCodec(CompressionCodec.Type.ZSTD, CompressionTestUtil.newDictionaryId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterAnotherDictionaryWithSameId() {
+        CompressionDictionaries.register(DICTIONARY_ID, "another dictionary".getBytes(UTF_8));
+    }
+}
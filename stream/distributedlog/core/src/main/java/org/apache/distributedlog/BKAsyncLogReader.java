@@ -426,6 +426,7 @@ class BKAsyncLogReader implements AsyncLogReader, Runnable, AsyncNotification {
                     bkDistributedLogManager.getReaderEntryStore(),
                     bkDistributedLogManager.getScheduler(),
                     Ticker.systemTicker(),
+                    bkDistributedLogManager.getReadAheadMemoryBudget(),
                     bkDistributedLogManager.alertStatsLogger);
             readHandler.checkLogStreamExists().whenComplete(new FutureEventListener<Void>() {
                 @Override
@@ -68,6 +68,7 @@ import org.apache.distributedlog.metadata.LogStreamMetadataStore;
 import org.apache.distributedlog.namespace.NamespaceDriver;
 import org.apache.distributedlog.util.Allocator;
 import org.apache.distributedlog.util.DLUtils;
+import org.apache.distributedlog.util.ReadAheadMemoryBudget;
 import org.apache.distributedlog.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -123,6 +124,7 @@ class BKDistributedLogManager implements DistributedLogManager {
     // Writer Related Variables
     //
     private final PermitLimiter writeLimiter;
+    private final ReadAheadMemoryBudget readAheadMemoryBudget;
 
     //
     // Reader Related Variables
@@ -148,6 +150,7 @@ class BKDistributedLogManager implements DistributedLogManager {
      * @param regionId region id that would be encrypted as part of log segment metadata
      *                 to indicate which region that the log segment will be created
      * @param writeLimiter write limiter
+     * @param readAheadMemoryBudget memory budget shared by the readahead of the readers
      * @param featureProvider provider to offer features
      * @param statsLogger stats logger to receive stats
      * @param perLogStatsLogger stats logger to receive per log stats
@@ -163,6 +166,7 @@ class BKDistributedLogManager implements DistributedLogManager {
                             String clientId,
                             Integer regionId,
                             PermitLimiter writeLimiter,
+                            ReadAheadMemoryBudget readAheadMemoryBudget,
                             FeatureProvider featureProvider,
                             AsyncFailureInjector failureInjector,
                             StatsLogger statsLogger,
@@ -182,6 +186,7 @@ class BKDistributedLogManager implements DistributedLogManager {
         this.clientId = clientId;
         this.streamIdentifier = conf.getUnpartitionedStreamName();
         this.writeLimiter = writeLimiter;
+        this.readAheadMemoryBudget = readAheadMemoryBudget;
         // Feature Provider
         this.featureProvider = featureProvider;
         // Failure Injector
@@ -213,6 +218,10 @@ class BKDistributedLogManager implements DistributedLogManager {
         return scheduler;
     }
 
+    ReadAheadMemoryBudget getReadAheadMemoryBudget() {
+        return readAheadMemoryBudget;
+    }
+
     AsyncFailureInjector getFailureInjector() {
         return failureInjector;
     }
@@ -46,6 +46,7 @@ import org.apache.distributedlog.injector.AsyncFailureInjector;
 import org.apache.distributedlog.logsegment.LogSegmentMetadataCache;
 import org.apache.distributedlog.namespace.NamespaceDriver;
 import org.apache.distributedlog.util.ConfUtils;
+import org.apache.distributedlog.util.ReadAheadMemoryBudget;
 import org.apache.distributedlog.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +76,8 @@ import org.slf4j.LoggerFactory;
  * See {@link OrderedScheduler}.
  * <li> `scope`/writeLimiter/* : stats about the global write limiter used by this namespace.
  * See {@link PermitLimiter}.
+ * <li> `scope`/readahead_budget/* : stats about the memory budget shared by the readahead of the readers.
+ * See {@link ReadAheadMemoryBudget}.
  * </ul>
  *
  * <h4>DistributedLogManager</h4>
@@ -92,6 +95,7 @@ public class BKDistributedLogNamespace implements Namespace {
     // resources
     private final OrderedScheduler scheduler;
     private final PermitLimiter writeLimiter;
+    private final ReadAheadMemoryBudget readAheadMemoryBudget;
     private final AsyncFailureInjector failureInjector;
     // log segment metadata store
     private final LogSegmentMetadataCache logSegmentMetadataCache;
@@ -129,6 +133,9 @@ public class BKDistributedLogNamespace implements Namespace {
 
         // create a log segment metadata cache
         this.logSegmentMetadataCache = new LogSegmentMetadataCache(conf, Ticker.systemTicker());
+        // create the memory budget shared by the readahead of all the readers
+        this.readAheadMemoryBudget = new ReadAheadMemoryBudget(
+                conf.getReadAheadNamespaceMaxBytes(), statsLogger.scope("readahead_budget"));
     }
 
     @Override
@@ -306,6 +313,7 @@ public class BKDistributedLogNamespace implements Namespace {
                 clientId,                           /* Client Id */
                 regionId,                           /* Region Id */
                 writeLimiter,                       /* Write Limiter */
+                readAheadMemoryBudget,              /* ReadAhead Memory Budget */
                 featureProvider.scope("dl"),        /* Feature Provider */
                 failureInjector,                    /* Failure Injector */
                 statsLogger,                        /* Stats Logger */
@@ -337,6 +345,8 @@ public class BKDistributedLogNamespace implements Namespace {
         }
         // close the write limiter
         this.writeLimiter.close();
+        // close the readahead memory budget
+        this.readAheadMemoryBudget.close();
         // shutdown the driver
         Utils.close(driver);
         // Shutdown the schedulers
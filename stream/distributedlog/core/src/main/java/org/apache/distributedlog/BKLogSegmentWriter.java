@@ -166,6 +166,8 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
     private final int transmissionThreshold;
     protected final LogSegmentEntryWriter entryWriter;
     private final CompressionCodec.Type compressionType;
+    private final int compressionLevel;
+    private final int compressionDictionaryId;
     private final ReentrantLock transmitLock = new ReentrantLock();
     private static final AtomicIntegerFieldUpdater<BKLogSegmentWriter> transmitResultUpdater =
         AtomicIntegerFieldUpdater.newUpdater(BKLogSegmentWriter.class, "transmitResult");
@@ -339,13 +341,17 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
             this.transmissionThreshold = configuredTransmissionThreshold;
         }
         this.compressionType = CompressionUtils.stringToType(conf.getCompressionType());
+        this.compressionLevel = conf.getCompressionLevel();
+        this.compressionDictionaryId = conf.getCompressionDictionaryId();
 
         this.logSegmentSequenceNumber = logSegmentSequenceNumber;
         this.recordSetWriter = Entry.newEntry(
                 streamName,
                 Math.max(transmissionThreshold, 1024),
                 envelopeBeforeTransmit(),
-                compressionType);
+                compressionType,
+                compressionLevel,
+                compressionDictionaryId);
         this.packetPrevious = null;
         this.startTxId = startTxId;
         this.lastTxId = startTxId;
@@ -505,7 +511,9 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                 streamName,
                 Math.max(transmissionThreshold, getAverageTransmitSize()),
                 envelopeBeforeTransmit(),
-                compressionType);
+                compressionType,
+                compressionLevel,
+                compressionDictionaryId);
     }
 
     private boolean envelopeBeforeTransmit() {
@@ -98,6 +98,7 @@ class BKSyncLogReader implements LogReader, AsyncNotification {
                     bkdlm.getReaderEntryStore(),
                     bkdlm.getScheduler(),
                     Ticker.systemTicker(),
+                    bkdlm.getReadAheadMemoryBudget(),
                     bkdlm.alertStatsLogger);
         readHandler.registerListener(readAheadReader);
         readHandler.asyncStartFetchLogSegments()
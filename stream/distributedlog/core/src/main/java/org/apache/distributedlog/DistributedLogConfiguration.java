@@ -233,10 +233,16 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
      *  ---------------------     ------------------------------------
      *          NONE               none
      *          LZ4                lz4
+     *          ZSTD               zstd
      *          UNKNOWN            any other instance of String.class
      */
     public static final String BKDL_COMPRESSION_TYPE = "compressionType";
     public static final String BKDL_COMPRESSION_TYPE_DEFAULT = "none";
+    public static final String BKDL_COMPRESSION_LEVEL = "compressionLevel";
+    public static final int BKDL_COMPRESSION_LEVEL_DEFAULT = 3;
+    // id of a dictionary registered in the process-global CompressionDictionaries, by the writers and the readers
+    public static final String BKDL_COMPRESSION_DICTIONARY_ID = "compressionDictionaryId";
+    public static final int BKDL_COMPRESSION_DICTIONARY_ID_DEFAULT = 0;
     public static final String BKDL_FAILFAST_ON_STREAM_NOT_READY = "failFastOnStreamNotReady";
     public static final boolean BKDL_FAILFAST_ON_STREAM_NOT_READY_DEFAULT = false;
     public static final String BKDL_DISABLE_ROLLING_ON_LOG_SEGMENT_ERROR = "disableRollingOnLogSegmentError";
@@ -343,6 +349,11 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final String BKDL_READAHEAD_BATCHSIZE = "readAheadBatchSize";
     public static final String BKDL_READAHEAD_BATCHSIZE_OLD = "ReadAheadBatchSize";
     public static final int BKDL_READAHEAD_BATCHSIZE_DEFAULT = 2;
+    public static final String BKDL_READAHEAD_MAX_BATCHSIZE = "readAheadMaxBatchSize";
+    public static final String BKDL_READAHEAD_MAX_BYTES = "readAheadMaxBytes";
+    public static final long BKDL_READAHEAD_MAX_BYTES_DEFAULT = 0L;
+    public static final String BKDL_READAHEAD_NAMESPACE_MAX_BYTES = "readAheadNamespaceMaxBytes";
+    public static final long BKDL_READAHEAD_NAMESPACE_MAX_BYTES_DEFAULT = 0L;
     public static final String BKDL_READAHEAD_WAITTIME = "readAheadWaitTime";
     public static final String BKDL_READAHEAD_WAITTIME_OLD = "ReadAheadWaitTime";
     public static final int BKDL_READAHEAD_WAITTIME_DEFAULT = 200;
@@ -1827,6 +1838,59 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * The compression level to use with the zstd compression type.
+     *
+     * <p>Higher levels compress better but slower. The level doesn't matter to the readers.
+     *
+     * @return compression level
+     */
+    public int getCompressionLevel() {
+        return getInt(BKDL_COMPRESSION_LEVEL, BKDL_COMPRESSION_LEVEL_DEFAULT);
+    }
+
+    /**
+     * Set the compression level to use with the zstd compression type.
+     *
+     * @param compressionLevel compression level
+     * @return distributedlog configuration
+     * @see #getCompressionLevel()
+     */
+    public DistributedLogConfiguration setCompressionLevel(int compressionLevel) {
+        setProperty(BKDL_COMPRESSION_LEVEL, compressionLevel);
+        return this;
+    }
+
+    /**
+     * The id of the dictionary to use with the zstd compression type, 0 for no dictionary.
+     *
+     * <p>The dictionary compresses small records much better than compressing each entry on its own. The dictionary
+     * must be registered in {@link org.apache.distributedlog.io.CompressionDictionaries} by both the writers and the
+     * readers of the stream. A new version of the dictionary of a stream is registered with a new id.
+     *
+     * <p>Only the id is written to the entries. The registry is global to the process and held in memory: it is
+     * neither persisted nor shared with the other processes. Every process reading the stream, including the proxies
+     * and the tools, must register the same dictionaries under the same ids out of band, before reading the entries
+     * written with them, otherwise the reads fail with an {@link java.io.IOException}.
+     *
+     * @return id of the compression dictionary
+     */
+    public int getCompressionDictionaryId() {
+        return getInt(BKDL_COMPRESSION_DICTIONARY_ID, BKDL_COMPRESSION_DICTIONARY_ID_DEFAULT);
+    }
+
+    /**
+     * Set the id of the dictionary to use with the zstd compression type.
+     *
+     * @param dictionaryId id of the compression dictionary
+     * @return distributedlog configuration
+     * @see #getCompressionDictionaryId()
+     */
+    public DistributedLogConfiguration setCompressionDictionaryId(int dictionaryId) {
+        setProperty(BKDL_COMPRESSION_DICTIONARY_ID, dictionaryId);
+        return this;
+    }
+
     /**
      * Whether to fail immediately if the stream is not ready rather than queueing the request.
      *
@@ -2731,6 +2795,86 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Get the max number of entries read as a batch by readahead worker.
+     *
+     * <p>The readahead worker starts reading {@link #getReadAheadBatchSize()} entries per batch. It doubles
+     * the batch size, up to this value, when the reader drains the cache before the next batch is read,
+     * and halves it when the cache fills up. By default it is {@link #getReadAheadBatchSize()}, which keeps
+     * the batch size fixed.
+     *
+     * @return max number of entries read as a batch.
+     */
+    public int getReadAheadMaxBatchSize() {
+        int readAheadBatchSize = getReadAheadBatchSize();
+        return Math.max(readAheadBatchSize, getInt(BKDL_READAHEAD_MAX_BATCHSIZE, readAheadBatchSize));
+    }
+
+    /**
+     * Set the max number of entries read as a batch by readahead worker.
+     *
+     * @param readAheadMaxBatchSize
+     *          Max read ahead batch size.
+     * @return distributed log configuration
+     * @see #getReadAheadMaxBatchSize()
+     */
+    public DistributedLogConfiguration setReadAheadMaxBatchSize(int readAheadMaxBatchSize) {
+        setProperty(BKDL_READAHEAD_MAX_BATCHSIZE, readAheadMaxBatchSize);
+        return this;
+    }
+
+    /**
+     * Get the max bytes cached by the readahead cache of a reader.
+     *
+     * <p>The readahead cache is full when it holds either {@link #getReadAheadMaxRecords()} entries
+     * or this many bytes, so readers of large entries don't hold too much memory. The default value
+     * is 0, which means the cache is only bounded by the number of entries.
+     *
+     * @return max bytes cached by the readahead cache of a reader.
+     */
+    public long getReadAheadMaxBytes() {
+        return getLong(BKDL_READAHEAD_MAX_BYTES, BKDL_READAHEAD_MAX_BYTES_DEFAULT);
+    }
+
+    /**
+     * Set the max bytes cached by the readahead cache of a reader.
+     *
+     * @param readAheadMaxBytes
+     *          max bytes to cache.
+     * @return distributed log configuration
+     * @see #getReadAheadMaxBytes()
+     */
+    public DistributedLogConfiguration setReadAheadMaxBytes(long readAheadMaxBytes) {
+        setProperty(BKDL_READAHEAD_MAX_BYTES, readAheadMaxBytes);
+        return this;
+    }
+
+    /**
+     * Get the max bytes cached by the readahead caches of all the readers of a namespace.
+     *
+     * <p>The readers pause their readahead when the bytes cached across the namespace reach this
+     * value, except the readers whose cache is empty, which still read one batch so that they make
+     * progress. The default value is 0, which means there is no namespace-wide limit.
+     *
+     * @return max bytes cached by the readahead caches of a namespace.
+     */
+    public long getReadAheadNamespaceMaxBytes() {
+        return getLong(BKDL_READAHEAD_NAMESPACE_MAX_BYTES, BKDL_READAHEAD_NAMESPACE_MAX_BYTES_DEFAULT);
+    }
+
+    /**
+     * Set the max bytes cached by the readahead caches of all the readers of a namespace.
+     *
+     * @param readAheadNamespaceMaxBytes
+     *          max bytes to cache across the namespace.
+     * @return distributed log configuration
+     * @see #getReadAheadNamespaceMaxBytes()
+     */
+    public DistributedLogConfiguration setReadAheadNamespaceMaxBytes(long readAheadNamespaceMaxBytes) {
+        setProperty(BKDL_READAHEAD_NAMESPACE_MAX_BYTES, readAheadNamespaceMaxBytes);
+        return this;
+    }
+
     /**
      * Get the wait time between successive attempts to poll for new log records, in milliseconds.
      * The default value is 200 ms.
@@ -57,6 +57,40 @@ public class Entry {
                 codec);
     }
 
+    /**
+     * Create a new log record set, compressed with the given level and dictionary.
+     *
+     * @param logName
+     *          name of the log
+     * @param initialBufferSize
+     *          initial buffer size
+     * @param envelopeBeforeTransmit
+     *          if envelope the buffer before transmit
+     * @param codec
+     *          compression codec
+     * @param compressionLevel
+     *          compression level, only used by the zstd codec
+     * @param dictionaryId
+     *          id of the compression dictionary, only used by the zstd codec
+     * @return writer to build a log record set.
+     * @see org.apache.distributedlog.io.CompressionDictionaries
+     */
+    public static Writer newEntry(
+            String logName,
+            int initialBufferSize,
+            boolean envelopeBeforeTransmit,
+            CompressionCodec.Type codec,
+            int compressionLevel,
+            int dictionaryId) {
+        return new EnvelopedEntryWriter(
+                logName,
+                initialBufferSize,
+                envelopeBeforeTransmit,
+                codec,
+                compressionLevel,
+                dictionaryId);
+    }
+
     public static Builder newBuilder() {
         return new Builder();
     }
@@ -194,6 +228,13 @@ public class Entry {
          */
         long getEntryId();
 
+        /**
+         * Return the size of the entry in bytes, as held in memory by this reader.
+         *
+         * @return the size of the entry in bytes.
+         */
+        int getSize();
+
         /**
          * Read next log record from this record set.
          *
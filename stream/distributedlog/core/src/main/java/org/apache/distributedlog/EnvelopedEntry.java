@@ -46,15 +46,18 @@ import org.apache.distributedlog.io.CompressionUtils;
  * <p>Flags: // 32 Bits
  *      -----
  *      0 ... 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0
- *                                      |_|
- *                                       |
- *                               Compression Type
+ *      |_____|                         |_|
+ *         |                             |
+ *   Dictionary Id               Compression Type
  *Compression Type: // 2 Bits (Least significant)
  *      ----------------
  *      00      : No Compression
  *      01      : LZ4 Compression
- *      10      : Unused
+ *      10      : ZSTD Compression
  *      11      : Unused
+ *Dictionary Id: // 16 Bits (Most significant)
+ *      ----------------
+ *      Id of the compression dictionary in CompressionDictionaries, 0 for no dictionary
  */
 class EnvelopedEntry {
 
@@ -72,6 +75,7 @@ class EnvelopedEntry {
 
     public static final byte CURRENT_VERSION = VERSION_ONE;
     public static final int COMPRESSION_CODEC_MASK = 0x3;
+    public static final int DICTIONARY_ID_SHIFT = 16;
 
     /**
      * Return an {@link ByteBuf} that reads from the provided {@link ByteBuf}, decompresses the data
@@ -91,6 +95,7 @@ class EnvelopedEntry {
         }
         int flags = src.readInt();
         int codecCode = flags & COMPRESSION_CODEC_MASK;
+        int dictionaryId = flags >>> DICTIONARY_ID_SHIFT;
         int originDataLen = src.readInt();
         int actualDataLen = src.readInt();
         ByteBuf compressedBuf = src.slice(src.readerIndex(), actualDataLen);
@@ -100,7 +105,7 @@ class EnvelopedEntry {
                 throw new IOException("Inconsistent data length found for a non-compressed entry : compressed = "
                         + originDataLen + ", actual = " + actualDataLen);
             }
-            CompressionCodec codec = CompressionUtils.getCompressionCodec(Type.of(codecCode));
+            CompressionCodec codec = CompressionUtils.getDecompressionCodec(Type.of(codecCode), dictionaryId);
             decompressedBuf = codec.decompress(compressedBuf, originDataLen);
         } finally {
             ReferenceCountUtil.release(compressedBuf);
@@ -33,6 +33,7 @@ class EnvelopedEntryReader implements Entry.Reader, RecordStream {
     private final long logSegmentSeqNo;
     private final long entryId;
     private final ByteBuf src;
+    private final int size;
     private final LogRecord.Reader reader;
 
     // slot id
@@ -56,6 +57,7 @@ class EnvelopedEntryReader implements Entry.Reader, RecordStream {
         } else {
             this.src = in;
         }
+        this.size = src.readableBytes();
         this.reader = new LogRecord.Reader(
                 this,
                 src,
@@ -94,6 +96,11 @@ class EnvelopedEntryReader implements Entry.Reader, RecordStream {
         return entryId;
     }
 
+    @Override
+    public int getSize() {
+        return size;
+    }
+
     @Override
     public LogRecordWithDLSN nextRecord() throws IOException {
         checkLastException();
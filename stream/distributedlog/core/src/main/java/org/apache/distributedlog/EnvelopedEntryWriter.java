@@ -21,6 +21,7 @@ import static org.apache.distributedlog.EnvelopedEntry.COMPRESSED_SIZE_OFFSET;
 import static org.apache.distributedlog.EnvelopedEntry.COMPRESSION_CODEC_MASK;
 import static org.apache.distributedlog.EnvelopedEntry.CURRENT_VERSION;
 import static org.apache.distributedlog.EnvelopedEntry.DECOMPRESSED_SIZE_OFFSET;
+import static org.apache.distributedlog.EnvelopedEntry.DICTIONARY_ID_SHIFT;
 import static org.apache.distributedlog.EnvelopedEntry.FLAGS_OFFSET;
 import static org.apache.distributedlog.EnvelopedEntry.HEADER_LENGTH;
 import static org.apache.distributedlog.EnvelopedEntry.VERSION_OFFSET;
@@ -40,7 +41,9 @@ import org.apache.distributedlog.exceptions.LogRecordTooLongException;
 import org.apache.distributedlog.exceptions.WriteException;
 import org.apache.distributedlog.io.CompressionCodec;
 import org.apache.distributedlog.io.CompressionCodec.Type;
+import org.apache.distributedlog.io.CompressionDictionaries;
 import org.apache.distributedlog.io.CompressionUtils;
+import org.apache.distributedlog.io.ZstdCompressionCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,6 +73,7 @@ class EnvelopedEntryWriter implements Writer {
     private final List<WriteRequest> writeRequests;
     private final boolean envelopeBeforeTransmit;
     private final CompressionCodec.Type codec;
+    private final CompressionCodec compressor;
     private final int flags;
     private int count = 0;
     private boolean hasUserData = false;
@@ -79,6 +83,16 @@ class EnvelopedEntryWriter implements Writer {
                          int initialBufferSize,
                          boolean envelopeBeforeTransmit,
                          CompressionCodec.Type codec) {
+        this(logName, initialBufferSize, envelopeBeforeTransmit, codec,
+                ZstdCompressionCodec.DEFAULT_LEVEL, CompressionDictionaries.NO_DICTIONARY);
+    }
+
+    EnvelopedEntryWriter(String logName,
+                         int initialBufferSize,
+                         boolean envelopeBeforeTransmit,
+                         CompressionCodec.Type codec,
+                         int compressionLevel,
+                         int dictionaryId) {
         this.logName = logName;
         this.buffer = PooledByteBufAllocator.DEFAULT.buffer(
                 Math.min(Math.max(initialBufferSize * 6 / 5, HEADER_LENGTH), MAX_LOGRECORDSET_SIZE),
@@ -87,7 +101,11 @@ class EnvelopedEntryWriter implements Writer {
         this.writeRequests = new LinkedList<WriteRequest>();
         this.envelopeBeforeTransmit = envelopeBeforeTransmit;
         this.codec = codec;
-        this.flags = codec.code() & COMPRESSION_CODEC_MASK;
+        this.compressor = CompressionUtils.getCompressionCodec(codec, compressionLevel, dictionaryId);
+        if (Type.ZSTD != codec) {
+            dictionaryId = CompressionDictionaries.NO_DICTIONARY;
+        }
+        this.flags = (codec.code() & COMPRESSION_CODEC_MASK) | (dictionaryId << DICTIONARY_ID_SHIFT);
         if (envelopeBeforeTransmit) {
             this.buffer.writerIndex(HEADER_LENGTH);
         }
@@ -188,8 +206,6 @@ class EnvelopedEntryWriter implements Writer {
         }
 
         // compression
-        CompressionCodec compressor =
-                CompressionUtils.getCompressionCodec(codec);
         ByteBuf uncompressedBuf = buffer.slice(dataOffset, dataLen);
         ByteBuf compressedBuf = compressor.compress(uncompressedBuf, HEADER_LENGTH);
         // update version
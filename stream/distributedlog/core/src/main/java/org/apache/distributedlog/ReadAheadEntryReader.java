@@ -31,6 +31,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -51,6 +52,7 @@ import org.apache.distributedlog.io.AsyncCloseable;
 import org.apache.distributedlog.logsegment.LogSegmentEntryReader;
 import org.apache.distributedlog.logsegment.LogSegmentEntryStore;
 import org.apache.distributedlog.logsegment.LogSegmentFilter;
+import org.apache.distributedlog.util.ReadAheadMemoryBudget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -200,16 +202,10 @@ class ReadAheadEntryReader implements
 
     private class ReadEntriesFunc implements Function<LogSegmentEntryReader, CompletableFuture<List<Entry.Reader>>> {
 
-        private final int numEntries;
-
-        ReadEntriesFunc(int numEntries) {
-            this.numEntries = numEntries;
-        }
-
         @Override
         public CompletableFuture<List<Entry.Reader>> apply(LogSegmentEntryReader reader) {
             checkCatchingUpStatus(reader);
-            return reader.readNext(numEntries);
+            return reader.readNext(numReadAheadEntries);
         }
     }
 
@@ -251,13 +247,19 @@ class ReadAheadEntryReader implements
     private final String streamName;
     private final DLSN fromDLSN;
     private final int maxCachedEntries;
-    private final int numReadAheadEntries;
+    private final long maxCachedBytes;
+    private final int minReadAheadEntries;
+    private final int maxReadAheadEntries;
+    // adapted between the min and max batch size, to the rate the entries are consumed
+    private volatile int numReadAheadEntries;
     private final int idleWarnThresholdMillis;
 
     //
     // Cache
     //
     private final LinkedBlockingQueue<Entry.Reader> entryQueue;
+    private final AtomicLong cachedBytes = new AtomicLong(0L);
+    private final ReadAheadMemoryBudget memoryBudget;
 
     //
     // State of the reader
@@ -298,6 +300,7 @@ class ReadAheadEntryReader implements
                                 LogSegmentEntryStore entryStore,
                                 OrderedScheduler scheduler,
                                 Ticker ticker,
+                                ReadAheadMemoryBudget memoryBudget,
                                 AlertStatsLogger alertStatsLogger) {
         this.streamName = streamName;
         this.fromDLSN = lastDLSN = fromDLSN;
@@ -306,12 +309,15 @@ class ReadAheadEntryReader implements
                 fromDLSN.getEntryId());
         this.conf = conf;
         this.maxCachedEntries = conf.getReadAheadMaxRecords();
-        this.numReadAheadEntries = conf.getReadAheadBatchSize();
+        this.maxCachedBytes = conf.getReadAheadMaxBytes();
+        this.minReadAheadEntries = this.numReadAheadEntries = conf.getReadAheadBatchSize();
+        this.maxReadAheadEntries = conf.getReadAheadMaxBatchSize();
+        this.memoryBudget = memoryBudget;
         this.idleWarnThresholdMillis = conf.getReaderIdleWarnThresholdMillis();
         this.readHandler = readHandler;
         this.entryStore = entryStore;
         this.scheduler = scheduler;
-        this.readFunc = new ReadEntriesFunc(numReadAheadEntries);
+        this.readFunc = new ReadEntriesFunc();
         this.alertStatsLogger = alertStatsLogger;
 
         // create the segment reader list
@@ -492,6 +498,7 @@ class ReadAheadEntryReader implements
         for (SegmentReader reader : segmentReadersToClose) {
             closeFutures.add(reader.close());
         }
+        releaseCachedEntries();
         FutureUtils.proxyTo(
             FutureUtils.collect(closeFutures).thenApply((value) -> null),
             closePromise);
@@ -589,10 +596,21 @@ class ReadAheadEntryReader implements
         }
 
         lastEntryAddedTime.reset().start();
-        entryQueue.addAll(entries);
+        boolean cacheDrained = entryQueue.isEmpty();
+        for (Entry.Reader entry : entries) {
+            cachedBytes.addAndGet(entry.getSize());
+            memoryBudget.acquire(entry.getSize());
+            entryQueue.add(entry);
+        }
         if (!entries.isEmpty()) {
             Entry.Reader lastEntry = entries.get(entries.size() - 1);
             nextEntryPosition.advance(lastEntry.getLSSN(), lastEntry.getEntryId() + 1);
+            adjustReadAheadBatchSize(cacheDrained);
+        }
+        if (isClosed()) {
+            // the reader was closed while the entries were being added
+            releaseCachedEntries();
+            return;
         }
         // notify on data available
         notifyStateChangeOnSuccess();
@@ -632,13 +650,38 @@ class ReadAheadEntryReader implements
             Thread.currentThread().interrupt();
             throw new DLInterruptedException("Interrupted on waiting next readahead entry : ", e);
         }
-        try {
-            return entry;
-        } finally {
-            // resume readahead if the cache becomes empty
-            if (null != entry && !isCacheFull()) {
-                scheduleRead();
-            }
+        if (null == entry) {
+            return null;
+        }
+        cachedBytes.addAndGet(-entry.getSize());
+        memoryBudget.release(entry.getSize());
+        // resume readahead if the cache is no longer full
+        if (!isCacheFull()) {
+            scheduleRead();
+        }
+        return entry;
+    }
+
+    /**
+     * Adapt the number of entries read per batch to the rate the entries are consumed: the batch grows when the
+     * reader drained the cache while the batch was being read, and shrinks when the batch fills the cache up.
+     */
+    private void adjustReadAheadBatchSize(boolean cacheDrained) {
+        int batchSize = numReadAheadEntries;
+        if (cacheDrained) {
+            batchSize = Math.min(maxReadAheadEntries, batchSize * 2);
+        } else if (isCacheFull()) {
+            batchSize = Math.max(minReadAheadEntries, batchSize / 2);
+        }
+        numReadAheadEntries = batchSize;
+    }
+
+    private void releaseCachedEntries() {
+        Entry.Reader entry;
+        while ((entry = entryQueue.poll()) != null) {
+            cachedBytes.addAndGet(-entry.getSize());
+            memoryBudget.release(entry.getSize());
+            entry.release();
         }
     }
 
@@ -651,13 +694,36 @@ class ReadAheadEntryReader implements
         return entryQueue.size();
     }
 
+    /**
+     * Return number of bytes cached.
+     *
+     * @return number of bytes cached.
+     */
+    public long getNumCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    @VisibleForTesting
+    int getNumReadAheadEntries() {
+        return numReadAheadEntries;
+    }
+
     /**
      * Return if the cache is full.
      *
+     * <p>The cache is full when it holds the max number of entries or bytes of this reader, or when the readers of
+     * the namespace exhausted their memory budget. An empty cache is never full, so the reader always makes progress.
+     *
      * @return true if the cache is full, otherwise false.
      */
     public boolean isCacheFull() {
-        return getNumCachedEntries() >= maxCachedEntries;
+        if (getNumCachedEntries() >= maxCachedEntries) {
+            return true;
+        }
+        if (entryQueue.isEmpty()) {
+            return false;
+        }
+        return (maxCachedBytes > 0 && getNumCachedBytes() >= maxCachedBytes) || memoryBudget.isExhausted();
     }
 
     @VisibleForTesting
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * The memory budget shared by the readahead caches of the readers of a namespace.
+ *
+ * <p>The readers add the size of the entries they cache, and remove it when the entries are consumed. A reader
+ * doesn't read ahead while the budget is exhausted, unless its cache is empty, so the budget may be exceeded by
+ * up to one readahead batch per reader.
+ *
+ * <h3>Metrics</h3>
+ * <ul>
+ * <li> `bytes`: gauge. how many bytes are cached by the readers right now?
+ * </ul>
+ */
+public class ReadAheadMemoryBudget implements AutoCloseable {
+
+    private final long maxBytes;
+    private final AtomicLong bytes = new AtomicLong(0L);
+    private final StatsLogger statsLogger;
+    private final Gauge<Number> bytesGauge;
+
+    /**
+     * Create a budget of <code>maxBytes</code> bytes.
+     *
+     * @param maxBytes
+     *          max bytes cached by the readers, or 0 for no limit.
+     * @param statsLogger
+     *          stats logger to expose the cached bytes.
+     */
+    public ReadAheadMemoryBudget(long maxBytes, StatsLogger statsLogger) {
+        this.maxBytes = maxBytes;
+        this.statsLogger = statsLogger;
+        this.bytesGauge = new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Number getSample() {
+                return bytes.get();
+            }
+        };
+        statsLogger.registerGauge("bytes", bytesGauge);
+    }
+
+    public void acquire(long numBytes) {
+        bytes.addAndGet(numBytes);
+    }
+
+    public void release(long numBytes) {
+        bytes.addAndGet(-numBytes);
+    }
+
+    /**
+     * Return if the readers cache as many bytes as the budget allows.
+     *
+     * @return true if the budget is exhausted, otherwise false.
+     */
+    public boolean isExhausted() {
+        return maxBytes > 0 && bytes.get() >= maxBytes;
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public void close() {
+        statsLogger.unregisterGauge("bytes", bytesGauge);
+    }
+}
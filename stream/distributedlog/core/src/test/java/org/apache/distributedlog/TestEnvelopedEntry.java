@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.distributedlog.EnvelopedEntry.COMPRESSION_CODEC_MASK;
+import static org.apache.distributedlog.EnvelopedEntry.DICTIONARY_ID_SHIFT;
+import static org.apache.distributedlog.EnvelopedEntry.FLAGS_OFFSET;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.apache.distributedlog.io.CompressionCodec.Type;
+import org.apache.distributedlog.io.CompressionDictionaries;
+import org.apache.distributedlog.io.CompressionTestUtil;
+import org.apache.distributedlog.io.ZstdCompressionCodec;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test Case for {@link EnvelopedEntry}, from the {@link Entry.Writer} to the {@link Entry.Reader}.
+ */
+public class TestEnvelopedEntry {
+
+    private static final int DICTIONARY_ID = CompressionTestUtil.newDictionaryId();
+    private static final int UNKNOWN_DICTIONARY_ID = CompressionTestUtil.newDictionaryId();
+    private static final int NUM_RECORDS = 20;
+
+    @BeforeClass
+    public static void registerDictionary() {
+        Random random = new Random(42);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            samples.add(record(random));
+        }
+        CompressionDictionaries.register(DICTIONARY_ID, CompressionDictionaries.train(samples, 1024));
+    }
+
+    private static byte[] record(Random random) {
+        return ("{\"timestamp\":" + (1700000000000L + random.nextInt(1000000))
+                + ",\"user\":\"user-" + random.nextInt(1000)
+                + "\",\"event\":\"" + (random.nextBoolean() ? "click" : "view") + "\"}").getBytes(UTF_8);
+    }
+
+    private static List<byte[]> records() {
+        Random random = new Random(7);
+        List<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            records.add(record(random));
+        }
+        return records;
+    }
+
+    /**
+     * Write the records to an entry, and return its buffer as sent to the bookies.
+     */
+    private static ByteBuf writeEntry(Entry.Writer writer, List<byte[]> records) throws Exception {
+        List<CompletableFuture<DLSN>> promises = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            CompletableFuture<DLSN> promise = new CompletableFuture<>();
+            writer.writeRecord(new LogRecord(i, records.get(i)), promise);
+            promises.add(promise);
+        }
+        assertEquals(records.size(), writer.getNumRecords());
+
+        ByteBuf buffer = writer.getBuffer();
+        writer.completeTransmit(1L, 2L);
+        for (int i = 0; i < promises.size(); i++) {
+            assertEquals(new DLSN(1L, 2L, i), promises.get(i).get());
+        }
+        return buffer;
+    }
+
+    private static Entry.Reader newReader(ByteBuf buffer) throws IOException {
+        try {
+            return Entry.newBuilder()
+                    .setLogSegmentInfo(1L, 0L)
+                    .setEntryId(2L)
+                    .setEntry(buffer)
+                    .buildReader();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static void testRoundTrip(Type codec, int compressionLevel, int dictionaryId, int expectedDictionaryId)
+            throws Exception {
+        List<byte[]> records = records();
+        ByteBuf buffer = writeEntry(
+                Entry.newEntry("test-log", 1024, true, codec, compressionLevel, dictionaryId), records);
+        int flags = buffer.getInt(FLAGS_OFFSET);
+        assertEquals(codec.code(), flags & COMPRESSION_CODEC_MASK);
+        assertEquals(expectedDictionaryId, flags >>> DICTIONARY_ID_SHIFT);
+
+        Entry.Reader reader = newReader(buffer);
+        for (int i = 0; i < records.size(); i++) {
+            LogRecordWithDLSN record = reader.nextRecord();
+            assertEquals(i, record.getTransactionId());
+            assertEquals(new DLSN(1L, 2L, i), record.getDlsn());
+            assertArrayEquals(records.get(i), record.getPayload());
+        }
+        assertNull(reader.nextRecord());
+    }
+
+    @Test
+    public void testRoundTripWithoutCompression() throws Exception {
+        testRoundTrip(Type.NONE, ZstdCompressionCodec.DEFAULT_LEVEL, CompressionDictionaries.NO_DICTIONARY,
+                CompressionDictionaries.NO_DICTIONARY);
+    }
+
+    @Test
+    public void testRoundTripLZ4() throws Exception {
+        // The dictionary is only used by zstd
+        testRoundTrip(Type.LZ4, ZstdCompressionCodec.DEFAULT_LEVEL, DICTIONARY_ID,
+                CompressionDictionaries.NO_DICTIONARY);
+    }
+
+    @Test
+    public void testRoundTripZstd() throws Exception {
+        testRoundTrip(Type.ZSTD, ZstdCompressionCodec.DEFAULT_LEVEL, CompressionDictionaries.NO_DICTIONARY,
+                CompressionDictionaries.NO_DICTIONARY);
+        testRoundTrip(Type.ZSTD, 1, CompressionDictionaries.NO_DICTIONARY, CompressionDictionaries.NO_DICTIONARY);
+    }
+
+    @Test
+    public void testRoundTripZstdWithDictionary() throws Exception {
+        testRoundTrip(Type.ZSTD, ZstdCompressionCodec.DEFAULT_LEVEL, DICTIONARY_ID, DICTIONARY_ID);
+    }
+
+    @Test
+    public void testReadWithUnknownDictionary() throws Exception {
+        ByteBuf buffer = writeEntry(Entry.newEntry("test-log", 1024, true, Type.ZSTD,
+                ZstdCompressionCodec.DEFAULT_LEVEL, DICTIONARY_ID), records());
+        // A reader which didn't register the dictionary of the writer
+        int flags = buffer.getInt(FLAGS_OFFSET);
+        buffer.setInt(FLAGS_OFFSET, (flags & ((1 << DICTIONARY_ID_SHIFT) - 1))
+                | (UNKNOWN_DICTIONARY_ID << DICTIONARY_ID_SHIFT));
+        try {
+            newReader(buffer);
+            fail("Should fail to read an entry compressed with an unknown dictionary");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+}
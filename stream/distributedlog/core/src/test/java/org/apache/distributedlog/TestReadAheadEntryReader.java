@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.stats.AlertStatsLogger;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.distributedlog.logsegment.LogSegmentEntryStore;
+import org.apache.distributedlog.util.ReadAheadMemoryBudget;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test Case for the cache of {@link ReadAheadEntryReader}: its bounds and the size of its readahead batches.
+ */
+public class TestReadAheadEntryReader {
+
+    private static final String STREAM_NAME = "test-readahead-cache";
+
+    private final OrderedScheduler scheduler = mock(OrderedScheduler.class);
+    private long nextEntryId = 0L;
+
+    @Before
+    public void setup() {
+        // run the ordered operations of the readers in the calling thread
+        doAnswer(invocation -> {
+            Runnable runnable = invocation.getArgument(1);
+            runnable.run();
+            return null;
+        }).when(scheduler).executeOrdered(eq(STREAM_NAME), any(Runnable.class));
+    }
+
+    private static DistributedLogConfiguration newConf() {
+        return new DistributedLogConfiguration()
+                .setReaderIdleWarnThresholdMillis(0);
+    }
+
+    private ReadAheadEntryReader newReader(DistributedLogConfiguration conf, ReadAheadMemoryBudget memoryBudget) {
+        return new ReadAheadEntryReader(
+                STREAM_NAME,
+                DLSN.InitialDLSN,
+                conf,
+                mock(BKLogReadHandler.class),
+                mock(LogSegmentEntryStore.class),
+                scheduler,
+                Ticker.systemTicker(),
+                memoryBudget,
+                new AlertStatsLogger(NullStatsLogger.INSTANCE, "test"));
+    }
+
+    private ReadAheadEntryReader newReader(DistributedLogConfiguration conf) {
+        return newReader(conf, new ReadAheadMemoryBudget(0L, NullStatsLogger.INSTANCE));
+    }
+
+    private Entry.Reader newEntry(int size) {
+        Entry.Reader entry = mock(Entry.Reader.class);
+        when(entry.getLSSN()).thenReturn(1L);
+        when(entry.getEntryId()).thenReturn(nextEntryId++);
+        when(entry.getSize()).thenReturn(size);
+        return entry;
+    }
+
+    private List<Entry.Reader> newEntries(int numEntries, int size) {
+        List<Entry.Reader> entries = new ArrayList<>(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+            entries.add(newEntry(size));
+        }
+        return entries;
+    }
+
+    private static void consume(ReadAheadEntryReader reader, int numEntries) throws Exception {
+        for (int i = 0; i < numEntries; i++) {
+            Entry.Reader entry = reader.getNextReadAheadEntry(0L, TimeUnit.MILLISECONDS);
+            assertNotNull(entry);
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testCacheBoundedByEntries() throws Exception {
+        ReadAheadEntryReader reader = newReader(newConf()
+                .setReadAheadMaxRecords(3));
+
+        reader.onSuccess(newEntries(2, 10));
+        assertEquals(2, reader.getNumCachedEntries());
+        assertEquals(20L, reader.getNumCachedBytes());
+        assertFalse(reader.isCacheFull());
+
+        reader.onSuccess(newEntries(1, 10));
+        assertTrue(reader.isCacheFull());
+
+        consume(reader, 1);
+        assertEquals(2, reader.getNumCachedEntries());
+        assertEquals(20L, reader.getNumCachedBytes());
+        assertFalse(reader.isCacheFull());
+    }
+
+    @Test
+    public void testCacheBoundedByBytes() throws Exception {
+        ReadAheadEntryReader reader = newReader(newConf()
+                .setReadAheadMaxRecords(100)
+                .setReadAheadMaxBytes(100L));
+
+        reader.onSuccess(newEntries(2, 40));
+        assertEquals(80L, reader.getNumCachedBytes());
+        assertFalse(reader.isCacheFull());
+
+        reader.onSuccess(newEntries(1, 40));
+        assertEquals(120L, reader.getNumCachedBytes());
+        assertTrue(reader.isCacheFull());
+
+        consume(reader, 1);
+        assertEquals(80L, reader.getNumCachedBytes());
+        assertFalse(reader.isCacheFull());
+    }
+
+    @Test
+    public void testEmptyCacheIsNeverFullOfBytes() throws Exception {
+        ReadAheadMemoryBudget memoryBudget = new ReadAheadMemoryBudget(10L, NullStatsLogger.INSTANCE);
+        memoryBudget.acquire(10L);
+        ReadAheadEntryReader reader = newReader(newConf()
+                .setReadAheadMaxRecords(100)
+                .setReadAheadMaxBytes(10L), memoryBudget);
+
+        // the budget is exhausted by the other readers, the reader still reads ahead
+        assertTrue(memoryBudget.isExhausted());
+        assertFalse(reader.isCacheFull());
+
+        // a single entry larger than the cache fills it up
+        reader.onSuccess(newEntries(1, 100));
+        assertTrue(reader.isCacheFull());
+        consume(reader, 1);
+        assertEquals(0L, reader.getNumCachedBytes());
+        assertFalse(reader.isCacheFull());
+    }
+
+    @Test
+    public void testMemoryBudgetSharedByReaders() throws Exception {
+        ReadAheadMemoryBudget memoryBudget = new ReadAheadMemoryBudget(100L, NullStatsLogger.INSTANCE);
+        DistributedLogConfiguration conf = newConf()
+                .setReadAheadMaxRecords(100);
+        ReadAheadEntryReader reader1 = newReader(conf, memoryBudget);
+        ReadAheadEntryReader reader2 = newReader(conf, memoryBudget);
+
+        reader1.onSuccess(newEntries(2, 30));
+        reader2.onSuccess(newEntries(1, 30));
+        assertEquals(90L, memoryBudget.getBytes());
+        assertFalse(reader1.isCacheFull());
+        assertFalse(reader2.isCacheFull());
+
+        // the second reader exhausts the budget of both readers
+        reader2.onSuccess(newEntries(1, 30));
+        assertEquals(120L, memoryBudget.getBytes());
+        assertEquals(60L, reader1.getNumCachedBytes());
+        assertEquals(60L, reader2.getNumCachedBytes());
+        assertTrue(reader1.isCacheFull());
+        assertTrue(reader2.isCacheFull());
+
+        // the entries consumed by a reader return to the budget of both readers
+        consume(reader1, 1);
+        assertEquals(90L, memoryBudget.getBytes());
+        assertFalse(reader1.isCacheFull());
+        assertFalse(reader2.isCacheFull());
+    }
+
+    @Test
+    public void testReleaseCachedEntriesOnClose() throws Exception {
+        ReadAheadMemoryBudget memoryBudget = new ReadAheadMemoryBudget(1000L, NullStatsLogger.INSTANCE);
+        DistributedLogConfiguration conf = newConf()
+                .setReadAheadMaxRecords(100);
+        ReadAheadEntryReader reader1 = newReader(conf, memoryBudget);
+        ReadAheadEntryReader reader2 = newReader(conf, memoryBudget);
+
+        List<Entry.Reader> entries = newEntries(3, 50);
+        reader1.onSuccess(entries);
+        reader2.onSuccess(newEntries(1, 50));
+        assertEquals(200L, memoryBudget.getBytes());
+
+        reader1.asyncClose().get();
+        for (Entry.Reader entry : entries) {
+            verify(entry, times(1)).release();
+        }
+        assertEquals(0, reader1.getNumCachedEntries());
+        assertEquals(0L, reader1.getNumCachedBytes());
+        // only the share of the closed reader is returned to the budget
+        assertEquals(50L, memoryBudget.getBytes());
+
+        // the entries read after the reader is closed are released right away
+        List<Entry.Reader> lateEntries = newEntries(2, 50);
+        reader1.onSuccess(lateEntries);
+        for (Entry.Reader entry : lateEntries) {
+            verify(entry, times(1)).release();
+        }
+        assertEquals(0, reader1.getNumCachedEntries());
+        assertEquals(50L, memoryBudget.getBytes());
+    }
+
+    @Test
+    public void testReadAheadBatchSizeAdaptsToConsumer() throws Exception {
+        ReadAheadEntryReader reader = newReader(newConf()
+                .setReadAheadMaxRecords(40)
+                .setReadAheadBatchSize(2)
+                .setReadAheadMaxBatchSize(16));
+        assertEquals(2, reader.getNumReadAheadEntries());
+
+        // the consumer drains the cache before each batch arrives: the batch doubles up to the max batch size
+        int[] expectedBatchSizes = new int[] {4, 8, 16, 16};
+        for (int expectedBatchSize : expectedBatchSizes) {
+            int batchSize = reader.getNumReadAheadEntries();
+            reader.onSuccess(newEntries(batchSize, 10));
+            assertEquals(expectedBatchSize, reader.getNumReadAheadEntries());
+            consume(reader, batchSize);
+        }
+
+        // the consumer keeps up with the readahead, without draining the cache: the batch stays the same
+        reader.onSuccess(newEntries(1, 10));
+        reader.onSuccess(newEntries(1, 10));
+        assertFalse(reader.isCacheFull());
+        assertEquals(16, reader.getNumReadAheadEntries());
+
+        // the batches fill the cache up: the batch halves down to the batch size
+        reader.onSuccess(newEntries(38, 10));
+        assertTrue(reader.isCacheFull());
+        assertEquals(8, reader.getNumReadAheadEntries());
+        expectedBatchSizes = new int[] {4, 2, 2};
+        for (int expectedBatchSize : expectedBatchSizes) {
+            reader.onSuccess(newEntries(1, 10));
+            assertEquals(expectedBatchSize, reader.getNumReadAheadEntries());
+        }
+
+        // an empty batch doesn't change the batch size
+        consume(reader, reader.getNumCachedEntries());
+        reader.onSuccess(new ArrayList<>());
+        assertEquals(2, reader.getNumReadAheadEntries());
+    }
+}
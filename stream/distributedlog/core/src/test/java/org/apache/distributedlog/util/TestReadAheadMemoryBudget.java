@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Test Case for {@link ReadAheadMemoryBudget}.
+ */
+public class TestReadAheadMemoryBudget {
+
+    @Test
+    public void testBoundedByBytes() {
+        ReadAheadMemoryBudget budget = new ReadAheadMemoryBudget(100L, NullStatsLogger.INSTANCE);
+        assertFalse(budget.isExhausted());
+
+        budget.acquire(60L);
+        budget.acquire(39L);
+        assertEquals(99L, budget.getBytes());
+        assertFalse(budget.isExhausted());
+
+        budget.acquire(1L);
+        assertTrue(budget.isExhausted());
+        // the budget may be exceeded by the batches being read
+        budget.acquire(50L);
+        assertEquals(150L, budget.getBytes());
+        assertTrue(budget.isExhausted());
+
+        budget.release(50L);
+        assertTrue(budget.isExhausted());
+        budget.release(1L);
+        assertFalse(budget.isExhausted());
+        budget.release(99L);
+        assertEquals(0L, budget.getBytes());
+    }
+
+    @Test
+    public void testUnlimited() {
+        ReadAheadMemoryBudget budget = new ReadAheadMemoryBudget(0L, NullStatsLogger.INSTANCE);
+        budget.acquire(Integer.MAX_VALUE);
+        budget.acquire(Integer.MAX_VALUE);
+        assertEquals(2L * Integer.MAX_VALUE, budget.getBytes());
+        assertFalse(budget.isExhausted());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBytesGauge() {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        ReadAheadMemoryBudget budget = new ReadAheadMemoryBudget(100L, statsLogger);
+        ArgumentCaptor<Gauge> gauge = ArgumentCaptor.forClass(Gauge.class);
+        verify(statsLogger).registerGauge(eq("bytes"), gauge.capture());
+        assertEquals(0L, gauge.getValue().getSample());
+
+        budget.acquire(42L);
+        assertEquals(42L, gauge.getValue().getSample());
+        budget.release(40L);
+        assertEquals(2L, gauge.getValue().getSample());
+
+        budget.close();
+        ArgumentCaptor<Gauge> unregistered = ArgumentCaptor.forClass(Gauge.class);
+        verify(statsLogger).unregisterGauge(eq("bytes"), unregistered.capture());
+        assertSame(gauge.getValue(), unregistered.getValue());
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.distributedlog;
 
 import static org.apache.distributedlog.LogRecordSet.METADATA_COMPRESSION_MASK;
+import static org.apache.distributedlog.LogRecordSet.METADATA_DICTIONARY_ID_SHIFT;
 import static org.apache.distributedlog.LogRecordSet.METADATA_VERSION_MASK;
 import static org.apache.distributedlog.LogRecordSet.VERSION;
 
@@ -69,6 +70,7 @@ class EnvelopedRecordSetReader implements LogRecordSet.Reader {
                 + " Required: %d", version, VERSION));
         }
         int codecCode = metadata & METADATA_COMPRESSION_MASK;
+        int dictionaryId = metadata >>> METADATA_DICTIONARY_ID_SHIFT;
         this.numRecords = src.readInt();
         int decompressedDataLen = src.readInt();
         int compressedDataLen = src.readInt();
@@ -78,7 +80,7 @@ class EnvelopedRecordSetReader implements LogRecordSet.Reader {
                 throw new IOException("Inconsistent data length found for a non-compressed record set : decompressed = "
                         + decompressedDataLen + ", actual = " + compressedDataLen);
             }
-            CompressionCodec codec = CompressionUtils.getCompressionCodec(Type.of(codecCode));
+            CompressionCodec codec = CompressionUtils.getDecompressionCodec(Type.of(codecCode), dictionaryId);
             this.reader = codec.decompress(compressedBuf, decompressedDataLen);
         } finally {
             ReferenceCountUtil.release(compressedBuf);
@@ -24,6 +24,7 @@ import static org.apache.distributedlog.LogRecordSet.COUNT_OFFSET;
 import static org.apache.distributedlog.LogRecordSet.DECOMPRESSED_SIZE_OFFSET;
 import static org.apache.distributedlog.LogRecordSet.HEADER_LEN;
 import static org.apache.distributedlog.LogRecordSet.METADATA_COMPRESSION_MASK;
+import static org.apache.distributedlog.LogRecordSet.METADATA_DICTIONARY_ID_SHIFT;
 import static org.apache.distributedlog.LogRecordSet.METADATA_OFFSET;
 import static org.apache.distributedlog.LogRecordSet.METADATA_VERSION_MASK;
 import static org.apache.distributedlog.LogRecordSet.VERSION;
@@ -40,7 +41,9 @@ import org.apache.distributedlog.exceptions.LogRecordTooLongException;
 import org.apache.distributedlog.exceptions.WriteException;
 import org.apache.distributedlog.io.CompressionCodec;
 import org.apache.distributedlog.io.CompressionCodec.Type;
+import org.apache.distributedlog.io.CompressionDictionaries;
 import org.apache.distributedlog.io.CompressionUtils;
+import org.apache.distributedlog.io.ZstdCompressionCodec;
 
 /**
  * {@link ByteBuf} based log record set writer.
@@ -50,7 +53,7 @@ class EnvelopedRecordSetWriter implements LogRecordSet.Writer {
 
     private final ByteBuf buffer;
     private final List<CompletableFuture<DLSN>> promiseList;
-    private final CompressionCodec.Type codec;
+    private final CompressionCodec compressor;
     private final int metadata;
     private final int codecCode;
     private int count = 0;
@@ -58,13 +61,24 @@ class EnvelopedRecordSetWriter implements LogRecordSet.Writer {
 
     EnvelopedRecordSetWriter(int initialBufferSize,
                              CompressionCodec.Type codec) {
+        this(initialBufferSize, codec, ZstdCompressionCodec.DEFAULT_LEVEL, CompressionDictionaries.NO_DICTIONARY);
+    }
+
+    EnvelopedRecordSetWriter(int initialBufferSize,
+                             CompressionCodec.Type codec,
+                             int compressionLevel,
+                             int dictionaryId) {
         this.buffer = PooledByteBufAllocator.DEFAULT.buffer(
                 Math.max(initialBufferSize, HEADER_LEN),
                 MAX_LOGRECORDSET_SIZE);
         this.promiseList = new LinkedList<CompletableFuture<DLSN>>();
-        this.codec = codec;
+        this.compressor = CompressionUtils.getCompressionCodec(codec, compressionLevel, dictionaryId);
         this.codecCode = codec.code();
-        this.metadata = (VERSION & METADATA_VERSION_MASK) | (codecCode & METADATA_COMPRESSION_MASK);
+        if (Type.ZSTD != codec) {
+            dictionaryId = CompressionDictionaries.NO_DICTIONARY;
+        }
+        this.metadata = (VERSION & METADATA_VERSION_MASK) | (codecCode & METADATA_COMPRESSION_MASK)
+                | (dictionaryId << METADATA_DICTIONARY_ID_SHIFT);
         this.buffer.writeInt(metadata);
         this.buffer.writeInt(0); // count
         this.buffer.writeInt(0); // original len
@@ -139,9 +153,6 @@ class EnvelopedRecordSetWriter implements LogRecordSet.Writer {
         }
 
         // compression
-
-        CompressionCodec compressor =
-                    CompressionUtils.getCompressionCodec(codec);
         ByteBuf uncompressedBuf = buffer.slice(dataOffset, dataLen);
         ByteBuf compressedBuf = compressor.compress(uncompressedBuf, HEADER_LEN);
         compressedBuf.setInt(METADATA_OFFSET, metadata);
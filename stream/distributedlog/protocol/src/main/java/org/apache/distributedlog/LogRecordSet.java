@@ -42,14 +42,18 @@ import org.apache.distributedlog.io.CompressionCodec;
  * Metadata: Version and Flags // 32 Bits
  * --------------------------------------
  * 0 ... 0 0 0 0 0
- *             |_|
- *              |
- *    Compression Codec: // 2 Bits (Least significant)
- *    -----------------
- *    00        : No Compression
- *    01        : LZ4 Compression
- *    10        : Unused
- *    11        : Unused
+ * |___|       |_|
+ *   |          |
+ *   |       Compression Codec: // 2 Bits (Least significant)
+ *   |       -----------------
+ *   |       00        : No Compression
+ *   |       01        : LZ4 Compression
+ *   |       10        : ZSTD Compression
+ *   |       11        : Unused
+ *   |
+ * Dictionary Id: // 16 Bits (Most significant)
+ * -------------
+ * Id of the compression dictionary in CompressionDictionaries, 0 for no dictionary
  *
  * </pre>
  */
@@ -72,6 +76,7 @@ public class LogRecordSet {
     // Metadata
     static final int METADATA_VERSION_MASK = 0xf000;
     static final int METADATA_COMPRESSION_MASK = 0x3;
+    static final int METADATA_DICTIONARY_ID_SHIFT = 16;
 
     public static int numRecords(LogRecord record) throws IOException {
         checkArgument(record.isRecordSet(),
@@ -91,6 +96,23 @@ public class LogRecordSet {
         return new EnvelopedRecordSetWriter(initialBufferSize, codec);
     }
 
+    /**
+     * Create a writer compressing the record set with the given level and dictionary.
+     *
+     * @param initialBufferSize initial buffer size
+     * @param codec compression codec
+     * @param compressionLevel compression level, only used by the zstd codec
+     * @param dictionaryId id of the compression dictionary, only used by the zstd codec
+     * @return writer to build a log record set
+     * @see org.apache.distributedlog.io.CompressionDictionaries
+     */
+    public static Writer newWriter(int initialBufferSize,
+                                   CompressionCodec.Type codec,
+                                   int compressionLevel,
+                                   int dictionaryId) {
+        return new EnvelopedRecordSetWriter(initialBufferSize, codec, compressionLevel, dictionaryId);
+    }
+
     public static Reader of(LogRecordWithDLSN record) throws IOException {
         checkArgument(record.isRecordSet(),
                 "record is not a recordset");
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.distributedlog;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.distributedlog.LogRecordSet.METADATA_DICTIONARY_ID_SHIFT;
+import static org.apache.distributedlog.LogRecordSet.METADATA_OFFSET;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.apache.distributedlog.io.CompressionCodec.Type;
+import org.apache.distributedlog.io.CompressionDictionaries;
+import org.apache.distributedlog.io.CompressionTestUtil;
+import org.apache.distributedlog.io.ZstdCompressionCodec;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test Case for {@link LogRecordSet}, from the writer to the reader.
+ */
+public class TestLogRecordSet {
+
+    private static final int DICTIONARY_ID = CompressionTestUtil.newDictionaryId();
+    private static final int UNKNOWN_DICTIONARY_ID = CompressionTestUtil.newDictionaryId();
+    private static final int NUM_RECORDS = 20;
+
+    @BeforeClass
+    public static void registerDictionary() {
+        Random random = new Random(42);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            samples.add(record(random));
+        }
+        CompressionDictionaries.register(DICTIONARY_ID, CompressionDictionaries.train(samples, 1024));
+    }
+
+    private static byte[] record(Random random) {
+        return ("{\"timestamp\":" + (1700000000000L + random.nextInt(1000000))
+                + ",\"user\":\"user-" + random.nextInt(1000)
+                + "\",\"event\":\"" + (random.nextBoolean() ? "click" : "view") + "\"}").getBytes(UTF_8);
+    }
+
+    private static List<byte[]> records() {
+        Random random = new Random(7);
+        List<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            records.add(record(random));
+        }
+        return records;
+    }
+
+    /**
+     * Write the records to a record set, and return it as a record of a log segment.
+     */
+    private static LogRecordWithDLSN writeRecordSet(LogRecordSet.Writer writer, List<byte[]> records)
+            throws Exception {
+        List<CompletableFuture<DLSN>> promises = new ArrayList<>();
+        for (byte[] record : records) {
+            CompletableFuture<DLSN> promise = new CompletableFuture<>();
+            writer.writeRecord(ByteBuffer.wrap(record), promise);
+            promises.add(promise);
+        }
+        assertEquals(records.size(), writer.getNumRecords());
+
+        ByteBuf buffer = writer.getBuffer();
+        LogRecordWithDLSN recordSet = new LogRecordWithDLSN(new DLSN(1L, 0L, 0L), 1L, buffer, 1L);
+        buffer.release();
+        recordSet.setPositionWithinLogSegment(0);
+        recordSet.setRecordSet();
+        writer.completeTransmit(1L, 1L, 10L);
+        for (int i = 0; i < promises.size(); i++) {
+            assertEquals(new DLSN(1L, 1L, 10L + i), promises.get(i).get());
+        }
+        return recordSet;
+    }
+
+    private static void testRoundTrip(LogRecordSet.Writer writer, int dictionaryId) throws Exception {
+        List<byte[]> records = records();
+        LogRecordWithDLSN recordSet = writeRecordSet(writer, records);
+        assertEquals(dictionaryId,
+                recordSet.getPayloadBuf().getInt(METADATA_OFFSET) >>> METADATA_DICTIONARY_ID_SHIFT);
+        assertEquals(records.size(), LogRecordSet.numRecords(recordSet));
+
+        LogRecordSet.Reader reader = LogRecordSet.of(recordSet);
+        for (int i = 0; i < records.size(); i++) {
+            LogRecordWithDLSN record = reader.nextRecord();
+            assertEquals(new DLSN(1L, 0L, i), record.getDlsn());
+            assertArrayEquals(records.get(i), record.getPayload());
+        }
+        assertNull(reader.nextRecord());
+    }
+
+    @Test
+    public void testRoundTripWithoutCompression() throws Exception {
+        testRoundTrip(LogRecordSet.newWriter(1024, Type.NONE), CompressionDictionaries.NO_DICTIONARY);
+    }
+
+    @Test
+    public void testRoundTripLZ4() throws Exception {
+        // The dictionary is only used by zstd
+        testRoundTrip(LogRecordSet.newWriter(1024, Type.LZ4, ZstdCompressionCodec.DEFAULT_LEVEL, DICTIONARY_ID),
+                CompressionDictionaries.NO_DICTIONARY);
+    }
+
+    @Test
+    public void testRoundTripZstd() throws Exception {
+        testRoundTrip(LogRecordSet.newWriter(1024, Type.ZSTD), CompressionDictionaries.NO_DICTIONARY);
+        testRoundTrip(LogRecordSet.newWriter(1024, Type.ZSTD, 1, CompressionDictionaries.NO_DICTIONARY),
+                CompressionDictionaries.NO_DICTIONARY);
+    }
+
+    @Test
+    public void testRoundTripZstdWithDictionary() throws Exception {
+        testRoundTrip(LogRecordSet.newWriter(1024, Type.ZSTD, ZstdCompressionCodec.DEFAULT_LEVEL, DICTIONARY_ID),
+                DICTIONARY_ID);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteWithUnknownDictionary() {
+        LogRecordSet.newWriter(1024, Type.ZSTD, ZstdCompressionCodec.DEFAULT_LEVEL, UNKNOWN_DICTIONARY_ID);
+    }
+
+    @Test
+    public void testReadWithUnknownDictionary() throws Exception {
+        LogRecordWithDLSN recordSet = writeRecordSet(
+                LogRecordSet.newWriter(1024, Type.ZSTD, ZstdCompressionCodec.DEFAULT_LEVEL, DICTIONARY_ID),
+                records());
+        // A reader which didn't register the dictionary of the writer
+        ByteBuf payload = recordSet.getPayloadBuf();
+        int metadata = payload.getInt(METADATA_OFFSET);
+        payload.setInt(METADATA_OFFSET, (metadata & ((1 << METADATA_DICTIONARY_ID_SHIFT) - 1))
+                | (UNKNOWN_DICTIONARY_ID << METADATA_DICTIONARY_ID_SHIFT));
+        try {
+            LogRecordSet.of(recordSet);
+            fail("Should fail to read a record set compressed with an unknown dictionary");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+}
@@ -349,7 +349,8 @@ public class StorageServer {
                     () -> new DLCheckpointStore(dlNamespaceProvider.get()),
                     storageConf.getRangeStoreDirs(),
                     storageResources,
-                    storageConf.getServeReadOnlyTables(), storageConf))
+                    storageConf.getServeReadOnlyTables(), storageConf,
+                    rootStatsLogger.scope("storage").scope("range_store")))
             // with client manager for proxying grpc requests
             .withStorageServerClientManager(() -> new StorageServerClientManagerImpl(
                 proxyClientSettings,
@@ -28,6 +28,8 @@ import lombok.Getter;
 import lombok.Singular;
 import org.apache.bookkeeper.common.coder.Coder;
 import org.apache.bookkeeper.statelib.api.checkpoint.CheckpointStore;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
 
 /**
  * Specification for a state store.
@@ -63,6 +65,17 @@ public class StateStoreSpec {
     // Max idle time while waiting to restore from a checkpoint.
     private Duration checkpointRestoreIdleLimit = Duration.ofMinutes(5);
 
+    @Default
+    // Number of files downloaded in parallel while restoring from a checkpoint.
+    private int checkpointRestoreParallelism = 1;
+
+    @Default
+    // Serve the reads from the restored checkpoint while the journal is still being replayed.
+    private boolean readableDuringReplay = false;
+
+    @Default
+    private StatsLogger statsLogger = NullStatsLogger.INSTANCE;
+
     @Default
     private int ttlSeconds = 0;
 }
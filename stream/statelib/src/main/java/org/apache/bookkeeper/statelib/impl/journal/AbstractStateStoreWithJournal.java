@@ -25,13 +25,17 @@ import io.netty.buffer.ByteBuf;
 import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -59,10 +63,17 @@ import org.apache.distributedlog.util.Utils;
 
 /**
  * An abstract implementation of {@link AsyncStateStore} with journal.
+ *
+ * <p>The commands written concurrently are group committed: they are assigned consecutive revisions and appended
+ * to the journal with one bulk write, which is flushed as a single transmission. The futures of a group are
+ * completed together, in the order of their revisions, once the whole group is durable.
  */
 @Slf4j
 public abstract class AbstractStateStoreWithJournal<LocalStateStoreT extends StateStore> implements AsyncStateStore {
 
+    // max commands appended to the journal with one bulk write
+    private static final int MAX_COMMANDS_PER_GROUP = 256;
+
     // local state store instance
     @Getter
     protected final LocalStateStoreT localStore;
@@ -85,12 +96,18 @@ public abstract class AbstractStateStoreWithJournal<LocalStateStoreT extends Sta
     private long nextRevision;
     private CommandProcessor<LocalStateStoreT> commandProcessor;
 
+    // group commit
+    private final ConcurrentLinkedQueue<PendingCommand> pendingCommands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean committingGroup = new AtomicBoolean(false);
+
     // checkpoint
     private ScheduledFuture<?> checkpointTask;
     private Duration checkpointInterval;
 
     // close state
     protected boolean isInitialized = false;
+    // whether the reads can be served, either once initialized or once the local store is restored
+    protected boolean isReadable = false;
     protected CompletableFuture<Void> closeFuture = null;
 
     protected AbstractStateStoreWithJournal(Supplier<LocalStateStoreT> localStateStoreSupplier,
@@ -130,6 +147,7 @@ public abstract class AbstractStateStoreWithJournal<LocalStateStoreT extends Sta
 
     private synchronized void markInitialized(AsyncLogReader reader) {
         isInitialized = true;
+        isReadable = true;
         // schedule periodical checkpoint
         if (null != checkpointInterval) {
             long checkpointIntervalMs = checkpointInterval.toMillis();
@@ -217,6 +235,13 @@ public abstract class AbstractStateStoreWithJournal<LocalStateStoreT extends Sta
             localStore.init(spec);
             log.info("Initialized the local state for mvcc store {}", name());
             commandProcessor = newCommandProcessor();
+            if (spec.isReadableDuringReplay()) {
+                synchronized (this) {
+                    isReadable = true;
+                }
+                log.info("Serving the reads of store {} from the restored local state while replaying the journal",
+                    name());
+            }
             return null;
         });
     }
@@ -552,12 +577,84 @@ public abstract class AbstractStateStoreWithJournal<LocalStateStoreT extends Sta
             () -> ReferenceCountUtil.release(cmdBuf));
     }
 
-    protected synchronized CompletableFuture<Long> writeCommandBufReturnTxId(ByteBuf cmdBuf) {
-        long txId = ++nextRevision;
-        return FutureUtils.ensure(
-            writer.write(new LogRecord(txId, cmdBuf.nioBuffer()))
-                .thenApply(dlsn -> txId),
-            () -> ReferenceCountUtil.release(cmdBuf));
+    /**
+     * Append a command to the journal, grouped with the commands written concurrently.
+     *
+     * @return the future of the revision assigned to the command, completed once the command is durable.
+     */
+    protected CompletableFuture<Long> writeCommandBufReturnTxId(ByteBuf cmdBuf) {
+        PendingCommand command = new PendingCommand(cmdBuf);
+        pendingCommands.add(command);
+        // the first writer commits the group of the commands queued so far, the others join it
+        while (!pendingCommands.isEmpty() && committingGroup.compareAndSet(false, true)) {
+            try {
+                commitGroup();
+            } finally {
+                committingGroup.set(false);
+            }
+        }
+        return command.future;
+    }
+
+    private void commitGroup() {
+        List<PendingCommand> group = new ArrayList<>();
+        PendingCommand command;
+        while (group.size() < MAX_COMMANDS_PER_GROUP && (command = pendingCommands.poll()) != null) {
+            group.add(command);
+        }
+        if (group.isEmpty()) {
+            return;
+        }
+
+        List<LogRecord> records = new ArrayList<>(group.size());
+        CompletableFuture<List<CompletableFuture<DLSN>>> bulkFuture;
+        try {
+            synchronized (this) {
+                for (PendingCommand pending : group) {
+                    pending.txId = ++nextRevision;
+                    records.add(new LogRecord(pending.txId, pending.cmdBuf.nioBuffer()));
+                }
+                // the last record of a bulk write flushes the group
+                bulkFuture = writer.writeBulk(records);
+            }
+        } catch (RuntimeException e) {
+            bulkFuture = FutureUtils.exception(e);
+        }
+        bulkFuture.whenComplete((writeFutures, cause) -> {
+            if (null != cause) {
+                group.forEach(pending -> pending.complete(cause));
+                return;
+            }
+            CompletableFuture.allOf(writeFutures.toArray(new CompletableFuture[0])).whenComplete((ignored, ce) -> {
+                // all the writes are done, so the commands are completed in order
+                for (int i = 0; i < group.size(); i++) {
+                    PendingCommand pending = group.get(i);
+                    writeFutures.get(i).whenComplete((dlsn, writeCause) -> pending.complete(writeCause));
+                }
+            });
+        });
+    }
+
+    /**
+     * A command waiting to be appended to the journal.
+     */
+    private static final class PendingCommand {
+        final ByteBuf cmdBuf;
+        final CompletableFuture<Long> future = FutureUtils.createFuture();
+        long txId;
+
+        PendingCommand(ByteBuf cmdBuf) {
+            this.cmdBuf = cmdBuf;
+        }
+
+        void complete(Throwable cause) {
+            ReferenceCountUtil.release(cmdBuf);
+            if (null != cause) {
+                future.completeExceptionally(cause);
+            } else {
+                future.complete(txId);
+            }
+        }
     }
 
     //
@@ -64,7 +64,7 @@ public class RocksdbKVAsyncStore<K, V>
     @Override
     public CompletableFuture<V> get(K key) {
         synchronized (this) {
-            if (!isInitialized) {
+            if (!isReadable) {
                 return uninitializedException();
             }
         }
@@ -182,7 +182,13 @@ public class RocksdbKVStore<K, V> implements KVStore<K, V> {
         List<CheckpointInfo> checkpoints = RocksCheckpointer.getCheckpoints(dbName, spec.getCheckpointStore());
         for (CheckpointInfo cpi : checkpoints) {
             try {
-                cpi.restore(dbName, localStorePath, spec.getCheckpointStore(), spec.getCheckpointRestoreIdleLimit());
+                cpi.restore(
+                    dbName,
+                    localStorePath,
+                    spec.getCheckpointStore(),
+                    spec.getCheckpointRestoreIdleLimit(),
+                    spec.getCheckpointRestoreParallelism(),
+                    spec.getStatsLogger());
                 openRocksdb(spec);
                 checkpoints.stream()
                     .filter(cp -> cp != cpi) // ignore the current restored checkpoint
@@ -90,7 +90,7 @@ class MVCCAsyncBytesStoreImpl
     @Override
     public CompletableFuture<RangeResult<byte[], byte[]>> range(RangeOp<byte[], byte[]> rangeOp) {
         synchronized (this) {
-            if (!isInitialized) {
+            if (!isReadable) {
                 return FutureUtils.exception(new InvalidStateStoreException("State store is not initialized yet."));
             }
         }
@@ -109,7 +109,7 @@ class MVCCAsyncBytesStoreImpl
 
         Command command = MVCCUtils.toCommand(op);
         return writeCommandReturnTxId(command)
-            .thenApplyAsync(revision -> localStore.put(revision, op), writeIOScheduler);
+            .thenCompose(revision -> localStore.submitWrite(revision, op, writeIOScheduler));
     }
 
     @Override
@@ -122,7 +122,7 @@ class MVCCAsyncBytesStoreImpl
 
         Command command = MVCCUtils.toCommand(op);
         return writeCommandReturnTxId(command)
-            .thenApplyAsync(revision -> localStore.delete(revision, op), writeIOScheduler);
+            .thenCompose(revision -> localStore.submitWrite(revision, op, writeIOScheduler));
     }
 
     @Override
@@ -135,7 +135,7 @@ class MVCCAsyncBytesStoreImpl
 
         Command command = MVCCUtils.toCommand(op);
         return writeCommandReturnTxId(command)
-            .thenApplyAsync(revision -> localStore.txn(revision, op), writeIOScheduler);
+            .thenCompose(revision -> localStore.submitWrite(revision, op, writeIOScheduler));
     }
 
     @Override
@@ -147,6 +147,6 @@ class MVCCAsyncBytesStoreImpl
         }
         Command command = MVCCUtils.toCommand(op);
         return writeCommandReturnTxId(command)
-            .thenApplyAsync(revision -> localStore.increment(revision, op), writeIOScheduler);
+            .thenCompose(revision -> localStore.submitWrite(revision, op, writeIOScheduler));
     }
 }
@@ -22,19 +22,30 @@ import static io.netty.util.ReferenceCountUtil.retain;
 import static org.apache.bookkeeper.statelib.impl.Constants.NULL_END_KEY;
 import static org.apache.bookkeeper.statelib.impl.Constants.NULL_START_KEY;
 
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.primitives.UnsignedBytes;
 import com.google.protobuf.TextFormat;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCountUtil;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.api.kv.impl.op.OpFactoryImpl;
@@ -81,15 +92,22 @@ import org.apache.bookkeeper.statelib.impl.rocksdb.RocksUtils;
 import org.apache.bookkeeper.stream.proto.kv.store.ValueType;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.apache.commons.lang3.tuple.Pair;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Snapshot;
 import org.rocksdb.WriteBatch;
 
 /**
  * MVCC Store Implementation.
  *
- * <p>The current implementation executes write operations in one single io thread.
- * It can be improved later to leverage the revision numbers to achieve mvcc.
+ * <p>The write operations are read-modify-write operations, so they are applied one at a time, in the order of
+ * their revisions. The writes submitted with {@link #submitWrite(long, Op, Executor)} are applied by a single
+ * writer, which groups the writes queued behind each other into one {@link WriteBatch}.
+ *
+ * <p>The read operations don't wait for the writes, and run concurrently with each other. The range reads run
+ * against a rocksdb snapshot, shared by all the reads done between two write batches. The reads and the writes
+ * only share the close lock, which prevents the store from being closed under them.
  */
 @Slf4j
 class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V> {
@@ -101,6 +119,21 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
     private final OpFactory<K, V> opFactory;
     private final Coder<MVCCRecord> recordCoder = MVCCRecordCoder.of();
 
+    // Max number of writes applied in one write batch
+    private static final int MAX_WRITES_PER_BATCH = 256;
+
+    // shared by the reads and the writes, exclusive on close
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    // serializes the writes
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<PendingWrite<K, V>> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writerScheduled = new AtomicBoolean(false);
+
+    // number of write batches applied, the range reads share a snapshot until the next write batch
+    private final AtomicLong writeVersion = new AtomicLong(0L);
+    private final Object readSnapshotLock = new Object();
+    private volatile ReadSnapshot readSnapshot = null;
+
     MVCCStoreImpl() {
         this.resultFactory = new ResultFactory<>();
         this.recordFactory = new KeyValueFactory<>();
@@ -118,17 +151,17 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
     }
 
     @Override
-    public synchronized V putIfAbsent(K key, V value) {
+    public V putIfAbsent(K key, V value) {
         throw new UnsupportedOperationException("Please use #put(PutOp op) instead");
     }
 
     @Override
-    public synchronized KVMulti<K, V> multi() {
+    public KVMulti<K, V> multi() {
         throw new UnsupportedOperationException("Please use #txn(TxnOp op) instead");
     }
 
     @Override
-    public synchronized V delete(K key) {
+    public V delete(K key) {
         throw new UnsupportedOperationException("Please use #delete(DeleteOp op) instead");
     }
 
@@ -206,7 +239,7 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
     }
 
     @Override
-    public synchronized V get(K key) {
+    public V get(K key) {
         try (RangeOp<K, V> op = opFactory.newRange(
             key,
             opFactory.optionFactory().newRangeOption()
@@ -227,27 +260,41 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
     }
 
     @Override
-    public synchronized KVIterator<K, V> range(K from, K to) {
-        checkStoreOpen();
+    public KVIterator<K, V> range(K from, K to) {
+        closeLock.readLock().lock();
+        try {
+            checkStoreOpen();
 
-        RangeResultIterator iter = new RangeResultIterator(from, to);
-        kvIters.add(iter);
-        return iter;
+            RangeResultIterator iter = new RangeResultIterator(from, to);
+            kvIters.add(iter);
+            return iter;
+        } finally {
+            closeLock.readLock().unlock();
+        }
     }
 
+    /**
+     * Iterator streaming the key/value pairs of a range from a snapshot of the store.
+     */
     class RangeResultIterator implements KVIterator<K, V> {
 
-        private final K to;
-        private K next;
-        private RangeResult<K, V> result;
-        private PeekingIterator<KeyValue<K, V>> resultIter;
+        private final byte[] rawEndKey;
+        private final ReadSnapshot snapshot;
+        private final RocksIterator iter;
+        private KV<K, V> next = null;
         private boolean eor = false;
 
         private volatile boolean closed = false;
 
         RangeResultIterator(K from, K to) {
-            this.to = to;
-            this.next = from;
+            this.rawEndKey = (null != to) ? keyCoder.encode(to) : null;
+            this.snapshot = acquireReadSnapshot();
+            this.iter = db.newIterator(dataCfHandle, snapshot.readOpts);
+            if (null == from) {
+                iter.seekToFirst();
+            } else {
+                iter.seek(keyCoder.encode(from));
+            }
         }
 
         private void ensureIteratorOpen() {
@@ -258,36 +305,47 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
 
         @Override
         public void close() {
-            kvIters.remove(this);
-            if (null != result) {
-                result.close();
-            }
-            closed = true;
-        }
-
-        private void getNextBatch() {
-            try (RangeOp<K, V> op = opFactory.newRange(
-                next,
-                opFactory.optionFactory().newRangeOption()
-                    .endKey(to)
-                    .limit(32)
-                    .build())) {
-                this.result = range(op);
-            }
-            if (Code.OK != result.code()) {
-                throw new MVCCStoreException(result.code(),
-                    "Failed to fetch kv pairs at range [" + next + ", " + to + "] from state store " + name);
+            // the store closes its open iterators before closing the db, so under the close lock the iterator is
+            // either released while the db is open, or was already closed by the store
+            closeLock.readLock().lock();
+            try {
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                }
+                kvIters.remove(this);
+                RocksUtils.close(iter);
+                snapshot.release();
+            } finally {
+                closeLock.readLock().unlock();
             }
-            this.resultIter = Iterators.peekingIterator(result.kvs().iterator());
         }
 
-        private void skipFirstKey() {
-            while (this.resultIter.hasNext()) {
-                KeyValue<K, V> kv = this.resultIter.peek();
-                if (!kv.key().equals(next)) {
-                    break;
+        private void readNext() {
+            closeLock.readLock().lock();
+            try {
+                ensureIteratorOpen();
+                while (iter.isValid()) {
+                    byte[] key = iter.key();
+                    if (null != rawEndKey && COMPARATOR.compare(rawEndKey, key) < 0) {
+                        break;
+                    }
+                    MVCCRecord record = recordCoder.decode(iter.value());
+                    iter.next();
+                    try {
+                        if (!record.expired()) {
+                            next = new KVImpl<>(keyCoder.decode(key), valCoder.decode(record.getValue()));
+                            return;
+                        }
+                    } finally {
+                        record.recycle();
+                    }
                 }
-                this.resultIter.next();
+                eor = true;
+            } finally {
+                closeLock.readLock().unlock();
             }
         }
 
@@ -295,24 +353,10 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         public boolean hasNext() {
             ensureIteratorOpen();
 
-            if (eor) {
-                return false;
-            }
-            if (null == result) {
-                getNextBatch();
-            }
-            if (!this.resultIter.hasNext()) {
-                if (this.result.more()) {
-                    this.result.close();
-                    getNextBatch();
-                    skipFirstKey();
-                    return hasNext();
-                } else {
-                    eor = true;
-                    return false;
-                }
+            if (null == next && !eor) {
+                readNext();
             }
-            return true;
+            return null != next;
         }
 
         @Override
@@ -320,12 +364,87 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            KeyValue<K, V> kv = this.resultIter.next();
-            next = kv.key();
-            if (next.equals(to)) {
-                eor = true;
+            KV<K, V> kv = next;
+            next = null;
+            return kv;
+        }
+    }
+
+    /**
+     * A rocksdb snapshot, shared by the range reads done between two write batches.
+     */
+    private final class ReadSnapshot {
+        final long version;
+        final Snapshot snapshot;
+        final ReadOptions readOpts;
+        // one reference is held by the store while it is the current snapshot
+        final AtomicInteger refCnt = new AtomicInteger(1);
+
+        ReadSnapshot(long version) {
+            this.version = version;
+            this.snapshot = db.getSnapshot();
+            this.readOpts = new ReadOptions().setSnapshot(snapshot);
+        }
+
+        boolean tryRetain() {
+            int cnt;
+            do {
+                cnt = refCnt.get();
+                if (cnt <= 0) {
+                    return false;
+                }
+            } while (!refCnt.compareAndSet(cnt, cnt + 1));
+            return true;
+        }
+
+        void release() {
+            if (refCnt.decrementAndGet() == 0) {
+                db.releaseSnapshot(snapshot);
+                RocksUtils.close(readOpts);
+            }
+        }
+    }
+
+    /**
+     * Acquire a snapshot including all the applied writes. Must be called under the close lock.
+     */
+    private ReadSnapshot acquireReadSnapshot() {
+        ReadSnapshot snapshot = readSnapshot;
+        if (null != snapshot && snapshot.version == writeVersion.get() && snapshot.tryRetain()) {
+            return snapshot;
+        }
+        synchronized (readSnapshotLock) {
+            snapshot = readSnapshot;
+            long version = writeVersion.get();
+            if (null == snapshot || snapshot.version != version) {
+                ReadSnapshot newSnapshot = new ReadSnapshot(version);
+                readSnapshot = newSnapshot;
+                if (null != snapshot) {
+                    snapshot.release();
+                }
+                snapshot = newSnapshot;
+            }
+            // the current snapshot is retained by the store, so this can't fail
+            snapshot.tryRetain();
+            return snapshot;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (!closed) {
+                synchronized (readSnapshotLock) {
+                    if (null != readSnapshot) {
+                        readSnapshot.release();
+                        readSnapshot = null;
+                    }
+                }
             }
-            return new KVImpl<>(kv.key(), kv.value());
+            super.close();
+        } finally {
+            closeLock.writeLock().unlock();
         }
     }
 
@@ -339,6 +458,285 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         } catch (RocksDBException e) {
             throw new StateStoreRuntimeException("Error while executing a multi operation from state store " + name, e);
         }
+        writeVersion.incrementAndGet();
+    }
+
+    private void lockWrite() {
+        closeLock.readLock().lock();
+        writeLock.lock();
+    }
+
+    private void unlockWrite() {
+        writeLock.unlock();
+        closeLock.readLock().unlock();
+    }
+
+    //
+    // Batched Writes
+    //
+
+    /**
+     * A write waiting to be applied by the writer.
+     */
+    private static final class PendingWrite<K, V> {
+        final long revision;
+        final Op<K, V> op;
+        final CompletableFuture<Result<K, V>> future = new CompletableFuture<>();
+        Result<K, V> result;
+
+        PendingWrite(long revision, Op<K, V> op) {
+            this.revision = revision;
+            this.op = op;
+        }
+    }
+
+    /**
+     * Submit a write operation to be applied on the given executor, after the writes submitted before it.
+     *
+     * <p>The writes queued behind each other are applied in one {@link WriteBatch}, until a write touches a key
+     * already written in the batch, since the writes read the records they update from the store.
+     */
+    @SuppressWarnings("unchecked")
+    <R extends Result<K, V>> CompletableFuture<R> submitWrite(long revision, Op<K, V> op, Executor executor) {
+        PendingWrite<K, V> write = new PendingWrite<>(revision, op);
+        pendingWrites.add(write);
+        scheduleWriter(executor);
+        return (CompletableFuture<R>) (CompletableFuture<?>) write.future;
+    }
+
+    private void scheduleWriter(Executor executor) {
+        if (!writerScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> runWriter(executor));
+        } catch (RejectedExecutionException ree) {
+            writerScheduled.set(false);
+            PendingWrite<K, V> write;
+            while ((write = pendingWrites.poll()) != null) {
+                write.future.completeExceptionally(ree);
+            }
+        }
+    }
+
+    private void runWriter(Executor executor) {
+        List<PendingWrite<K, V>> writes = new ArrayList<>();
+        PendingWrite<K, V> write;
+        while (writes.size() < MAX_WRITES_PER_BATCH && (write = pendingWrites.poll()) != null) {
+            writes.add(write);
+        }
+        try {
+            applyWrites(writes);
+        } finally {
+            writerScheduled.set(false);
+            // resubmit rather than loop, so the other tasks of the executor get a turn
+            if (!pendingWrites.isEmpty()) {
+                scheduleWriter(executor);
+            }
+        }
+    }
+
+    private void applyWrites(List<PendingWrite<K, V>> writes) {
+        lockWrite();
+        try {
+            checkStoreOpen();
+            applyWritesInBatches(writes);
+        } catch (StateStoreRuntimeException e) {
+            failWrites(writes, 0, writes.size());
+        } catch (RuntimeException e) {
+            log.error("Unexpected exception on applying writes to state store {}", name, e);
+            for (PendingWrite<K, V> write : writes) {
+                if (null != write.result) {
+                    write.result.close();
+                    write.result = null;
+                }
+                write.future.completeExceptionally(e);
+            }
+        } finally {
+            unlockWrite();
+        }
+        // complete the writes out of the lock
+        for (PendingWrite<K, V> write : writes) {
+            if (null != write.result) {
+                write.future.complete(write.result);
+            }
+        }
+    }
+
+    private void applyWritesInBatches(List<PendingWrite<K, V>> writes) {
+        Set<ByteBuffer> writtenKeys = new HashSet<>();
+        Set<ByteBuffer> opKeys = new HashSet<>();
+        int batchStart = 0;
+        WriteBatch batch = new WriteBatch();
+        try {
+            for (int i = 0; i < writes.size(); i++) {
+                PendingWrite<K, V> write = writes.get(i);
+
+                // a write reads the keys it updates, so it can't be batched with the writes of these keys
+                opKeys.clear();
+                boolean pointOp = collectKeys(write.op, opKeys);
+                boolean conflict = !pointOp || !Collections.disjoint(writtenKeys, opKeys);
+                if (conflict && i > batchStart) {
+                    commitBatch(batch, writes, batchStart, i);
+                    batchStart = i;
+                    writtenKeys.clear();
+                }
+
+                batch.setSavePoint();
+                try {
+                    write.result = applyWrite(write.revision, batch, write.op);
+                    updateLastRevision(batch, write.revision);
+                    popSavePoint(batch);
+                } catch (MVCCStoreException e) {
+                    rollbackWrite(batch, write);
+                    write.result = newResult(write.revision, write.op, e.getCode());
+                } catch (StateStoreRuntimeException e) {
+                    rollbackWrite(batch, write);
+                    write.result = newResult(write.revision, write.op, Code.INTERNAL_ERROR);
+                }
+                writtenKeys.addAll(opKeys);
+
+                if (!pointOp) {
+                    commitBatch(batch, writes, batchStart, i + 1);
+                    batchStart = i + 1;
+                    writtenKeys.clear();
+                }
+            }
+            if (batchStart < writes.size()) {
+                commitBatch(batch, writes, batchStart, writes.size());
+            }
+        } catch (StateStoreRuntimeException e) {
+            log.error("Failed to batch writes to state store {}", name, e);
+            // the writes of the current batch are not applied
+            failWrites(writes, batchStart, writes.size());
+        } finally {
+            RocksUtils.close(batch);
+        }
+    }
+
+    private void popSavePoint(WriteBatch batch) {
+        try {
+            batch.popSavePoint();
+        } catch (RocksDBException e) {
+            throw new StateStoreRuntimeException("Error while batching a write to state store " + name, e);
+        }
+    }
+
+    private void failWrites(List<PendingWrite<K, V>> writes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            PendingWrite<K, V> write = writes.get(i);
+            if (null != write.result) {
+                write.result.close();
+            }
+            write.result = newResult(write.revision, write.op, Code.INTERNAL_ERROR);
+        }
+    }
+
+    private void rollbackWrite(WriteBatch batch, PendingWrite<K, V> write) {
+        if (null != write.result) {
+            write.result.close();
+            write.result = null;
+        }
+        try {
+            batch.rollbackToSavePoint();
+        } catch (RocksDBException e) {
+            throw new StateStoreRuntimeException("Error while rolling back a write to state store " + name, e);
+        }
+    }
+
+    private void commitBatch(WriteBatch batch, List<PendingWrite<K, V>> writes, int from, int to) {
+        try {
+            if (batch.count() > 0) {
+                executeBatch(batch);
+            }
+        } catch (StateStoreRuntimeException e) {
+            log.error("Failed to apply a batch of {} writes to state store {}", to - from, name, e);
+            failWrites(writes, from, to);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Collect the keys read or written by an operation.
+     *
+     * @return false if the operation reads or writes a range of keys
+     */
+    private boolean collectKeys(Op<K, V> op, Set<ByteBuffer> keys) {
+        if (op instanceof PutOp) {
+            return collectKey(((PutOp<K, V>) op).key(), keys);
+        } else if (op instanceof IncrementOp) {
+            return collectKey(((IncrementOp<K, V>) op).key(), keys);
+        } else if (op instanceof DeleteOp) {
+            DeleteOp<K, V> deleteOp = (DeleteOp<K, V>) op;
+            return null == deleteOp.option().endKey() && collectKey(deleteOp.key(), keys);
+        } else if (op instanceof RangeOp) {
+            RangeOp<K, V> rangeOp = (RangeOp<K, V>) op;
+            return null == rangeOp.option().endKey() && collectKey(rangeOp.key(), keys);
+        } else if (op instanceof TxnOp) {
+            TxnOp<K, V> txnOp = (TxnOp<K, V>) op;
+            for (CompareOp<K, V> compareOp : txnOp.compareOps()) {
+                if (!collectKey(compareOp.key(), keys)) {
+                    return false;
+                }
+            }
+            return collectKeys(txnOp.successOps(), keys) && collectKeys(txnOp.failureOps(), keys);
+        } else {
+            return false;
+        }
+    }
+
+    private boolean collectKeys(@Nullable List<Op<K, V>> ops, Set<ByteBuffer> keys) {
+        if (null != ops) {
+            for (Op<K, V> op : ops) {
+                if (!collectKeys(op, keys)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean collectKey(@Nullable K key, Set<ByteBuffer> keys) {
+        if (null == key) {
+            return false;
+        }
+        keys.add(ByteBuffer.wrap(keyCoder.encode(key)));
+        return true;
+    }
+
+    private Result<K, V> applyWrite(long revision, WriteBatch batch, Op<K, V> op) {
+        if (op instanceof PutOp) {
+            return put(revision, batch, (PutOp<K, V>) op);
+        } else if (op instanceof DeleteOp) {
+            return delete(revision, batch, (DeleteOp<K, V>) op, true);
+        } else if (op instanceof IncrementOp) {
+            return increment(revision, batch, (IncrementOp<K, V>) op);
+        } else if (op instanceof TxnOp) {
+            return txn(revision, batch, (TxnOp<K, V>) op);
+        } else {
+            throw new MVCCStoreException(Code.ILLEGAL_OP, "Unknown write operation : " + op);
+        }
+    }
+
+    private Result<K, V> newResult(long revision, Op<K, V> op, Code code) {
+        if (op instanceof PutOp) {
+            PutResultImpl<K, V> result = resultFactory.newPutResult(revision);
+            result.code(code);
+            return result;
+        } else if (op instanceof DeleteOp) {
+            DeleteResultImpl<K, V> result = resultFactory.newDeleteResult(revision);
+            result.code(code);
+            return result;
+        } else if (op instanceof IncrementOp) {
+            IncrementResultImpl<K, V> result = resultFactory.newIncrementResult(revision);
+            result.code(code);
+            return result;
+        } else {
+            TxnResultImpl<K, V> result = resultFactory.newTxnResult(revision);
+            result.code(code);
+            return result;
+        }
     }
 
     /**
@@ -359,12 +757,12 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         }
     }
 
-    synchronized IncrementResult<K, V> processIncrement(long revision, IncrementOp<K, V> op) {
-        checkStoreOpen();
-
+    IncrementResult<K, V> processIncrement(long revision, IncrementOp<K, V> op) {
+        lockWrite();
         WriteBatch batch = new WriteBatch();
         IncrementResult<K, V> result = null;
         try {
+            checkStoreOpen();
             result = increment(revision, batch, op);
             updateLastRevision(batch, revision);
             executeBatch(batch);
@@ -376,6 +774,7 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
             throw e;
         } finally {
             RocksUtils.close(batch);
+            unlockWrite();
         }
     }
 
@@ -459,12 +858,12 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         }
     }
 
-    synchronized PutResult<K, V> processPut(long revision, PutOp<K, V> op) {
-        checkStoreOpen();
-
+    PutResult<K, V> processPut(long revision, PutOp<K, V> op) {
+        lockWrite();
         WriteBatch batch = new WriteBatch();
         PutResult<K, V> result = null;
         try {
+            checkStoreOpen();
             result = put(revision, batch, op);
             updateLastRevision(batch, revision);
             executeBatch(batch);
@@ -476,6 +875,7 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
             throw e;
         } finally {
             RocksUtils.close(batch);
+            unlockWrite();
         }
     }
 
@@ -574,12 +974,12 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         }
     }
 
-    synchronized DeleteResult<K, V> processDelete(long revision, DeleteOp<K, V> op) {
-        checkStoreOpen();
-
+    DeleteResult<K, V> processDelete(long revision, DeleteOp<K, V> op) {
+        lockWrite();
         WriteBatch batch = new WriteBatch();
         DeleteResult<K, V> result = null;
         try {
+            checkStoreOpen();
             result = delete(revision, batch, op, true);
             updateLastRevision(batch, revision);
             executeBatch(batch);
@@ -591,6 +991,7 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
             throw e;
         } finally {
             RocksUtils.close(batch);
+            unlockWrite();
         }
     }
 
@@ -649,7 +1050,7 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
             if (null == endKey) {
                 batch.delete(key);
             } else {
-                Pair<byte[], byte[]> realRange = getRealRange(key, endKey);
+                Pair<byte[], byte[]> realRange = getRealRange(null, key, endKey);
                 endKey = realRange.getRight();
                 ++endKey[endKey.length - 1];
                 batch.deleteRange(realRange.getLeft(), endKey);
@@ -684,11 +1085,12 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
                 }
             }
         } else {
-            Pair<byte[], byte[]> realRange = getRealRange(rawKey, rawEndKey);
+            Pair<byte[], byte[]> realRange = getRealRange(null, rawKey, rawEndKey);
             rawKey = realRange.getLeft();
             rawEndKey = realRange.getRight();
 
             getKeyRecords(
+                null,
                 rawKey,
                 rawEndKey,
                 resultKeys,
@@ -708,7 +1110,7 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
     //
 
     @Override
-    public synchronized TxnResult<K, V> txn(long revision, TxnOp<K, V> op) {
+    public TxnResult<K, V> txn(long revision, TxnOp<K, V> op) {
         try {
             return processTxn(revision, op);
         } catch (MVCCStoreException e) {
@@ -722,9 +1124,25 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         }
     }
 
-    synchronized TxnResult<K, V> processTxn(long revision, TxnOp<K, V> op) {
-        checkStoreOpen();
+    TxnResult<K, V> processTxn(long revision, TxnOp<K, V> op) {
+        lockWrite();
+        try (WriteBatch batch = new WriteBatch()) {
+            checkStoreOpen();
+            TxnResult<K, V> result = txn(revision, batch, op);
+            try {
+                updateLastRevision(batch, revision);
+                executeBatch(batch);
+            } catch (StateStoreRuntimeException e) {
+                result.close();
+                throw e;
+            }
+            return result;
+        } finally {
+            unlockWrite();
+        }
+    }
 
+    private TxnResult<K, V> txn(long revision, WriteBatch batch, TxnOp<K, V> op) {
         // 1. process the compares
         boolean success = processCompares(op);
 
@@ -742,25 +1160,21 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         results = Lists.newArrayListWithExpectedSize(operations.size());
 
         // 3. process the operations
-        try (WriteBatch batch = new WriteBatch()) {
+        try {
             for (Op<K, V> o : operations) {
                 results.add(executeOp(revision, batch, o));
             }
-            updateLastRevision(batch, revision);
-            executeBatch(batch);
-
-            // 4. repare the result
-            TxnResultImpl<K, V> txnResult = resultFactory.newTxnResult(revision);
-            txnResult.isSuccess(success);
-            txnResult.results(results);
-            txnResult.code(Code.OK);
-
-            return txnResult;
         } catch (StateStoreRuntimeException e) {
             results.forEach(Result::close);
             throw e;
         }
 
+        // 4. repare the result
+        TxnResultImpl<K, V> txnResult = resultFactory.newTxnResult(revision);
+        txnResult.isSuccess(success);
+        txnResult.results(results);
+        txnResult.code(Code.OK);
+        return txnResult;
     }
 
     boolean processCompareOp(CompareOp<K, V> op) {
@@ -871,7 +1285,16 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
     // Read View
     //
 
-    private boolean getKeyRecords(byte[] rawKey,
+    private RocksIterator newDataIterator(@Nullable ReadOptions readOpts) {
+        if (null == readOpts) {
+            return db.newIterator(dataCfHandle);
+        } else {
+            return db.newIterator(dataCfHandle, readOpts);
+        }
+    }
+
+    private boolean getKeyRecords(@Nullable ReadOptions readOpts,
+                                  byte[] rawKey,
                                   byte[] rawEndKey,
                                   List<byte[]> resultKeys,
                                   List<MVCCRecord> resultValues,
@@ -879,7 +1302,7 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
                                   RangeOption<K> rangeOption,
                                   long limit,
                                   boolean countOnly) {
-        try (RocksIterator iter = db.newIterator(dataCfHandle)) {
+        try (RocksIterator iter = newDataIterator(readOpts)) {
             iter.seek(rawKey);
             boolean eor = false;
             while (iter.isValid() && (limit < 0 || resultKeys.size() < limit)) {
@@ -965,9 +1388,17 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         }
     }
 
-    synchronized RangeResult<K, V> processRange(RangeOp<K, V> rangeOp) {
-        checkStoreOpen();
+    RangeResult<K, V> processRange(RangeOp<K, V> rangeOp) {
+        closeLock.readLock().lock();
+        try {
+            checkStoreOpen();
+            return readRange(rangeOp);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
 
+    private RangeResult<K, V> readRange(RangeOp<K, V> rangeOp) {
         // parameters
         final K key = rangeOp.key();
         final K endKey = rangeOp.option().endKey();
@@ -1003,18 +1434,20 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         } else {
             rawEndKey = keyCoder.encode(endKey);
         }
-        Pair<byte[], byte[]> realRange = getRealRange(rawKey, rawEndKey);
-        rawKey = realRange.getLeft();
-        rawEndKey = realRange.getRight();
 
-        // range lookup
+        // range lookup, against a snapshot shared with the other reads
         List<byte[]> keys = Lists.newArrayList();
         List<MVCCRecord> records = Lists.newArrayList();
         MutableLong numKvs = new MutableLong(0L);
 
+        ReadSnapshot snapshot = acquireReadSnapshot();
         try {
+            Pair<byte[], byte[]> realRange = getRealRange(snapshot.readOpts, rawKey, rawEndKey);
+            rawKey = realRange.getLeft();
+            rawEndKey = realRange.getRight();
 
             boolean hasMore = getKeyRecords(
+                snapshot.readOpts,
                 rawKey,
                 rawEndKey,
                 keys,
@@ -1031,6 +1464,7 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
             result.count(kvs.size());
             result.more(hasMore);
         } finally {
+            snapshot.release();
             records.forEach(MVCCRecord::recycle);
         }
         return result;
@@ -1051,11 +1485,11 @@ class MVCCStoreImpl<K, V> extends RocksdbKVStore<K, V> implements MVCCStore<K, V
         return kvs;
     }
 
-    private Pair<byte[], byte[]> getRealRange(byte[] rawKey, byte[] rawEndKey) {
+    private Pair<byte[], byte[]> getRealRange(@Nullable ReadOptions readOpts, byte[] rawKey, byte[] rawEndKey) {
         boolean isNullStartKey = Constants.isNullStartKey(rawKey);
         boolean isNullEndKey = Constants.isNullEndKey(rawEndKey);
         if (isNullStartKey || isNullEndKey) {
-            try (RocksIterator iter = db.newIterator(dataCfHandle)) {
+            try (RocksIterator iter = newDataIterator(readOpts)) {
                 if (isNullStartKey) {
                     iter.seekToFirst();
                     if (!iter.isValid()) {
@@ -25,6 +25,7 @@ import com.google.common.io.CountingInputStream;
 import com.google.common.io.Files;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
@@ -36,6 +37,7 @@ import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.statelib.api.checkpoint.CheckpointStore;
@@ -209,7 +211,45 @@ public class CheckpointFile {
         }
     }
 
-    public void copyFromRemote(CheckpointStore checkpointStore,
+    /**
+     * Check if a local file has the content of this checkpoint file.
+     *
+     * @param localFile the local file
+     * @return true if the local file has the checksum of this file
+     */
+    public boolean hasSameContent(File localFile) {
+        if (null == checksum || !localFile.isFile()) {
+            return false;
+        }
+        return checksum.equals(CheckpointFileBuilder.computeChecksum(localFile));
+    }
+
+    /**
+     * Copy the file from the checkpoint store, in the calling thread.
+     *
+     * @param progress the counter of the bytes copied, to track the progress of the copy
+     * @return the number of bytes copied
+     */
+    public long copyFromRemote(CheckpointStore checkpointStore,
+                               String dbPrefix,
+                               String checkpointId,
+                               LongAdder progress) throws IOException {
+        String remoteFilePath = getRemotePath(dbPrefix, checkpointId, true);
+        byte[] buffer = new byte[64 * 1024];
+        long numBytes = 0L;
+        try (InputStream is = checkpointStore.openInputStream(remoteFilePath);
+             OutputStream os = java.nio.file.Files.newOutputStream(Paths.get(getFile().getAbsolutePath()))) {
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                os.write(buffer, 0, read);
+                numBytes += read;
+                progress.add(read);
+            }
+        }
+        return numBytes;
+    }
+
+    public long copyFromRemote(CheckpointStore checkpointStore,
                                String dbPrefix,
                                String checkpointId,
                                Duration idleWait) throws IOException, TimeoutException {
@@ -251,6 +291,7 @@ public class CheckpointFile {
                 }
             }
         }
+        return cis.getCount();
     }
 
 
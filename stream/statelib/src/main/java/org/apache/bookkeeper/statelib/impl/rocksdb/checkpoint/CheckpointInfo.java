@@ -34,6 +34,8 @@ import java.util.concurrent.TimeoutException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.statelib.api.checkpoint.CheckpointStore;
 import org.apache.bookkeeper.statelib.api.exceptions.StateStoreException;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stream.proto.kv.store.CheckpointMetadata;
 
 
@@ -73,7 +75,9 @@ public class CheckpointInfo implements Comparable<CheckpointInfo> {
             public CheckpointMetadata restore(String dbName,
                                               File dbPath,
                                               CheckpointStore store,
-                                              Duration maxIdle) throws StateStoreException {
+                                              Duration maxIdle,
+                                              int parallelism,
+                                              StatsLogger statsLogger) throws StateStoreException {
                 try {
                     Files.createDirectories(getCheckpointPath(dbPath));
                     updateCurrent(dbPath);
@@ -148,9 +152,21 @@ public class CheckpointInfo implements Comparable<CheckpointInfo> {
     public CheckpointMetadata restore(String dbName, File dbPath, CheckpointStore store, Duration maxIdle)
         throws StateStoreException, TimeoutException {
 
+        return restore(dbName, dbPath, store, maxIdle, 1, NullStatsLogger.INSTANCE);
+    }
+
+    public CheckpointMetadata restore(String dbName,
+                                      File dbPath,
+                                      CheckpointStore store,
+                                      Duration maxIdle,
+                                      int parallelism,
+                                      StatsLogger statsLogger)
+        throws StateStoreException, TimeoutException {
+
         try {
             File checkpointsDir = new File(dbPath, "checkpoints");
-            RocksdbRestoreTask task = new RocksdbRestoreTask(dbName, checkpointsDir, store, maxIdle);
+            RocksdbRestoreTask task = new RocksdbRestoreTask(
+                dbName, checkpointsDir, store, maxIdle, parallelism, statsLogger);
             return restore(dbPath, task);
         } catch (IOException ioe) {
             log.error("Failed to restore rocksdb {}", dbName, ioe);
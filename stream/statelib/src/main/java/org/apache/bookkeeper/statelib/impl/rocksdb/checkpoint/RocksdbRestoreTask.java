@@ -17,29 +17,61 @@
  */
 package org.apache.bookkeeper.statelib.impl.rocksdb.checkpoint;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.statelib.api.checkpoint.CheckpointStore;
 import org.apache.bookkeeper.statelib.api.exceptions.StateStoreException;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stream.proto.kv.store.CheckpointMetadata;
 
 /**
  * A task that restore a rocksdb instance.
+ *
+ * <p>The files of the checkpoint are downloaded in parallel. The sst files already present locally, in a previous
+ * checkpoint of the same db, are linked instead of being downloaded again, if their checksum matches the one
+ * recorded in the checkpoint metadata.
  */
 @Slf4j
 public class RocksdbRestoreTask {
 
+    public static final String RESTORE = "checkpoint_restore";
+    public static final String RESTORE_BYTES_COPIED = "checkpoint_restore_bytes_copied";
+    public static final String RESTORE_FILES_COPIED = "checkpoint_restore_files_copied";
+    public static final String RESTORE_FILES_REUSED = "checkpoint_restore_files_reused";
+
     private final String dbName;
     private final File checkpointDir;
     private final CheckpointStore checkpointStore;
     private final String dbPrefix;
     private final Duration idleWait;
+    private final int parallelism;
+
+    // stats
+    private final OpStatsLogger restoreStats;
+    private final Counter bytesCopiedCounter;
+    private final Counter filesCopiedCounter;
+    private final Counter filesReusedCounter;
 
     public RocksdbRestoreTask(String dbName,
                               File checkpointDir,
@@ -51,16 +83,32 @@ public class RocksdbRestoreTask {
                               File checkpointDir,
                               CheckpointStore checkpointStore,
                               Duration idleWait) {
+        this(dbName, checkpointDir, checkpointStore, idleWait, 1, NullStatsLogger.INSTANCE);
+    }
+
+    public RocksdbRestoreTask(String dbName,
+                              File checkpointDir,
+                              CheckpointStore checkpointStore,
+                              Duration idleWait,
+                              int parallelism,
+                              StatsLogger statsLogger) {
         this.dbName = dbName;
         this.checkpointDir = checkpointDir;
         this.checkpointStore = checkpointStore;
         this.dbPrefix = String.format("%s", dbName);
         this.idleWait = idleWait;
+        this.parallelism = Math.max(1, parallelism);
+        this.restoreStats = statsLogger.getOpStatsLogger(RESTORE);
+        this.bytesCopiedCounter = statsLogger.getCounter(RESTORE_BYTES_COPIED);
+        this.filesCopiedCounter = statsLogger.getCounter(RESTORE_FILES_COPIED);
+        this.filesReusedCounter = statsLogger.getCounter(RESTORE_FILES_REUSED);
     }
 
     public void restore(String checkpointId, CheckpointMetadata metadata) throws StateStoreException, TimeoutException {
         File checkpointedDir = new File(checkpointDir, checkpointId);
 
+        long startNanos = System.nanoTime();
+        boolean success = false;
         try {
 
             if (!checkpointedDir.exists()) {
@@ -68,13 +116,24 @@ public class RocksdbRestoreTask {
                         Paths.get(checkpointedDir.getAbsolutePath()));
             }
             List<CheckpointFile> files = getCheckpointFiles(checkpointedDir, metadata);
-            copyFilesFromRemote(checkpointId, files);
+            List<CheckpointFile> remoteFiles = reuseLocalFiles(checkpointId, files);
+            long numBytes = copyFilesFromRemote(checkpointId, remoteFiles);
+            log.info("Restored checkpoint {} of {} : copied {} files ({} bytes), reused {} local files",
+                checkpointId, dbName, remoteFiles.size(), numBytes, files.size() - remoteFiles.size());
+            success = true;
         } catch (IOException ioe) {
             log.error("Failed to restore checkpoint {} to local directory {}",
                 new Object[] { checkpointId, checkpointedDir, ioe });
             throw new StateStoreException(
                 "Failed to restore checkpoint " + checkpointId + " to local directory " + checkpointedDir,
                 ioe);
+        } finally {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            if (success) {
+                restoreStats.registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+            } else {
+                restoreStats.registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
         }
     }
 
@@ -82,10 +141,185 @@ public class RocksdbRestoreTask {
         return CheckpointFile.list(checkpointedDir, metadata);
     }
 
-    private void copyFilesFromRemote(String checkpointId,
+    /**
+     * Reuse the sst files already present locally, either restored by a previous attempt or part of another
+     * checkpoint of the db.
+     *
+     * @return the files to copy from the checkpoint store
+     */
+    private List<CheckpointFile> reuseLocalFiles(String checkpointId, List<CheckpointFile> files) {
+        File[] otherCheckpointDirs = checkpointDir.listFiles(
+            f -> f.isDirectory() && !f.getName().equals(checkpointId));
+        List<CheckpointFile> remoteFiles = new ArrayList<>(files.size());
+        for (CheckpointFile file : files) {
+            if (file.isSstFile() && reuseLocalFile(file, otherCheckpointDirs)) {
+                filesReusedCounter.inc();
+            } else {
+                remoteFiles.add(file);
+            }
+        }
+        return remoteFiles;
+    }
+
+    private boolean reuseLocalFile(CheckpointFile file, File[] otherCheckpointDirs) {
+        if (file.hasSameContent(file.getFile())) {
+            return true;
+        }
+        if (null == otherCheckpointDirs) {
+            return false;
+        }
+        for (File dir : otherCheckpointDirs) {
+            File localFile = new File(dir, file.getName());
+            if (!file.hasSameContent(localFile)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(file.getFile().toPath());
+                try {
+                    // the sst files are immutable, so they can be shared by the checkpoints
+                    createLink(file.getFile(), localFile);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(localFile.toPath(), file.getFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return true;
+            } catch (IOException e) {
+                log.warn("Failed to reuse local file {} for {}, copying it from the checkpoint store",
+                    localFile, file.getFile(), e);
+            }
+        }
+        return false;
+    }
+
+    protected void createLink(File link, File existing) throws IOException {
+        Files.createLink(link.toPath(), existing.toPath());
+    }
+
+    private long copyFilesFromRemote(String checkpointId,
                                      List<CheckpointFile> remoteFiles) throws IOException, TimeoutException {
-        for (CheckpointFile file : remoteFiles) {
-            file.copyFromRemote(checkpointStore, dbPrefix, checkpointId, idleWait);
+        long numBytes = 0L;
+        if (parallelism == 1 || remoteFiles.size() <= 1) {
+            for (CheckpointFile file : remoteFiles) {
+                long fileBytes;
+                try {
+                    fileBytes = file.copyFromRemote(checkpointStore, dbPrefix, checkpointId, idleWait);
+                } catch (IOException | TimeoutException e) {
+                    deletePartialFile(file);
+                    throw e;
+                }
+                numBytes += fileBytes;
+                bytesCopiedCounter.addCount(fileBytes);
+                filesCopiedCounter.inc();
+            }
+            return numBytes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(parallelism, remoteFiles.size()),
+            new ThreadFactoryBuilder()
+                .setNameFormat("restore-" + dbName + "-%d")
+                .setDaemon(true)
+                .build());
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        List<CompletableFuture<Long>> copyFutures = new ArrayList<>(remoteFiles.size());
+        try {
+            LongAdder progress = new LongAdder();
+            CompletableFuture<Void> doneFuture = new CompletableFuture<>();
+            AtomicInteger numPendings = new AtomicInteger(remoteFiles.size());
+            for (CheckpointFile file : remoteFiles) {
+                CompletableFuture<Long> copyFuture = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return file.copyFromRemote(checkpointStore, dbPrefix, checkpointId, progress);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+                copyFuture.whenComplete((fileBytes, cause) -> {
+                    if (null != cause || aborted.get()) {
+                        // a copy failing, or completing after the restore was aborted, leaves a partial file
+                        deletePartialFile(file);
+                    }
+                    if (null != cause) {
+                        // fail fast, without waiting for the other copies
+                        doneFuture.completeExceptionally(cause);
+                    } else {
+                        bytesCopiedCounter.addCount(fileBytes);
+                        filesCopiedCounter.inc();
+                        if (numPendings.decrementAndGet() == 0) {
+                            doneFuture.complete(null);
+                        }
+                    }
+                });
+                copyFutures.add(copyFuture);
+            }
+
+            long startMs = System.currentTimeMillis();
+            while (!doneFuture.isDone()) {
+                long lastCount = progress.sum();
+                try {
+                    // fail if none of the copies made any progress for `idleWait` time
+                    doneFuture.get(idleWait.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted at copying files of checkpoint " + checkpointId, e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause()
+                        : e.getCause();
+                    throw new IOException("Failed to copy files from remote checkpoint " + checkpointId, cause);
+                } catch (TimeoutException e) {
+                    long newCount = progress.sum();
+                    log.info("Timeout waiting for copying checkpoint {}: last-read {} current-read {} runtime(ms) {}",
+                        checkpointId, lastCount, newCount, System.currentTimeMillis() - startMs);
+                    if (lastCount == newCount) {
+                        throw new TimeoutException("No progress reading checkpoint " + checkpointId
+                            + " read " + lastCount + " runtime(ms) " + (System.currentTimeMillis() - startMs));
+                    }
+                }
+            }
+            for (CompletableFuture<Long> copyFuture : copyFutures) {
+                numBytes += copyFuture.join();
+            }
+            return numBytes;
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            abortCopies(checkpointId, remoteFiles, copyFutures, aborted, executor);
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Abort the copies in progress of a failed restore and delete their partial files.
+     *
+     * <p>Interrupting the copies doesn't stop the ones blocked reading from the checkpoint store, so they are waited
+     * for at most {@code idleWait}. The copies still running after that delete their own files once they complete.
+     */
+    private void abortCopies(String checkpointId,
+                             List<CheckpointFile> remoteFiles,
+                             List<CompletableFuture<Long>> copyFutures,
+                             AtomicBoolean aborted,
+                             ExecutorService executor) {
+        aborted.set(true);
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(idleWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Copies of checkpoint {} of {} are still running after being aborted", checkpointId, dbName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int i = 0; i < copyFutures.size(); i++) {
+            CompletableFuture<Long> copyFuture = copyFutures.get(i);
+            if (!copyFuture.isDone() || copyFuture.isCompletedExceptionally()) {
+                deletePartialFile(remoteFiles.get(i));
+            }
+        }
+    }
+
+    private void deletePartialFile(CheckpointFile file) {
+        try {
+            Files.deleteIfExists(file.getFile().toPath());
+        } catch (IOException e) {
+            log.warn("Failed to delete the partially copied file {}", file.getFile(), e);
         }
     }
 }
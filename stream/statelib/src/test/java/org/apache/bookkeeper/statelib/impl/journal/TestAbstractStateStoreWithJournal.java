@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.statelib.impl.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.statelib.api.StateStore;
+import org.apache.distributedlog.DLSN;
+import org.apache.distributedlog.LogRecord;
+import org.apache.distributedlog.api.AsyncLogWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the group commit of the commands written to the journal by {@link AbstractStateStoreWithJournal}.
+ */
+public class TestAbstractStateStoreWithJournal {
+
+    private TestLogWriter writer;
+    private TestStateStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        writer = new TestLogWriter();
+        store = new TestStateStore();
+        Field writerField = AbstractStateStoreWithJournal.class.getDeclaredField("writer");
+        writerField.setAccessible(true);
+        writerField.set(store, writer);
+    }
+
+    @After
+    public void tearDown() {
+        writer.executor.shutdownNow();
+    }
+
+    private static ByteBuf newCommand() {
+        return Unpooled.wrappedBuffer(new byte[] {1, 2, 3});
+    }
+
+    @Test
+    public void testConcurrentWritersSeeIncreasingTxIds() throws Exception {
+        final int numWriters = 8;
+        final int numCommandsPerWriter = 200;
+        // Slow bulk writes, so that the commands queued meanwhile are grouped
+        writer.bulkWriteDelayMicros = 200;
+
+        // Hold the completions until all the callbacks are registered, to observe the completion order
+        CountDownLatch completionGate = new CountDownLatch(1);
+        writer.executor.execute(() -> {
+            try {
+                completionGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        List<Long> completedTxIds = Collections.synchronizedList(new ArrayList<>());
+        List<ByteBuf> commands = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < numWriters; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < numCommandsPerWriter; j++) {
+                    ByteBuf command = newCommand();
+                    commands.add(command);
+                    futures.add(store.writeCommandBufReturnTxId(command).thenAccept(completedTxIds::add));
+                }
+            }, "writer-" + i);
+            t.start();
+            writers.add(t);
+        }
+        start.countDown();
+        for (Thread t : writers) {
+            t.join();
+        }
+        completionGate.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        int numCommands = numWriters * numCommandsPerWriter;
+        assertEquals(numCommands, completedTxIds.size());
+        // The commands are completed in the order of their revisions, which are the order of the journal
+        for (int i = 0; i < numCommands; i++) {
+            assertEquals(i + 1L, (long) completedTxIds.get(i));
+        }
+        assertEquals(numCommands, writer.writtenTxIds.size());
+        for (int i = 0; i < numCommands; i++) {
+            assertEquals(i + 1L, (long) writer.writtenTxIds.get(i));
+        }
+        assertTrue("Commands were never grouped", writer.bulkSizes.size() < numCommands);
+        for (ByteBuf command : commands) {
+            assertEquals(0, command.refCnt());
+        }
+    }
+
+    /**
+     * Write a command, whose bulk write blocks until released, and queue more commands meanwhile, which are all
+     * committed as the next group once released.
+     *
+     * @return the futures of the next group
+     */
+    private List<CompletableFuture<Long>> writeBlockedThenGroup(int groupSize, CountDownLatch release)
+            throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        writer.blockNextBulk(blocked, release);
+        Thread first = new Thread(() -> store.writeCommandBufReturnTxId(newCommand()));
+        first.start();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < groupSize; i++) {
+            futures.add(store.writeCommandBufReturnTxId(newCommand()));
+        }
+        return futures;
+    }
+
+    @Test
+    public void testFailedBulkWriteFailsTheWholeGroup() throws Exception {
+        final int groupSize = 5;
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Long>> group = writeBlockedThenGroup(groupSize, release);
+        Exception failure = new Exception("bulk write failed");
+        writer.failNextBulk = failure;
+        release.countDown();
+
+        for (CompletableFuture<Long> future : group) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("The commands of a failed group should fail");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals(Integer.valueOf(groupSize), writer.bulkSizes.get(writer.bulkSizes.size() - 1));
+
+        // The next commands are committed once the writer recovers
+        long txId = store.writeCommandBufReturnTxId(newCommand()).get(10, TimeUnit.SECONDS);
+        assertEquals(groupSize + 2L, txId);
+    }
+
+    @Test
+    public void testBulkWriteThrowingFailsTheWholeGroup() throws Exception {
+        final int groupSize = 3;
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Long>> group = writeBlockedThenGroup(groupSize, release);
+        RuntimeException failure = new IllegalStateException("writer is closed");
+        writer.throwOnNextBulk = failure;
+        release.countDown();
+
+        for (CompletableFuture<Long> future : group) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("The commands of a failed group should fail");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A state store journaling its commands to a {@link TestLogWriter}, without local state.
+     */
+    private static class TestStateStore extends AbstractStateStoreWithJournal<StateStore> {
+
+        TestStateStore() {
+            super(() -> null, () -> null);
+        }
+
+        @Override
+        protected ByteBuf newCatchupMarker() {
+            return newCommand();
+        }
+
+        @Override
+        protected CommandProcessor<StateStore> newCommandProcessor() {
+            return (txid, cmdBuf, store) -> { };
+        }
+    }
+
+    /**
+     * A journal writer completing the writes in order on a single thread, like a log segment writer.
+     */
+    private static class TestLogWriter implements AsyncLogWriter {
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<Long> writtenTxIds = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> bulkSizes = Collections.synchronizedList(new ArrayList<>());
+        volatile long bulkWriteDelayMicros = 0;
+        volatile CountDownLatch blocked;
+        volatile CountDownLatch release;
+        volatile Exception failNextBulk;
+        volatile RuntimeException throwOnNextBulk;
+        long entryId = 0;
+
+        void blockNextBulk(CountDownLatch blocked, CountDownLatch release) {
+            this.release = release;
+            this.blocked = blocked;
+        }
+
+        @Override
+        public CompletableFuture<List<CompletableFuture<DLSN>>> writeBulk(List<LogRecord> records) {
+            CountDownLatch blockedLatch = blocked;
+            Exception failure = null;
+            if (null != blockedLatch) {
+                blocked = null;
+                blockedLatch.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(bulkWriteDelayMicros);
+                while (System.nanoTime() < deadline) {
+                    Thread.yield();
+                }
+                RuntimeException toThrow = throwOnNextBulk;
+                if (null != toThrow) {
+                    throwOnNextBulk = null;
+                    throw toThrow;
+                }
+                failure = failNextBulk;
+                failNextBulk = null;
+            }
+            bulkSizes.add(records.size());
+
+            List<Long> txIds = new ArrayList<>(records.size());
+            records.forEach(record -> txIds.add(record.getTransactionId()));
+            CompletableFuture<List<CompletableFuture<DLSN>>> result = new CompletableFuture<>();
+            final Exception bulkFailure = failure;
+            executor.execute(() -> {
+                if (null != bulkFailure) {
+                    result.completeExceptionally(bulkFailure);
+                    return;
+                }
+                List<CompletableFuture<DLSN>> writeFutures = new ArrayList<>(txIds.size());
+                for (long txId : txIds) {
+                    writtenTxIds.add(txId);
+                    writeFutures.add(CompletableFuture.completedFuture(new DLSN(1L, entryId++, 0L)));
+                }
+                result.complete(writeFutures);
+            });
+            return result;
+        }
+
+        @Override
+        public long getLastTxId() {
+            return 0L;
+        }
+
+        @Override
+        public CompletableFuture<DLSN> write(LogRecord record) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Boolean> truncate(DLSN dlsn) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Long> markEndOfStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getStreamName() {
+            return "test-stream";
+        }
+
+        @Override
+        public CompletableFuture<Void> asyncClose() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<Void> asyncAbort() {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.statelib.impl.mvcc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.bookkeeper.api.kv.op.OpFactory;
+import org.apache.bookkeeper.api.kv.op.TxnOp;
+import org.apache.bookkeeper.api.kv.options.Options;
+import org.apache.bookkeeper.api.kv.result.Code;
+import org.apache.bookkeeper.api.kv.result.IncrementResult;
+import org.apache.bookkeeper.api.kv.result.PutResult;
+import org.apache.bookkeeper.api.kv.result.RangeResult;
+import org.apache.bookkeeper.api.kv.result.TxnResult;
+import org.apache.bookkeeper.common.coder.StringUtf8Coder;
+import org.apache.bookkeeper.common.kv.KV;
+import org.apache.bookkeeper.statelib.api.StateStoreSpec;
+import org.apache.bookkeeper.statelib.api.kv.KVIterator;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+/**
+ * Test the concurrent reads and the batched writes of {@link MVCCStoreImpl}.
+ */
+public class TestMVCCStoreImpl {
+
+    @Rule
+    public final TestName runtime = new TestName();
+
+    private File tempDir;
+    private MVCCStoreImpl<String, String> store;
+    private OpFactory<String, String> opFactory;
+    private ExecutorService writeExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("test-mvcc-store").toFile();
+        StateStoreSpec spec = StateStoreSpec.builder()
+            .name(runtime.getMethodName())
+            .keyCoder(StringUtf8Coder.of())
+            .valCoder(StringUtf8Coder.of())
+            .localStateStoreDir(tempDir)
+            .stream(runtime.getMethodName())
+            .build();
+        store = new MVCCStoreImpl<>();
+        store.init(spec);
+        opFactory = store.getOpFactory();
+        writeExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (null != store) {
+            store.close();
+        }
+        if (null != writeExecutor) {
+            writeExecutor.shutdown();
+        }
+        if (null != tempDir) {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    private void put(String key, String value, long revision) {
+        try (PutResult<String, String> result = store.put(revision,
+                opFactory.newPut(key, value, Options.blindPut()))) {
+            assertEquals(Code.OK, result.code());
+        }
+    }
+
+    private List<KV<String, String>> readAll(KVIterator<String, String> iter) {
+        List<KV<String, String>> kvs = new ArrayList<>();
+        while (iter.hasNext()) {
+            kvs.add(iter.next());
+        }
+        return kvs;
+    }
+
+    /**
+     * Block the write executor, so that the writes submitted until the returned latch is counted down are applied
+     * by the same run of the writer.
+     */
+    private CountDownLatch blockWriteExecutor() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        writeExecutor.execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    public void testIteratorReadsFromSnapshot() {
+        put("key-1", "value-1", 1L);
+        put("key-2", "value-2", 2L);
+
+        try (KVIterator<String, String> iter = store.range("key-1", "key-9")) {
+            // the writes applied after the iterator is opened are not visible to it
+            put("key-3", "value-3", 3L);
+            put("key-1", "value-1-updated", 4L);
+
+            List<KV<String, String>> kvs = readAll(iter);
+            assertEquals(2, kvs.size());
+            assertEquals("key-1", kvs.get(0).key());
+            assertEquals("value-1", kvs.get(0).value());
+            assertEquals("key-2", kvs.get(1).key());
+        }
+
+        try (KVIterator<String, String> iter = store.range("key-1", "key-9")) {
+            List<KV<String, String>> kvs = readAll(iter);
+            assertEquals(3, kvs.size());
+            assertEquals("value-1-updated", kvs.get(0).value());
+        }
+    }
+
+    @Test
+    public void testConcurrentSnapshotReads() throws Exception {
+        final int numReaders = 4;
+        final int numWrites = 200;
+        final String[] keys = {"key-a", "key-b", "key-c"};
+        put(keys[0], "0", 1L);
+        put(keys[1], "0", 2L);
+        put(keys[2], "0", 3L);
+
+        // each transaction updates all the keys to the same value, so a read from a snapshot sees equal values
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < numReaders; i++) {
+            final boolean useIterator = i % 2 == 0;
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        List<String> values = new ArrayList<>();
+                        if (useIterator) {
+                            try (KVIterator<String, String> iter = store.range(keys[0], keys[2])) {
+                                readAll(iter).forEach(kv -> values.add(kv.value()));
+                            }
+                        } else {
+                            try (RangeResult<String, String> result = store.range(opFactory.newRange(keys[0],
+                                    opFactory.optionFactory().newRangeOption().endKey(keys[2]).build()))) {
+                                assertEquals(Code.OK, result.code());
+                                result.kvs().forEach(kv -> values.add(kv.value()));
+                            }
+                        }
+                        assertEquals(keys.length, values.size());
+                        assertEquals(values.get(0), values.get(1));
+                        assertEquals(values.get(0), values.get(2));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "reader-" + i);
+            reader.start();
+            readers.add(reader);
+        }
+
+        long revision = 4L;
+        for (int i = 1; i <= numWrites; i++) {
+            String value = Integer.toString(i);
+            TxnOp<String, String> txn = opFactory.newTxn()
+                .If()
+                .Then(opFactory.newPut(keys[0], value, Options.blindPut()),
+                    opFactory.newPut(keys[1], value, Options.blindPut()),
+                    opFactory.newPut(keys[2], value, Options.blindPut()))
+                .build();
+            try (TxnResult<String, String> result = store.txn(revision++, txn)) {
+                assertEquals(Code.OK, result.code());
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (null != failure.get()) {
+            throw new AssertionError("Inconsistent snapshot read", failure.get());
+        }
+        assertEquals(Integer.toString(numWrites), store.get(keys[0]));
+    }
+
+    @Test
+    public void testCloseIteratorConcurrentlyWithStore() throws Exception {
+        put("key-1", "value-1", 1L);
+        List<KVIterator<String, String>> iters = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            KVIterator<String, String> iter = store.range("key-0", "key-9");
+            assertTrue(iter.hasNext());
+            iters.add(iter);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread closer = new Thread(() -> {
+            try {
+                start.await();
+                iters.forEach(KVIterator::close);
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "iterator-closer");
+        closer.start();
+        start.countDown();
+        store.close();
+        closer.join();
+        assertNull(failure.get());
+
+        // the iterators are closed either by the store or by their owner, closing them again is a no-op
+        for (KVIterator<String, String> iter : iters) {
+            iter.close();
+            try {
+                iter.hasNext();
+                fail("Should not read from a closed iterator");
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+        store = null;
+    }
+
+    @Test
+    public void testConflictingWritesSplitTheBatch() throws Exception {
+        final int numIncrements = 50;
+        CountDownLatch release = blockWriteExecutor();
+
+        // the increments of the same key read the record written by the previous one, so they can't share a batch
+        List<CompletableFuture<IncrementResult<String, String>>> futures = new ArrayList<>();
+        for (int i = 0; i < numIncrements; i++) {
+            futures.add(store.submitWrite(i + 1L,
+                opFactory.newIncrement("counter", 1L, Options.blindIncrement()), writeExecutor));
+            futures.add(store.submitWrite(i + 1L + numIncrements,
+                opFactory.newIncrement("other-" + i, 1L, Options.blindIncrement()), writeExecutor));
+        }
+        release.countDown();
+
+        for (CompletableFuture<IncrementResult<String, String>> future : futures) {
+            try (IncrementResult<String, String> result = future.get(10, TimeUnit.SECONDS)) {
+                assertEquals(Code.OK, result.code());
+            }
+        }
+        assertEquals(Long.valueOf(numIncrements), store.getNumber("counter"));
+        for (int i = 0; i < numIncrements; i++) {
+            assertEquals(Long.valueOf(1L), store.getNumber("other-" + i));
+        }
+    }
+
+    @Test
+    public void testFailedWriteIsRolledBackToSavePoint() throws Exception {
+        CountDownLatch release = blockWriteExecutor();
+
+        CompletableFuture<PutResult<String, String>> before = store.submitWrite(1L,
+            opFactory.newPut("key-1", "value-1", Options.blindPut()), writeExecutor);
+        // the put of the transaction is written to the batch before the increment fails it
+        TxnOp<String, String> txn = opFactory.newTxn()
+            .If()
+            .Then(opFactory.newPut("key-2", "value-2", Options.blindPut()),
+                opFactory.newIncrement("key-3", 1L, Options.blindIncrement()))
+            .build();
+        CompletableFuture<TxnResult<String, String>> failed = store.submitWrite(2L, txn, writeExecutor);
+        CompletableFuture<PutResult<String, String>> after = store.submitWrite(3L,
+            opFactory.newPut("key-4", "value-4", Options.blindPut()), writeExecutor);
+        release.countDown();
+
+        try (PutResult<String, String> result = before.get(10, TimeUnit.SECONDS)) {
+            assertEquals(Code.OK, result.code());
+        }
+        try (TxnResult<String, String> result = failed.get(10, TimeUnit.SECONDS)) {
+            assertEquals(Code.ILLEGAL_OP, result.code());
+        }
+        try (PutResult<String, String> result = after.get(10, TimeUnit.SECONDS)) {
+            assertEquals(Code.OK, result.code());
+        }
+
+        assertEquals("value-1", store.get("key-1"));
+        assertNull(store.get("key-2"));
+        assertNull(store.getNumber("key-3"));
+        assertEquals("value-4", store.get("key-4"));
+        assertEquals(3L, store.getLastRevision());
+    }
+}
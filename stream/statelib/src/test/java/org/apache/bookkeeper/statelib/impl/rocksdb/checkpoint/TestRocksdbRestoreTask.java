@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.statelib.impl.rocksdb.checkpoint;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.statelib.api.exceptions.StateStoreException;
+import org.apache.bookkeeper.statelib.impl.rocksdb.RocksUtils;
+import org.apache.bookkeeper.statelib.impl.rocksdb.checkpoint.fs.FSCheckpointManager;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stream.proto.kv.store.CheckpointMetadata;
+import org.apache.bookkeeper.stream.proto.kv.store.FileInfo;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the parallel restore of a checkpoint by {@link RocksdbRestoreTask}.
+ */
+public class TestRocksdbRestoreTask {
+
+    private static final String DB_NAME = "test-db";
+
+    private final Random random = new Random(0);
+    private File remoteDir;
+    private File checkpointDir;
+    private TestCheckpointStore checkpointStore;
+    private Map<String, byte[]> checkpointFiles;
+
+    @Before
+    public void setUp() throws Exception {
+        remoteDir = Files.createTempDirectory("test-remote-checkpoints").toFile();
+        checkpointDir = Files.createTempDirectory("test-local-checkpoints").toFile();
+        checkpointStore = new TestCheckpointStore(remoteDir);
+        checkpointFiles = new HashMap<>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        checkpointStore.release();
+        FileUtils.deleteDirectory(remoteDir);
+        FileUtils.deleteDirectory(checkpointDir);
+    }
+
+    private static String checksum(byte[] content) {
+        return Hashing.sha256().hashBytes(content).toString();
+    }
+
+    /**
+     * Write a checkpoint made of the given sst files, a manifest and a current file to the checkpoint store.
+     */
+    private CheckpointMetadata writeCheckpoint(String checkpointId, int numSstFiles, int fileSize) throws IOException {
+        CheckpointMetadata.Builder metadata = CheckpointMetadata.newBuilder();
+        for (int i = 0; i < numSstFiles; i++) {
+            addFile(metadata, checkpointId, String.format("%06d.sst", i), fileSize);
+        }
+        addFile(metadata, checkpointId, "MANIFEST-000001", fileSize);
+        addFile(metadata, checkpointId, "CURRENT", 16);
+        return metadata.build();
+    }
+
+    private void addFile(CheckpointMetadata.Builder metadata, String checkpointId, String name, int size)
+            throws IOException {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        String checksum = checksum(content);
+        File remoteFile = new File(remoteDir, name.endsWith(".sst")
+            ? RocksUtils.getDestSstPath(DB_NAME, name + "_" + checksum)
+            : RocksUtils.getDestPath(DB_NAME, checkpointId, name));
+        FileUtils.writeByteArrayToFile(remoteFile, content);
+        checkpointFiles.put(name, content);
+        metadata.addFiles(name);
+        metadata.addFileInfos(FileInfo.newBuilder().setName(name).setChecksum(checksum).build());
+    }
+
+    private RocksdbRestoreTask newRestoreTask(Duration idleWait, int parallelism) {
+        return new RocksdbRestoreTask(
+            DB_NAME, checkpointDir, checkpointStore, idleWait, parallelism, NullStatsLogger.INSTANCE);
+    }
+
+    private void assertRestored(String checkpointId) throws IOException {
+        File restoredDir = new File(checkpointDir, checkpointId);
+        for (Map.Entry<String, byte[]> file : checkpointFiles.entrySet()) {
+            assertArrayEquals("Unexpected content of " + file.getKey(), file.getValue(),
+                Files.readAllBytes(new File(restoredDir, file.getKey()).toPath()));
+        }
+        assertEquals(checkpointFiles.size(), restoredDir.list().length);
+    }
+
+    @Test
+    public void testParallelRestore() throws Exception {
+        CheckpointMetadata metadata = writeCheckpoint("checkpoint-1", 8, 256 * 1024);
+        // the copies only complete once 4 of them are in progress at the same time
+        checkpointStore.concurrentReads = new CountDownLatch(4);
+
+        newRestoreTask(Duration.ofSeconds(10), 4).restore("checkpoint-1", metadata);
+
+        assertRestored("checkpoint-1");
+        assertEquals(checkpointFiles.size(), checkpointStore.opened.size());
+    }
+
+    @Test
+    public void testReuseLocalSstFilesWithSameChecksum() throws Exception {
+        CheckpointMetadata metadata = writeCheckpoint("checkpoint-2", 4, 64 * 1024);
+        // an older checkpoint shares two sst files, and has another file of the same name but different content
+        File oldDir = new File(checkpointDir, "checkpoint-1");
+        assertTrue(oldDir.mkdirs());
+        for (String name : new String[] {"000000.sst", "000001.sst"}) {
+            FileUtils.writeByteArrayToFile(new File(oldDir, name), checkpointFiles.get(name));
+        }
+        byte[] otherContent = new byte[1024];
+        random.nextBytes(otherContent);
+        FileUtils.writeByteArrayToFile(new File(oldDir, "000002.sst"), otherContent);
+
+        newRestoreTask(Duration.ofSeconds(10), 2).restore("checkpoint-2", metadata);
+
+        assertRestored("checkpoint-2");
+        File restoredDir = new File(checkpointDir, "checkpoint-2");
+        assertTrue(Files.isSameFile(new File(oldDir, "000000.sst").toPath(),
+            new File(restoredDir, "000000.sst").toPath()));
+        assertTrue(Files.isSameFile(new File(oldDir, "000001.sst").toPath(),
+            new File(restoredDir, "000001.sst").toPath()));
+        assertFalse(checkpointStore.openedFile("000000.sst"));
+        assertFalse(checkpointStore.openedFile("000001.sst"));
+        assertTrue(checkpointStore.openedFile("000002.sst"));
+        assertTrue(checkpointStore.openedFile("000003.sst"));
+        assertArrayEquals(otherContent, Files.readAllBytes(new File(oldDir, "000002.sst").toPath()));
+
+        // restoring the same checkpoint again reuses all the sst files already restored
+        checkpointStore.opened.clear();
+        newRestoreTask(Duration.ofSeconds(10), 2).restore("checkpoint-2", metadata);
+        assertRestored("checkpoint-2");
+        for (int i = 0; i < 4; i++) {
+            assertFalse(checkpointStore.openedFile(String.format("%06d.sst", i)));
+        }
+        assertTrue(checkpointStore.openedFile("MANIFEST-000001"));
+    }
+
+    @Test
+    public void testCopyLocalSstFilesIfLinksAreNotSupported() throws Exception {
+        CheckpointMetadata metadata = writeCheckpoint("checkpoint-2", 2, 64 * 1024);
+        File oldDir = new File(checkpointDir, "checkpoint-1");
+        assertTrue(oldDir.mkdirs());
+        FileUtils.writeByteArrayToFile(new File(oldDir, "000000.sst"), checkpointFiles.get("000000.sst"));
+
+        AtomicInteger numLinks = new AtomicInteger();
+        RocksdbRestoreTask task = new RocksdbRestoreTask(
+                DB_NAME, checkpointDir, checkpointStore, Duration.ofSeconds(10), 2, NullStatsLogger.INSTANCE) {
+            @Override
+            protected void createLink(File link, File existing) throws IOException {
+                numLinks.incrementAndGet();
+                throw new IOException("Links are not supported");
+            }
+        };
+        task.restore("checkpoint-2", metadata);
+
+        assertRestored("checkpoint-2");
+        assertEquals(1, numLinks.get());
+        assertFalse(checkpointStore.openedFile("000000.sst"));
+        assertFalse(Files.isSameFile(new File(oldDir, "000000.sst").toPath(),
+            new File(checkpointDir, "checkpoint-2/000000.sst").toPath()));
+    }
+
+    @Test
+    public void testSlowCopyDoesNotTimeOutWhileProgressing() throws Exception {
+        CheckpointMetadata metadata = writeCheckpoint("checkpoint-1", 3, 64 * 1024);
+        // the copy of a file takes many times the idle wait, but keeps making progress
+        checkpointStore.slowFile = "000000.sst";
+        checkpointStore.slowReadDelayMs = 40;
+
+        newRestoreTask(Duration.ofMillis(200), 3).restore("checkpoint-1", metadata);
+
+        assertRestored("checkpoint-1");
+    }
+
+    @Test
+    public void testIdleTimeoutDeletesPartialFiles() throws Exception {
+        CheckpointMetadata metadata = writeCheckpoint("checkpoint-1", 4, 64 * 1024);
+        // all the copies block in the middle of the files, without reacting to interrupts
+        checkpointStore.stalled = new CountDownLatch(1);
+
+        try {
+            newRestoreTask(Duration.ofMillis(200), 3).restore("checkpoint-1", metadata);
+            fail("Should time out when none of the copies progresses");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        File restoredDir = new File(checkpointDir, "checkpoint-1");
+        assertEquals(0, restoredDir.list().length);
+
+        // the copies blocked in I/O delete the files they recreate once they complete
+        checkpointStore.release();
+        waitForRestoreThreads();
+        assertEquals(0, restoredDir.list().length);
+    }
+
+    @Test
+    public void testFailedCopyDeletesPartialFiles() throws Exception {
+        CheckpointMetadata metadata = writeCheckpoint("checkpoint-1", 4, 64 * 1024);
+        checkpointStore.failingFile = "000001.sst";
+
+        try {
+            newRestoreTask(Duration.ofSeconds(10), 2).restore("checkpoint-1", metadata);
+            fail("Should fail when a copy fails");
+        } catch (StateStoreException e) {
+            // expected
+        }
+        File restoredDir = new File(checkpointDir, "checkpoint-1");
+        waitForRestoreThreads();
+        assertFalse(new File(restoredDir, "000001.sst").exists());
+        for (String name : restoredDir.list()) {
+            // only the files fully copied are left, to be reused by the next attempt
+            assertArrayEquals(checkpointFiles.get(name), Files.readAllBytes(new File(restoredDir, name).toPath()));
+        }
+    }
+
+    @Test
+    public void testSequentialFailedCopyDeletesPartialFile() throws Exception {
+        CheckpointMetadata metadata = writeCheckpoint("checkpoint-1", 2, 64 * 1024);
+        checkpointStore.failingFile = "000001.sst";
+
+        try {
+            newRestoreTask(Duration.ofSeconds(10), 1).restore("checkpoint-1", metadata);
+            fail("Should fail when a copy fails");
+        } catch (StateStoreException e) {
+            // expected
+        }
+        assertTrue(new File(checkpointDir, "checkpoint-1/000000.sst").exists());
+        assertFalse(new File(checkpointDir, "checkpoint-1/000001.sst").exists());
+    }
+
+    private static void waitForRestoreThreads() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean running = Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(t -> t.getName().startsWith("restore-" + DB_NAME));
+            if (!running) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("The copies of the restore are still running");
+    }
+
+    /**
+     * A checkpoint store whose reads can be slowed down, blocked or failed.
+     */
+    private static class TestCheckpointStore extends FSCheckpointManager {
+
+        final Set<String> opened = ConcurrentHashMap.newKeySet();
+        volatile CountDownLatch concurrentReads;
+        volatile CountDownLatch stalled;
+        volatile String slowFile;
+        volatile long slowReadDelayMs;
+        volatile String failingFile;
+
+        TestCheckpointStore(File rootPath) {
+            super(rootPath);
+        }
+
+        boolean openedFile(String name) {
+            return opened.stream().anyMatch(path -> new File(path).getName().startsWith(name));
+        }
+
+        void release() {
+            CountDownLatch latch = stalled;
+            if (null != latch) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public InputStream openInputStream(String filePath) throws IOException {
+            opened.add(filePath);
+            String name = new File(filePath).getName();
+            CountDownLatch concurrent = concurrentReads;
+            if (null != concurrent) {
+                concurrent.countDown();
+            }
+            return new FilterInputStream(super.openInputStream(filePath)) {
+
+                long position = 0L;
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (position > 0) {
+                        beforeNextRead(name, concurrent);
+                    }
+                    if (null != slowFile && name.startsWith(slowFile)) {
+                        // read the slow file in small chunks
+                        len = Math.min(len, 4096);
+                    }
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        position += read;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        private void beforeNextRead(String name, CountDownLatch concurrent) throws IOException {
+            try {
+                if (null != concurrent && !concurrent.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("The copies are not run in parallel");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            if (null != failingFile && name.startsWith(failingFile)) {
+                throw new IOException("Failed to read " + name);
+            }
+            if (null != slowFile && name.startsWith(slowFile)) {
+                try {
+                    Thread.sleep(slowReadDelayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            CountDownLatch latch = stalled;
+            while (null != latch && latch.getCount() > 0) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    // a blocking read doesn't react to interrupts
+                }
+            }
+        }
+    }
+}
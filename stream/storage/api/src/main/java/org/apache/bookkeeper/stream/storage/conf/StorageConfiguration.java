@@ -39,6 +39,8 @@ public class StorageConfiguration extends ComponentConfiguration {
 
     private static final String CHECKPOINT_RESTORE_IDLE_LIMIT_MS = "checkpoint.restore.idle.limit.ms";
 
+    private static final String CHECKPOINT_RESTORE_PARALLELISM = "checkpoint.restore.parallelism";
+
     public StorageConfiguration(CompositeConfiguration conf) {
         super(conf, COMPONENT_PREFIX);
     }
@@ -112,4 +114,25 @@ public class StorageConfiguration extends ComponentConfiguration {
     public long getCheckpointRestoreIdleLimitMs() {
         return getLong(CHECKPOINT_RESTORE_IDLE_LIMIT_MS, TimeUnit.MINUTES.toMillis(5));
     }
+
+    /**
+     * Get the number of files downloaded in parallel when restoring a range store from a checkpoint.
+     * The default value is 4.
+     *
+     * @return the number of files downloaded in parallel.
+     */
+    public int getCheckpointRestoreParallelism() {
+        return getInt(CHECKPOINT_RESTORE_PARALLELISM, 4);
+    }
+
+    /**
+     * Set the number of files downloaded in parallel when restoring a range store from a checkpoint.
+     *
+     * @param parallelism number of files downloaded in parallel
+     * @return storage configuration
+     */
+    public StorageConfiguration setCheckpointRestoreParallelism(int parallelism) {
+        setProperty(CHECKPOINT_RESTORE_PARALLELISM, parallelism);
+        return this;
+    }
 }
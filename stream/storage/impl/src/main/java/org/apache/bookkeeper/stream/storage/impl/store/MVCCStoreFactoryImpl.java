@@ -41,6 +41,8 @@ import org.apache.bookkeeper.statelib.StateStores;
 import org.apache.bookkeeper.statelib.api.StateStoreSpec;
 import org.apache.bookkeeper.statelib.api.checkpoint.CheckpointStore;
 import org.apache.bookkeeper.statelib.api.mvcc.MVCCAsyncStore;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stream.protocol.RangeId;
 import org.apache.bookkeeper.stream.storage.StorageResources;
 import org.apache.bookkeeper.stream.storage.conf.StorageConfiguration;
@@ -74,12 +76,23 @@ public class MVCCStoreFactoryImpl implements MVCCStoreFactory {
     private final boolean serveReadOnlyTable;
     private boolean closed = false;
     private final StorageConfiguration storageConf;
+    private final StatsLogger statsLogger;
 
     public MVCCStoreFactoryImpl(Supplier<Namespace> namespaceSupplier,
                                 Supplier<CheckpointStore> checkpointStoreSupplier,
                                 File[] localStoreDirs,
                                 StorageResources storageResources,
                                 boolean serveReadOnlyTable, StorageConfiguration storageConf) {
+        this(namespaceSupplier, checkpointStoreSupplier, localStoreDirs, storageResources, serveReadOnlyTable,
+            storageConf, NullStatsLogger.INSTANCE);
+    }
+
+    public MVCCStoreFactoryImpl(Supplier<Namespace> namespaceSupplier,
+                                Supplier<CheckpointStore> checkpointStoreSupplier,
+                                File[] localStoreDirs,
+                                StorageResources storageResources,
+                                boolean serveReadOnlyTable, StorageConfiguration storageConf,
+                                StatsLogger statsLogger) {
         this.storeSupplier = StateStores.mvccKvBytesStoreSupplier(namespaceSupplier);
         this.storageResources = storageResources;
         this.writeIOScheduler =
@@ -93,6 +106,7 @@ public class MVCCStoreFactoryImpl implements MVCCStoreFactory {
         this.storageConf = storageConf;
         this.stores = Maps.newHashMap();
         this.serveReadOnlyTable = serveReadOnlyTable;
+        this.statsLogger = statsLogger;
     }
 
     private ScheduledExecutorService chooseWriteIOExecutor(long streamId) {
@@ -100,7 +114,8 @@ public class MVCCStoreFactoryImpl implements MVCCStoreFactory {
     }
 
     private ScheduledExecutorService chooseReadIOExecutor(long streamId) {
-        return readIOScheduler.chooseThread(streamId);
+        // the reads of a store don't need to be ordered, so they are spread over all the read threads
+        return readIOScheduler;
     }
 
     private ScheduledExecutorService chooseCheckpointIOExecutor(long streamId) {
@@ -215,6 +230,8 @@ public class MVCCStoreFactoryImpl implements MVCCStoreFactory {
             .localStorageCleanupEnable(storageConf.getLocalStorageCleanupEnable())
             .checkpointRestoreIdleLimit(
                 Duration.ofMillis(storageConf.getCheckpointRestoreIdleLimitMs()))
+            .checkpointRestoreParallelism(storageConf.getCheckpointRestoreParallelism())
+            .statsLogger(statsLogger)
             .ttlSeconds(ttlSeconds)
             .build();
 
@@ -82,6 +82,28 @@ abstract class PerfReaderBase implements Runnable {
         )
         public int readAheadBatchSize = 4;
 
+        @Parameter(
+            names = {
+                "-mbs", "--max-readahead-batch-size"
+            },
+            description = "Max ReadAhead Batch Size, in entries, the batch size is adapted to the read rate"
+        )
+        public int maxReadAheadBatchSize = 4;
+
+        @Parameter(
+            names = {
+                "-mb", "--max-readahead-bytes"
+            },
+            description = "Max readahead bytes per log, 0 for no limit")
+        public long maxReadAheadBytes = 0L;
+
+        @Parameter(
+            names = {
+                "-nmb", "--namespace-max-readahead-bytes"
+            },
+            description = "Max readahead bytes shared by all the logs, 0 for no limit")
+        public long namespaceMaxReadAheadBytes = 0L;
+
     }
 
 
@@ -175,7 +197,10 @@ abstract class PerfReaderBase implements Runnable {
     private static DistributedLogConfiguration newDlogConf(Flags flags) {
         DistributedLogConfiguration conf = new DistributedLogConfiguration()
             .setReadAheadBatchSize(flags.readAheadBatchSize)
+            .setReadAheadMaxBatchSize(flags.maxReadAheadBatchSize)
             .setReadAheadMaxRecords(flags.maxReadAheadRecords)
+            .setReadAheadMaxBytes(flags.maxReadAheadBytes)
+            .setReadAheadNamespaceMaxBytes(flags.namespaceMaxReadAheadBytes)
             .setReadAheadWaitTime(200);
         conf.setProperty("bkc.numChannelsPerBookie", 8);
         return conf;
@@ -29,6 +29,8 @@ import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCountUtil;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.List;
@@ -177,6 +179,23 @@ public class JournalWriter implements Runnable {
         )
         public int numJournalCallbackThreads = 8;
 
+        @Parameter(
+            names = {
+                "-dio", "--direct-io"
+            },
+            description = "Write the journal with direct I/O instead of going through the page cache"
+        )
+        public boolean directIO = false;
+
+        @Parameter(
+            names = {
+                "-gt", "--gather-threshold"
+            },
+            description = "Size in bytes from which entries are written with a gathering write instead of being"
+                + " copied into the journal write buffer, 0 to always copy"
+        )
+        public int gatherThresholdBytes = 0;
+
     }
 
 
@@ -427,6 +446,7 @@ public class JournalWriter implements Runnable {
     void reportStats() {
         // Print report stats
         long oldTime = System.nanoTime();
+        long oldCpuTime = getProcessCpuTime();
 
         Histogram reportHistogram = null;
 
@@ -444,15 +464,20 @@ public class JournalWriter implements Runnable {
             long now = System.nanoTime();
             double elapsed = (now - oldTime) / 1e9;
 
+            long cpuTime = getProcessCpuTime();
+            double megaBytes = bytesWritten.sumThenReset() / 1024.0 / 1024.0;
             double rate = recordsWritten.sumThenReset() / elapsed;
-            double throughput = bytesWritten.sumThenReset() / elapsed / 1024 / 1024;
+            double throughput = megaBytes / elapsed;
+            // CPU time of the whole process, including the writer threads, for each MB written
+            double cpuPerMegaByte = megaBytes > 0 ? (cpuTime - oldCpuTime) / 1e6 / megaBytes : 0;
 
             reportHistogram = recorder.getIntervalHistogram(reportHistogram);
 
             log.info(
-                    "Throughput written : {}  records/s --- {} MB/s --- Latency: mean:"
+                    "Throughput written : {}  records/s --- {} MB/s --- CPU: {} ms/MB --- Latency: mean:"
                         + " {} ms - med: {} - 95pct: {} - 99pct: {} - 99.9pct: {} - 99.99pct: {} - Max: {}",
                     throughputFormat.format(rate), throughputFormat.format(throughput),
+                    dec.format(cpuPerMegaByte),
                     dec.format(reportHistogram.getMean() / 1000.0),
                     dec.format(reportHistogram.getValueAtPercentile(50) / 1000.0),
                     dec.format(reportHistogram.getValueAtPercentile(95) / 1000.0),
@@ -464,10 +489,19 @@ public class JournalWriter implements Runnable {
             reportHistogram.reset();
 
             oldTime = now;
+            oldCpuTime = cpuTime;
         }
 
     }
 
+    private static long getProcessCpuTime() {
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime();
+        }
+        return 0;
+    }
+
     private static void updateServerConf(ServerConfiguration conf, Flags flags) {
 
         conf.setJournalWriteBufferSizeKB(flags.writeBufferSizeKB);
@@ -476,6 +510,8 @@ public class JournalWriter implements Runnable {
         conf.setNumJournalCallbackThreads(flags.numJournalCallbackThreads);
         conf.setJournalQueueSize(flags.journalQueueSize);
         conf.setJournalSyncData(flags.journalSyncEnabled);
+        conf.setJournalDirectIOEnabled(flags.directIO);
+        conf.setJournalWriteGatherThresholdBytes(flags.gatherThresholdBytes);
         conf.setLedgerDirNames(flags.journalDirs.toArray(new String[0]));
         conf.setStatsProviderClass(PrometheusMetricsProvider.class);
         File[] currentDirs = BookieImpl.getCurrentDirectories(conf.getLedgerDirs());
@@ -140,6 +140,13 @@ public class PerfClient implements Runnable {
             description = "Namespace of the tables to benchmark")
         public String namespace = "benchmark";
 
+        @Parameter(
+            names = {
+                "-nt", "--num-threads"
+            },
+            description = "Number of threads issuing the requests of the random benchmarks")
+        public int numThreads = 1;
+
         @Parameter(
             names = {
                 "-b", "--benchmarks"
@@ -277,17 +284,20 @@ public class PerfClient implements Runnable {
                             ));
                             break;
                         case "fillrandom":
-                            tasks.add(new WriteRandomTask(
-                                table,
-                                currentTaskId++,
-                                randSeed,
-                                Math.max(flags.numOps, flags.numKeys),
-                                flags.numKeys,
-                                flags,
-                                generator,
-                                limiter,
-                                semaphore
-                            ));
+                            // concurrent writers are group committed to the journal of the table ranges
+                            for (int i = 0; i < Math.max(1, flags.numThreads); i++) {
+                                tasks.add(new WriteRandomTask(
+                                    table,
+                                    currentTaskId++,
+                                    randSeed,
+                                    Math.max(flags.numOps, flags.numKeys),
+                                    flags.numKeys,
+                                    flags,
+                                    generator,
+                                    limiter,
+                                    semaphore
+                                ));
+                            }
                             break;
                         case "incseq":
                             tasks.add(new IncrementSequentialTask(
@@ -303,17 +313,34 @@ public class PerfClient implements Runnable {
                             ));
                             break;
                         case "incrandom":
-                            tasks.add(new IncrementRandomTask(
-                                table,
-                                currentTaskId++,
-                                randSeed,
-                                Math.max(flags.numOps, flags.numKeys),
-                                flags.numKeys,
-                                flags,
-                                generator,
-                                limiter,
-                                semaphore
-                            ));
+                            for (int i = 0; i < Math.max(1, flags.numThreads); i++) {
+                                tasks.add(new IncrementRandomTask(
+                                    table,
+                                    currentTaskId++,
+                                    randSeed,
+                                    Math.max(flags.numOps, flags.numKeys),
+                                    flags.numKeys,
+                                    flags,
+                                    generator,
+                                    limiter,
+                                    semaphore
+                                ));
+                            }
+                            break;
+                        case "readrandom":
+                            for (int i = 0; i < Math.max(1, flags.numThreads); i++) {
+                                tasks.add(new ReadRandomTask(
+                                    table,
+                                    currentTaskId++,
+                                    randSeed,
+                                    Math.max(flags.numOps, flags.numKeys),
+                                    flags.numKeys,
+                                    flags,
+                                    generator,
+                                    limiter,
+                                    semaphore
+                                ));
+                            }
                             break;
                         default:
                             System.err.println("Unknown benchmark: " + benchmark);
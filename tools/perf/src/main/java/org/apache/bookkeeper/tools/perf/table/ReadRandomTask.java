@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.tools.perf.table;
+
+import com.google.common.util.concurrent.RateLimiter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.api.kv.Table;
+import org.apache.bookkeeper.tools.perf.table.PerfClient.Flags;
+import org.apache.bookkeeper.tools.perf.table.PerfClient.OP;
+import org.apache.bookkeeper.tools.perf.table.PerfClient.OpStats;
+
+/**
+ * Read random keys from the table.
+ */
+@Slf4j
+class ReadRandomTask extends BenchmarkTask {
+
+    private final RateLimiter limiter;
+    private final Semaphore semaphore;
+    private final OpStats readOpStats;
+
+    ReadRandomTask(Table<ByteBuf, ByteBuf> table,
+                   int tid,
+                   long randSeed,
+                   long numRecords,
+                   long keyRange,
+                   Flags flags,
+                   KeyGenerator generator,
+                   RateLimiter limiter,
+                   Semaphore semaphore) {
+        super(table, tid, randSeed, numRecords, keyRange, flags, generator);
+        this.limiter = limiter;
+        this.semaphore = semaphore;
+        this.readOpStats = new OpStats(OP.GET.name());
+    }
+
+    @Override
+    protected void runTask() throws Exception {
+        for (long i = 0L; i < numRecords; ++i) {
+            if (null != semaphore) {
+                semaphore.acquire();
+            }
+            if (null != limiter) {
+                limiter.acquire();
+            }
+            readKey();
+        }
+    }
+
+    void readKey() {
+        final ByteBuf keyBuf = PooledByteBufAllocator.DEFAULT.heapBuffer(flags.keySize);
+        getRandomKey(keyBuf, keyRange);
+        keyBuf.writerIndex(keyBuf.readerIndex() + keyBuf.writableBytes());
+
+        final long startTime = System.nanoTime();
+        table.get(keyBuf)
+            .whenComplete((value, cause) -> {
+                if (null != semaphore) {
+                    semaphore.release();
+                }
+                if (null != cause) {
+                    log.error("Error at getting key", cause);
+                } else {
+                    long latencyMicros = TimeUnit.NANOSECONDS.toMicros(
+                        System.nanoTime() - startTime
+                    );
+                    readOpStats.recordOp(latencyMicros);
+                }
+                ReferenceCountUtil.release(keyBuf);
+                ReferenceCountUtil.release(value);
+            });
+    }
+
+    @Override
+    protected void reportStats(long oldTime) {
+        readOpStats.reportStats(oldTime);
+    }
+
+    @Override
+    protected void printAggregatedStats() {
+        readOpStats.printAggregatedStats();
+    }
+}